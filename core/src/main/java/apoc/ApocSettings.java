@@ -111,6 +111,19 @@ public class ApocSettings implements SettingsDeclaration {
     public static final Setting<Long> apoc_jobs_scheduled_num_threads =
             newBuilder(APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS, LONG, null).build();
 
+    @Description("run the I/O bound background executions on a thread per task, virtual if supported by the JVM")
+    public static final Setting<Boolean> apoc_jobs_pool_virtual =
+            newBuilder(APOC_CONFIG_JOBS_POOL_VIRTUAL, BOOL, false).build();
+
+    @Description("maximum number of concurrent tasks when apoc.jobs.pool.virtual is enabled")
+    public static final Setting<Long> apoc_jobs_pool_virtual_max_concurrency = newBuilder(
+                    APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY, LONG, null)
+            .build();
+
+    @Description("interval in seconds between the logs of the APOC pool statistics, 0 to disable them")
+    public static final Setting<Long> apoc_jobs_pool_stats_log_interval =
+            newBuilder(APOC_CONFIG_JOBS_POOL_STATS_LOG_INTERVAL, LONG, 0L).build();
+
     @Description(
             "maximum ratio of decompression for loading apoc procedures. A negative number disables any protection against a zip bomb attack")
     public static final Setting<Integer> apoc_max_decompression_ratio = newBuilder(
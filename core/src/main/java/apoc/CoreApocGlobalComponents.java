@@ -19,9 +19,11 @@
 package apoc;
 
 import apoc.cypher.CypherInitializer;
+import apoc.meta.MetaSchemaCache;
 import apoc.trigger.TriggerHandler;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.neo4j.annotations.service.ServiceProvider;
 import org.neo4j.kernel.availability.AvailabilityListener;
@@ -33,7 +35,7 @@ public class CoreApocGlobalComponents implements ApocGlobalComponents {
 
     @Override
     public Map<String, Lifecycle> getServices(GraphDatabaseAPI db, ApocExtensionFactory.Dependencies dependencies) {
-        return Collections.singletonMap(
+        return Map.of(
                 "trigger",
                 new TriggerHandler(
                         db,
@@ -41,12 +43,17 @@ public class CoreApocGlobalComponents implements ApocGlobalComponents {
                         dependencies.apocConfig(),
                         dependencies.log().getUserLog(TriggerHandler.class),
                         dependencies.pools(),
-                        dependencies.scheduler()));
+                        dependencies.scheduler()),
+                "metaSchemaCache",
+                new MetaSchemaCache(
+                        db,
+                        dependencies.databaseManagementService(),
+                        dependencies.log().getUserLog(MetaSchemaCache.class)));
     }
 
     @Override
     public Collection<Class> getContextClasses() {
-        return Collections.singleton(TriggerHandler.class);
+        return List.of(TriggerHandler.class, MetaSchemaCache.class);
     }
 
     @Override
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * A ScheduledThreadPoolExecutor recording into its {@link PoolMetrics} how late each task starts
+ * compared to its scheduled time, and how long it runs.
+ * The runs of the tasks submitted as {@link Pools#namedJob(String, Runnable)} are recorded in the metrics of the job too.
+ */
+class InstrumentedScheduledExecutor extends ScheduledThreadPoolExecutor {
+
+    private final PoolMetrics metrics;
+    private final Function<String, PoolMetrics> jobMetrics;
+
+    InstrumentedScheduledExecutor(
+            String name, int corePoolSize, ThreadFactory threadFactory, Function<String, PoolMetrics> jobMetrics) {
+        super(corePoolSize, threadFactory);
+        this.metrics = new PoolMetrics(name, this::state);
+        this.jobMetrics = jobMetrics;
+    }
+
+    PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+        PoolMetrics job = runnable instanceof Pools.JobTask ? jobMetrics.apply(((Pools.JobTask) runnable).name) : null;
+        return decorate(task, job);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable, RunnableScheduledFuture<V> task) {
+        return decorate(task, null);
+    }
+
+    private <V> RunnableScheduledFuture<V> decorate(RunnableScheduledFuture<V> task, PoolMetrics job) {
+        metrics.submitted();
+        if (job != null) job.submitted();
+        return new TimedScheduledTask<>(task, metrics, job);
+    }
+
+    private Map<String, Object> state() {
+        return Map.of(
+                "activeThreads", getActiveCount(),
+                "poolSize", getPoolSize(),
+                "queued", getQueue().size());
+    }
+
+    private static class TimedScheduledTask<V> implements RunnableScheduledFuture<V> {
+        private final RunnableScheduledFuture<V> task;
+        private final PoolMetrics metrics;
+        private final PoolMetrics job;
+
+        TimedScheduledTask(RunnableScheduledFuture<V> task, PoolMetrics metrics, PoolMetrics job) {
+            this.task = task;
+            this.metrics = metrics;
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            // a task is due when its delay is <= 0, so the negated delay is how late it's starting
+            long late = -task.getDelay(TimeUnit.NANOSECONDS);
+            metrics.started(late);
+            if (job != null) job.started(late);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                task.run();
+                success = isPeriodic() && !isDone() || InstrumentedThreadPoolExecutor.succeeded(task);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                metrics.finished(elapsed, success);
+                if (job != null) job.finished(elapsed, success);
+            }
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return task.compareTo(o);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
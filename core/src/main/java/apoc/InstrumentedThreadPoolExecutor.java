@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ThreadPoolExecutor recording the time each task waits in the queue and runs into its {@link PoolMetrics}
+ */
+class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final PoolMetrics metrics;
+
+    InstrumentedThreadPoolExecutor(
+            String name,
+            int corePoolSize,
+            int maximumPoolSize,
+            long keepAliveTime,
+            TimeUnit unit,
+            BlockingQueue<Runnable> workQueue,
+            ThreadFactory threadFactory,
+            RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        this.metrics = new PoolMetrics(name, this::state);
+    }
+
+    PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        metrics.submitted();
+        super.execute(new TimedTask(command, metrics));
+    }
+
+    private Map<String, Object> state() {
+        return Map.of(
+                "activeThreads", getActiveCount(),
+                "poolSize", getPoolSize(),
+                "maxPoolSize", getMaximumPoolSize(),
+                "queued", getQueue().size(),
+                "queueRemainingCapacity", getQueue().remainingCapacity());
+    }
+
+    /**
+     * @return false if the task has been run as a Future which completed exceptionally
+     */
+    static boolean succeeded(Runnable task) {
+        if (!(task instanceof Future)) return true;
+        Future<?> future = (Future<?>) task;
+        if (!future.isDone() || future.isCancelled()) return true;
+        try {
+            future.get();
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    static class TimedTask implements Runnable {
+        private final Runnable task;
+        private final PoolMetrics metrics;
+        private final long enqueuedAt = System.nanoTime();
+
+        TimedTask(Runnable task, PoolMetrics metrics) {
+            this.task = task;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            metrics.started(start - enqueuedAt);
+            boolean success = false;
+            try {
+                task.run();
+                success = succeeded(task);
+            } finally {
+                metrics.finished(System.nanoTime() - start, success);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor starting a new thread for each task, meant for tasks spending most of their time blocked on I/O.
+ * Instead of a bounded queue, the number of concurrent tasks is bounded by a semaphore:
+ * when all the permits are taken, the caller blocks until a task completes, like with the `CallerBlocksPolicy`.
+ *
+ * The threads are virtual if the JVM supports them (Java 21+), platform daemon threads otherwise.
+ */
+class PerTaskExecutorService extends AbstractExecutorService {
+
+    private static final long PERMIT_TIMEOUT_MILLIS = 250;
+
+    private final ThreadFactory threadFactory;
+    private final boolean virtual;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final PoolMetrics metrics = new PoolMetrics("io", this::getStats);
+
+    PerTaskExecutorService(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("max_concurrency must be > 0");
+        }
+        ThreadFactory virtualThreadFactory = virtualThreadFactory();
+        this.virtual = virtualThreadFactory != null;
+        this.threadFactory = virtual ? virtualThreadFactory : platformThreadFactory();
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+        long submittedAt = System.nanoTime();
+        acquire();
+        submitted.incrementAndGet();
+        metrics.submitted();
+        Thread thread = threadFactory.newThread(() -> {
+            long start = System.nanoTime();
+            metrics.started(start - submittedAt);
+            boolean success = false;
+            try {
+                command.run();
+                success = InstrumentedThreadPoolExecutor.succeeded(command);
+            } finally {
+                metrics.finished(System.nanoTime() - start, success);
+                running.remove(Thread.currentThread());
+                completed.incrementAndGet();
+                permits.release();
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        });
+        running.add(thread);
+        peakActive.accumulateAndGet(running.size(), Math::max);
+        thread.start();
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) return;
+        blocked.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            // we periodically check if the executor has been shut down, as the CallerBlocksPolicy does
+            while (!permits.tryAcquire(PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        } finally {
+            metrics.blocked(System.nanoTime() - start);
+        }
+    }
+
+    PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of submitted, completed and running tasks, the peak of running tasks
+     * and how many submissions had to wait for a permit
+     */
+    Map<String, Object> getStats() {
+        return Util.map(
+                "virtual",
+                virtual,
+                "maxConcurrency",
+                maxConcurrency,
+                "active",
+                running.size(),
+                "peakActive",
+                peakActive.get(),
+                "submitted",
+                submitted.get(),
+                "completed",
+                completed.get(),
+                "blocked",
+                blocked.get());
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        running.forEach(Thread::interrupt);
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && running.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicLong count = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, "apoc-io-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * We still target Java 11, so we look up `Thread.ofVirtual().name(prefix, 0).factory()` reflectively
+     * @return a factory of virtual threads, or null if the JVM doesn't support them
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "apoc-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Counters and latency histograms of one of the APOC pools, or of one of its jobs.
+ * The times a task spends waiting to be started and running are recorded in microseconds
+ * and returned in milliseconds.
+ */
+public class PoolMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final String name;
+    private final Supplier<Map<String, Object>> state;
+    private final long startedAt = System.nanoTime();
+
+    private final Histogram queueTime = new ConcurrentHistogram(3);
+    private final Histogram runTime = new ConcurrentHistogram(3);
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    /**
+     * @param state the current state of the pool, like its active threads and queue depth
+     */
+    public PoolMetrics(String name, Supplier<Map<String, Object>> state) {
+        this.name = name;
+        this.state = state;
+    }
+
+    public PoolMetrics(String name) {
+        this(name, Collections::emptyMap);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void submitted() {
+        submitted.incrementAndGet();
+    }
+
+    public void started(long waitedNanos) {
+        queueTime.recordValue(toMicros(waitedNanos));
+    }
+
+    public void finished(long runNanos, boolean success) {
+        runTime.recordValue(toMicros(runNanos));
+        completed.incrementAndGet();
+        if (!success) failed.incrementAndGet();
+    }
+
+    /**
+     * Records a caller which had to wait as the pool was saturated
+     */
+    public void blocked(long blockedNanos) {
+        blocked.incrementAndGet();
+        this.blockedNanos.addAndGet(blockedNanos);
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public Map<String, Object> toMap() {
+        double seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("submitted", submitted.get());
+        result.put("completed", completed.get());
+        result.put("failed", failed.get());
+        result.put("blocked", blocked.get());
+        result.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+        result.put("throughput", completed.get() / seconds);
+        result.put("queueTime", toMillis(queueTime));
+        result.put("runTime", toMillis(runTime));
+        result.put("state", state.get());
+        return result;
+    }
+
+    private static Map<String, Object> toMillis(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long count = histogram.getTotalCount();
+        result.put("count", count);
+        if (count == 0) return result;
+        result.put("min", histogram.getMinValue() / 1000D);
+        result.put("max", histogram.getMaxValue() / 1000D);
+        result.put("mean", histogram.getMean() / 1000D);
+        for (double percentile : PERCENTILES) {
+            result.put(String.valueOf(percentile), histogram.getValueAtPercentile(percentile * 100D) / 1000D);
+        }
+        return result;
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+}
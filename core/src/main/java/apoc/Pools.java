@@ -22,6 +22,7 @@ import apoc.periodic.Periodic;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,6 +38,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
@@ -49,6 +51,8 @@ public class Pools extends LifecycleAdapter {
 
     public static final int DEFAULT_SCHEDULED_THREADS = Runtime.getRuntime().availableProcessors() / 4;
     public static final int DEFAULT_POOL_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_VIRTUAL_MAX_CONCURRENCY = 256;
+    private static final int MAX_JOB_METRICS = 1000;
     private final Log log;
     private final GlobalProcedures globalProceduresRegistry;
     private final ApocConfig apocConfig;
@@ -56,8 +60,11 @@ public class Pools extends LifecycleAdapter {
     private ExecutorService singleExecutorService;
     private ScheduledExecutorService scheduledExecutorService;
     private ExecutorService defaultExecutorService;
+    private ExecutorService triggerExecutorService;
+    private PerTaskExecutorService ioExecutorService;
 
     private final Map<Periodic.JobInfo, Future> jobList = new ConcurrentHashMap<>();
+    private final Map<String, PoolMetrics> jobMetrics = new ConcurrentHashMap<>();
 
     public Pools(LogService log, GlobalProcedures globalProceduresRegistry, ApocConfig apocConfig) {
 
@@ -84,7 +91,8 @@ public class Pools extends LifecycleAdapter {
             t.setDaemon(true);
             return t;
         };
-        this.singleExecutorService = new ThreadPoolExecutor(
+        this.singleExecutorService = new InstrumentedThreadPoolExecutor(
+                "single",
                 1,
                 1,
                 0L,
@@ -93,7 +101,8 @@ public class Pools extends LifecycleAdapter {
                 threadFactory,
                 new CallerBlocksPolicy());
 
-        this.defaultExecutorService = new ThreadPoolExecutor(
+        this.defaultExecutorService = new InstrumentedThreadPoolExecutor(
+                "default",
                 threads / 2,
                 threads,
                 30L,
@@ -102,12 +111,35 @@ public class Pools extends LifecycleAdapter {
                 threadFactory,
                 new CallerBlocksPolicy());
 
-        this.scheduledExecutorService = Executors.newScheduledThreadPool(
+        // the batches of the coalescing triggers run apart, so that they don't compete with the jobs of the users
+        int triggerThreads = Math.max(1, threads / 4);
+        this.triggerExecutorService = new InstrumentedThreadPoolExecutor(
+                "trigger",
+                triggerThreads,
+                triggerThreads,
+                30L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                threadFactory,
+                new CallerBlocksPolicy());
+
+        this.scheduledExecutorService = new InstrumentedScheduledExecutor(
+                "scheduled",
                 Math.max(
                         1,
                         apocConfig.getInt(
                                 ApocConfig.APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS, DEFAULT_SCHEDULED_THREADS)),
-                threadFactory);
+                threadFactory,
+                name -> jobMetrics.computeIfAbsent(name, PoolMetrics::new));
+
+        if (apocConfig.getBoolean(ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL, false)) {
+            this.ioExecutorService = new PerTaskExecutorService(apocConfig.getInt(
+                    ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY, DEFAULT_VIRTUAL_MAX_CONCURRENCY));
+            if (!ioExecutorService.isVirtual()) {
+                log.info("Virtual threads are not supported by this JVM, "
+                        + "the I/O bound background executions will use a platform thread per task");
+            }
+        }
 
         scheduledExecutorService.scheduleAtFixedRate(
                 () -> {
@@ -117,15 +149,33 @@ public class Pools extends LifecycleAdapter {
                         Map.Entry<Periodic.JobInfo, Future> entry = it.next();
                         if (entry.getValue().isDone() || entry.getValue().isCancelled()) it.remove();
                     }
+                    if (jobMetrics.size() > MAX_JOB_METRICS) {
+                        jobMetrics.keySet().removeIf(name -> !jobList.containsKey(new Periodic.JobInfo(name)));
+                    }
                 },
                 10,
                 10,
                 TimeUnit.SECONDS);
+
+        long logInterval = apocConfig.getInt(ApocConfig.APOC_CONFIG_JOBS_POOL_STATS_LOG_INTERVAL, 0);
+        if (logInterval > 0) {
+            scheduledExecutorService.scheduleAtFixedRate(
+                    () -> getPoolStats().forEach(stats -> log.info("APOC pool statistics: %s", stats)),
+                    logInterval,
+                    logInterval,
+                    TimeUnit.SECONDS);
+        }
     }
 
     @Override
     public void shutdown() throws Exception {
-        Stream.of(singleExecutorService, defaultExecutorService, scheduledExecutorService)
+        Stream.of(
+                        singleExecutorService,
+                        defaultExecutorService,
+                        triggerExecutorService,
+                        scheduledExecutorService,
+                        ioExecutorService)
+                .filter(Objects::nonNull)
                 .forEach(service -> {
                     try {
                         service.shutdown();
@@ -140,6 +190,13 @@ public class Pools extends LifecycleAdapter {
         return singleExecutorService;
     }
 
+    /**
+     * @return the executor of the batches of the coalescing `afterAsync` triggers
+     */
+    public ExecutorService getTriggerExecutorService() {
+        return triggerExecutorService;
+    }
+
     public ScheduledExecutorService getScheduledExecutorService() {
         return scheduledExecutorService;
     }
@@ -148,6 +205,86 @@ public class Pools extends LifecycleAdapter {
         return defaultExecutorService;
     }
 
+    /**
+     * @return the executor for the tasks spending most of their time waiting on I/O:
+     * a thread per task executor if `apoc.jobs.pool.virtual` is enabled, the default executor otherwise
+     */
+    public ExecutorService getIoExecutorService() {
+        return ioExecutorService == null ? defaultExecutorService : ioExecutorService;
+    }
+
+    /**
+     * @return the counters of the thread per task executor, or null if `apoc.jobs.pool.virtual` is not enabled
+     */
+    public Map<String, Object> getIoExecutorStats() {
+        return ioExecutorService == null ? null : ioExecutorService.getStats();
+    }
+
+    /**
+     * @return the counters and latencies of each pool
+     */
+    public List<Map<String, Object>> getPoolStats() {
+        return Stream.of(
+                        singleExecutorService,
+                        defaultExecutorService,
+                        triggerExecutorService,
+                        scheduledExecutorService,
+                        ioExecutorService)
+                .map(Pools::metricsOf)
+                .filter(Objects::nonNull)
+                .map(PoolMetrics::toMap)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the counters and latencies of the jobs submitted via {@link #namedJob(String, Runnable)}
+     */
+    public List<Map<String, Object>> getJobStats() {
+        return jobMetrics.values().stream()
+                .map(metrics -> {
+                    Map<String, Object> stats = metrics.toMap();
+                    stats.remove("state");
+                    stats.put("scheduled", jobList.containsKey(new Periodic.JobInfo(metrics.getName())));
+                    return stats;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static PoolMetrics metricsOf(ExecutorService executor) {
+        if (executor instanceof InstrumentedThreadPoolExecutor) {
+            return ((InstrumentedThreadPoolExecutor) executor).getMetrics();
+        }
+        if (executor instanceof InstrumentedScheduledExecutor) {
+            return ((InstrumentedScheduledExecutor) executor).getMetrics();
+        }
+        if (executor instanceof PerTaskExecutorService) {
+            return ((PerTaskExecutorService) executor).getMetrics();
+        }
+        return null;
+    }
+
+    /**
+     * Wraps a job, so that the scheduled executor records its runs in the job statistics
+     */
+    public static Runnable namedJob(String name, Runnable task) {
+        return new JobTask(name, task);
+    }
+
+    static class JobTask implements Runnable {
+        final String name;
+        private final Runnable task;
+
+        JobTask(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
     public Map<Periodic.JobInfo, Future> getJobList() {
         return jobList;
     }
@@ -160,6 +297,17 @@ public class Pools extends LifecycleAdapter {
             // shut down.
             FutureTask<Void> task = new FutureTask<>(r, null);
             BlockingQueue<Runnable> queue = executor.getQueue();
+            long start = System.nanoTime();
+            try {
+                waitForTask(task, queue, executor);
+            } finally {
+                if (executor instanceof InstrumentedThreadPoolExecutor) {
+                    ((InstrumentedThreadPoolExecutor) executor).getMetrics().blocked(System.nanoTime() - start);
+                }
+            }
+        }
+
+        private void waitForTask(FutureTask<Void> task, BlockingQueue<Runnable> queue, ThreadPoolExecutor executor) {
             while (!executor.isShutdown()) {
                 try {
                     if (queue.offer(task, 250, TimeUnit.MILLISECONDS)) {
@@ -33,6 +33,7 @@ public enum SystemPropertyKeys {
     forceSingle,
     prefix,
     mapResult,
+    cache,
 
     // triggers
     selector,
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.algo;
+
+import apoc.path.RelationshipTypeAndDirections;
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongDoubleHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Dijkstra's algorithm over node ids, finding the shortest paths from a start node to many end nodes in a single search,
+ * or between two nodes by searching from both of them.
+ *
+ * The frontier is a binary heap of primitive (cost, node id) entries: a node whose cost decreases is pushed again,
+ * and its stale entries are skipped once it is settled.
+ * The relationships and their weights are read through kernel cursors, and the weights are cached per relationship
+ * for the whole search, as a relationship can be reached from both of its nodes.
+ * A relationship with neither a numeric weight nor a default weight is not traversed.
+ */
+class DijkstraSearch implements AutoCloseable {
+
+    private static final int CHECK_TERMINATION_EVERY = 10000;
+    // weights are never negative
+    private static final double UNKNOWN = -1;
+
+    private final InternalTransaction tx;
+    private final Read read;
+    private final TerminationGuard guard;
+    private final RelationshipSelection[] selections;
+    private final PropertySelection weightSelection;
+    private final String weightPropertyName;
+    private final double defaultWeight;
+    private final LongDoubleHashMap weights = new LongDoubleHashMap();
+
+    private final NodeCursor node;
+    private final RelationshipTraversalCursor relationships;
+    private final PropertyCursor properties;
+
+    DijkstraSearch(
+            Transaction tx,
+            TerminationGuard guard,
+            String relationshipsAndDirections,
+            String weightPropertyName,
+            double defaultWeight) {
+        this.tx = (InternalTransaction) tx;
+        KernelTransaction ktx = this.tx.kernelTransaction();
+        this.read = ktx.dataRead();
+        this.guard = guard;
+        this.selections = selections(ktx.tokenRead(), relationshipsAndDirections);
+        int weightKey = ktx.tokenRead().propertyKey(weightPropertyName);
+        this.weightSelection = weightKey == TokenRead.NO_TOKEN ? null : PropertySelection.selection(weightKey);
+        this.weightPropertyName = weightPropertyName;
+        this.defaultWeight = defaultWeight;
+        this.node = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+        this.relationships = ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext());
+        this.properties = ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker());
+    }
+
+    private static RelationshipSelection[] selections(TokenRead tokenRead, String relationshipsAndDirections) {
+        List<RelationshipSelection> selections = new ArrayList<>();
+        for (Pair<RelationshipType, Direction> pair : RelationshipTypeAndDirections.parse(relationshipsAndDirections)) {
+            if (pair.first() == null) {
+                selections.add(RelationshipSelection.selection(pair.other()));
+                continue;
+            }
+            int type = tokenRead.relationshipType(pair.first().name());
+            // a type which doesn't exist has no relationships
+            if (type != TokenRead.NO_TOKEN) {
+                selections.add(RelationshipSelection.selection(type, pair.other()));
+            }
+        }
+        return selections.toArray(new RelationshipSelection[0]);
+    }
+
+    /**
+     * Searches until all the end nodes are settled
+     * @return the shortest path to each of the end nodes, in the same order, or null for the ones which can't be reached
+     */
+    List<WeightedPath> shortestPaths(long startId, long[] endIds) {
+        Search search = settle(startId, endIds);
+        List<WeightedPath> paths = new ArrayList<>(endIds.length);
+        for (long endId : endIds) {
+            paths.add(search.settled.contains(endId) ? path(search, endId, null, endId) : null);
+        }
+        return paths;
+    }
+
+    /**
+     * Like {@link #shortestPaths(long, long[])}, without building the paths
+     * @return the cost of the shortest path to each of the end nodes, in the same order,
+     * or {@link Double#POSITIVE_INFINITY} for the ones which can't be reached
+     */
+    double[] costs(long startId, long[] endIds) {
+        Search search = settle(startId, endIds);
+        double[] costs = new double[endIds.length];
+        for (int i = 0; i < endIds.length; i++) {
+            costs[i] = search.settled.contains(endIds[i]) ? search.costs.get(endIds[i]) : Double.POSITIVE_INFINITY;
+        }
+        return costs;
+    }
+
+    private Search settle(long startId, long[] endIds) {
+        Roaring64NavigableMap remaining = new Roaring64NavigableMap();
+        Arrays.stream(endIds).forEach(remaining::addLong);
+        Search search = new Search(startId, selections);
+        long settled = 0;
+        while (!remaining.isEmpty()) {
+            long nodeId = search.settleNext(null);
+            if (nodeId == -1) break;
+            remaining.removeLong(nodeId);
+            if (++settled % CHECK_TERMINATION_EVERY == 0) {
+                guard.check();
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Searches forward from the start node and backward from the end node, expanding the smaller frontier first,
+     * until the sum of their lowest costs is no lower than the one of the best path through a node reached by both
+     * @return the shortest path, or null if there is none
+     */
+    WeightedPath shortestPath(long startId, long endId) {
+        Search forward = new Search(startId, selections);
+        Search backward = new Search(endId, reverse(selections));
+        if (startId == endId) {
+            return path(forward, startId, null, endId);
+        }
+        long settled = 0;
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            double best = Math.min(forward.bestCost, backward.bestCost);
+            if (forward.heap.peekCost() + backward.heap.peekCost() >= best) break;
+            if (forward.heap.size() <= backward.heap.size()) {
+                forward.settleNext(backward);
+            } else {
+                backward.settleNext(forward);
+            }
+            if (++settled % CHECK_TERMINATION_EVERY == 0) {
+                guard.check();
+            }
+        }
+
+        Search meeting = forward.bestCost <= backward.bestCost ? forward : backward;
+        if (meeting.meetingNode == -1) return null;
+        return path(forward, meeting.meetingNode, backward, endId);
+    }
+
+    private static RelationshipSelection[] reverse(RelationshipSelection[] selections) {
+        return Arrays.stream(selections).map(RelationshipSelection::reverse).toArray(RelationshipSelection[]::new);
+    }
+
+    /**
+     * @param backward the search from the end node, or null if the forward search reached the end node
+     */
+    private WeightedPath path(Search forward, long meetingNode, Search backward, long endId) {
+        LongArrayList toMeeting = new LongArrayList();
+        long current = meetingNode;
+        while (current != forward.startId) {
+            toMeeting.add(forward.parentRelationships.get(current));
+            current = forward.parentNodes.get(current);
+        }
+        PathImpl.Builder builder = new PathImpl.Builder(tx.newNodeEntity(forward.startId));
+        for (int i = toMeeting.size() - 1; i >= 0; i--) {
+            builder = builder.push(tx.newRelationshipEntity(toMeeting.get(i)));
+        }
+        double weight = forward.costs.get(meetingNode);
+
+        if (backward != null) {
+            current = meetingNode;
+            // summed in the order of the path, for the same weight as the one of a forward search
+            while (current != endId) {
+                long relationshipId = backward.parentRelationships.get(current);
+                builder = builder.push(tx.newRelationshipEntity(relationshipId));
+                weight += weights.get(relationshipId);
+                current = backward.parentNodes.get(current);
+            }
+        }
+        return new WeightedPathImpl(weight, builder.build());
+    }
+
+    private double weight(RelationshipTraversalCursor relationship) {
+        long id = relationship.relationshipReference();
+        double weight = weights.getIfAbsent(id, UNKNOWN);
+        if (weight == UNKNOWN) {
+            weight = readWeight(relationship);
+            weights.put(id, weight);
+        }
+        return weight;
+    }
+
+    private double readWeight(RelationshipTraversalCursor relationship) {
+        Object value = defaultWeight;
+        if (weightSelection != null) {
+            relationship.properties(properties, weightSelection);
+            if (properties.next()) {
+                value = properties.propertyValue().asObjectCopy();
+            }
+        }
+        Double weight = Util.toDouble(value);
+        if (weight == null || weight.isNaN()) {
+            return Double.NaN;
+        }
+        if (weight < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "The %s of relationship %d is negative: %s",
+                    weightPropertyName, relationship.relationshipReference(), weight));
+        }
+        return weight;
+    }
+
+    @Override
+    public void close() {
+        node.close();
+        relationships.close();
+        properties.close();
+    }
+
+    /**
+     * The state of a search from one node
+     */
+    private class Search {
+        private final long startId;
+        private final RelationshipSelection[] selections;
+        private final CostHeap heap = new CostHeap();
+        private final LongDoubleHashMap costs = new LongDoubleHashMap();
+        private final LongLongHashMap parentNodes = new LongLongHashMap();
+        private final LongLongHashMap parentRelationships = new LongLongHashMap();
+        private final Roaring64NavigableMap settled = new Roaring64NavigableMap();
+
+        // the cheapest path found through a node reached by both searches
+        private double bestCost = Double.POSITIVE_INFINITY;
+        private long meetingNode = -1;
+
+        Search(long startId, RelationshipSelection[] selections) {
+            this.startId = startId;
+            this.selections = selections;
+            costs.put(startId, 0);
+            heap.push(startId, 0);
+        }
+
+        /**
+         * Settles the node of lowest cost and relaxes its relationships
+         * @param other the search from the other end, or null
+         * @return the settled node, or -1 if there are no more nodes to settle
+         */
+        long settleNext(Search other) {
+            while (!heap.isEmpty()) {
+                long nodeId = heap.peekId();
+                double cost = heap.peekCost();
+                heap.pop();
+                if (settled.contains(nodeId)) continue;
+                settled.addLong(nodeId);
+                relax(nodeId, cost, other);
+                return nodeId;
+            }
+            return -1;
+        }
+
+        private void relax(long nodeId, double cost, Search other) {
+            read.singleNode(nodeId, node);
+            if (!node.next()) return;
+            for (RelationshipSelection selection : selections) {
+                node.relationships(relationships, selection);
+                while (relationships.next()) {
+                    long otherId = relationships.otherNodeReference();
+                    if (settled.contains(otherId)) continue;
+                    double weight = weight(relationships);
+                    if (Double.isNaN(weight)) continue;
+
+                    double otherCost = cost + weight;
+                    if (otherCost < costs.getIfAbsent(otherId, Double.POSITIVE_INFINITY)) {
+                        costs.put(otherId, otherCost);
+                        parentNodes.put(otherId, nodeId);
+                        parentRelationships.put(otherId, relationships.relationshipReference());
+                        heap.push(otherId, otherCost);
+                    }
+                    if (other != null && other.costs.containsKey(otherId)) {
+                        double throughCost = costs.get(otherId) + other.costs.get(otherId);
+                        if (throughCost < bestCost) {
+                            bestCost = throughCost;
+                            meetingNode = otherId;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A binary min heap of node ids by cost, kept in two parallel arrays
+     */
+    static class CostHeap {
+        private long[] ids = new long[64];
+        private double[] costs = new double[64];
+        private int size;
+
+        void push(long id, double cost) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (costs[parent] <= cost) break;
+                ids[index] = ids[parent];
+                costs[index] = costs[parent];
+                index = parent;
+            }
+            ids[index] = id;
+            costs[index] = cost;
+        }
+
+        long peekId() {
+            return ids[0];
+        }
+
+        double peekCost() {
+            return costs[0];
+        }
+
+        void pop() {
+            long id = ids[--size];
+            double cost = costs[size];
+            int index = 0;
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && costs[child + 1] < costs[child]) child++;
+                if (cost <= costs[child]) break;
+                ids[index] = ids[child];
+                costs[index] = costs[child];
+                index = child;
+            }
+            ids[index] = id;
+            costs[index] = cost;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
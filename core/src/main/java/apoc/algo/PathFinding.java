@@ -23,7 +23,9 @@ import apoc.result.PathResult;
 import apoc.result.WeightedPathResult;
 import apoc.util.Util;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.neo4j.graphalgo.*;
@@ -33,6 +35,7 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 import org.neo4j.values.storable.PointValue;
 
 public class PathFinding {
@@ -87,6 +90,9 @@ public class PathFinding {
     @Context
     public Transaction tx;
 
+    @Context
+    public TerminationGuard terminationGuard;
+
     @Procedure
     @Description("apoc.algo.aStar(startNode, endNode, 'KNOWS|<WORKS_WITH|IS_MANAGER_OF>', 'distance','lat','lon') "
             + "YIELD path, weight - run A* with relationship property name as cost function")
@@ -156,6 +162,33 @@ public class PathFinding {
         return WeightedPathResult.streamWeightedPathResult(startNode, endNode, algo);
     }
 
+    @Procedure
+    @Description(
+            "apoc.algo.dijkstraMany(startNode, [endNodes], 'KNOWS|<WORKS_WITH|IS_MANAGER_OF>', 'distance', defaultValue, {bidirectional:false}) YIELD path,"
+                    + " weight - run a single dijkstra search from the start node to all the end nodes, with relationship property name as cost function")
+    public Stream<WeightedPathResult> dijkstraMany(
+            @Name("startNode") Node startNode,
+            @Name("endNodes") List<Node> endNodes,
+            @Name("relationshipTypesAndDirections") String relTypesAndDirs,
+            @Name("weightPropertyName") String weightPropertyName,
+            @Name(value = "defaultWeight", defaultValue = "NaN") double defaultWeight,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (startNode == null || endNodes == null || endNodes.isEmpty()) return Stream.empty();
+        boolean bidirectional = Util.toBoolean(config.getOrDefault("bidirectional", false));
+        long[] endIds = endNodes.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Node::getId)
+                .toArray();
+
+        try (DijkstraSearch search =
+                new DijkstraSearch(tx, terminationGuard, relTypesAndDirs, weightPropertyName, defaultWeight)) {
+            List<WeightedPath> paths = bidirectional && endIds.length == 1
+                    ? Collections.singletonList(search.shortestPath(startNode.getId(), endIds[0]))
+                    : search.shortestPaths(startNode.getId(), endIds);
+            return paths.stream().filter(Objects::nonNull).map(WeightedPathResult::new);
+        }
+    }
+
     @Procedure
     @Description("apoc.algo.allSimplePaths(startNode, endNode, 'KNOWS|<WORKS_WITH|IS_MANAGER_OF>', 5) YIELD path, "
             + "weight - run allSimplePaths with relationships given and maxNodes")
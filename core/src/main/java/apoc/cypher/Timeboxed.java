@@ -71,7 +71,7 @@ public class Timeboxed {
 
         // run query to be timeboxed in a separate thread to enable proper tx termination
         // if we'd run this in current thread, a tx.terminate would kill the transaction the procedure call uses itself.
-        pools.getDefaultExecutorService().submit(() -> {
+        pools.getIoExecutorService().submit(() -> {
             try (Transaction innerTx = db.beginTx()) {
                 txAtomic.set(innerTx);
                 Result result = innerTx.execute(cypher, params == null ? Collections.EMPTY_MAP : params);
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import apoc.util.Util;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+/**
+ * An {@link IdMapping} avoiding boxed keys and values:
+ * numeric ids are kept in a primitive long to long map on the heap,
+ * while string ids are kept in a {@link StringIdDictionary} per id space, outside the heap.
+ * The string dictionaries share a memory budget, and once it's exceeded they spill into a memory mapped file.
+ *
+ * With numeric ids, the ids which aren't written as a long, e.g. `007` or ``, are kept in the string dictionaries,
+ * so that they are told apart from `7` as with the {@link HeapIdMapping}.
+ */
+class CompactIdMapping implements IdMapping {
+
+    private final boolean stringIds;
+    private final PagedMemory memory;
+    private final Map<String, LongLongHashMap> numericIds = new HashMap<>();
+    private final Map<String, StringIdDictionary> stringIdDictionaries = new HashMap<>();
+    private final Map<String, Long> nullIds = new HashMap<>();
+
+    CompactIdMapping(boolean stringIds, long memoryBudget) {
+        this.stringIds = stringIds;
+        this.memory = new PagedMemory(memoryBudget);
+    }
+
+    @Override
+    public long get(String idSpace, String csvId) {
+        if (csvId == null) return nullIds.getOrDefault(idSpace, NOT_FOUND);
+        if (stringIds || !isLong(csvId)) {
+            StringIdDictionary dictionary = stringIdDictionaries.get(idSpace);
+            return dictionary == null ? NOT_FOUND : dictionary.get(csvId);
+        }
+        LongLongHashMap ids = numericIds.get(idSpace);
+        return ids == null ? NOT_FOUND : ids.getIfAbsent(Long.parseLong(csvId), NOT_FOUND);
+    }
+
+    @Override
+    public boolean putIfAbsent(String idSpace, String csvId, long nodeId) {
+        if (csvId == null) return nullIds.putIfAbsent(idSpace, nodeId) == null;
+        if (stringIds || !isLong(csvId)) {
+            return stringIdDictionaries
+                    .computeIfAbsent(idSpace, k -> new StringIdDictionary(memory))
+                    .putIfAbsent(csvId, nodeId);
+        }
+        LongLongHashMap ids = numericIds.computeIfAbsent(idSpace, k -> new LongLongHashMap());
+        long key = Long.parseLong(csvId);
+        if (ids.containsKey(key)) return false;
+        ids.put(key, nodeId);
+        return true;
+    }
+
+    /**
+     * @return true if the id is a long as written by {@link Long#toString(long)}, i.e. it's the only id mapped to its value
+     */
+    static boolean isLong(String csvId) {
+        int length = csvId.length();
+        int start = length > 0 && csvId.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits == 0 || digits > 19) return false;
+        // leading zeros and -0
+        if (csvId.charAt(start) == '0' && (digits > 1 || start == 1)) return false;
+        for (int i = start; i < length; i++) {
+            char c = csvId.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        if (digits < 19) return true;
+        try {
+            Long.parseLong(csvId);
+            return true;
+        } catch (NumberFormatException e) {
+            // out of the range of long
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long ids = numericIds.values().stream().mapToLong(LongLongHashMap::size).sum()
+                + stringIdDictionaries.values().stream()
+                        .mapToLong(StringIdDictionary::size)
+                        .sum()
+                + nullIds.size();
+        long keyBytes = stringIdDictionaries.values().stream()
+                .mapToLong(StringIdDictionary::getKeyBytes)
+                .sum();
+        long tableBytes = stringIdDictionaries.values().stream()
+                .mapToLong(StringIdDictionary::getTableBytes)
+                .sum();
+        // each slot of the primitive map takes a long key and a long value, and the map is at most half full
+        long numericBytes = numericIds.values().stream()
+                .mapToLong(map -> map.size() * 2L * 2L * Long.BYTES)
+                .sum();
+        return Util.map(
+                "type",
+                CsvLoaderConfig.IdMappingType.COMPACT.name(),
+                "ids",
+                ids,
+                "heapBytes",
+                numericBytes,
+                "keyBytes",
+                keyBytes,
+                "tableBytes",
+                tableBytes,
+                "offHeapBytes",
+                memory.getDirectBytes(),
+                "spilledBytes",
+                memory.getMappedBytes());
+    }
+
+    @Override
+    public void close() {
+        numericIds.clear();
+        stringIdDictionaries.clear();
+        nullIds.clear();
+        memory.close();
+    }
+}
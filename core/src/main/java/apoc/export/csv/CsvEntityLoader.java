@@ -30,6 +30,7 @@ import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.RFC4180ParserBuilder;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -59,7 +60,7 @@ public class CsvEntityLoader {
 
     /**
      * Loads nodes from a CSV file with given labels to an online database, and fills the {@code idMapping},
-     * which will be used by the {@link #loadRelationships(Object, String, GraphDatabaseService, Map)}
+     * which will be used by the {@link #loadRelationships(Object, String, GraphDatabaseService, IdMapping)}
      * method.
      *
      * @param fileName URI/Binary of the CSV file representing the node
@@ -69,117 +70,24 @@ public class CsvEntityLoader {
      * @throws IOException
      */
     public void loadNodes(
-            final Object fileName,
-            final List<String> labels,
-            final GraphDatabaseService db,
-            final Map<String, Map<String, Long>> idMapping)
+            final Object fileName, final List<String> labels, final GraphDatabaseService db, final IdMapping idMapping)
             throws IOException {
 
         try (final CountingReader reader = FileUtils.readerFor(fileName, clc.getCompressionAlgo())) {
-            final String header = readFirstLine(reader);
-            final List<CsvHeaderField> fields =
-                    CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
-
-            final Optional<CsvHeaderField> idField = fields.stream()
-                    .filter(f -> CsvLoaderConstants.ID_FIELD.equals(f.getType()))
-                    .findFirst();
-
-            if (!idField.isPresent()) {
-                log.warn(
-                        "Please note that if no ID is specified, the node will be imported but it will not be able to be connected by any relationships during the import");
-            }
-
-            final Optional<String> idAttribute =
-                    idField.isPresent() ? Optional.of(idField.get().getName()) : Optional.empty();
-            final String idSpace =
-                    idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
+            final NodeFile nodeFile = new NodeFile(readFirstLine(reader), labels);
+            final CSVReader csv = nodeFile.open(reader);
 
-            idMapping.putIfAbsent(idSpace, new HashMap<>());
-            final Map<String, Long> idspaceIdMapping = idMapping.get(idSpace);
-
-            final Map<String, Mapping> mapping = getMapping(fields);
-
-            final CSVReader csv = new CSVReaderBuilder(reader)
-                    .withCSVParser(new RFC4180ParserBuilder()
-                            .withSeparator(clc.getDelimiter())
-                            .withQuoteChar(clc.getQuotationCharacter())
-                            .build())
-                    .withSkipLines(clc.getSkipLines() - 1)
-                    .build();
-
-            final String[] loadCsvCompatibleHeader =
-                    fields.stream().map(f -> f.getName()).toArray(String[]::new);
             AtomicInteger lineNo = new AtomicInteger();
             BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
             try {
                 csv.forEach(line -> {
                     terminationGuard.check();
-                    lineNo.getAndIncrement();
-
-                    final EnumSet<Results> results = EnumSet.of(Results.map);
-                    final CSVResult result = new CSVResult(
-                            loadCsvCompatibleHeader,
-                            line,
-                            lineNo.get(),
-                            false,
-                            mapping,
-                            Collections.emptyList(),
-                            results);
-
-                    final String nodeCsvId =
-                            (String) idAttribute.map(result.map::get).orElse(null);
-
-                    // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the
-                    // current id,
-                    // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
-                    if (idField.isPresent() && idspaceIdMapping.containsKey(nodeCsvId)) {
-                        if (clc.getIgnoreDuplicateNodes()) {
-                            return;
-                        } else {
-                            throw new IllegalStateException("Duplicate node with id " + nodeCsvId + " found on line "
-                                    + lineNo + "\n" + Arrays.toString(line));
-                        }
-                    }
-
-                    // create node and add its id to the mapping
-                    final Node node = btx.getTransaction().createNode();
-                    if (idField.isPresent()) {
-                        idspaceIdMapping.put(nodeCsvId, node.getId());
-                    }
-
-                    // add labels
-                    for (String label : labels) {
-                        node.addLabel(Label.label(label));
-                    }
-
-                    // add properties
-                    int props = 0;
-                    for (CsvHeaderField field : fields) {
-                        final String name = field.getName();
-                        Object value = result.map.get(name);
-
-                        if (field.isMeta()) {
-                            final List<String> customLabels = (List<String>) value;
-                            for (String customLabel : customLabels) {
-                                node.addLabel(Label.label(customLabel));
-                            }
-                        } else if (field.isId()) {
-                            final Object idValue;
-                            if (clc.getStringIds()) {
-                                idValue = value;
-                            } else {
-                                idValue = Long.valueOf((String) value);
-                            }
-                            node.setProperty(field.getName(), idValue);
-                            props++;
-                        } else {
-                            boolean propertyAdded =
-                                    CsvPropertyConverter.addPropertyToGraphEntity(node, field, value, clc);
-                            props += propertyAdded ? 1 : 0;
-                        }
+                    final int props = nodeFile.write(btx.getTransaction(), line, lineNo.incrementAndGet(), idMapping);
+                    if (props < 0) {
+                        return;
                     }
                     btx.increment();
-                    reporter.update(1, 0, props++);
+                    reporter.update(1, 0, props);
                 });
                 btx.commit();
             } catch (RuntimeException e) {
@@ -194,7 +102,7 @@ public class CsvEntityLoader {
     /**
      * Loads relationships from a CSV file with given relationship types to an online database,
      * using the {@code idMapping} created by the
-     * {@link #loadNodes(Object, List, GraphDatabaseService, Map)} method.
+     * {@link #loadNodes(Object, List, GraphDatabaseService, IdMapping)} method.
      *
      * @param data URI / Binary of the CSV file representing the relationship
      * @param type relationship type to be applied to each relationships
@@ -204,107 +112,234 @@ public class CsvEntityLoader {
      * @throws IOException
      */
     public void loadRelationships(
-            final Object data,
-            final String type,
-            final GraphDatabaseService db,
-            final Map<String, Map<String, Long>> idMapping)
+            final Object data, final String type, final GraphDatabaseService db, final IdMapping idMapping)
             throws IOException {
 
         try (final CountingReader reader = FileUtils.readerFor(data, clc.getCompressionAlgo())) {
-            final String header = readFirstLine(reader);
+            final RelationshipFile relationshipFile = new RelationshipFile(readFirstLine(reader), type);
+
+            try (final CSVReader csv = relationshipFile.open(reader)) {
+                AtomicInteger lineNo = new AtomicInteger();
+                BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
+                try {
+                    csv.forEach(line -> {
+                        terminationGuard.check();
+                        final int props =
+                                relationshipFile.write(btx.getTransaction(), line, lineNo.incrementAndGet(), idMapping);
+                        btx.increment();
+                        reporter.update(0, 1, props);
+                    });
+                    btx.commit();
+                } catch (RuntimeException e) {
+                    btx.rollback();
+                    throw e;
+                } finally {
+                    btx.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The header of a node file, writing its lines
+     */
+    class NodeFile {
+        private final List<CsvHeaderField> fields;
+        private final Optional<CsvHeaderField> idField;
+        private final String idSpace;
+        private final Map<String, Mapping> mapping;
+        private final String[] loadCsvCompatibleHeader;
+        private final List<String> labels;
+
+        NodeFile(String header, List<String> labels) {
+            this.fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
+            this.idField = fields.stream()
+                    .filter(f -> CsvLoaderConstants.ID_FIELD.equals(f.getType()))
+                    .findFirst();
+
+            if (!idField.isPresent()) {
+                log.warn(
+                        "Please note that if no ID is specified, the node will be imported but it will not be able to be connected by any relationships during the import");
+            }
+
+            this.idSpace = idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
+            this.mapping = getMapping(fields);
+            this.loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
+            this.labels = labels;
+        }
+
+        CSVReader open(Reader reader) {
+            return new CSVReaderBuilder(reader)
+                    .withCSVParser(new RFC4180ParserBuilder()
+                            .withSeparator(clc.getDelimiter())
+                            .withQuoteChar(clc.getQuotationCharacter())
+                            .build())
+                    .withSkipLines(clc.getSkipLines() - 1)
+                    .build();
+        }
+
+        /**
+         * Creates the node of a line and adds its id to the mapping
+         * @return the number of properties set, or -1 if the node is a duplicate to be ignored
+         */
+        int write(Transaction tx, String[] line, int lineNo, IdMapping idMapping) {
+            final EnumSet<Results> results = EnumSet.of(Results.map);
+            final CSVResult result = new CSVResult(
+                    loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results);
+
+            final String nodeCsvId = (String)
+                    idField.map(field -> result.map.get(field.getName())).orElse(null);
+
+            // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the current id,
+            // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
+            if (idField.isPresent() && idMapping.get(idSpace, nodeCsvId) != IdMapping.NOT_FOUND) {
+                return duplicate(nodeCsvId, lineNo, line);
+            }
+
+            // create node and add its id to the mapping
+            final Node node = tx.createNode();
+            if (idField.isPresent() && !idMapping.putIfAbsent(idSpace, nodeCsvId, node.getId())) {
+                // another batch, loaded in parallel, mapped the same id in the meantime
+                node.delete();
+                return duplicate(nodeCsvId, lineNo, line);
+            }
+
+            // add labels
+            for (String label : labels) {
+                node.addLabel(Label.label(label));
+            }
+
+            // add properties
+            int props = 0;
+            for (CsvHeaderField field : fields) {
+                final String name = field.getName();
+                Object value = result.map.get(name);
+
+                if (field.isMeta()) {
+                    final List<String> customLabels = (List<String>) value;
+                    for (String customLabel : customLabels) {
+                        node.addLabel(Label.label(customLabel));
+                    }
+                } else if (field.isId()) {
+                    final Object idValue;
+                    if (clc.getStringIds()) {
+                        idValue = value;
+                    } else {
+                        idValue = Long.valueOf((String) value);
+                    }
+                    node.setProperty(field.getName(), idValue);
+                    props++;
+                } else {
+                    boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(node, field, value, clc);
+                    props += propertyAdded ? 1 : 0;
+                }
+            }
+            return props;
+        }
+
+        private int duplicate(String nodeCsvId, int lineNo, String[] line) {
+            if (clc.getIgnoreDuplicateNodes()) {
+                return -1;
+            }
+            throw new IllegalStateException(
+                    "Duplicate node with id " + nodeCsvId + " found on line " + lineNo + "\n" + Arrays.toString(line));
+        }
+    }
+
+    /**
+     * The header of a relationship file, writing its lines
+     */
+    class RelationshipFile {
+        private final CsvHeaderField startIdField;
+        private final CsvHeaderField endIdField;
+        private final int startIdColumn;
+        private final List<CsvHeaderField> edgePropertiesFields;
+        private final Map<String, Mapping> mapping;
+        private final String[] loadCsvCompatibleHeader;
+        private final String type;
+
+        RelationshipFile(String header, String type) {
             final List<CsvHeaderField> fields =
                     CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
 
-            final CsvHeaderField startIdField = fields.stream()
+            this.startIdField = fields.stream()
                     .filter(f -> CsvLoaderConstants.START_ID_FIELD.equals(f.getType()))
                     .findFirst()
                     .get();
 
-            final CsvHeaderField endIdField = fields.stream()
+            this.endIdField = fields.stream()
                     .filter(f -> CsvLoaderConstants.END_ID_FIELD.equals(f.getType()))
                     .findFirst()
                     .get();
 
-            final List<CsvHeaderField> edgePropertiesFields = fields.stream()
+            this.startIdColumn = fields.indexOf(startIdField);
+
+            this.edgePropertiesFields = fields.stream()
                     .filter(field -> !CsvLoaderConstants.START_ID_FIELD.equals(field.getType()))
                     .filter(field -> !CsvLoaderConstants.END_ID_FIELD.equals(field.getType()))
                     .collect(Collectors.toList());
 
-            final Map<String, Mapping> mapping = getMapping(fields);
+            this.mapping = getMapping(fields);
+            this.loadCsvCompatibleHeader = fields.stream().map(f -> f.getName()).toArray(String[]::new);
+            this.type = type;
+        }
+
+        CSVReader open(Reader reader) {
             final var parser =
                     new CSVParserBuilder().withSeparator(clc.getDelimiter()).build();
+            return new CSVReaderBuilder(reader).withCSVParser(parser).build();
+        }
 
-            try (final var csv =
-                    new CSVReaderBuilder(reader).withCSVParser(parser).build()) {
+        /**
+         * @return the raw start id of the line, the relationships with the same start node are written one after the other
+         */
+        String getStartId(String[] line) {
+            return startIdColumn < line.length ? line[startIdColumn] : null;
+        }
 
-                final String[] loadCsvCompatibleHeader =
-                        fields.stream().map(f -> f.getName()).toArray(String[]::new);
+        /**
+         * Creates the relationship of a line
+         * @return the number of properties set
+         */
+        int write(Transaction tx, String[] line, int lineNo, IdMapping idMapping) {
+            final EnumSet<Results> results = EnumSet.of(Results.map);
+            final CSVResult result = new CSVResult(
+                    loadCsvCompatibleHeader, line, lineNo, false, mapping, Collections.emptyList(), results);
+
+            final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
+            final long startInternalId = idMapping.get(startIdField.getIdSpace(), Objects.toString(startId, null));
+            if (startInternalId == IdMapping.NOT_FOUND) {
+                throw new IllegalStateException(
+                        "Node for id space " + endIdField.getIdSpace() + " and id " + startId + " not found");
+            }
+            final Node source = tx.getNodeById(startInternalId);
 
-                AtomicInteger lineNo = new AtomicInteger();
-                BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
-                try {
-                    csv.forEach(line -> {
-                        terminationGuard.check();
-                        lineNo.getAndIncrement();
-
-                        final EnumSet<Results> results = EnumSet.of(Results.map);
-                        final CSVResult result = new CSVResult(
-                                loadCsvCompatibleHeader,
-                                line,
-                                lineNo.get(),
-                                false,
-                                mapping,
-                                Collections.emptyList(),
-                                results);
-
-                        final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
-                        final Object startInternalId =
-                                idMapping.get(startIdField.getIdSpace()).get(startId);
-                        if (startInternalId == null) {
-                            throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id "
-                                    + startId + " not found");
-                        }
-                        final Node source = btx.getTransaction().getNodeById((long) startInternalId);
-
-                        final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
-                        final Object endInternalId =
-                                idMapping.get(endIdField.getIdSpace()).get(endId);
-                        if (endInternalId == null) {
-                            throw new IllegalStateException(
-                                    "Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
-                        }
-                        final Node target = btx.getTransaction().getNodeById((long) endInternalId);
-
-                        final String currentType;
-                        final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
-                        if (overridingType != null && !((String) overridingType).isEmpty()) {
-                            currentType = (String) overridingType;
-                        } else {
-                            currentType = type;
-                        }
-                        final Relationship rel =
-                                source.createRelationshipTo(target, RelationshipType.withName(currentType));
-
-                        // add properties
-                        int props = 0;
-                        for (CsvHeaderField field : edgePropertiesFields) {
-                            final String name = field.getName();
-                            Object value = result.map.get(name);
-                            boolean propertyAdded =
-                                    CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value, clc);
-                            props += propertyAdded ? 1 : 0;
-                        }
-                        btx.increment();
-                        reporter.update(0, 1, props);
-                    });
-                    btx.commit();
-                } catch (RuntimeException e) {
-                    btx.rollback();
-                    throw e;
-                } finally {
-                    btx.close();
-                }
+            final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
+            final long endInternalId = idMapping.get(endIdField.getIdSpace(), Objects.toString(endId, null));
+            if (endInternalId == IdMapping.NOT_FOUND) {
+                throw new IllegalStateException(
+                        "Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
+            }
+            final Node target = tx.getNodeById(endInternalId);
+
+            final String currentType;
+            final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
+            if (overridingType != null && !((String) overridingType).isEmpty()) {
+                currentType = (String) overridingType;
+            } else {
+                currentType = type;
+            }
+            final Relationship rel = source.createRelationshipTo(target, RelationshipType.withName(currentType));
+
+            // add properties
+            int props = 0;
+            for (CsvHeaderField field : edgePropertiesFields) {
+                final String name = field.getName();
+                Object value = result.map.get(name);
+                boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value, clc);
+                props += propertyAdded ? 1 : 0;
             }
+            return props;
         }
     }
 
@@ -320,7 +355,7 @@ public class CsvEntityLoader {
         }));
     }
 
-    private static String readFirstLine(CountingReader reader) throws IOException {
+    static String readFirstLine(CountingReader reader) throws IOException {
         String line = "";
         int i;
         while ((i = reader.read()) != 0) {
@@ -22,6 +22,7 @@ import static apoc.export.util.BulkImportUtil.formatHeader;
 import static apoc.export.util.MetaInformation.collectPropTypesForNodes;
 import static apoc.export.util.MetaInformation.collectPropTypesForRelationships;
 import static apoc.export.util.MetaInformation.getLabelsString;
+import static apoc.export.util.MetaInformation.mergeKeyTypes;
 import static apoc.export.util.MetaInformation.updateKeyTypes;
 import static apoc.util.Util.INVALID_QUERY_MODE_ERROR;
 import static apoc.util.Util.joinLabels;
@@ -31,6 +32,8 @@ import apoc.export.util.ExportConfig;
 import apoc.export.util.Format;
 import apoc.export.util.FormatUtils;
 import apoc.export.util.MetaInformation;
+import apoc.export.util.ParallelExport;
+import apoc.export.util.ParallelExport.RangeBuffer;
 import apoc.export.util.Reporter;
 import apoc.result.ProgressInfo;
 import com.opencsv.CSVWriter;
@@ -46,6 +49,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -67,13 +72,22 @@ import org.neo4j.graphdb.security.AuthorizationViolationException;
 public class CsvFormat implements Format {
     public static final String ID = "id";
     private final GraphDatabaseService db;
+    private final ParallelExport parallelExport;
     private boolean applyQuotesToAll = true;
 
     private static final String[] NODE_HEADER_FIXED_COLUMNS = {"_id:id", "_labels:label"};
     private static final String[] REL_HEADER_FIXED_COLUMNS = {"_start:id", "_end:id", "_type:label"};
 
     public CsvFormat(GraphDatabaseService db) {
+        this(db, null);
+    }
+
+    /**
+     * @param parallelExport the engine exporting the whole database in parallel, or null to export serially
+     */
+    public CsvFormat(GraphDatabaseService db, ParallelExport parallelExport) {
         this.db = db;
+        this.parallelExport = parallelExport;
     }
 
     @Override
@@ -86,6 +100,8 @@ public class CsvFormat implements Format {
         try (Transaction tx = db.beginTx()) {
             if (config.isBulkImport()) {
                 writeAllBulkImport(graph, reporter, config, writer);
+            } else if (parallelExport != null) {
+                writeAllParallel(graph, reporter, config, writer);
             } else {
                 try (PrintWriter printWriter = writer.getPrintWriter("csv")) {
                     CSVWriter out = getCsvWriter(printWriter, config);
@@ -181,7 +197,7 @@ public class CsvFormat implements Format {
         int cols = header.size();
 
         writeNodes(
-                graph,
+                graph.getNodes(),
                 out,
                 reporter,
                 nodeHeader.subList(NODE_HEADER_FIXED_COLUMNS.length, nodeHeader.size()),
@@ -189,7 +205,7 @@ public class CsvFormat implements Format {
                 config.getBatchSize(),
                 config.getDelim());
         writeRels(
-                graph,
+                graph.getRelationships(),
                 out,
                 reporter,
                 relHeader.subList(REL_HEADER_FIXED_COLUMNS.length, relHeader.size()),
@@ -199,6 +215,99 @@ public class CsvFormat implements Format {
                 config.getDelim());
     }
 
+    /**
+     * Same as {@link #writeAll(SubGraph, Reporter, ExportConfig, CSVWriter)}, but the property types are collected
+     * and the rows serialized by id range in parallel.
+     * The ranges are either concatenated in id order, or written to the numbered part files, each one with its own header
+     * unless `separateHeader` is set.
+     */
+    private void writeAllParallel(SubGraph graph, Reporter reporter, ExportConfig config, ExportFileManager writer) {
+        Map<String, Class> nodePropTypes;
+        Map<String, Class> relPropTypes;
+        if (config.isSampling()) {
+            nodePropTypes = collectPropTypesForNodes(graph, db, config);
+            relPropTypes = collectPropTypesForRelationships(graph, db, config);
+        } else {
+            nodePropTypes = new LinkedHashMap<>();
+            relPropTypes = new LinkedHashMap<>();
+            parallelExport.nodes(CsvFormat::collectKeyTypes, types -> mergeKeyTypes(nodePropTypes, types));
+            parallelExport.relationships(CsvFormat::collectKeyTypes, types -> mergeKeyTypes(relPropTypes, types));
+        }
+        List<String> nodeHeader = generateHeader(nodePropTypes, config.useTypes(), NODE_HEADER_FIXED_COLUMNS);
+        List<String> relHeader = generateHeader(relPropTypes, config.useTypes(), REL_HEADER_FIXED_COLUMNS);
+        List<String> header = new ArrayList<>(nodeHeader);
+        header.addAll(relHeader);
+        String[] headerRow = header.toArray(new String[header.size()]);
+        int cols = header.size();
+        List<String> nodeProps = nodeHeader.subList(NODE_HEADER_FIXED_COLUMNS.length, nodeHeader.size());
+        List<String> relProps = relHeader.subList(REL_HEADER_FIXED_COLUMNS.length, relHeader.size());
+
+        ParallelExport.RangeTask<Node, RangeBuffer> nodes = range -> {
+            RangeBuffer buffer = new RangeBuffer();
+            writeNodes(
+                    range,
+                    getCsvWriter(buffer.getWriter(), config),
+                    buffer,
+                    nodeProps,
+                    cols,
+                    config.getBatchSize(),
+                    config.getDelim());
+            return buffer;
+        };
+        ParallelExport.RangeTask<Relationship, RangeBuffer> rels = range -> {
+            RangeBuffer buffer = new RangeBuffer();
+            writeRels(
+                    range,
+                    getCsvWriter(buffer.getWriter(), config),
+                    buffer,
+                    relProps,
+                    cols,
+                    nodeHeader.size(),
+                    config.getBatchSize(),
+                    config.getDelim());
+            return buffer;
+        };
+
+        if (!parallelExport.isPartFiles()) {
+            try (PrintWriter printWriter = writer.getPrintWriter("csv")) {
+                getCsvWriter(printWriter, config).writeNext(headerRow, applyQuotesToAll);
+                Consumer<RangeBuffer> append = buffer -> {
+                    printWriter.write(buffer.toString());
+                    buffer.reportTo(reporter);
+                };
+                parallelExport.nodes(nodes, append);
+                parallelExport.relationships(rels, append);
+            }
+            return;
+        }
+        if (config.isSeparateHeader()) {
+            try (PrintWriter pwHeader = writer.getPrintWriter("header")) {
+                getCsvWriter(pwHeader, config).writeNext(headerRow, applyQuotesToAll);
+            }
+        }
+        AtomicInteger parts = new AtomicInteger();
+        Consumer<RangeBuffer> writePart = buffer -> {
+            if (buffer.isEmpty()) return;
+            try (PrintWriter pw = writer.getPrintWriter(ParallelExport.partName(parts.incrementAndGet()))) {
+                if (!config.isSeparateHeader()) {
+                    getCsvWriter(pw, config).writeNext(headerRow, applyQuotesToAll);
+                }
+                pw.write(buffer.toString());
+            }
+            buffer.reportTo(reporter);
+        };
+        parallelExport.nodes(nodes, writePart);
+        parallelExport.relationships(rels, writePart);
+    }
+
+    private static Map<String, Class> collectKeyTypes(Iterable<? extends Entity> entities) {
+        Map<String, Class> keyTypes = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            updateKeyTypes(keyTypes, entity);
+        }
+        return keyTypes;
+    }
+
     private void writeAllBulkImport(SubGraph graph, Reporter reporter, ExportConfig config, ExportFileManager writer) {
         Map<Iterable<Label>, List<Node>> objectNodes = StreamSupport.stream(
                         graph.getNodes().spliterator(), false)
@@ -347,7 +456,7 @@ public class CsvFormat implements Format {
     }
 
     private void writeNodes(
-            SubGraph graph,
+            Iterable<Node> nodes,
             CSVWriter out,
             Reporter reporter,
             List<String> header,
@@ -355,20 +464,20 @@ public class CsvFormat implements Format {
             int batchSize,
             String delimiter) {
         String[] row = new String[cols];
-        int nodes = 0;
-        for (Node node : graph.getNodes()) {
+        int count = 0;
+        for (Node node : nodes) {
             row[0] = String.valueOf(node.getId());
             row[1] = getLabelsString(node);
             collectProps(header, node, reporter, row, 2, delimiter);
             out.writeNext(row, applyQuotesToAll);
-            nodes++;
-            if (batchSize == -1 || nodes % batchSize == 0) {
-                reporter.update(nodes, 0, 0);
-                nodes = 0;
+            count++;
+            if (batchSize == -1 || count % batchSize == 0) {
+                reporter.update(count, 0, 0);
+                count = 0;
             }
         }
-        if (nodes > 0) {
-            reporter.update(nodes, 0, 0);
+        if (count > 0) {
+            reporter.update(count, 0, 0);
         }
     }
 
@@ -386,7 +495,7 @@ public class CsvFormat implements Format {
     }
 
     private void writeRels(
-            SubGraph graph,
+            Iterable<Relationship> rels,
             CSVWriter out,
             Reporter reporter,
             List<String> relHeader,
@@ -395,21 +504,21 @@ public class CsvFormat implements Format {
             int batchSize,
             String delimiter) {
         String[] row = new String[cols];
-        int rels = 0;
-        for (Relationship rel : graph.getRelationships()) {
+        int count = 0;
+        for (Relationship rel : rels) {
             row[offset] = String.valueOf(rel.getStartNode().getId());
             row[offset + 1] = String.valueOf(rel.getEndNode().getId());
             row[offset + 2] = rel.getType().name();
             collectProps(relHeader, rel, reporter, row, 3 + offset, delimiter);
             out.writeNext(row, applyQuotesToAll);
-            rels++;
-            if (batchSize == -1 || rels % batchSize == 0) {
-                reporter.update(0, rels, 0);
-                rels = 0;
+            count++;
+            if (batchSize == -1 || count % batchSize == 0) {
+                reporter.update(0, count, 0);
+                count = 0;
             }
         }
-        if (rels > 0) {
-            reporter.update(0, rels, 0);
+        if (count > 0) {
+            reporter.update(0, count, 0);
         }
     }
 }
@@ -40,6 +40,10 @@ public class CsvLoaderConfig extends CompressionConfig {
     private static final String IGNORE_DUPLICATE_NODES = "ignoreDuplicateNodes";
     private static final String IGNORE_BLANK_STRING = "ignoreBlankString";
     private static final String IGNORE_EMPTY_CELL_ARRAY = "ignoreEmptyCellArray";
+    private static final String ID_MAPPING = "idMapping";
+    private static final String ID_MAPPING_MEMORY = "idMappingMemory";
+    private static final String PARALLEL = "parallel";
+    private static final String CONCURRENCY = "concurrency";
 
     private static char DELIMITER_DEFAULT = ',';
     private static char ARRAY_DELIMITER_DEFAULT = ';';
@@ -50,6 +54,18 @@ public class CsvLoaderConfig extends CompressionConfig {
     private static boolean IGNORE_DUPLICATE_NODES_DEFAULT = false;
     private static boolean IGNORE_BLANK_STRING_DEFAULT = false;
     private static boolean IGNORE_EMPTY_CELL_ARRAY_DEFAULT = false;
+    private static IdMappingType ID_MAPPING_DEFAULT = IdMappingType.HEAP;
+    private static long ID_MAPPING_MEMORY_DEFAULT = 256L * 1024 * 1024;
+    private static boolean PARALLEL_DEFAULT = false;
+    private static int CONCURRENCY_DEFAULT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Where the mapping between the CSV ids and the DB's internal node ids is kept, see {@link IdMapping}
+     */
+    public enum IdMappingType {
+        HEAP,
+        COMPACT
+    }
 
     private final char delimiter;
     private final char arrayDelimiter;
@@ -60,6 +76,10 @@ public class CsvLoaderConfig extends CompressionConfig {
     private final boolean ignoreDuplicateNodes;
     private final boolean ignoreBlankString;
     private final boolean ignoreEmptyCellArray;
+    private final IdMappingType idMapping;
+    private final long idMappingMemory;
+    private final boolean parallel;
+    private final int concurrency;
 
     private CsvLoaderConfig(Builder builder) {
         super(Map.of(COMPRESSION, builder.compressionAlgo, CHARSET, builder.charset));
@@ -72,6 +92,10 @@ public class CsvLoaderConfig extends CompressionConfig {
         this.ignoreDuplicateNodes = builder.ignoreDuplicateNodes;
         this.ignoreBlankString = builder.ignoreBlankString;
         this.ignoreEmptyCellArray = builder.ignoreEmptyCellArray;
+        this.idMapping = builder.idMapping;
+        this.idMappingMemory = builder.idMappingMemory;
+        this.parallel = builder.parallel;
+        this.concurrency = builder.concurrency;
     }
 
     public char getDelimiter() {
@@ -110,6 +134,22 @@ public class CsvLoaderConfig extends CompressionConfig {
         return ignoreEmptyCellArray;
     }
 
+    public IdMappingType getIdMapping() {
+        return idMapping;
+    }
+
+    public long getIdMappingMemory() {
+        return idMappingMemory;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
     /**
      * Creates builder to build {@link CsvLoaderConfig}.
      *
@@ -150,6 +190,18 @@ public class CsvLoaderConfig extends CompressionConfig {
             builder.ignoreBlankString((boolean) config.get(IGNORE_BLANK_STRING));
         if (config.get(IGNORE_EMPTY_CELL_ARRAY) != null)
             builder.ignoreEmptyCellArray((boolean) config.get(IGNORE_EMPTY_CELL_ARRAY));
+        if (config.get(ID_MAPPING) != null)
+            builder.idMapping(
+                    IdMappingType.valueOf(config.get(ID_MAPPING).toString().toUpperCase()));
+        if (config.get(ID_MAPPING_MEMORY) != null) builder.idMappingMemory(Util.toLong(config.get(ID_MAPPING_MEMORY)));
+        if (config.get(PARALLEL) != null) builder.parallel(Util.toBoolean(config.get(PARALLEL)));
+        if (config.get(CONCURRENCY) != null) {
+            int concurrency = Util.toInteger(config.get(CONCURRENCY));
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency parameter must be > 0");
+            }
+            builder.concurrency(concurrency);
+        }
         builder.binary((String) config.getOrDefault(COMPRESSION, CompressionAlgo.NONE.name()));
         builder.charset((String) config.getOrDefault(CHARSET, UTF_8.name()));
 
@@ -169,6 +221,10 @@ public class CsvLoaderConfig extends CompressionConfig {
         private boolean ignoreDuplicateNodes = IGNORE_DUPLICATE_NODES_DEFAULT;
         private boolean ignoreBlankString = IGNORE_BLANK_STRING_DEFAULT;
         private boolean ignoreEmptyCellArray = IGNORE_EMPTY_CELL_ARRAY_DEFAULT;
+        private IdMappingType idMapping = ID_MAPPING_DEFAULT;
+        private long idMappingMemory = ID_MAPPING_MEMORY_DEFAULT;
+        private boolean parallel = PARALLEL_DEFAULT;
+        private int concurrency = CONCURRENCY_DEFAULT;
         private String compressionAlgo = null;
         private String charset = UTF_8.name();
 
@@ -229,6 +285,26 @@ public class CsvLoaderConfig extends CompressionConfig {
             return this;
         }
 
+        public Builder idMapping(IdMappingType idMapping) {
+            this.idMapping = idMapping;
+            return this;
+        }
+
+        public Builder idMappingMemory(long idMappingMemory) {
+            this.idMappingMemory = idMappingMemory;
+            return this;
+        }
+
+        public Builder parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public Builder concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
         public CsvLoaderConfig build() {
             return new CsvLoaderConfig(this);
         }
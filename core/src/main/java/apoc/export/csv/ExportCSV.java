@@ -26,6 +26,7 @@ import apoc.export.util.ExportConfig;
 import apoc.export.util.ExportFormat;
 import apoc.export.util.ExportUtils;
 import apoc.export.util.NodesAndRelsSubGraph;
+import apoc.export.util.ParallelExport;
 import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.Util;
@@ -140,10 +141,14 @@ public class ExportCSV {
         ProgressInfo progressInfo = new ProgressInfo(fileName, source, format);
         progressInfo.batchSize = exportConfig.getBatchSize();
         ProgressReporter reporter = new ProgressReporter(null, null, progressInfo);
-        CsvFormat exporter = new CsvFormat(db);
+        ParallelExport parallelExport = ParallelExport.of(
+                data, fileName, exportConfig, tx, db, pools.getDefaultExecutorService(), terminationGuard);
+        CsvFormat exporter = new CsvFormat(db, parallelExport);
 
+        boolean separatedFiles =
+                exportConfig.isBulkImport() || (parallelExport != null && parallelExport.isPartFiles());
         ExportFileManager cypherFileManager =
-                FileManagerFactory.createFileManager(fileName, exportConfig.isBulkImport(), exportConfig);
+                FileManagerFactory.createFileManager(fileName, separatedFiles, exportConfig);
 
         if (exportConfig.streamStatements()) {
             return ExportUtils.getProgressInfoStream(
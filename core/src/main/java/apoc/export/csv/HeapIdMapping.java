@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import apoc.util.Util;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The default {@link IdMapping}, a {@link HashMap} per id space
+ */
+class HeapIdMapping implements IdMapping {
+
+    private final Map<String, Map<String, Long>> idMapping = new HashMap<>();
+
+    @Override
+    public long get(String idSpace, String csvId) {
+        Long nodeId = idMapping.getOrDefault(idSpace, Map.of()).get(csvId);
+        return nodeId == null ? NOT_FOUND : nodeId;
+    }
+
+    @Override
+    public boolean putIfAbsent(String idSpace, String csvId, long nodeId) {
+        return idMapping.computeIfAbsent(idSpace, k -> new HashMap<>()).putIfAbsent(csvId, nodeId) == null;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        return Util.map(
+                "type", CsvLoaderConfig.IdMappingType.HEAP.name(),
+                "ids", idMapping.values().stream().mapToLong(Map::size).sum());
+    }
+
+    @Override
+    public void close() {
+        idMapping.clear();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import java.util.Map;
+
+/**
+ * Maps the ids of the nodes in the CSV files, within their id space, to the ids of the created nodes
+ */
+public interface IdMapping extends AutoCloseable {
+
+    long NOT_FOUND = -1;
+
+    /**
+     * @return the id of the node created for the csvId, or {@link #NOT_FOUND}
+     */
+    long get(String idSpace, String csvId);
+
+    /**
+     * @return false if the csvId is already mapped within the idSpace, in which case the mapping is left unchanged
+     */
+    boolean putIfAbsent(String idSpace, String csvId, long nodeId);
+
+    /**
+     * @return the number of mapped ids and the memory they take
+     */
+    Map<String, Object> getStats();
+
+    @Override
+    void close();
+
+    static IdMapping from(CsvLoaderConfig clc) {
+        switch (clc.getIdMapping()) {
+            case HEAP:
+                return new HeapIdMapping();
+            case COMPACT:
+                return new CompactIdMapping(clc.getStringIds(), clc.getIdMappingMemory());
+            default:
+                throw new IllegalArgumentException("Unknown idMapping: " + clc.getIdMapping());
+        }
+    }
+}
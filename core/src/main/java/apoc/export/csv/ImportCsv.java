@@ -22,7 +22,6 @@ import apoc.Pools;
 import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.Util;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -57,32 +56,63 @@ public class ImportCsv {
             @Name("relationships") List<Map<String, Object>> relationships,
             @Name("config") Map<String, Object> config)
             throws Exception {
-        ProgressInfo result = Util.inThread(pools, () -> {
-            String file = "progress.csv";
-            String source = "file";
-            if (nodes.stream().anyMatch(node -> node.containsKey("data"))) {
-                file = null;
-                source = "file/binary";
-            }
-            final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
-            final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(file, source, "csv"));
-            final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log, terminationGuard);
+        String file = "progress.csv";
+        String source = "file";
+        if (nodes.stream().anyMatch(node -> node.containsKey("data"))) {
+            file = null;
+            source = "file/binary";
+        }
+        final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
+        final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(file, source, "csv"));
+        final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log, terminationGuard);
 
-            final Map<String, Map<String, Long>> idMapping = new HashMap<>();
-            for (Map<String, Object> node : nodes) {
-                final Object data = node.getOrDefault("fileName", node.get("data"));
-                final List<String> labels = (List<String>) node.get("labels");
-                loader.loadNodes(data, labels, db, idMapping);
-            }
+        if (clc.isParallel()) {
+            // the batches are written by the pool, we mustn't hold one of its threads while waiting for them
+            return Stream.of(importInParallel(nodes, relationships, clc, reporter, loader));
+        }
+
+        ProgressInfo result = Util.inThread(pools, () -> {
+            try (IdMapping idMapping = IdMapping.from(clc)) {
+                for (Map<String, Object> node : nodes) {
+                    final Object data = node.getOrDefault("fileName", node.get("data"));
+                    final List<String> labels = (List<String>) node.get("labels");
+                    loader.loadNodes(data, labels, db, idMapping);
+                }
+                log.info("apoc.import.csv id mapping after loading the nodes: %s", idMapping.getStats());
 
-            for (Map<String, Object> relationship : relationships) {
-                final Object fileName = relationship.getOrDefault("fileName", relationship.get("data"));
-                final String type = (String) relationship.get("type");
-                loader.loadRelationships(fileName, type, db, idMapping);
+                for (Map<String, Object> relationship : relationships) {
+                    final Object fileName = relationship.getOrDefault("fileName", relationship.get("data"));
+                    final String type = (String) relationship.get("type");
+                    loader.loadRelationships(fileName, type, db, idMapping);
+                }
             }
 
             return reporter.getTotal();
         });
         return Stream.of(result);
     }
+
+    private ProgressInfo importInParallel(
+            List<Map<String, Object>> nodes,
+            List<Map<String, Object>> relationships,
+            CsvLoaderConfig clc,
+            ProgressReporter reporter,
+            CsvEntityLoader loader) {
+        ParallelCsvEntityLoader parallelLoader = new ParallelCsvEntityLoader(
+                loader,
+                clc,
+                reporter,
+                log,
+                terminationGuard,
+                db,
+                pools.getIoExecutorService(),
+                pools.getDefaultExecutorService());
+
+        try (IdMapping idMapping = IdMapping.from(clc)) {
+            parallelLoader.loadNodes(nodes, idMapping);
+            log.info("apoc.import.csv id mapping after loading the nodes: %s", idMapping.getStats());
+            parallelLoader.loadRelationships(relationships, idMapping);
+        }
+        return reporter.getTotal();
+    }
 }
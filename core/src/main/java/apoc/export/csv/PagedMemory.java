@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Hands out fixed size pages of memory outside of the Java heap.
+ * Pages are allocated as direct buffers until the memory budget is exhausted,
+ * then they are memory mapped from a temporary file, so that the OS can page them out to disk.
+ */
+class PagedMemory implements AutoCloseable {
+
+    static final int PAGE_SIZE = 8 * 1024 * 1024;
+
+    private final long budget;
+    private final Set<ByteBuffer> directPages = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long directBytes;
+    private long mappedBytes;
+    private Path spillFile;
+    private FileChannel spillChannel;
+
+    PagedMemory(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("idMappingMemory parameter must be >= 0");
+        }
+        this.budget = budget;
+    }
+
+    synchronized ByteBuffer allocate() {
+        if (directBytes + PAGE_SIZE <= budget) {
+            directBytes += PAGE_SIZE;
+            ByteBuffer page = ByteBuffer.allocateDirect(PAGE_SIZE);
+            directPages.add(page);
+            return page;
+        }
+        try {
+            if (spillChannel == null) {
+                spillFile = Files.createTempFile("apoc-import-ids", ".bin");
+                spillFile.toFile().deleteOnExit();
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer page = spillChannel.map(FileChannel.MapMode.READ_WRITE, mappedBytes, PAGE_SIZE);
+            mappedBytes += PAGE_SIZE;
+            return page;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill the id mapping to disk", e);
+        }
+    }
+
+    /**
+     * Gives a page back to the budget, the memory of the direct pages is freed once they are garbage collected,
+     * while the mapped ones are kept in the file until we close
+     */
+    synchronized void release(ByteBuffer page) {
+        if (directPages.remove(page)) {
+            directBytes -= PAGE_SIZE;
+        }
+    }
+
+    synchronized long getDirectBytes() {
+        return directBytes;
+    }
+
+    synchronized long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (spillChannel == null) return;
+        try {
+            spillChannel.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException ignored) {
+            // the file is deleted on exit anyway
+        } finally {
+            spillChannel = null;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import apoc.export.util.CountingReader;
+import apoc.export.util.ProgressReporter;
+import apoc.util.FileUtils;
+import apoc.util.Util;
+import com.opencsv.CSVReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Loads the files of an `apoc.import.csv` with a pipeline:
+ * the files are parsed concurrently by up to `concurrency` parsers, each one claiming the next file not parsed yet,
+ * which cut their lines in batches and hand them over to a fixed number of lanes. The batches of a lane are converted and written one after the other,
+ * each one in its own transaction, on the writer pool.
+ *
+ * All the node files are loaded before the relationship files.
+ * The node batches are spread round robin over the lanes, while the relationships are routed to the lane given
+ * by the hash of their start id, so that two transactions never contend for the lock of the same start node.
+ * The relationship batches failing with a transient error, like a deadlock on their end nodes, are retried.
+ *
+ * Each lane holds at most two pending batches, so the parsers block when the writers can't keep up.
+ */
+class ParallelCsvEntityLoader {
+
+    private static final int PENDING_BATCHES_PER_LANE = 2;
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 100;
+    private static final int MAX_RETRIES = 5;
+
+    private final CsvEntityLoader loader;
+    private final CsvLoaderConfig clc;
+    private final ProgressReporter reporter;
+    private final Log log;
+    private final TerminationGuard terminationGuard;
+    private final GraphDatabaseService db;
+    private final ExecutorService parsers;
+    private final ExecutorService writers;
+    private final List<Lane> lanes;
+    private final AtomicLong nextLane = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param parsers the executor parsing the files along with the calling thread, up to the configured concurrency.
+     * If it's the writers' one, its core threads are split between the parsers and the lanes,
+     * as a parser waiting for a lane holds its thread
+     */
+    ParallelCsvEntityLoader(
+            CsvEntityLoader loader,
+            CsvLoaderConfig clc,
+            ProgressReporter reporter,
+            Log log,
+            TerminationGuard terminationGuard,
+            GraphDatabaseService db,
+            ExecutorService parsers,
+            ExecutorService writers) {
+        this.loader = loader;
+        this.clc = clc;
+        this.reporter = reporter;
+        this.log = log;
+        this.terminationGuard = terminationGuard;
+        this.db = db;
+        this.parsers = parsers;
+        this.writers = writers;
+        int threads = maxThreads(writers);
+        int laneThreads = parsers == writers ? threads - threads / 2 : threads;
+        int workers = Math.max(1, Math.min(clc.getConcurrency(), laneThreads));
+        this.lanes = IntStream.range(0, workers).mapToObj(i -> new Lane()).collect(Collectors.toList());
+    }
+
+    /**
+     * @param nodes the `fileName` or `data` and the `labels` of each node file
+     */
+    void loadNodes(List<Map<String, Object>> nodes, IdMapping idMapping) {
+        // the batches of different lanes map their ids concurrently
+        IdMapping synchronizedIdMapping = new SynchronizedIdMapping(idMapping);
+        run(nodes.stream()
+                .map(node -> (ParseTask) () -> parseNodes(
+                        node.getOrDefault("fileName", node.get("data")),
+                        (List<String>) node.get("labels"),
+                        synchronizedIdMapping))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param relationships the `fileName` or `data` and the `type` of each relationship file
+     * @param idMapping filled by {@link #loadNodes(List, IdMapping)}, it's only read from now on
+     */
+    void loadRelationships(List<Map<String, Object>> relationships, IdMapping idMapping) {
+        run(relationships.stream()
+                .map(relationship -> (ParseTask) () -> parseRelationships(
+                        relationship.getOrDefault("fileName", relationship.get("data")),
+                        (String) relationship.get("type"),
+                        idMapping))
+                .collect(Collectors.toList()));
+    }
+
+    private void parseNodes(Object data, List<String> labels, IdMapping idMapping) throws Exception {
+        try (final CountingReader reader = FileUtils.readerFor(data, clc.getCompressionAlgo())) {
+            final CsvEntityLoader.NodeFile nodeFile =
+                    loader.new NodeFile(CsvEntityLoader.readFirstLine(reader), labels);
+            final CSVReader csv = nodeFile.open(reader);
+
+            List<Line> batch = new ArrayList<>(clc.getBatchSize());
+            int lineNo = 0;
+            for (String[] line : csv) {
+                if (stopped()) return;
+                batch.add(new Line(line, ++lineNo));
+                if (batch.size() >= clc.getBatchSize()) {
+                    if (!submitNodes(nodeFile, batch, idMapping)) return;
+                    batch = new ArrayList<>(clc.getBatchSize());
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitNodes(nodeFile, batch, idMapping);
+            }
+        }
+    }
+
+    private boolean submitNodes(CsvEntityLoader.NodeFile nodeFile, List<Line> batch, IdMapping idMapping) {
+        Lane lane = lanes.get((int) (nextLane.getAndIncrement() % lanes.size()));
+        // the ids mapped by a failed batch would be seen as duplicates, so we don't retry it
+        return submit(lane, 0, tx -> {
+            int nodes = 0;
+            int props = 0;
+            for (Line line : batch) {
+                int lineProps = nodeFile.write(tx, line.values, line.lineNo, idMapping);
+                if (lineProps < 0) continue;
+                nodes++;
+                props += lineProps;
+            }
+            return new BatchCounts(nodes, 0, props);
+        });
+    }
+
+    private void parseRelationships(Object data, String type, IdMapping idMapping) throws Exception {
+        try (final CountingReader reader = FileUtils.readerFor(data, clc.getCompressionAlgo())) {
+            final CsvEntityLoader.RelationshipFile relationshipFile =
+                    loader.new RelationshipFile(CsvEntityLoader.readFirstLine(reader), type);
+
+            try (final CSVReader csv = relationshipFile.open(reader)) {
+                List<List<Line>> pending = new ArrayList<>(lanes.size());
+                for (int i = 0; i < lanes.size(); i++) {
+                    pending.add(new ArrayList<>());
+                }
+                int lineNo = 0;
+                for (String[] line : csv) {
+                    if (stopped()) return;
+                    int lane = laneOf(relationshipFile.getStartId(line));
+                    List<Line> batch = pending.get(lane);
+                    batch.add(new Line(line, ++lineNo));
+                    if (batch.size() >= clc.getBatchSize()) {
+                        pending.set(lane, new ArrayList<>());
+                        if (!submitRelationships(lanes.get(lane), relationshipFile, batch, idMapping)) return;
+                    }
+                }
+                for (int lane = 0; lane < lanes.size(); lane++) {
+                    List<Line> batch = pending.get(lane);
+                    if (!batch.isEmpty() && !submitRelationships(lanes.get(lane), relationshipFile, batch, idMapping)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean submitRelationships(
+            Lane lane, CsvEntityLoader.RelationshipFile relationshipFile, List<Line> batch, IdMapping idMapping) {
+        return submit(lane, MAX_RETRIES, tx -> {
+            int props = 0;
+            for (Line line : batch) {
+                props += relationshipFile.write(tx, line.values, line.lineNo, idMapping);
+            }
+            return new BatchCounts(0, batch.size(), props);
+        });
+    }
+
+    int laneOf(String startId) {
+        return Util.partitionOf(Objects.hashCode(startId), lanes.size());
+    }
+
+    /**
+     * Runs the parsers and waits for all the batches they submitted
+     */
+    private void run(List<ParseTask> tasks) {
+        Queue<ParseTask> unclaimed = new ConcurrentLinkedQueue<>(tasks);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 1; i < parserCount(tasks.size()); i++) {
+                futures.add(parsers.submit(() -> parseAll(unclaimed)));
+            }
+            // this thread parses too, so that the import goes on even if no parser task ever starts
+            parseAll(unclaimed);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed(e);
+        } catch (ExecutionException | RuntimeException e) {
+            failed(e);
+        } finally {
+            try {
+                CompletableFuture.allOf(lanes.stream().map(lane -> lane.tail).toArray(CompletableFuture[]::new))
+                        .join();
+            } catch (CompletionException e) {
+                failed(e.getCause());
+            }
+        }
+        Throwable t = failure.get();
+        if (t != null) {
+            throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+        }
+        terminationGuard.check();
+    }
+
+    private int parserCount(int files) {
+        int count = Math.min(files, clc.getConcurrency());
+        // the calling thread is one of the parsers, the others only take the threads of a shared pool the lanes don't
+        return parsers == writers ? Math.min(count, maxThreads(writers) - lanes.size() + 1) : count;
+    }
+
+    /**
+     * Parses the files no other parser claimed yet, returning once there's none left
+     */
+    private void parseAll(Queue<ParseTask> unclaimed) {
+        for (ParseTask task = unclaimed.poll(); task != null; task = unclaimed.poll()) {
+            parse(task);
+        }
+    }
+
+    private void parse(ParseTask task) {
+        try {
+            task.parse();
+        } catch (Throwable t) {
+            failed(t);
+        }
+    }
+
+    /**
+     * Chains the batch after the ones pending in the lane, waiting for a free slot
+     * @return false if the import failed or was terminated in the meantime
+     */
+    private boolean submit(Lane lane, int maxRetries, Function<Transaction, BatchCounts> batch) {
+        if (!lane.acquire()) return false;
+        synchronized (lane) {
+            lane.tail = lane.tail.thenRunAsync(
+                    () -> {
+                        try {
+                            if (!stopped()) write(batch, maxRetries);
+                        } catch (Throwable t) {
+                            failed(t);
+                        } finally {
+                            lane.pending.release();
+                        }
+                    },
+                    writers);
+        }
+        return true;
+    }
+
+    private void write(Function<Transaction, BatchCounts> batch, int maxRetries) {
+        for (int retry = 0; ; retry++) {
+            try (Transaction tx = db.beginTx()) {
+                BatchCounts counts = batch.apply(tx);
+                tx.commit();
+                synchronized (reporter) {
+                    reporter.update(counts.nodes, counts.relationships, counts.properties);
+                }
+                return;
+            } catch (TransientFailureException e) {
+                if (retry >= maxRetries) throw e;
+                log.warn(
+                        "Retrying batch of apoc.import.csv %d of %d, after: %s", retry + 1, maxRetries, e.getMessage());
+                Util.sleep(100);
+            }
+        }
+    }
+
+    private boolean stopped() {
+        return failure.get() != null || Util.transactionIsTerminated(terminationGuard);
+    }
+
+    private void failed(Throwable t) {
+        failure.compareAndSet(null, t);
+    }
+
+    private static int maxThreads(ExecutorService pool) {
+        // the threads above the core size are only started once the queue is full,
+        // so the lanes beyond it would wait in the queue for one of the core threads
+        return pool instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) pool).getCorePoolSize()
+                : Integer.MAX_VALUE;
+    }
+
+    private static class BatchCounts {
+        private final long nodes;
+        private final long relationships;
+        private final long properties;
+
+        BatchCounts(long nodes, long relationships, long properties) {
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.properties = properties;
+        }
+    }
+
+    private interface ParseTask {
+        void parse() throws Exception;
+    }
+
+    private static class Line {
+        private final String[] values;
+        private final int lineNo;
+
+        Line(String[] values, int lineNo) {
+            this.values = values;
+            this.lineNo = lineNo;
+        }
+    }
+
+    private class Lane {
+        private final Semaphore pending = new Semaphore(PENDING_BATCHES_PER_LANE);
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        /**
+         * waits for a free slot in the lane, giving up if the import fails or gets terminated
+         */
+        boolean acquire() {
+            try {
+                while (!pending.tryAcquire(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stopped()) return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed(e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Guards an id mapping filled by concurrent batches
+     */
+    private static class SynchronizedIdMapping implements IdMapping {
+        private final IdMapping idMapping;
+
+        SynchronizedIdMapping(IdMapping idMapping) {
+            this.idMapping = idMapping;
+        }
+
+        @Override
+        public synchronized long get(String idSpace, String csvId) {
+            return idMapping.get(idSpace, csvId);
+        }
+
+        @Override
+        public synchronized boolean putIfAbsent(String idSpace, String csvId, long nodeId) {
+            return idMapping.putIfAbsent(idSpace, csvId, nodeId);
+        }
+
+        @Override
+        public synchronized Map<String, Object> getStats() {
+            return idMapping.getStats();
+        }
+
+        @Override
+        public void close() {
+            // closed by its owner
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open addressing hash map from string ids to node ids, kept in {@link PagedMemory} rather than on the heap.
+ *
+ * The UTF-8 bytes of the keys are appended to a list of key pages, each one prefixed by its length.
+ * Each slot of the table is made of two longs: the address of the key in the key pages (plus one, so that 0 means empty)
+ * with the top bits of its hash in the upper 24 bits, and the node id.
+ * Lookups compare the bytes of the keys only when the stored hash bits match.
+ */
+class StringIdDictionary {
+
+    private static final int ADDRESS_BITS = 40;
+    private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    private static final int SLOTS_PER_PAGE = PagedMemory.PAGE_SIZE / SLOT_BYTES;
+    private static final double MAX_LOAD = 0.7;
+
+    private final PagedMemory memory;
+    private final List<ByteBuffer> keyPages = new ArrayList<>();
+    private long keyBytes;
+    private int keyPageOffset = PagedMemory.PAGE_SIZE;
+
+    private List<ByteBuffer> table;
+    private long capacity;
+    private long size;
+
+    StringIdDictionary(PagedMemory memory) {
+        this.memory = memory;
+        this.table = allocateTable(SLOTS_PER_PAGE);
+        this.capacity = SLOTS_PER_PAGE;
+    }
+
+    /**
+     * @return the node id of the key, or {@link IdMapping#NOT_FOUND}
+     */
+    long get(String key) {
+        byte[] bytes = key.getBytes(UTF_8);
+        long hash = hash(bytes);
+        long slot = find(table, capacity, bytes, hash);
+        long entry = entry(table, slot);
+        return entry == 0 ? IdMapping.NOT_FOUND : nodeId(table, slot);
+    }
+
+    /**
+     * @return false if the key was already present, in which case its node id is left unchanged
+     */
+    boolean putIfAbsent(String key, long nodeId) {
+        byte[] bytes = key.getBytes(UTF_8);
+        long hash = hash(bytes);
+        long slot = find(table, capacity, bytes, hash);
+        if (entry(table, slot) != 0) return false;
+
+        long address = appendKey(bytes);
+        set(table, slot, (hashBits(hash) << ADDRESS_BITS) | (address + 1), nodeId);
+        if (++size > capacity * MAX_LOAD) {
+            grow();
+        }
+        return true;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long getKeyBytes() {
+        return keyBytes;
+    }
+
+    long getTableBytes() {
+        return capacity * SLOT_BYTES;
+    }
+
+    private long find(List<ByteBuffer> table, long capacity, byte[] key, long hash) {
+        long mask = capacity - 1;
+        long bits = hashBits(hash);
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long entry = entry(table, slot);
+            if (entry == 0) return slot;
+            if (entry >>> ADDRESS_BITS == bits && keyEquals((entry & ADDRESS_MASK) - 1, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void grow() {
+        long newCapacity = capacity * 2;
+        List<ByteBuffer> newTable = allocateTable(newCapacity);
+        long newMask = newCapacity - 1;
+        for (long slot = 0; slot < capacity; slot++) {
+            long entry = entry(table, slot);
+            if (entry == 0) continue;
+            long hash = hash(readKey((entry & ADDRESS_MASK) - 1));
+            long newSlot = hash & newMask;
+            while (entry(newTable, newSlot) != 0) {
+                newSlot = (newSlot + 1) & newMask;
+            }
+            set(newTable, newSlot, entry, nodeId(table, slot));
+        }
+        table.forEach(memory::release);
+        table = newTable;
+        capacity = newCapacity;
+    }
+
+    private List<ByteBuffer> allocateTable(long slots) {
+        // both the direct buffers and the newly mapped regions of the spill file are zero filled, i.e. empty
+        List<ByteBuffer> pages = new ArrayList<>();
+        for (long allocated = 0; allocated < slots; allocated += SLOTS_PER_PAGE) {
+            pages.add(memory.allocate());
+        }
+        return pages;
+    }
+
+    private static long entry(List<ByteBuffer> table, long slot) {
+        return table.get((int) (slot / SLOTS_PER_PAGE)).getLong((int) (slot % SLOTS_PER_PAGE) * SLOT_BYTES);
+    }
+
+    private static long nodeId(List<ByteBuffer> table, long slot) {
+        return table.get((int) (slot / SLOTS_PER_PAGE))
+                .getLong((int) (slot % SLOTS_PER_PAGE) * SLOT_BYTES + Long.BYTES);
+    }
+
+    private static void set(List<ByteBuffer> table, long slot, long entry, long nodeId) {
+        ByteBuffer page = table.get((int) (slot / SLOTS_PER_PAGE));
+        int offset = (int) (slot % SLOTS_PER_PAGE) * SLOT_BYTES;
+        page.putLong(offset, entry);
+        page.putLong(offset + Long.BYTES, nodeId);
+    }
+
+    private long appendKey(byte[] bytes) {
+        int needed = Integer.BYTES + bytes.length;
+        if (needed > PagedMemory.PAGE_SIZE) {
+            throw new IllegalArgumentException("Id too long to be mapped: " + bytes.length + " bytes");
+        }
+        if (keyPageOffset + needed > PagedMemory.PAGE_SIZE) {
+            keyPages.add(memory.allocate());
+            keyPageOffset = 0;
+        }
+        ByteBuffer page = keyPages.get(keyPages.size() - 1);
+        long address = (long) (keyPages.size() - 1) * PagedMemory.PAGE_SIZE + keyPageOffset;
+        page.putInt(keyPageOffset, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            page.put(keyPageOffset + Integer.BYTES + i, bytes[i]);
+        }
+        keyPageOffset += needed;
+        keyBytes += needed;
+        return address;
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer page = keyPages.get((int) (address / PagedMemory.PAGE_SIZE));
+        int offset = (int) (address % PagedMemory.PAGE_SIZE);
+        if (page.getInt(offset) != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (page.get(offset + Integer.BYTES + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private byte[] readKey(long address) {
+        ByteBuffer page = keyPages.get((int) (address / PagedMemory.PAGE_SIZE));
+        int offset = (int) (address % PagedMemory.PAGE_SIZE);
+        byte[] key = new byte[page.getInt(offset)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = page.get(offset + Integer.BYTES + i);
+        }
+        return key;
+    }
+
+    private static long hash(byte[] bytes) {
+        // FNV-1a followed by the murmur3 finalizer, as the low bits pick the slot and the high bits filter the matches
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hashBits(long hash) {
+        return hash >>> ADDRESS_BITS;
+    }
+}
@@ -262,23 +262,28 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
                     batchCount.incrementAndGet();
                     unwindCount.incrementAndGet();
                     Map<String, Object> props = node.getAllProperties();
-                    // start element
-                    out.append("{");
-
-                    // id
                     Map<String, Object> idMap = CypherFormatterUtils.getNodeIdProperties(node, uniqueConstraints);
-                    writeNodeIds(out, idMap);
-
-                    // properties
-                    out.append(", ");
-                    out.append("properties:");
-
                     propertiesCount.addAndGet(props.size());
                     props.keySet().removeAll(idMap.keySet());
-                    writeProperties(out, props);
+                    if (isJsonParams(exportConfig)) {
+                        Map<String, Object> row = jsonNodeIds(idMap);
+                        row.put("properties", props);
+                        JsonParameters.writeRow(out, row);
+                    } else {
+                        // start element
+                        out.append("{");
 
-                    // end element
-                    out.append("}");
+                        // id
+                        writeNodeIds(out, idMap);
+
+                        // properties
+                        out.append(", ");
+                        out.append("properties:");
+                        writeProperties(out, props);
+
+                        // end element
+                        out.append("}");
+                    }
                     if (last.equals(node)
                             || isBatchMatch(exportConfig, batchCount)
                             || isUnwindBatchMatch(exportConfig, unwindCount)) {
@@ -427,32 +432,43 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
                     batchCount.incrementAndGet();
                     unwindCount.incrementAndGet();
                     Map<String, Object> props = rel.getAllProperties();
-                    // start element
-                    out.append("{");
-
-                    // start node
                     Node startNode = rel.getStartNode();
-                    writeRelationshipNodeIds(uniqueConstraints, out, start, startNode);
-
                     Node endNode = rel.getEndNode();
                     final boolean withMultipleRels = exportConfig.isMultipleRelationshipsWithType();
-                    out.append(", ");
-                    if (withMultipleRels) {
-                        String uniqueId = String.format("%s: %s, ", ID_REL_KEY, rel.getId());
-                        out.append(uniqueId);
-                    }
+                    propertiesCount.addAndGet(props.size());
+                    if (isJsonParams(exportConfig)) {
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        row.put(start, jsonNodeIds(getRelationshipNodeIds(uniqueConstraints, startNode)));
+                        if (withMultipleRels) {
+                            row.put(ID_REL_KEY, rel.getId());
+                        }
+                        row.put(end, jsonNodeIds(getRelationshipNodeIds(uniqueConstraints, endNode)));
+                        row.put("properties", props);
+                        JsonParameters.writeRow(out, row);
+                    } else {
+                        // start element
+                        out.append("{");
 
-                    // end node
-                    writeRelationshipNodeIds(uniqueConstraints, out, end, endNode);
+                        // start node
+                        writeRelationshipNodeIds(uniqueConstraints, out, start, startNode);
 
-                    // properties
-                    out.append(", ");
-                    out.append("properties:");
-                    writeProperties(out, props);
-                    propertiesCount.addAndGet(props.size());
+                        out.append(", ");
+                        if (withMultipleRels) {
+                            String uniqueId = String.format("%s: %s, ", ID_REL_KEY, rel.getId());
+                            out.append(uniqueId);
+                        }
+
+                        // end node
+                        writeRelationshipNodeIds(uniqueConstraints, out, end, endNode);
 
-                    // end element
-                    out.append("}");
+                        // properties
+                        out.append(", ");
+                        out.append("properties:");
+                        writeProperties(out, props);
+
+                        // end element
+                        out.append("}");
+                    }
 
                     if (last.equals(rel)
                             || isBatchMatch(exportConfig, batchCount)
@@ -558,24 +574,34 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
 
     private void writeUnwindStart(ExportConfig exportConfig, PrintWriter out, AtomicInteger batchCount) {
         if (isUnwindBatchMatch(exportConfig, batchCount)) {
-            String start = (exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
-                            && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS)
-                    ? ":param rows => ["
-                    : "UNWIND [";
+            String start;
+            if (isJsonParams(exportConfig)) {
+                start = JsonParameters.start("rows");
+            } else if (exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
+                    && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS) {
+                start = ":param rows => [";
+            } else {
+                start = "UNWIND [";
+            }
             out.append(start);
         }
     }
 
     private void writeUnwindEnd(ExportConfig exportConfig, PrintWriter out) {
         out.append("]");
-        if (exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
-                && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS) {
+        if (isJsonParams(exportConfig)
+                || exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
+                        && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS) {
             out.append(StringUtils.LF);
             out.append("UNWIND $rows");
         }
         out.append(" AS row");
     }
 
+    private boolean isJsonParams(ExportConfig exportConfig) {
+        return exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_JSON;
+    }
+
     private String getUniqueConstrainedLabel(Node node, Map<String, Set<String>> uniqueConstraints) {
         return uniqueConstraints.entrySet().stream()
                 .filter(e -> node.hasLabel(Label.label(e.getKey()))
@@ -622,6 +648,13 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
 
     private void writeRelationshipNodeIds(
             Map<String, Set<String>> uniqueConstraints, PrintWriter out, String key, Node node) {
+        out.append(key + ": ");
+        out.append("{");
+        writeNodeIds(out, getRelationshipNodeIds(uniqueConstraints, node));
+        out.append("}");
+    }
+
+    private Map<String, Object> getRelationshipNodeIds(Map<String, Set<String>> uniqueConstraints, Node node) {
         String uniqueConstrainedLabel = getUniqueConstrainedLabel(node, uniqueConstraints);
         Set<String> props = getUniqueConstrainedProperties(uniqueConstraints, uniqueConstrainedLabel);
         Map<String, Object> properties;
@@ -632,11 +665,16 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
             // UNIQUE_ID_PROP is always the only member of the Set
             properties = Util.map(UNIQUE_ID_PROP, node.getId());
         }
+        return properties;
+    }
 
-        out.append(key + ": ");
-        out.append("{");
-        writeNodeIds(out, properties);
-        out.append("}");
+    /**
+     * The node ids as a row of the json parameter blocks, keyed as in {@link #formatNodeId(String)}, but unquoted
+     */
+    private Map<String, Object> jsonNodeIds(Map<String, Object> properties) {
+        Map<String, Object> ids = new LinkedHashMap<>();
+        properties.forEach((key, value) -> ids.put(UNIQUE_ID_PROP.equals(key) ? "_id" : key, value));
+        return ids;
     }
 
     private void writeNodeIds(PrintWriter out, Map<String, Object> properties) {
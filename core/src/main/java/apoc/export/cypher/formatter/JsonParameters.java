@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.cypher.formatter;
+
+import apoc.util.JsonUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.Values;
+
+/**
+ * The parameter blocks of the `UNWIND_BATCH_JSON` optimization, i.e. a line like:
+ * <pre>
+ * :json rows => [{"_id":0, "properties":{"name":"foo", "born":{"$type":"date", "value":"2015-07-04"}}}, ...]
+ * </pre>
+ * followed by the `UNWIND $rows AS row ...` statement using it.
+ *
+ * The values JSON can't represent are written as a `{"$type": ..., "value": ...}` map.
+ * Such a map is only decoded at the positions of a property value, i.e. the entries of `properties`,
+ * the node ids of a row and the ones of the `start` and `end` of a relationship row,
+ * where it can't be mistaken for a stored value, as maps can't be stored as properties.
+ * The rows and their `properties` map are never decoded as a typed value, whatever their keys.
+ */
+public class JsonParameters {
+
+    public static final String PREFIX = ":json ";
+    private static final String ARROW = " => ";
+    private static final String TYPE = "$type";
+    private static final String VALUE = "value";
+    private static final Set<String> TYPED_KEYS = Set.of(TYPE, VALUE);
+    private static final String PROPERTIES = "properties";
+    private static final Set<String> RELATIONSHIP_KEYS = Set.of("start", "end", "id", PROPERTIES);
+
+    private JsonParameters() {}
+
+    public static String start(String name) {
+        return PREFIX + name + ARROW + "[";
+    }
+
+    public static void writeRow(PrintWriter out, Map<String, Object> row) {
+        try {
+            out.append(JsonUtil.OBJECT_MAPPER.writeValueAsString(encode(row)));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot write the row as json: " + row, e);
+        }
+    }
+
+    public static boolean isParameterBlock(String line) {
+        return line.startsWith(PREFIX);
+    }
+
+    /**
+     * @param line a line starting with {@link #PREFIX}
+     * @return the parameter it defines, with the values decoded back to the ones of the exported properties
+     */
+    public static Map<String, Object> parse(String line) {
+        int arrow = line.indexOf(ARROW);
+        if (arrow < 0) {
+            throw new IllegalArgumentException("Invalid json parameter block, expected `:json <name> => <json>`");
+        }
+        String name = line.substring(PREFIX.length(), arrow).trim();
+        Object value = JsonUtil.parse(line.substring(arrow + ARROW.length()), null, Object.class);
+        return Map.of(name, decodeRows(value));
+    }
+
+    private static Object encode(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            return Double.isFinite(number) ? value : typed("float", Double.toString(number));
+        }
+        if (value instanceof Number) {
+            return value;
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            ((Map<String, Object>) value).forEach((key, entry) -> map.put(key, encode(entry)));
+            return map;
+        }
+        if (value instanceof Iterable) {
+            List<Object> list = new ArrayList<>();
+            ((Iterable<Object>) value).forEach(entry -> list.add(encode(entry)));
+            return list;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(encode(Array.get(value, i)));
+            }
+            return list;
+        }
+        if (value instanceof Temporal) {
+            return typed(Values.of(value).getTypeName().toLowerCase(), value.toString());
+        }
+        if (value instanceof TemporalAmount) {
+            return typed("duration", value.toString());
+        }
+        if (value instanceof Point) {
+            Point point = (Point) value;
+            return typed(
+                    "point",
+                    Map.of(
+                            "srid",
+                            point.getCRS().getCode(),
+                            "coordinates",
+                            point.getCoordinate().getCoordinate()));
+        }
+        return value.toString();
+    }
+
+    private static Map<String, Object> typed(String type, Object value) {
+        Map<String, Object> typed = new LinkedHashMap<>();
+        typed.put(TYPE, type);
+        typed.put(VALUE, value);
+        return typed;
+    }
+
+    private static Object decodeRows(Object rows) {
+        if (rows instanceof List) {
+            ((List<Object>) rows).replaceAll(row -> row instanceof Map ? decodeRow((Map<String, Object>) row) : row);
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> decodeRow(Map<String, Object> row) {
+        boolean relationship = row.get("start") instanceof Map
+                && row.get("end") instanceof Map
+                && RELATIONSHIP_KEYS.containsAll(row.keySet());
+        row.replaceAll((key, entry) -> {
+            if (entry instanceof Map && (key.equals(PROPERTIES) || relationship && !key.equals("id"))) {
+                // the properties, or the node ids of the start and end of a relationship
+                ((Map<String, Object>) entry).replaceAll((property, value) -> decode(value));
+                return entry;
+            }
+            return decode(entry);
+        });
+        return row;
+    }
+
+    /**
+     * @param value a property value, a list or a typed map being the only structures it can be written as
+     */
+    private static Object decode(Object value) {
+        if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            list.replaceAll(JsonParameters::decode);
+            return list;
+        }
+        if (!(value instanceof Map)) {
+            return value;
+        }
+        Map<String, Object> map = (Map<String, Object>) value;
+        if (!map.keySet().equals(TYPED_KEYS)) {
+            return map;
+        }
+        Object typed = map.get(VALUE);
+        switch ((String) map.get(TYPE)) {
+            case "float":
+                return Double.parseDouble((String) typed);
+            case "date":
+                return LocalDate.parse((String) typed);
+            case "localtime":
+                return LocalTime.parse((String) typed);
+            case "time":
+                return OffsetTime.parse((String) typed);
+            case "localdatetime":
+                return LocalDateTime.parse((String) typed);
+            case "datetime":
+                return ZonedDateTime.parse((String) typed);
+            case "duration":
+                return DurationValue.parse((String) typed);
+            case "point":
+                Map<String, Object> point = (Map<String, Object>) typed;
+                double[] coordinates = ((List<Number>) point.get("coordinates"))
+                        .stream().mapToDouble(Number::doubleValue).toArray();
+                return Values.pointValue(
+                        CoordinateReferenceSystem.get(((Number) point.get("srid")).intValue()), coordinates);
+            default:
+                throw new IllegalArgumentException("Unknown type in json parameter block: " + map.get(TYPE));
+        }
+    }
+}
@@ -25,6 +25,7 @@ import apoc.export.cypher.FileManagerFactory;
 import apoc.export.util.ExportConfig;
 import apoc.export.util.ExportUtils;
 import apoc.export.util.NodesAndRelsSubGraph;
+import apoc.export.util.ParallelExport;
 import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.Util;
@@ -131,8 +132,11 @@ public class ExportJson {
         apocConfig.checkWriteAllowed(exportConfig, fileName);
         final String format = "json";
         ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, format));
-        JsonFormat exporter = new JsonFormat(db, getJsonFormat(config));
-        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, false, exportConfig);
+        ParallelExport parallelExport = ParallelExport.of(
+                data, fileName, exportConfig, tx, db, pools.getDefaultExecutorService(), terminationGuard);
+        JsonFormat exporter = new JsonFormat(db, getJsonFormat(config), parallelExport);
+        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(
+                fileName, parallelExport != null && parallelExport.isPartFiles(), exportConfig);
         if (exportConfig.streamStatements()) {
             return ExportUtils.getProgressInfoStream(
                     db,
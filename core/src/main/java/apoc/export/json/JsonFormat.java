@@ -23,6 +23,8 @@ import static apoc.util.Util.INVALID_QUERY_MODE_ERROR;
 import apoc.export.cypher.ExportFileManager;
 import apoc.export.util.ExportConfig;
 import apoc.export.util.Format;
+import apoc.export.util.ParallelExport;
+import apoc.export.util.ParallelExport.RangeBuffer;
 import apoc.export.util.Reporter;
 import apoc.meta.Meta;
 import apoc.result.ProgressInfo;
@@ -31,10 +33,13 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import org.neo4j.cypher.export.SubGraph;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -55,12 +60,21 @@ public class JsonFormat implements Format {
 
     private final GraphDatabaseService db;
     private final Format format;
+    private final ParallelExport parallelExport;
 
     private boolean isExportSubGraph = false;
 
     public JsonFormat(GraphDatabaseService db, Format format) {
+        this(db, format, null);
+    }
+
+    /**
+     * @param parallelExport the engine exporting the whole database in parallel, or null to export serially
+     */
+    public JsonFormat(GraphDatabaseService db, Format format, ParallelExport parallelExport) {
         this.db = db;
         this.format = format;
+        this.parallelExport = parallelExport;
     }
 
     @Override
@@ -83,6 +97,9 @@ public class JsonFormat implements Format {
     public ProgressInfo dump(SubGraph graph, ExportFileManager writer, Reporter reporter, ExportConfig config)
             throws Exception {
         isExportSubGraph = true;
+        if (parallelExport != null) {
+            return dumpParallel(writer, reporter, config);
+        }
         Consumer<JsonGenerator> consumer = (jsonGenerator) -> {
             try {
                 writeJsonContainerStart(jsonGenerator);
@@ -100,6 +117,119 @@ public class JsonFormat implements Format {
         return dump(writer.getPrintWriter("json"), reporter, consumer);
     }
 
+    /**
+     * Each id range is serialized by its own generator, within the same kind of container the entities end up into:
+     * the start and end of the container are then removed, and the ranges are written out raw in id order,
+     * separated as the generator would have.
+     */
+    private ProgressInfo dumpParallel(ExportFileManager writer, Reporter reporter, ExportConfig config)
+            throws Exception {
+        ParallelExport.RangeTask<Node, RangeBuffer> nodes = range -> {
+            RangeBuffer buffer = new RangeBuffer();
+            try (JsonGenerator jsonGenerator = startRange(buffer)) {
+                for (Node node : range) {
+                    writeNode(buffer, jsonGenerator, node, config);
+                }
+                endRange(jsonGenerator, buffer);
+            }
+            return buffer;
+        };
+        ParallelExport.RangeTask<Relationship, RangeBuffer> rels = range -> {
+            RangeBuffer buffer = new RangeBuffer();
+            try (JsonGenerator jsonGenerator = startRange(buffer)) {
+                for (Relationship rel : range) {
+                    writeRel(buffer, jsonGenerator, rel, config);
+                }
+                endRange(jsonGenerator, buffer);
+            }
+            return buffer;
+        };
+
+        if (parallelExport.isPartFiles()) {
+            if (format != Format.JSON_LINES) {
+                throw new RuntimeException(
+                        "`partFiles: true` can be used only with `jsonFormat: 'JSON_LINES'`, but got [jsonFormat:"
+                                + format + "]");
+            }
+            AtomicInteger parts = new AtomicInteger();
+            Consumer<RangeBuffer> writePart = buffer -> {
+                if (buffer.isEmpty()) return;
+                try (PrintWriter pw = writer.getPrintWriter(ParallelExport.partName(parts.incrementAndGet()))) {
+                    pw.write(buffer.toString());
+                }
+                buffer.reportTo(reporter);
+            };
+            parallelExport.nodes(nodes, writePart);
+            parallelExport.relationships(rels, writePart);
+            reporter.done();
+            return reporter.getTotal();
+        }
+
+        String separator = format == Format.JSON_LINES ? "\n" : ",";
+        Consumer<JsonGenerator> consumer = (jsonGenerator) -> {
+            AtomicBoolean empty = new AtomicBoolean(true);
+            Consumer<RangeBuffer> append = buffer -> {
+                if (buffer.isEmpty()) return;
+                try {
+                    if (!empty.getAndSet(false)) {
+                        jsonGenerator.writeRaw(separator);
+                    }
+                    jsonGenerator.writeRaw(buffer.toString());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                buffer.reportTo(reporter);
+            };
+            try {
+                writeJsonContainerStart(jsonGenerator);
+                writeJsonNodeContainerStart(jsonGenerator);
+                parallelExport.nodes(nodes, append);
+                writeJsonNodeContainerEnd(jsonGenerator);
+                writeJsonRelationshipContainerStart(jsonGenerator);
+                if (format == Format.JSON || format == Format.JSON_ID_AS_KEYS) {
+                    // the relationships have a container of their own
+                    empty.set(true);
+                }
+                parallelExport.relationships(rels, append);
+                writeJsonRelationshipContainerEnd(jsonGenerator);
+                writeJsonContainerEnd(jsonGenerator);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        return dump(writer.getPrintWriter("json"), reporter, consumer);
+    }
+
+    private JsonGenerator startRange(RangeBuffer buffer) throws IOException {
+        JsonGenerator jsonGenerator = getJsonGenerator(buffer.getWriter());
+        switch (format) {
+            case JSON_ID_AS_KEYS:
+                jsonGenerator.writeStartObject();
+                break;
+            case ARRAY_JSON:
+            case JSON:
+                jsonGenerator.writeStartArray();
+                break;
+        }
+        return jsonGenerator;
+    }
+
+    private void endRange(JsonGenerator jsonGenerator, RangeBuffer buffer) throws IOException {
+        switch (format) {
+            case JSON_ID_AS_KEYS:
+                jsonGenerator.writeEndObject();
+                break;
+            case ARRAY_JSON:
+            case JSON:
+                jsonGenerator.writeEndArray();
+                break;
+        }
+        jsonGenerator.flush();
+        if (format != Format.JSON_LINES) {
+            buffer.unwrap();
+        }
+    }
+
     private void writeJsonRelationshipContainerEnd(JsonGenerator jsonGenerator) throws IOException {
         switch (format) {
             case JSON:
@@ -51,6 +51,7 @@ public class ExportConfig extends CompressionConfig {
     public static final String IF_NEEDED_QUOTES = "ifNeeded";
 
     public static final int DEFAULT_BATCH_SIZE = 20000;
+    public static final long DEFAULT_RANGE_SIZE = 100_000;
     private static final int DEFAULT_UNWIND_BATCH_SIZE = 20;
     public static final String DEFAULT_DELIM = ",";
     public static final String DEFAULT_ARRAY_DELIM = ";";
@@ -67,6 +68,9 @@ public class ExportConfig extends CompressionConfig {
     private boolean saveConstraintNames;
     private boolean bulkImport = false;
     private boolean sampling;
+    private boolean parallel;
+    private long rangeSize;
+    private boolean partFiles;
     private String delim;
     private String quotes;
     private boolean useTypes;
@@ -83,7 +87,8 @@ public class ExportConfig extends CompressionConfig {
     public enum OptimizationType {
         NONE,
         UNWIND_BATCH,
-        UNWIND_BATCH_PARAMS
+        UNWIND_BATCH_PARAMS,
+        UNWIND_BATCH_JSON
     }
 
     private OptimizationType optimizationType;
@@ -168,6 +173,9 @@ public class ExportConfig extends CompressionConfig {
         this.batchSize = ((Number) config.getOrDefault("batchSize", DEFAULT_BATCH_SIZE)).intValue();
         this.sampling = toBoolean(config.getOrDefault("sampling", false));
         this.samplingConfig = (Map<String, Object>) config.getOrDefault("samplingConfig", new HashMap<>());
+        this.parallel = toBoolean(config.get("parallel"));
+        this.rangeSize = Util.toLong(config.getOrDefault("rangeSize", DEFAULT_RANGE_SIZE));
+        this.partFiles = toBoolean(config.get("partFiles"));
         this.unwindBatchSize =
                 ((Number) getOptimizations().getOrDefault("unwindBatchSize", DEFAULT_UNWIND_BATCH_SIZE)).intValue();
         this.awaitForIndexes = ((Number) config.getOrDefault("awaitForIndexes", 300)).longValue();
@@ -190,6 +198,9 @@ public class ExportConfig extends CompressionConfig {
             throw new RuntimeException("`unwindBatchSize` must be <= `batchSize`, but got [unwindBatchSize:"
                     + unwindBatchSize + ", batchSize:" + batchSize + "]");
         }
+        if (this.rangeSize <= 0) {
+            throw new RuntimeException("`rangeSize` must be > 0, but got [rangeSize:" + rangeSize + "]");
+        }
     }
 
     private void exportQuotes(Map<String, Object> config) {
@@ -291,6 +302,18 @@ public class ExportConfig extends CompressionConfig {
         return sampling;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public long getRangeSize() {
+        return rangeSize;
+    }
+
+    public boolean isPartFiles() {
+        return partFiles;
+    }
+
     public boolean ifNotExists() {
         return ifNotExists;
     }
@@ -119,6 +119,14 @@ public class MetaInformation {
         }
     }
 
+    /**
+     * Merges the key types collected via {@link #updateKeyTypes(Map, Entity)} over another set of entities
+     */
+    public static void mergeKeyTypes(Map<String, Class> keyTypes, Map<String, Class> other) {
+        other.forEach((prop, type) ->
+                keyTypes.merge(prop, type, (stored, value) -> stored.equals(value) ? stored : void.class));
+    }
+
     public static final Set<String> GRAPHML_ALLOWED =
             new HashSet<>(asList("boolean", "int", "long", "float", "double", "string"));
 
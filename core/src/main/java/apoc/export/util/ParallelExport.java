@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.util;
+
+import apoc.result.ProgressInfo;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import org.apache.commons.lang3.StringUtils;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.PrefetchingIterator;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Exports the whole database by splitting the node and relationship id space into ranges of `rangeSize` ids.
+ * Each range is read in its own transaction on the pool, while the results are handed back to the caller
+ * in id order, i.e. the order of `tx.getAllNodes()` and `tx.getAllRelationships()` used by the serial export.
+ *
+ * At most two ranges per processor are in flight. Each queued range gets a pool task, which runs the first range
+ * no thread claimed yet and returns, so that no pool task ever waits on the caller. The caller runs the ranges
+ * no task picked up yet itself, so that the export goes on even if the pool is saturated.
+ */
+public class ParallelExport {
+
+    public interface RangeTask<E, T> {
+        T apply(Iterable<E> entities) throws Exception;
+    }
+
+    private interface Range<T> {
+        T read(InternalTransaction tx, long from, long to) throws Exception;
+    }
+
+    private final GraphDatabaseAPI db;
+    private final ExecutorService pool;
+    private final long rangeSize;
+    private final boolean partFiles;
+    private final TerminationGuard terminationGuard;
+
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final int maxInFlight = 2 * processors;
+
+    private ParallelExport(
+            GraphDatabaseAPI db,
+            ExecutorService pool,
+            long rangeSize,
+            boolean partFiles,
+            TerminationGuard terminationGuard) {
+        this.db = db;
+        this.pool = pool;
+        this.rangeSize = rangeSize;
+        this.partFiles = partFiles;
+        this.terminationGuard = terminationGuard;
+    }
+
+    /**
+     * @return the parallel export of the whole database, if it was requested via `parallel: true`
+     * and the transaction has no changes which the workers couldn't see, null otherwise
+     */
+    public static ParallelExport of(
+            Object data,
+            String fileName,
+            ExportConfig config,
+            Transaction tx,
+            GraphDatabaseService db,
+            ExecutorService pool,
+            TerminationGuard terminationGuard) {
+        if (!config.isParallel()
+                || !(data instanceof DatabaseSubGraph)
+                || config.streamStatements()
+                || config.isBulkImport()
+                || ((InternalTransaction) tx).kernelTransaction().dataRead().transactionStateHasChanges()) {
+            return null;
+        }
+        boolean partFiles = config.isPartFiles() && StringUtils.isNotBlank(fileName);
+        return new ParallelExport((GraphDatabaseAPI) db, pool, config.getRangeSize(), partFiles, terminationGuard);
+    }
+
+    /**
+     * @return true if each range has to be written to its own numbered file rather than concatenated
+     */
+    public boolean isPartFiles() {
+        return partFiles;
+    }
+
+    public static String partName(int part) {
+        return String.format("part-%05d", part);
+    }
+
+    public <T> void nodes(RangeTask<Node, T> task, Consumer<T> sink) {
+        inOrder(
+                GlobalOperationsTypes.NODES,
+                (tx, from, to) -> {
+                    KernelTransaction ktx = tx.kernelTransaction();
+                    try (NodeCursor cursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext())) {
+                        return task.apply(nodes(tx, ktx.dataRead(), cursor, from, to));
+                    }
+                },
+                sink);
+    }
+
+    public <T> void relationships(RangeTask<Relationship, T> task, Consumer<T> sink) {
+        inOrder(
+                GlobalOperationsTypes.RELATIONSHIPS,
+                (tx, from, to) -> {
+                    KernelTransaction ktx = tx.kernelTransaction();
+                    try (RelationshipScanCursor cursor =
+                            ktx.cursors().allocateRelationshipScanCursor(ktx.cursorContext())) {
+                        return task.apply(relationships(tx, ktx.dataRead(), cursor, from, to));
+                    }
+                },
+                sink);
+    }
+
+    private <T> void inOrder(GlobalOperationsTypes type, Range<T> range, Consumer<T> sink) {
+        long highId = MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore(db.getDependencyResolver(), type);
+        Deque<FutureTask<T>> inFlight = new ArrayDeque<>();
+        // the ranges in flight which no thread picked up yet, in id order
+        Queue<FutureTask<T>> unclaimed = new ConcurrentLinkedQueue<>();
+        long next = 0;
+        try {
+            while (next < highId || !inFlight.isEmpty()) {
+                terminationGuard.check();
+                while (next < highId && inFlight.size() < maxInFlight) {
+                    long from = next;
+                    long to = Math.min(highId, from + rangeSize);
+                    FutureTask<T> future = new FutureTask<>(() -> {
+                        try (Transaction tx = db.beginTx()) {
+                            return range.read((InternalTransaction) tx, from, to);
+                        }
+                    });
+                    inFlight.add(future);
+                    unclaimed.add(future);
+                    pool.execute(() -> claim(unclaimed));
+                    next = to;
+                }
+                FutureTask<T> head = inFlight.poll();
+                unclaimed.remove(head);
+                // a no-op if a worker already started it
+                head.run();
+                sink.accept(head.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } finally {
+            unclaimed.clear();
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Runs the first range no thread claimed yet, if any, the task of a range not being bound to that range
+     * since the caller may have run it already
+     */
+    private static void claim(Queue<? extends Runnable> unclaimed) {
+        Runnable range = unclaimed.poll();
+        if (range != null) {
+            // a no-op if the caller already started it
+            range.run();
+        }
+    }
+
+    private static Iterable<Node> nodes(InternalTransaction tx, Read read, NodeCursor cursor, long from, long to) {
+        return () -> new PrefetchingIterator<>() {
+            long id = from;
+
+            @Override
+            protected Node fetchNextOrNull() {
+                while (id < to) {
+                    long current = id++;
+                    read.singleNode(current, cursor);
+                    if (cursor.next()) {
+                        return tx.newNodeEntity(current);
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static Iterable<Relationship> relationships(
+            InternalTransaction tx, Read read, RelationshipScanCursor cursor, long from, long to) {
+        return () -> new PrefetchingIterator<>() {
+            long id = from;
+
+            @Override
+            protected Relationship fetchNextOrNull() {
+                while (id < to) {
+                    long current = id++;
+                    read.singleRelationship(current, cursor);
+                    if (cursor.next()) {
+                        return tx.newRelationshipEntity(
+                                current, cursor.sourceNodeReference(), cursor.type(), cursor.targetNodeReference());
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * The serialized text of a range, along with the counts to be reported once it's written out
+     */
+    public static class RangeBuffer implements Reporter {
+        private final StringWriter writer = new StringWriter();
+        private final ProgressInfo total = new ProgressInfo(null, null, null);
+
+        public StringWriter getWriter() {
+            return writer;
+        }
+
+        public boolean isEmpty() {
+            return writer.getBuffer().length() == 0;
+        }
+
+        /**
+         * Removes the start and the end of the container the entities were written into
+         */
+        public void unwrap() {
+            StringBuffer buffer = writer.getBuffer();
+            buffer.deleteCharAt(buffer.length() - 1).deleteCharAt(0);
+        }
+
+        public void reportTo(Reporter reporter) {
+            reporter.update(total.nodes, total.relationships, total.properties);
+            for (long row = 0; row < total.rows; row++) {
+                reporter.nextRow();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return writer.toString();
+        }
+
+        @Override
+        public void update(long nodes, long rels, long properties) {
+            total.update(nodes, rels, properties);
+        }
+
+        @Override
+        public void progress(String msg) {}
+
+        @Override
+        public void done() {}
+
+        @Override
+        public ProgressInfo getTotal() {
+            return total;
+        }
+
+        @Override
+        public void nextRow() {
+            total.nextRow();
+        }
+    }
+}
@@ -92,8 +92,43 @@ public class LoadJson {
         boolean failOnError = (boolean) config.getOrDefault("failOnError", true);
         String compressionAlgo = (String) config.getOrDefault(COMPRESSION, CompressionAlgo.NONE.name());
         List<String> pathOptions = (List<String>) config.get("pathOptions");
-        return loadJsonStream(
-                urlOrKeyOrBinary, headers, payload, path, failOnError, compressionAlgo, pathOptions, terminationGuard);
+        boolean streaming = Util.toBoolean(config.get("streaming"));
+        Long limit = config.get("limit") == null ? null : Util.toLong(config.get("limit"));
+        if (streaming && pathOptions != null) {
+            throw new IllegalArgumentException("The pathOptions are not supported with streaming");
+        }
+        if (limit != null && limit < 0) {
+            throw new IllegalArgumentException("limit parameter must be >= 0");
+        }
+        Stream<MapResult> stream = streaming
+                ? loadJsonStreaming(urlOrKeyOrBinary, headers, payload, path, failOnError, compressionAlgo)
+                : loadJsonStream(
+                        urlOrKeyOrBinary,
+                        headers,
+                        payload,
+                        path,
+                        failOnError,
+                        compressionAlgo,
+                        pathOptions,
+                        terminationGuard);
+        // the rows are read lazily, so we stop reading the source once we have enough of them
+        return limit == null ? stream : stream.limit(limit);
+    }
+
+    private Stream<MapResult> loadJsonStreaming(
+            Object urlOrKeyOrBinary,
+            Map<String, Object> headers,
+            String payload,
+            String path,
+            boolean failOnError,
+            String compressionAlgo) {
+        if (urlOrKeyOrBinary instanceof String) {
+            headers = null != headers ? headers : new HashMap<>();
+            headers.putAll(Util.extractCredentialsIfNeeded((String) urlOrKeyOrBinary, failOnError));
+        }
+        Stream<Object> stream =
+                JsonUtil.streamJson(urlOrKeyOrBinary, headers, payload, path, failOnError, compressionAlgo);
+        return toMapResults(stream, failOnError, terminationGuard);
     }
 
     public static Stream<MapResult> loadJsonStream(
@@ -116,6 +151,11 @@ public class LoadJson {
         }
         Stream<Object> stream =
                 JsonUtil.loadJson(urlOrKeyOrBinary, headers, payload, path, failOnError, compressionAlgo, pathOptions);
+        return toMapResults(stream, failOnError, terminationGuard);
+    }
+
+    private static Stream<MapResult> toMapResults(
+            Stream<Object> stream, boolean failOnError, TerminationGuard terminationGuard) {
         return stream.flatMap((value) -> {
             if (terminationGuard != null) {
                 terminationGuard.check();
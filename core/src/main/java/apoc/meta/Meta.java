@@ -23,6 +23,7 @@ import static java.lang.String.format;
 import static org.neo4j.internal.kernel.api.TokenRead.ANY_LABEL;
 import static org.neo4j.internal.kernel.api.TokenRead.ANY_RELATIONSHIP_TYPE;
 
+import apoc.Pools;
 import apoc.export.util.NodesAndRelsSubGraph;
 import apoc.result.GraphResult;
 import apoc.result.MapResult;
@@ -30,6 +31,7 @@ import apoc.result.VirtualGraph;
 import apoc.result.VirtualNode;
 import apoc.result.VirtualRelationship;
 import apoc.util.MapUtil;
+import apoc.util.Util;
 import com.google.common.primitives.Booleans;
 import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Chars;
@@ -56,6 +58,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -68,6 +71,7 @@ import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
@@ -134,6 +138,12 @@ public class Meta {
     @Context
     public Log log;
 
+    @Context
+    public Pools pools;
+
+    @Context
+    public MetaSchemaCache metaSchemaCache;
+
     public static class ConstraintTracker {
         // The following maps are (label|rel-type)/constraintdefinition entries
 
@@ -642,27 +652,27 @@ public class Meta {
             SubGraph subGraph, Collection<String> labelNames, Collection<String> relTypeNames, StatsCallback cb) {
         TokenRead tokenRead = kernelTx.tokenRead();
 
-        Iterable<Label> labels = subGraph.labelsInUse(labelNames);
-        Iterable<RelationshipType> types = subGraph.relTypesInUse(relTypeNames);
+        List<Label> labels = subGraph.labelsInUse(labelNames);
+        List<RelationshipType> types = subGraph.relTypesInUse(relTypeNames);
+        MetaCounts counts = MetaCounts.of(subGraph, labels, types, db, tx, pools.getDefaultExecutorService());
+        int[] typeIds = types.stream()
+                .mapToInt(type -> tokenRead.relationshipType(type.name()))
+                .toArray();
 
-        labels.forEach(label -> {
-            long count = subGraph.countsForNode(label);
+        for (int l = 0; l < labels.size(); l++) {
+            long count = counts.nodeCounts[l];
             if (count > 0) {
-                String name = label.name();
+                String name = labels.get(l).name();
                 int id = tokenRead.nodeLabel(name);
                 cb.label(id, name, count);
-                types.forEach(type -> {
-                    long relCountOut = subGraph.countsForRelationship(label, type);
-                    long relCountIn = subGraph.countsForRelationship(type, label);
-                    cb.rel(tokenRead.relationshipType(type.name()), type.name(), id, name, relCountOut, relCountIn);
-                });
+                for (int t = 0; t < types.size(); t++) {
+                    cb.rel(typeIds[t], types.get(t).name(), id, name, counts.out[l][t], counts.in[l][t]);
+                }
             }
-        });
-        types.forEach(type -> {
-            String name = type.name();
-            int id = tokenRead.relationshipType(name);
-            cb.rel(id, name, subGraph.countsForRelationship(type));
-        });
+        }
+        for (int t = 0; t < types.size(); t++) {
+            cb.rel(typeIds[t], types.get(t).name(), counts.typeCounts[t]);
+        }
     }
 
     @Procedure("apoc.meta.data.of")
@@ -707,6 +717,14 @@ public class Meta {
     @Procedure
     @Description("apoc.meta.schema({config})  - examines a subset of the graph to provide a map-like meta information")
     public Stream<MapResult> schema(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (isCached(config)) {
+            return metaSchemaCache.schema(kernelTx, config, () -> collectSchema(config)).stream()
+                    .map(MapResult::new);
+        }
+        return Stream.of(new MapResult(collectSchema(config)));
+    }
+
+    private Map<String, Object> collectSchema(Map<String, Object> config) {
         MetaStats metaStats = collectStats();
         SampleMetaConfig metaConfig = new SampleMetaConfig(config);
         Map<MetadataKey, Map<String, MetaItem>> metaData =
@@ -727,7 +745,36 @@ public class Meta {
                     .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
         }
         nodes.putAll(relationships);
-        return Stream.of(new MapResult(nodes));
+        return nodes;
+    }
+
+    private static boolean isCached(Map<String, Object> config) {
+        return config != null && Util.toBoolean(config.get("cached"));
+    }
+
+    @Procedure
+    @Description(
+            "apoc.meta.cacheStats() - returns the hits and misses of the results of apoc.meta.schema and apoc.meta.nodeTypeProperties cached with {cached: true}, and the age of each cached result")
+    public Stream<MetaCacheStatsResult> cacheStats() {
+        return Stream.of(new MetaCacheStatsResult(metaSchemaCache.stats()));
+    }
+
+    public static class MetaCacheStatsResult {
+        public final long hits;
+        public final long misses;
+        public final double hitRate;
+        public final long invalidations;
+        public final long commits;
+        public final List<Map<String, Object>> entries;
+
+        public MetaCacheStatsResult(Map<String, Object> stats) {
+            this.hits = (long) stats.get("hits");
+            this.misses = (long) stats.get("misses");
+            this.hitRate = (double) stats.get("hitRate");
+            this.invalidations = (long) stats.get("invalidations");
+            this.commits = (long) stats.get("commits");
+            this.entries = (List<Map<String, Object>>) stats.get("entries");
+        }
     }
 
     /**
@@ -741,6 +788,13 @@ public class Meta {
             @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         MetaConfig metaConfig = new MetaConfig(config);
         try {
+            if (isCached(config)) {
+                return metaSchemaCache
+                        .nodeTypeProperties(kernelTx, config, metaConfig, () -> collectTables4LabelsProfile(metaConfig)
+                                .asNodeStream()
+                                .collect(Collectors.toList()))
+                        .stream();
+            }
             return collectTables4LabelsProfile(metaConfig).asNodeStream();
         } catch (Exception e) {
             log.debug("apoc.meta.nodeTypeProperties(): Failed to return stream", e);
@@ -801,6 +855,15 @@ public class Meta {
         Set<String> includeRels = config.getIncludeRels();
         Set<String> excludeRels = config.getExcludeRels();
 
+        Map<String, Long> sampledCounts = new HashMap<>();
+        countStore.forEach((labelName, count) -> {
+            if (!excludes.contains(labelName) && (includeLabels.isEmpty() || includeLabels.contains(labelName))) {
+                sampledCounts.put(labelName, count);
+            }
+        });
+        Map<String, long[]> samples = new NodeSampler(db, tx, pools.getDefaultExecutorService())
+                .sample(sampledCounts, config.getSample());
+
         for (Label label : tx.getAllLabelsInUse()) {
             String labelName = label.name();
 
@@ -814,6 +877,30 @@ public class Meta {
                     profile.noteIndex(label, index);
                 }
 
+                Consumer<Node> observe = node -> {
+                    final Set<Boolean> skips = StreamSupport
+                            // we analyze the node for each its relationship type
+                            .stream(node.getRelationshipTypes().spliterator(), false)
+                            .map(rel ->
+                                    excludeRels.contains(rel.name()) // we skip a node when the user said that must be
+                                            // excluded
+                                            // or when the user provided and inclusion list, but it's not in the
+                                            // provided list
+                                            || (!includeRels.isEmpty() && !includeRels.contains(rel.name())))
+                            .collect(Collectors.toSet());
+                    // if the Set has just one element and is true we skip the node
+                    // if there are two elements [true, false] we don't skip it as give it means that
+                    // it have a relationship that satisfies the condition provided
+                    // by the configuration
+                    if (skips.size() == 1 && skips.iterator().next()) return;
+                    profile.observe(node, config);
+                };
+
+                long[] sampled = samples.get(labelName);
+                if (sampled != null) {
+                    forEachSampledNode(sampled, observe);
+                    continue;
+                }
                 long labelCount = countStore.get(labelName);
                 long sample = getSampleForLabelCount(labelCount, config.getSample());
 
@@ -822,22 +909,7 @@ public class Meta {
                     while (nodes.hasNext()) {
                         Node node = nodes.next();
                         if (count++ % sample == 0) {
-                            final Set<Boolean> skips = StreamSupport
-                                    // we analyze the node for each its relationship type
-                                    .stream(node.getRelationshipTypes().spliterator(), false)
-                                    .map(rel -> excludeRels.contains(
-                                                    rel.name()) // we skip a node when the user said that must be
-                                            // excluded
-                                            // or when the user provided and inclusion list, but it's not in the
-                                            // provided list
-                                            || (!includeRels.isEmpty() && !includeRels.contains(rel.name())))
-                                    .collect(Collectors.toSet());
-                            // if the Set has just one element and is true we skip the node
-                            // if there are two elements [true, false] we don't skip it as give it means that
-                            // it have a relationship that satisfies the condition provided
-                            // by the configuration
-                            if (skips.size() == 1 && skips.iterator().next()) continue;
-                            profile.observe(node, config);
+                            observe.accept(node);
                         }
                     }
                 }
@@ -864,6 +936,16 @@ public class Meta {
             relConstraints.put(type.name(), graph.getConstraints(type));
             relIndexes.put(type.name(), getIndexedProperties(graph.getIndexes(type)));
         }
+        // the whole graph is sampled through the node label index, without scanning all the nodes of each label
+        Map<String, long[]> samples = Map.of();
+        if (graph instanceof DatabaseSubGraph) {
+            Map<String, Long> labelCounts = new HashMap<>();
+            for (Label label : graph.getAllLabelsInUse()) {
+                labelCounts.put(label.name(), graph.countsForNode(label));
+            }
+            samples = new NodeSampler(db, tx, pools.getDefaultExecutorService())
+                    .sample(labelCounts, config.getSample());
+        }
         for (Label label : graph.getAllLabelsInUse()) {
             Map<String, MetaItem> nodeMeta = new LinkedHashMap<>(50);
             String labelName = label.name();
@@ -871,6 +953,14 @@ public class Meta {
             metaData.put(new MetadataKey(Types.NODE, labelName), nodeMeta);
             Iterable<ConstraintDefinition> constraints = graph.getConstraints(label);
             Set<String> indexed = getIndexedProperties(graph.getIndexes(label));
+            long[] sampled = samples.get(labelName);
+            if (sampled != null) {
+                forEachSampledNode(sampled, node -> {
+                    addRelationships(metaData, nodeMeta, labelName, node, relConstraints, types, relIndexes);
+                    addProperties(nodeMeta, labelName, constraints, indexed, node, node);
+                });
+                continue;
+            }
             long labelCount = graph.countsForNode(label);
             long sample = getSampleForLabelCount(labelCount, config.getSample());
             Iterator<Node> nodes = graph.findNodes(label);
@@ -886,6 +976,19 @@ public class Meta {
         return metaData;
     }
 
+    private void forEachSampledNode(long[] ids, Consumer<Node> consumer) {
+        for (long id : ids) {
+            Node node;
+            try {
+                node = tx.getNodeById(id);
+            } catch (NotFoundException e) {
+                // deleted since it was sampled
+                continue;
+            }
+            consumer.accept(node);
+        }
+    }
+
     private Set<String> getIndexedProperties(Iterable<IndexDefinition> indexes) {
         return Iterables.stream(indexes)
                 .map(IndexDefinition::getPropertyKeys)
@@ -1309,42 +1412,49 @@ public class Meta {
             Collection<String> relTypeNames,
             boolean removeMissing,
             SampleMetaConfig metaConfig) {
-        Iterable<RelationshipType> types = subGraph.relTypesInUse(relTypeNames);
-        Iterable<Label> labels = CollectionUtils.isNotEmpty(labelNames)
+        List<RelationshipType> types = subGraph.relTypesInUse(relTypeNames);
+        List<Label> labels = CollectionUtils.isNotEmpty(labelNames)
                 ? labelNames.stream().map(Label::label).collect(Collectors.toList())
-                : subGraph.getAllLabelsInUse();
+                : Iterables.asList(subGraph.getAllLabelsInUse());
+        MetaCounts counts = MetaCounts.of(subGraph, labels, types, db, tx, pools.getDefaultExecutorService());
 
         Map<String, Node> vNodes = new TreeMap<>();
-        Map<Pattern, Relationship> vRels = new HashMap<>((int) Iterables.count(types) * 2);
+        Map<Pattern, Relationship> vRels = new HashMap<>(types.size() * 2);
 
-        labels.forEach(label -> {
-            long count = subGraph.countsForNode(label);
-            if (count > 0) {
-                mergeMetaNode(label, vNodes, count);
+        for (int l = 0; l < labels.size(); l++) {
+            if (counts.nodeCounts[l] > 0) {
+                mergeMetaNode(labels.get(l), vNodes, counts.nodeCounts[l]);
             }
-        });
-        types.forEach(type -> {
-            labels.forEach(start -> {
-                labels.forEach(end -> {
-                    String startLabel = start.name();
-                    String endLabel = end.name();
-                    String relType = type.name();
-                    if (vRels.containsKey(Pattern.of(startLabel, relType, endLabel))) return;
-                    long relCountOut = subGraph.countsForRelationship(start, type);
-                    if (relCountOut == 0) return;
-                    long relCountIn = subGraph.countsForRelationship(type, end);
-                    if (relCountIn > 0) {
-                        Node startNode = vNodes.get(startLabel);
-                        Node endNode = vNodes.get(endLabel);
-                        long global = subGraph.countsForRelationship(type);
-                        Relationship vRel = new VirtualRelationship(startNode, endNode, type)
-                                .withProperties(
-                                        map("type", relType, "out", relCountOut, "in", relCountIn, "count", global));
-                        vRels.put(Pattern.of(startLabel, relType, endLabel), vRel);
-                    }
-                });
-            });
-        });
+        }
+        // only the combinations with both outgoing and incoming relationships are looked at
+        for (int t = 0; t < types.size(); t++) {
+            if (counts.typeCounts[t] == 0) continue;
+            RelationshipType type = types.get(t);
+            String relType = type.name();
+            for (int start = 0; start < labels.size(); start++) {
+                long relCountOut = counts.out[start][t];
+                if (relCountOut == 0) continue;
+                String startLabel = labels.get(start).name();
+                for (int end = 0; end < labels.size(); end++) {
+                    long relCountIn = counts.in[end][t];
+                    if (relCountIn == 0) continue;
+                    String endLabel = labels.get(end).name();
+                    Pattern pattern = Pattern.of(startLabel, relType, endLabel);
+                    if (vRels.containsKey(pattern)) continue;
+                    Relationship vRel = new VirtualRelationship(vNodes.get(startLabel), vNodes.get(endLabel), type)
+                            .withProperties(map(
+                                    "type",
+                                    relType,
+                                    "out",
+                                    relCountOut,
+                                    "in",
+                                    relCountIn,
+                                    "count",
+                                    counts.typeCounts[t]));
+                    vRels.put(pattern, vRel);
+                }
+            }
+        }
 
         if (removeMissing) filterNonExistingRelationships(vRels, metaConfig);
         GraphResult graphResult = new GraphResult(new ArrayList<>(vNodes.values()), new ArrayList<>(vRels.values()));
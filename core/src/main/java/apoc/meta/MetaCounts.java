@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.meta;
+
+import apoc.util.ParallelWorkers;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+/**
+ * The counts of the nodes of each label, of the relationships of each type,
+ * and of the relationships of each type starting and ending at the nodes of each label.
+ *
+ * These are all the counts the meta graph and the statistics need: the count of a (label)-[type]->(label) combination
+ * is derived from the outgoing and incoming counts, rather than being looked up for each pair of labels.
+ * For the whole database, the tokens are looked up once and the counts are read through the kernel,
+ * with the labels split across the pool with {@link ParallelWorkers} when there are many combinations.
+ * As the workers don't see the changes of the current transaction, a transaction with changes is always read serially.
+ */
+class MetaCounts {
+
+    // below this number of (label, type) combinations reading the counts is faster than starting the workers
+    static final int PARALLEL_THRESHOLD = 10_000;
+
+    final List<Label> labels;
+    final List<RelationshipType> types;
+    final long[] nodeCounts;
+    final long[] typeCounts;
+    // indexed by label, then by type
+    final long[][] out;
+    final long[][] in;
+
+    private MetaCounts(List<Label> labels, List<RelationshipType> types) {
+        this.labels = labels;
+        this.types = types;
+        this.nodeCounts = new long[labels.size()];
+        this.typeCounts = new long[types.size()];
+        this.out = new long[labels.size()][];
+        this.in = new long[labels.size()][];
+    }
+
+    static MetaCounts of(
+            SubGraph subGraph,
+            List<Label> labels,
+            List<RelationshipType> types,
+            GraphDatabaseService db,
+            Transaction tx,
+            ExecutorService pool) {
+        return of(subGraph, labels, types, db, tx, pool, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold the number of (label, type) combinations from which the counts are read in parallel
+     */
+    static MetaCounts of(
+            SubGraph subGraph,
+            List<Label> labels,
+            List<RelationshipType> types,
+            GraphDatabaseService db,
+            Transaction tx,
+            ExecutorService pool,
+            int parallelThreshold) {
+        MetaCounts counts = new MetaCounts(labels, types);
+        if (!(subGraph instanceof DatabaseSubGraph)) {
+            counts.readFrom(subGraph);
+            return counts;
+        }
+
+        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+        TokenRead tokenRead = ktx.tokenRead();
+        int[] labelIds =
+                labels.stream().mapToInt(l -> tokenRead.nodeLabel(l.name())).toArray();
+        int[] typeIds = types.stream()
+                .mapToInt(t -> tokenRead.relationshipType(t.name()))
+                .toArray();
+        Read read = ktx.dataRead();
+        for (int t = 0; t < typeIds.length; t++) {
+            counts.typeCounts[t] = typeIds[t] == TokenRead.NO_TOKEN
+                    ? 0
+                    : read.countsForRelationship(TokenRead.ANY_LABEL, typeIds[t], TokenRead.ANY_LABEL);
+        }
+        if ((long) labelIds.length * typeIds.length < parallelThreshold || read.transactionStateHasChanges()) {
+            for (int l = 0; l < labelIds.length; l++) {
+                counts.readLabel(read, l, labelIds, typeIds);
+            }
+        } else {
+            counts.readInParallel(db, tx, pool, labelIds, typeIds);
+        }
+        return counts;
+    }
+
+    private void readFrom(SubGraph subGraph) {
+        for (int t = 0; t < types.size(); t++) {
+            typeCounts[t] = subGraph.countsForRelationship(types.get(t));
+        }
+        for (int l = 0; l < labels.size(); l++) {
+            Label label = labels.get(l);
+            nodeCounts[l] = subGraph.countsForNode(label);
+            out[l] = new long[types.size()];
+            in[l] = new long[types.size()];
+            if (nodeCounts[l] == 0) continue;
+            for (int t = 0; t < types.size(); t++) {
+                out[l][t] = subGraph.countsForRelationship(label, types.get(t));
+                in[l][t] = subGraph.countsForRelationship(types.get(t), label);
+            }
+        }
+    }
+
+    private void readLabel(Read read, int l, int[] labelIds, int[] typeIds) {
+        long[] labelOut = new long[typeIds.length];
+        long[] labelIn = new long[typeIds.length];
+        int label = labelIds[l];
+        long count = label == TokenRead.NO_TOKEN ? 0 : read.countsForNode(label);
+        if (count > 0) {
+            for (int t = 0; t < typeIds.length; t++) {
+                if (typeIds[t] == TokenRead.NO_TOKEN || typeCounts[t] == 0) continue;
+                labelOut[t] = read.countsForRelationship(label, typeIds[t], TokenRead.ANY_LABEL);
+                labelIn[t] = read.countsForRelationship(TokenRead.ANY_LABEL, typeIds[t], label);
+            }
+        }
+        // each label is written by one thread only, and read once all the workers are done
+        nodeCounts[l] = count;
+        out[l] = labelOut;
+        in[l] = labelIn;
+    }
+
+    private void readInParallel(
+            GraphDatabaseService db, Transaction tx, ExecutorService pool, int[] labelIds, int[] typeIds) {
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int l = 0; l < labelIds.length; l++) {
+            pending.add(l);
+        }
+        int workers = Math.min(Runtime.getRuntime().availableProcessors(), labelIds.length);
+        ParallelWorkers.run(db, tx, pool, workers, null, "reading the counts", (workerTx, stopped) -> {
+            Read read = workerTx.kernelTransaction().dataRead();
+            Integer l;
+            while (!stopped.getAsBoolean() && (l = pending.poll()) != null) {
+                readLabel(read, l, labelIds, typeIds);
+            }
+        });
+    }
+}
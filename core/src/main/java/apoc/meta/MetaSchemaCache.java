@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.meta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.security.SecurityContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+
+/**
+ * Caches the results of `apoc.meta.schema` and `apoc.meta.nodeTypeProperties` called with `{cached: true}`.
+ *
+ * The results are cached per user and roles, as each one only describes what its security context can read.
+ * Each result is stored along with the shape of the graph it describes, i.e. the labels, the relationship types,
+ * their property keys and the label-type-label patterns.
+ * Once the first result is cached, we listen to the commits and collect the shape of the entities they create or change:
+ * a result stays valid as long as the commits don't bring anything new to its shape, so the graph is profiled again
+ * only when its schema changes, not on every write.
+ * As a label or a type disappears only when its last entity is deleted, that is checked through the count store
+ * when the result is read.
+ *
+ * The new value types of known properties and the removed property keys don't invalidate the results,
+ * they are reported as the number of commits since the result was computed.
+ */
+public class MetaSchemaCache extends LifecycleAdapter implements TransactionEventListener<Set<String>> {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final String NODE = "N";
+    private static final String RELATIONSHIP = "R";
+    private static final String PATTERN = "P";
+    private static final String RELATIONSHIP_SUFFIX = " (RELATIONSHIP)";
+
+    private final GraphDatabaseAPI db;
+    private final DatabaseManagementService databaseManagementService;
+    private final Log log;
+    private final AtomicBoolean registeredWithKernel = new AtomicBoolean(false);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // the generation of the last commit bringing each fact, so that a result computed meanwhile doesn't miss them
+    private final Map<String, Long> learned = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public MetaSchemaCache(GraphDatabaseAPI db, DatabaseManagementService databaseManagementService, Log log) {
+        this.db = db;
+        this.databaseManagementService = databaseManagementService;
+        this.log = log;
+    }
+
+    private static class Entry {
+        private final String procedure;
+        private final Map<String, Object> config;
+        private final List<?> result;
+        private final Set<String> shape;
+        private final Predicate<String> relevant;
+        private final long computedAt = System.currentTimeMillis();
+        private final long commitsAt;
+        private final AtomicLong hits = new AtomicLong();
+
+        Entry(
+                String procedure,
+                Map<String, Object> config,
+                List<?> result,
+                Set<String> shape,
+                Predicate<String> relevant,
+                long commitsAt) {
+            this.procedure = procedure;
+            this.config = config;
+            this.result = result;
+            this.shape = shape;
+            this.relevant = relevant;
+            this.commitsAt = commitsAt;
+        }
+
+        boolean isValidFor(Collection<String> changes) {
+            for (String fact : changes) {
+                if (relevant.test(fact) && !shape.contains(fact)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the cached result of `apoc.meta.schema`, with the counts of the labels and types refreshed from the count store
+     */
+    public List<Map<String, Object>> schema(
+            KernelTransaction ktx, Map<String, Object> config, Supplier<Map<String, Object>> compute) {
+        List<?> result = get(
+                ktx,
+                "apoc.meta.schema",
+                config,
+                () -> List.of(compute.get()),
+                value -> schemaShape((Map<String, Map<String, Object>>) value.get(0)),
+                fact -> true);
+        return List.of(refreshCounts(ktx, (Map<String, Map<String, Object>>) result.get(0)));
+    }
+
+    /**
+     * @return the cached result of `apoc.meta.nodeTypeProperties`
+     */
+    public List<Tables4LabelsProfile.NodeTypePropertiesEntry> nodeTypeProperties(
+            KernelTransaction ktx,
+            Map<String, Object> config,
+            MetaConfig metaConfig,
+            Supplier<List<Tables4LabelsProfile.NodeTypePropertiesEntry>> compute) {
+        return (List<Tables4LabelsProfile.NodeTypePropertiesEntry>) get(
+                ktx,
+                "apoc.meta.nodeTypeProperties",
+                config,
+                compute::get,
+                value -> nodeTypePropertiesShape((List<Tables4LabelsProfile.NodeTypePropertiesEntry>) value),
+                // only the labels the config looks at
+                fact -> fact.startsWith(NODE) && metaConfig.matches(Label.label(split(fact)[1])));
+    }
+
+    private List<?> get(
+            KernelTransaction ktx,
+            String procedure,
+            Map<String, Object> config,
+            Supplier<List<?>> compute,
+            Function<List<?>, Set<String>> shapeOf,
+            Predicate<String> relevant) {
+        Map<String, Object> key = new TreeMap<>(config);
+        key.remove("cached");
+        String cacheKey = procedure + key + SEPARATOR + accessOf(ktx);
+
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && stillInUse(ktx, entry.shape)) {
+            hits.incrementAndGet();
+            entry.hits.incrementAndGet();
+            return entry.result;
+        }
+        misses.incrementAndGet();
+        // we listen before computing the result, so that the commits happening meanwhile aren't missed
+        registerWithKernel();
+        long generationAt = generation.get();
+        long commitsAt = commits.get();
+        List<?> result = compute.get();
+        Entry computed = new Entry(procedure, key, result, shapeOf.apply(result), relevant, commitsAt);
+        entries.put(cacheKey, computed);
+        // a commit bringing something new while we were computing makes the result stale already,
+        // the commit may also have checked the cached results just before we added this one
+        if (!computed.isValidFor(learnedSince(generationAt))) entries.remove(cacheKey, computed);
+        return result;
+    }
+
+    private Set<String> learnedSince(long generationAt) {
+        Set<String> facts = new HashSet<>();
+        learned.forEach((fact, generation) -> {
+            if (generation > generationAt) facts.add(fact);
+        });
+        return facts;
+    }
+
+    /**
+     * @return the user and the roles of the transaction, as a result only shows what they're allowed to read
+     */
+    private static String accessOf(KernelTransaction ktx) {
+        SecurityContext securityContext = ktx.securityContext();
+        return securityContext.subject().executingUser() + SEPARATOR + new TreeSet<>(securityContext.roles());
+    }
+
+    /**
+     * @return false if a label or a type of the shape has no more entities
+     */
+    private static boolean stillInUse(KernelTransaction ktx, Set<String> shape) {
+        Read read = ktx.dataRead();
+        TokenRead tokenRead = ktx.tokenRead();
+        for (String fact : shape) {
+            String[] parts = split(fact);
+            if (parts.length != 2) continue;
+            if (parts[0].equals(NODE)) {
+                int label = tokenRead.nodeLabel(parts[1]);
+                if (label == TokenRead.NO_TOKEN || read.countsForNode(label) == 0) return false;
+            } else if (parts[0].equals(RELATIONSHIP)) {
+                int type = tokenRead.relationshipType(parts[1]);
+                if (type == TokenRead.NO_TOKEN
+                        || read.countsForRelationship(TokenRead.ANY_LABEL, type, TokenRead.ANY_LABEL) == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> refreshCounts(KernelTransaction ktx, Map<String, Map<String, Object>> schema) {
+        Read read = ktx.dataRead();
+        TokenRead tokenRead = ktx.tokenRead();
+        Map<String, Object> result = new LinkedHashMap<>();
+        schema.forEach((name, value) -> {
+            Map<String, Object> copy = new LinkedHashMap<>(value);
+            if ("node".equals(value.get("type"))) {
+                int label = tokenRead.nodeLabel(name);
+                if (label != TokenRead.NO_TOKEN) copy.put("count", read.countsForNode(label));
+            } else {
+                int type = tokenRead.relationshipType(relationshipType(name));
+                if (type != TokenRead.NO_TOKEN) {
+                    copy.put("count", read.countsForRelationship(TokenRead.ANY_LABEL, type, TokenRead.ANY_LABEL));
+                }
+            }
+            result.put(name, copy);
+        });
+        return result;
+    }
+
+    private static Set<String> schemaShape(Map<String, Map<String, Object>> schema) {
+        Set<String> shape = new HashSet<>();
+        schema.forEach((name, value) -> {
+            Map<String, Object> properties = (Map<String, Object>) value.getOrDefault("properties", Map.of());
+            if ("node".equals(value.get("type"))) {
+                shape.add(fact(NODE, name));
+                properties.keySet().forEach(key -> shape.add(fact(NODE, name, key)));
+                Map<String, Map<String, Object>> relationships =
+                        (Map<String, Map<String, Object>>) value.getOrDefault("relationships", Map.of());
+                relationships.forEach((type, relationship) -> {
+                    boolean out = "out".equals(relationship.get("direction"));
+                    for (Object other : (List<Object>) relationship.getOrDefault("labels", List.of())) {
+                        shape.add(
+                                out
+                                        ? fact(PATTERN, name, type, other.toString())
+                                        : fact(PATTERN, other.toString(), type, name));
+                    }
+                });
+            } else {
+                String type = relationshipType(name);
+                shape.add(fact(RELATIONSHIP, type));
+                properties.keySet().forEach(key -> shape.add(fact(RELATIONSHIP, type, key)));
+            }
+        });
+        return shape;
+    }
+
+    private static Set<String> nodeTypePropertiesShape(List<Tables4LabelsProfile.NodeTypePropertiesEntry> entries) {
+        Set<String> shape = new HashSet<>();
+        for (Tables4LabelsProfile.NodeTypePropertiesEntry entry : entries) {
+            for (String label : entry.nodeLabels) {
+                shape.add(fact(NODE, label));
+                if (entry.propertyName != null) shape.add(fact(NODE, label, entry.propertyName));
+            }
+        }
+        return shape;
+    }
+
+    private static String relationshipType(String name) {
+        return name.endsWith(RELATIONSHIP_SUFFIX)
+                ? name.substring(0, name.length() - RELATIONSHIP_SUFFIX.length())
+                : name;
+    }
+
+    private static String fact(String... parts) {
+        return String.join(String.valueOf(SEPARATOR), parts);
+    }
+
+    private static String[] split(String fact) {
+        return fact.split(String.valueOf(SEPARATOR), -1);
+    }
+
+    /**
+     * @return the shape of the entities the transaction creates or changes, i.e. what a cached result may not know about yet
+     */
+    @Override
+    public Set<String> beforeCommit(
+            TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
+        if (entries.isEmpty()) return null;
+        Set<String> shape = new HashSet<>();
+        Map<Node, Iterable<Label>> labels = new HashMap<>();
+        for (LabelEntry entry : txData.assignedLabels()) {
+            String label = entry.label().name();
+            shape.add(fact(NODE, label));
+            // the properties the node already had now belong to the new label too
+            for (String key : entry.node().getPropertyKeys()) {
+                shape.add(fact(NODE, label, key));
+            }
+        }
+        for (PropertyEntry<Node> entry : txData.assignedNodeProperties()) {
+            for (Label label : labels.computeIfAbsent(entry.entity(), Node::getLabels)) {
+                shape.add(fact(NODE, label.name(), entry.key()));
+            }
+        }
+        for (Relationship relationship : txData.createdRelationships()) {
+            String type = relationship.getType().name();
+            shape.add(fact(RELATIONSHIP, type));
+            for (Label start : labels.computeIfAbsent(relationship.getStartNode(), Node::getLabels)) {
+                for (Label end : labels.computeIfAbsent(relationship.getEndNode(), Node::getLabels)) {
+                    shape.add(fact(PATTERN, start.name(), type, end.name()));
+                }
+            }
+        }
+        for (PropertyEntry<Relationship> entry : txData.assignedRelationshipProperties()) {
+            shape.add(fact(RELATIONSHIP, entry.entity().getType().name(), entry.key()));
+        }
+        return shape;
+    }
+
+    @Override
+    public void afterCommit(TransactionData txData, Set<String> shape, GraphDatabaseService databaseService) {
+        commits.incrementAndGet();
+        if (shape == null || shape.isEmpty()) {
+            return;
+        }
+        long generation = this.generation.incrementAndGet();
+        shape.forEach(fact -> learned.merge(fact, generation, Math::max));
+        entries.values().removeIf(entry -> {
+            boolean stale = !entry.isValidFor(shape);
+            if (stale) invalidations.incrementAndGet();
+            return stale;
+        });
+    }
+
+    @Override
+    public void afterRollback(TransactionData txData, Set<String> shape, GraphDatabaseService databaseService) {}
+
+    /**
+     * @return the counters of the cache and, for each cached result, its age and the number of commits since it was computed
+     */
+    public Map<String, Object> stats() {
+        long hits = this.hits.get();
+        long misses = this.misses.get();
+        long commits = this.commits.get();
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("procedure", entry.procedure);
+            result.put("config", entry.config);
+            result.put("hits", entry.hits.get());
+            result.put("ageMillis", now - entry.computedAt);
+            result.put("commitsSinceComputed", commits - entry.commitsAt);
+            results.add(result);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : hits / (double) (hits + misses));
+        stats.put("invalidations", invalidations.get());
+        stats.put("commits", commits);
+        stats.put("entries", results);
+        return stats;
+    }
+
+    private void registerWithKernel() {
+        if (registeredWithKernel.compareAndSet(false, true)) {
+            databaseManagementService.registerTransactionEventListener(db.databaseName(), this);
+            log.debug("Listening to the commits to keep the cached meta schema of %s current", db.databaseName());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (registeredWithKernel.compareAndSet(true, false)) {
+            databaseManagementService.unregisterTransactionEventListener(db.databaseName(), this);
+        }
+        entries.clear();
+        learned.clear();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.meta;
+
+import apoc.util.ParallelWorkers;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import org.neo4j.common.EntityType;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.InternalIndexState;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PartitionedScan;
+import org.neo4j.internal.kernel.api.TokenPredicate;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.TokenReadSession;
+import org.neo4j.internal.schema.IndexDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+/**
+ * Picks about as many nodes per label as the 1 in N sampling of `apoc.meta.*` examines,
+ * without scanning all the nodes of the label.
+ *
+ * The scan of the node label index is split in partitions, i.e. ranges of node ids, and we read only a small window
+ * at the start of each of them, keeping a random subset of its nodes (reservoir sampling),
+ * so the work is bounded by the sample size rather than by the number of nodes with the label.
+ * The windows are never smaller than needed to read {@link #MIN_READ_NODES} nodes per label though,
+ * as reading that many nodes is cheap and spreads the sample better.
+ * The labels are sampled concurrently with {@link ParallelWorkers}.
+ *
+ * The labels which are not sampled, because they are small enough to be scanned cheaply or because sampling isn't possible
+ * (no online node label index, or changes in the current transaction which the workers wouldn't see),
+ * are left to the caller to be scanned as before.
+ */
+class NodeSampler {
+
+    // the number of nodes we read at the start of a partition for each node we keep
+    private static final int WINDOW_FACTOR = 4;
+    // the number of nodes of a label we can afford to read anyway, the smaller labels are scanned by the caller
+    private static final long MIN_READ_NODES = 100_000;
+
+    private final GraphDatabaseService db;
+    private final Transaction tx;
+    private final KernelTransaction ktx;
+    private final ExecutorService pool;
+
+    NodeSampler(GraphDatabaseService db, Transaction tx, ExecutorService pool) {
+        this.db = db;
+        this.tx = tx;
+        this.ktx = ((InternalTransaction) tx).kernelTransaction();
+        this.pool = pool;
+    }
+
+    /**
+     * @param labelCounts the number of nodes of each label
+     * @param sample the 1 in N sampling ratio of the config
+     * @return the ids of the sampled nodes of each label, the labels which are missing must be scanned in full
+     */
+    Map<String, long[]> sample(Map<String, Long> labelCounts, long sample) {
+        Map<String, Integer> sizes = new HashMap<>();
+        labelCounts.forEach((label, count) -> {
+            long skip = Meta.getSampleForLabelCount(count, sample);
+            // the same number of nodes we would examine checking every `skip`th node of the label
+            if (skip > 1 && count > MIN_READ_NODES) {
+                sizes.put(label, (int) Math.min(Integer.MAX_VALUE, (count + skip - 1) / skip));
+            }
+        });
+        if (sizes.isEmpty() || ktx.dataRead().transactionStateHasChanges() || nodeLabelIndex(ktx) == null) {
+            return Map.of();
+        }
+
+        Queue<Map.Entry<String, Integer>> labels = new ConcurrentLinkedQueue<>(sizes.entrySet());
+        Map<String, long[]> samples = new ConcurrentHashMap<>();
+        int workers = Math.min(Runtime.getRuntime().availableProcessors(), labels.size());
+        ParallelWorkers.run(db, tx, pool, workers, null, "sampling the nodes", (workerTx, stopped) -> {
+            KernelTransaction workerKtx = workerTx.kernelTransaction();
+            Map.Entry<String, Integer> label;
+            while (!stopped.getAsBoolean() && (label = labels.poll()) != null) {
+                try {
+                    int token = workerKtx.tokenRead().nodeLabel(label.getKey());
+                    if (token != TokenRead.NO_TOKEN) {
+                        samples.put(label.getKey(), sampleLabel(workerKtx, token, label.getValue()));
+                    }
+                } catch (KernelException e) {
+                    throw new RuntimeException("Error while sampling the nodes of the label " + label.getKey(), e);
+                }
+            }
+        });
+        return samples;
+    }
+
+    private static long[] sampleLabel(KernelTransaction ktx, int label, int size) throws KernelException {
+        TokenReadSession session = ktx.dataRead().tokenReadSession(nodeLabelIndex(ktx));
+        PartitionedScan<NodeLabelIndexCursor> scan =
+                ktx.dataRead().nodeLabelScan(session, size, ktx.cursorContext(), new TokenPredicate(label));
+        // the index may split the scan in fewer partitions than we asked for, then we take more nodes from each of them
+        int partitions = Math.max(1, scan.getNumberOfPartitions());
+        int maxPerPartition = (int) Math.ceil(size / (double) partitions);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] ids = new long[size];
+        int sampled = 0;
+        long[] reservoir = new long[maxPerPartition];
+        try (NodeLabelIndexCursor cursor = ktx.cursors().allocateNodeLabelIndexCursor(ktx.cursorContext())) {
+            for (int partition = 0;
+                    scan.reservePartition(
+                            cursor, ktx.cursorContext(), ktx.securityContext().mode());
+                    partition++) {
+                // the nodes are spread evenly over all the partitions, so that the sample covers the whole id range
+                int perPartition =
+                        (int) ((long) size * (partition + 1) / partitions - (long) size * partition / partitions);
+                long window = Math.max((long) perPartition * WINDOW_FACTOR, (long)
+                        Math.ceil(MIN_READ_NODES * perPartition / (double) size));
+                long seen = 0;
+                while (seen < window && cursor.next()) {
+                    if (seen < perPartition) {
+                        reservoir[(int) seen] = cursor.nodeReference();
+                    } else {
+                        long slot = random.nextLong(seen + 1);
+                        if (slot < perPartition) reservoir[(int) slot] = cursor.nodeReference();
+                    }
+                    seen++;
+                }
+                int taken = (int) Math.min(Math.min(seen, perPartition), size - sampled);
+                System.arraycopy(reservoir, 0, ids, sampled, taken);
+                sampled += taken;
+            }
+        }
+        return sampled == size ? ids : Arrays.copyOf(ids, sampled);
+    }
+
+    private static IndexDescriptor nodeLabelIndex(KernelTransaction ktx) {
+        Iterator<IndexDescriptor> indexes =
+                ktx.schemaRead().index(SchemaDescriptors.forAnyEntityTokens(EntityType.NODE));
+        if (!indexes.hasNext()) return null;
+        IndexDescriptor index = indexes.next();
+        try {
+            return ktx.schemaRead().indexGetState(index) == InternalIndexState.ONLINE ? index : null;
+        } catch (KernelException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.neighbors;
+
+import apoc.util.ParallelWorkers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Expands a frontier of node ids to the ids of their neighbors, reading the relationships through kernel cursors,
+ * so that no Node or Relationship objects are created.
+ *
+ * With the parallel config, frontiers larger than the batch size are split in batches expanded concurrently
+ * with {@link ParallelWorkers}: each worker has its own cursors and fills its own bitmap,
+ * and the bitmaps are merged at the end.
+ */
+class FrontierExpander {
+
+    private final GraphDatabaseService db;
+    private final Transaction tx;
+    private final KernelTransaction ktx;
+    private final ExecutorService pool;
+    private final TerminationGuard guard;
+    private final NeighborsConfig config;
+    private final RelationshipSelection[] selections;
+
+    FrontierExpander(
+            GraphDatabaseService db,
+            Transaction tx,
+            ExecutorService pool,
+            TerminationGuard guard,
+            List<Pair<RelationshipType, Direction>> typesAndDirections,
+            NeighborsConfig config) {
+        this.db = db;
+        this.tx = tx;
+        this.ktx = ((InternalTransaction) tx).kernelTransaction();
+        this.pool = pool;
+        this.guard = guard;
+        this.config = config;
+        this.selections = selections(this.ktx.tokenRead(), typesAndDirections);
+    }
+
+    private static RelationshipSelection[] selections(
+            TokenRead tokenRead, List<Pair<RelationshipType, Direction>> typesAndDirections) {
+        List<RelationshipSelection> selections = new ArrayList<>();
+        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
+            if (pair.first() == null) {
+                selections.add(RelationshipSelection.selection(pair.other()));
+                continue;
+            }
+            int type = tokenRead.relationshipType(pair.first().name());
+            // a type which doesn't exist has no relationships
+            if (type != TokenRead.NO_TOKEN) {
+                selections.add(RelationshipSelection.selection(type, pair.other()));
+            }
+        }
+        return selections.toArray(new RelationshipSelection[0]);
+    }
+
+    /**
+     * @return the ids of the nodes connected to the ones of the frontier, which may include the frontier itself
+     */
+    Roaring64NavigableMap expand(Roaring64NavigableMap frontier) {
+        if (!config.isParallel()
+                || config.getConcurrency() < 2
+                || frontier.getLongCardinality() <= config.getBatchSize()
+                || ktx.dataRead().transactionStateHasChanges()) {
+            return expandSerially(frontier);
+        }
+        return expandInParallel(frontier);
+    }
+
+    private Roaring64NavigableMap expandSerially(Roaring64NavigableMap frontier) {
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        Read read = ktx.dataRead();
+        try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+                RelationshipTraversalCursor relationships =
+                        ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext())) {
+            LongIterator ids = frontier.getLongIterator();
+            long expanded = 0;
+            while (ids.hasNext()) {
+                expand(read, ids.next(), node, relationships, next);
+                if (++expanded % config.getBatchSize() == 0) {
+                    guard.check();
+                }
+            }
+        }
+        return next;
+    }
+
+    private Roaring64NavigableMap expandInParallel(Roaring64NavigableMap frontier) {
+        Queue<long[]> batches = new ConcurrentLinkedQueue<>();
+        long remaining = frontier.getLongCardinality();
+        LongIterator ids = frontier.getLongIterator();
+        while (remaining > 0) {
+            long[] batch = new long[(int) Math.min(config.getBatchSize(), remaining)];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = ids.next();
+            }
+            batches.add(batch);
+            remaining -= batch.length;
+        }
+
+        Queue<Roaring64NavigableMap> results = new ConcurrentLinkedQueue<>();
+        int workers = Math.min(config.getConcurrency(), batches.size());
+        ParallelWorkers.run(db, tx, pool, workers, guard, "expanding the neighbors", (workerTx, stopped) -> {
+            // each worker fills its own bitmap, which is only read once all the workers are done
+            Roaring64NavigableMap next = new Roaring64NavigableMap();
+            results.add(next);
+            KernelTransaction workerKtx = workerTx.kernelTransaction();
+            Read read = workerKtx.dataRead();
+            try (NodeCursor node = workerKtx.cursors().allocateNodeCursor(workerKtx.cursorContext());
+                    RelationshipTraversalCursor relationships =
+                            workerKtx.cursors().allocateRelationshipTraversalCursor(workerKtx.cursorContext())) {
+                long[] batch;
+                while (!stopped.getAsBoolean() && (batch = batches.poll()) != null) {
+                    for (long id : batch) {
+                        expand(read, id, node, relationships, next);
+                    }
+                }
+            }
+        });
+
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        results.forEach(next::or);
+        return next;
+    }
+
+    private void expand(
+            Read read,
+            long nodeId,
+            NodeCursor node,
+            RelationshipTraversalCursor relationships,
+            Roaring64NavigableMap next) {
+        read.singleNode(nodeId, node);
+        if (!node.next()) return;
+        for (RelationshipSelection selection : selections) {
+            node.relationships(relationships, selection);
+            while (relationships.next()) {
+                next.addLong(relationships.otherNodeReference());
+            }
+        }
+    }
+}
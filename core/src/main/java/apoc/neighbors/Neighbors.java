@@ -20,6 +20,7 @@ package apoc.neighbors;
 
 import static apoc.path.RelationshipTypeAndDirections.parse;
 
+import apoc.Pools;
 import apoc.result.ListResult;
 import apoc.result.LongResult;
 import apoc.result.NodeListResult;
@@ -29,227 +30,119 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.neo4j.graphdb.*;
-import org.neo4j.internal.helpers.collection.Iterables;
-import org.neo4j.internal.helpers.collection.Pair;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 public class Neighbors {
 
+    @Context
+    public GraphDatabaseService db;
+
     @Context
     public Transaction tx;
 
-    private Iterable<Relationship> getRelationshipsByTypeAndDirection(
-            Node node, Pair<RelationshipType, Direction> typesAndDirection) {
-        // as policy if both elements in the pair are null we return an empty result
-        if (typesAndDirection.first() == null) {
-            return typesAndDirection.other() == null
-                    ? Iterables.empty()
-                    : node.getRelationships(typesAndDirection.other());
+    @Context
+    public Pools pools;
+
+    @Context
+    public TerminationGuard terminationGuard;
+
+    private FrontierExpander expander(String types, Map<String, Object> config) {
+        return new FrontierExpander(
+                db,
+                tx,
+                pools.getDefaultExecutorService(),
+                terminationGuard,
+                parse(types),
+                new NeighborsConfig(config));
+    }
+
+    /**
+     * @return the distinct nodes up to the distance, without the starting node
+     */
+    private Roaring64NavigableMap toHop(Node node, String types, long distance, Map<String, Object> config) {
+        FrontierExpander expander = expander(types, config);
+        final long startNodeId = node.getId();
+        Roaring64NavigableMap seen = Roaring64NavigableMap.bitmapOf(startNodeId);
+        Roaring64NavigableMap frontier = Roaring64NavigableMap.bitmapOf(startNodeId);
+        for (long i = 0; i < distance && !frontier.isEmpty(); i++) {
+            Roaring64NavigableMap next = expander.expand(frontier);
+            next.andNot(seen);
+            seen.or(next);
+            frontier = next;
         }
-        if (typesAndDirection.other() == null) {
-            return typesAndDirection.first() == null
-                    ? Iterables.empty()
-                    : node.getRelationships(typesAndDirection.first());
+        // remove starting node
+        seen.removeLong(startNodeId);
+        return seen;
+    }
+
+    /**
+     * @return the distinct nodes at each distance, each node being only at the first distance it's reached
+     */
+    private Roaring64NavigableMap[] byHop(Node node, String types, long distance, Map<String, Object> config) {
+        FrontierExpander expander = expander(types, config);
+        final long startNodeId = node.getId();
+        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[(int) distance];
+        seen[0] = expander.expand(Roaring64NavigableMap.bitmapOf(startNodeId));
+        for (int i = 1; i < distance; i++) {
+            seen[i] = expander.expand(seen[i - 1]);
+            for (int j = 0; j < i; j++) {
+                seen[i].andNot(seen[j]);
+            }
+            seen[i].removeLong(startNodeId);
         }
-        return node.getRelationships(typesAndDirection.other(), typesAndDirection.first());
+        return seen;
+    }
+
+    private Stream<NodeResult> toNodeResults(Roaring64NavigableMap ids) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ids.iterator(), Spliterator.SORTED), false)
+                .map(id -> new NodeResult(tx.getNodeById(id)));
     }
 
     @Procedure("apoc.neighbors.tohop")
     @Description(
-            "apoc.neighbors.tohop(node, rel-direction-pattern, distance) - returns distinct nodes of the given relationships in the pattern up to a certain distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.tohop(node, rel-direction-pattern, distance, config) - returns distinct nodes of the given relationships in the pattern up to a certain distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<NodeResult> neighbors(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        final long startNodeId = node.getId();
-
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap seen = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextA = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextB = new Roaring64NavigableMap();
-        long nodeId = node.getId();
-        seen.addLong(nodeId);
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                nextB.addLong(r.getOtherNodeId(nodeId));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            // next even Hop
-            nextB.andNot(seen);
-            seen.or(nextB);
-            nextA.clear();
-            iterator = nextB.iterator();
-            while (iterator.hasNext()) {
-                nodeId = iterator.next();
-                node = tx.getNodeById(nodeId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        nextA.add((r.getOtherNodeId(nodeId)));
-                    }
-                }
-            }
-
-            i++;
-            if (i < distance) {
-                // next odd Hop
-                nextA.andNot(seen);
-                seen.or(nextA);
-                nextB.clear();
-                iterator = nextA.iterator();
-                while (iterator.hasNext()) {
-                    nodeId = iterator.next();
-                    node = tx.getNodeById(nodeId);
-                    for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                        for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                            nextB.add(r.getOtherNodeId(nodeId));
-                        }
-                    }
-                }
-            }
-        }
-        if ((distance % 2) == 0) {
-            seen.or(nextA);
-        } else {
-            seen.or(nextB);
-        }
-        // remove starting node
-        seen.removeLong(startNodeId);
-
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(seen.iterator(), Spliterator.SORTED), false)
-                .map(x -> new NodeResult(tx.getNodeById(x)));
+        return toNodeResults(toHop(node, types, distance, config));
     }
 
     @Procedure("apoc.neighbors.tohop.count")
     @Description(
-            "apoc.neighbors.tohop.count(node, rel-direction-pattern, distance) - returns distinct count of nodes of the given relationships in the pattern up to a certain distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.tohop.count(node, rel-direction-pattern, distance, config) - returns distinct count of nodes of the given relationships in the pattern up to a certain distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<LongResult> neighborsCount(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        final long startNodeId = node.getId();
-
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap seen = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextA = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextB = new Roaring64NavigableMap();
-        long nodeId = node.getId();
-        seen.add(nodeId);
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                nextB.add(r.getOtherNodeId(nodeId));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            // next even Hop
-            nextB.andNot(seen);
-            seen.or(nextB);
-            nextA.clear();
-            iterator = nextB.iterator();
-            while (iterator.hasNext()) {
-                nodeId = iterator.next();
-                node = tx.getNodeById(nodeId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        nextA.add(r.getOtherNodeId(nodeId));
-                    }
-                }
-            }
-
-            i++;
-            if (i < distance) {
-                // next odd Hop
-                nextA.andNot(seen);
-                seen.or(nextA);
-                nextB.clear();
-                iterator = nextA.iterator();
-                while (iterator.hasNext()) {
-                    nodeId = iterator.next();
-                    node = tx.getNodeById(nodeId);
-                    for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                        for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                            nextB.add(r.getOtherNodeId(nodeId));
-                        }
-                    }
-                }
-            }
-        }
-        if ((distance % 2) == 0) {
-            seen.or(nextA);
-        } else {
-            seen.or(nextB);
-        }
-        // remove starting node
-        seen.removeLong(startNodeId);
-
-        return Stream.of(new LongResult(seen.getLongCardinality()));
+        return Stream.of(new LongResult(toHop(node, types, distance, config).getLongCardinality()));
     }
 
     @Procedure("apoc.neighbors.byhop")
     @Description(
-            "apoc.neighbors.byhop(node, rel-direction-pattern, distance) - returns distinct nodes of the given relationships in the pattern at each distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.byhop(node, rel-direction-pattern, distance, config) - returns distinct nodes of the given relationships in the pattern at each distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<NodeListResult> neighborsByHop(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        long nodeId = node.getId();
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(r.getOtherNodeId(nodeId));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                node = tx.getNodeById(iterator.next());
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(r.getOtherNodeId(node.getId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        return Arrays.stream(seen)
+        return Arrays.stream(byHop(node, types, distance, config))
                 .map(x -> new NodeListResult(StreamSupport.stream(
                                 Spliterators.spliteratorUnknownSize(x.iterator(), Spliterator.SORTED), false)
                         .map(y -> tx.getNodeById((long) y))
@@ -258,148 +151,49 @@ public class Neighbors {
 
     @Procedure("apoc.neighbors.byhop.count")
     @Description(
-            "apoc.neighbors.byhop.count(node, rel-direction-pattern, distance) - returns distinct nodes of the given relationships in the pattern at each distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.byhop.count(node, rel-direction-pattern, distance, config) - returns distinct nodes of the given relationships in the pattern at each distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<ListResult> neighborsByHopCount(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        long nodeId = node.getId();
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(r.getOtherNodeId(nodeId));
-            }
+        List<Object> counts = new ArrayList<>();
+        for (Roaring64NavigableMap seen : byHop(node, types, distance, config)) {
+            counts.add(seen.getLongCardinality());
         }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                node = tx.getNodeById(iterator.next());
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(r.getOtherNodeId(node.getId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        ArrayList counts = new ArrayList<Long>();
-        for (int i = 0; i < distance; i++) {
-            counts.add(seen[i].getLongCardinality());
-        }
-
         return Stream.of(new ListResult(counts));
     }
 
     @Procedure("apoc.neighbors.athop")
     @Description(
-            "apoc.neighbors.athop(node, rel-direction-pattern, distance) - returns distinct nodes of the given relationships in the pattern at a distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.athop(node, rel-direction-pattern, distance, config) - returns distinct nodes of the given relationships in the pattern at a distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<NodeResult> neighborsAtHop(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        long nodeId = node.getId();
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(r.getOtherNodeId(nodeId));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                node = tx.getNodeById(iterator.next());
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(r.getOtherNodeId(node.getId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        return StreamSupport.stream(
-                        Spliterators.spliteratorUnknownSize(
-                                seen[distance.intValue() - 1].iterator(), Spliterator.SORTED),
-                        false)
-                .map(y -> new NodeResult(tx.getNodeById(y)));
+        Roaring64NavigableMap[] seen = byHop(node, types, distance, config);
+        return toNodeResults(seen[distance.intValue() - 1]);
     }
 
     @Procedure("apoc.neighbors.athop.count")
     @Description(
-            "apoc.neighbors.athop.count(node, rel-direction-pattern, distance) - returns distinct nodes of the given relationships in the pattern at a distance, can use '>' or '<' for all outgoing or incoming relationships")
+            "apoc.neighbors.athop.count(node, rel-direction-pattern, distance, config) - returns distinct nodes of the given relationships in the pattern at a distance, can use '>' or '<' for all outgoing or incoming relationships")
     public Stream<LongResult> neighborsAtHopCount(
             @Name("node") Node node,
             @Name(value = "types", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        long nodeId = node.getId();
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(r.getOtherNodeId(nodeId));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                node = tx.getNodeById(iterator.next());
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(r.getOtherNodeId(node.getId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
+        Roaring64NavigableMap[] seen = byHop(node, types, distance, config);
         return Stream.of(new LongResult(seen[distance.intValue() - 1].getLongCardinality()));
     }
 }
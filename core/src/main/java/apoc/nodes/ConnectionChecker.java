@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.storageengine.api.Degrees;
+import org.neo4j.storageengine.api.RelationshipDirection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+
+/**
+ * Checks whether two nodes are connected by a relationship of the given types and directions,
+ * reusing the same cursors for all the checks.
+ *
+ * The relationships of a sparse node are kept in a single short chain, so if either node is sparse we scan its chain.
+ * The relationships of a dense node are grouped by type and direction, with their degrees:
+ * when both nodes are dense, we look up the degree of each selected type and direction on both sides,
+ * skip the ones without relationships, and scan the side with the lower degree, the lowest degrees first.
+ * This way a supernode is never scanned when the other node only has a few relationships of the type.
+ */
+class ConnectionChecker implements AutoCloseable {
+
+    private final Read read;
+    private final NodeCursor start;
+    private final NodeCursor end;
+    private final RelationshipTraversalCursor relationships;
+    // from the point of view of the start node
+    private final RelationshipSelection[] selections;
+
+    /**
+     * @param typesAndDirections the types and directions of the relationships, or null for all of them
+     */
+    ConnectionChecker(KernelTransaction ktx, List<Pair<RelationshipType, Direction>> typesAndDirections) {
+        this.read = ktx.dataRead();
+        this.selections = selections(ktx.tokenRead(), typesAndDirections);
+        this.start = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+        this.end = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+        this.relationships = ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext());
+    }
+
+    private static RelationshipSelection[] selections(
+            TokenRead tokenRead, List<Pair<RelationshipType, Direction>> typesAndDirections) {
+        if (typesAndDirections == null) {
+            return new RelationshipSelection[] {RelationshipSelection.ALL_RELATIONSHIPS};
+        }
+        List<RelationshipSelection> selections = new ArrayList<>();
+        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
+            if (pair.first() == null) {
+                selections.add(RelationshipSelection.selection(pair.other()));
+                continue;
+            }
+            int type = tokenRead.relationshipType(pair.first().name());
+            // a type which doesn't exist has no relationships
+            if (type != TokenRead.NO_TOKEN) {
+                selections.add(RelationshipSelection.selection(type, pair.other()));
+            }
+        }
+        return selections.toArray(new RelationshipSelection[0]);
+    }
+
+    boolean connected(long startId, long endId) {
+        if (startId == endId) return true;
+        if (selections.length == 0) return false;
+        position(startId, start);
+        position(endId, end);
+
+        if (!start.supportsFastDegreeLookup()) return scan(start, endId, false);
+        if (!end.supportsFastDegreeLookup()) return scan(end, startId, true);
+        return connectedDense(startId, endId);
+    }
+
+    private void position(long nodeId, NodeCursor node) {
+        read.singleNode(nodeId, node);
+        if (!node.next()) {
+            throw new IllegalArgumentException("node with id " + nodeId + " does not exist.");
+        }
+    }
+
+    /**
+     * Scans the whole chain of a sparse node once, testing the relationships to the other node against the selections
+     */
+    private boolean scan(NodeCursor node, long other, boolean reversed) {
+        long nodeId = node.nodeReference();
+        node.relationships(relationships, RelationshipSelection.ALL_RELATIONSHIPS);
+        while (relationships.next()) {
+            if (relationships.otherNodeReference() != other) continue;
+            RelationshipDirection direction = relationships.sourceNodeReference() == nodeId
+                    ? RelationshipDirection.OUTGOING
+                    : RelationshipDirection.INCOMING;
+            for (RelationshipSelection selection : selections) {
+                if ((reversed ? selection.reverse() : selection).test(relationships.type(), direction)) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean connectedDense(long startId, long endId) {
+        Degrees startDegrees = start.degrees(RelationshipSelection.ALL_RELATIONSHIPS);
+        Degrees endDegrees = end.degrees(RelationshipSelection.ALL_RELATIONSHIPS);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int type : startDegrees.types()) {
+            for (Direction direction : new Direction[] {Direction.OUTGOING, Direction.INCOMING}) {
+                if (!isSelected(type, direction)) continue;
+                int startDegree = startDegrees.degree(type, direction);
+                int endDegree = endDegrees.degree(type, direction.reverse());
+                if (startDegree == 0 || endDegree == 0) continue;
+                candidates.add(
+                        startDegree <= endDegree
+                                ? new Candidate(
+                                        start, endId, RelationshipSelection.selection(type, direction), startDegree)
+                                : new Candidate(
+                                        end,
+                                        startId,
+                                        RelationshipSelection.selection(type, direction.reverse()),
+                                        endDegree));
+            }
+        }
+        candidates.sort((c1, c2) -> Integer.compare(c1.degree, c2.degree));
+
+        for (Candidate candidate : candidates) {
+            candidate.node.relationships(relationships, candidate.selection);
+            while (relationships.next()) {
+                if (relationships.otherNodeReference() == candidate.other) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSelected(int type, Direction direction) {
+        RelationshipDirection relationshipDirection =
+                direction == Direction.OUTGOING ? RelationshipDirection.OUTGOING : RelationshipDirection.INCOMING;
+        for (RelationshipSelection selection : selections) {
+            if (selection.test(type, relationshipDirection)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The relationships of a type and direction on the side of the pair with the lower degree
+     */
+    private static class Candidate {
+        private final NodeCursor node;
+        private final long other;
+        private final RelationshipSelection selection;
+        private final int degree;
+
+        Candidate(NodeCursor node, long other, RelationshipSelection selection, int degree) {
+            this.node = node;
+            this.other = other;
+            this.selection = selection;
+            this.degree = degree;
+        }
+    }
+
+    @Override
+    public void close() {
+        start.close();
+        end.close();
+        relationships.close();
+    }
+}
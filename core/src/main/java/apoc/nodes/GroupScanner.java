@@ -0,0 +1,650 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.nodes;
+
+import apoc.nodes.Grouping.NodeKey;
+import apoc.nodes.Grouping.RelKey;
+import apoc.result.VirtualNode;
+import apoc.result.VirtualRelationship;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.neo4j.common.EntityType;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.internal.kernel.api.EntityCursor;
+import org.neo4j.internal.kernel.api.IndexQueryConstraints;
+import org.neo4j.internal.kernel.api.InternalIndexState;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipDataAccessor;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenPredicate;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.TokenReadSession;
+import org.neo4j.internal.schema.IndexDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.token.api.NamedToken;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Groups the nodes and the relationships for apoc.nodes.group in two parallel passes through kernel cursors,
+ * so that no Node or Relationship objects are created.
+ * The node pass only reads the nodes with the given labels from the label index, unless all the labels were requested,
+ * and the relationship pass walks the relationship chains of the grouped nodes if they're few enough,
+ * both falling back to a scan of the whole store otherwise.
+ *
+ * Each worker thread aggregates the entities of its batches in its own partial groups, merged once the scan completes,
+ * so the workers never contend on the same group, however few groups there are.
+ * Instead of the nodes of each group, we only keep the ids of the grouped nodes in a bitmap:
+ * the relationship scan skips the relationships whose nodes are not grouped,
+ * and computes the groups of the other ones from their labels and properties.
+ */
+class GroupScanner {
+
+    // the chain walks are random reads, so they only pay off for a fraction of the relationships of a store scan
+    private static final int CHAIN_WALK_RATIO = 4;
+
+    private final int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final GraphDatabaseAPI db;
+    private final KernelTransaction ktx;
+    private final ExecutorService pool;
+    private final int batchSize;
+    private final Log log;
+
+    private final String[] labelNames;
+    private final int[] labels;
+    private final String[] keys;
+    private final PropertyReader keyReader;
+    private final PropertyReader nodeReader;
+    private final Aggregations nodeAggregations;
+    private final PropertyReader relReader;
+    private final Aggregations relAggregations;
+    private final Map<Integer, String> typeNames = new HashMap<>();
+    private final BitSet includedTypes;
+    private final boolean selfRels;
+    private final boolean allLabels;
+
+    private Roaring64NavigableMap grouped;
+
+    /**
+     * @param includeRels the names of the relationship types to group, or null for all of them
+     * @param allLabels true if the labels are all the ones of the database, as `*` was requested
+     */
+    GroupScanner(
+            GraphDatabaseAPI db,
+            KernelTransaction ktx,
+            ExecutorService pool,
+            int batchSize,
+            Log log,
+            Collection<String> labelNames,
+            String[] keys,
+            Map<String, List<String>> nodeAggNames,
+            Map<String, List<String>> relAggNames,
+            Set<String> includeRels,
+            boolean selfRels,
+            boolean allLabels) {
+        this.db = db;
+        this.ktx = ktx;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.log = log;
+        this.keys = keys;
+        this.selfRels = selfRels;
+        this.allLabels = allLabels;
+
+        TokenRead tokenRead = ktx.tokenRead();
+        // the labels which don't exist have no nodes to group
+        List<String> existing = new ArrayList<>();
+        for (String name : labelNames) {
+            if (tokenRead.nodeLabel(name) != TokenRead.NO_TOKEN) existing.add(name);
+        }
+        this.labelNames = existing.toArray(new String[0]);
+        this.labels = existing.stream().mapToInt(tokenRead::nodeLabel).toArray();
+
+        String[] nodeAggKeys = aggregatedKeys(nodeAggNames);
+        String[] nodeProperties = new String[keys.length + nodeAggKeys.length];
+        System.arraycopy(keys, 0, nodeProperties, 0, keys.length);
+        System.arraycopy(nodeAggKeys, 0, nodeProperties, keys.length, nodeAggKeys.length);
+        this.keyReader = new PropertyReader(tokenRead, keys);
+        this.nodeReader = new PropertyReader(tokenRead, nodeProperties);
+        this.nodeAggregations = new Aggregations(nodeAggNames, nodeProperties);
+
+        String[] relProperties = aggregatedKeys(relAggNames);
+        this.relReader = new PropertyReader(tokenRead, relProperties);
+        this.relAggregations = new Aggregations(relAggNames, relProperties);
+
+        Iterator<NamedToken> types = tokenRead.relationshipTypesGetAllTokens();
+        this.includedTypes = new BitSet();
+        while (types.hasNext()) {
+            NamedToken type = types.next();
+            typeNames.put(type.id(), type.name());
+            if (includeRels == null || includeRels.contains(type.name())) includedTypes.set(type.id());
+        }
+    }
+
+    private static String[] aggregatedKeys(Map<String, List<String>> aggregations) {
+        return aggregations.keySet().stream().filter(key -> !"*".equals(key)).toArray(String[]::new);
+    }
+
+    /**
+     * @return the virtual node of each group, with its grouping properties and its aggregates
+     */
+    Map<NodeKey, VirtualNode> groupNodes() {
+        Roaring64NavigableMap grouped = new Roaring64NavigableMap();
+        Map<NodeKey, Partial> groups = new HashMap<>();
+        if (labels.length > 0) {
+            Queue<NodeWorker> workers = new ConcurrentLinkedQueue<>();
+            ThreadLocal<NodeWorker> worker = ThreadLocal.withInitial(() -> register(workers, new NodeWorker()));
+            scan("nodes", this::forLabelledNodes, (ktx, node) -> worker.get().accept(ktx, node));
+            for (NodeWorker w : workers) {
+                grouped.or(w.grouped);
+                w.groups.forEach((key, partial) -> groups.merge(key, partial, Partial::merge));
+                // the thread locals of the pool threads outlive this call
+                w.grouped = null;
+                w.groups = null;
+            }
+        }
+        this.grouped = grouped;
+
+        Map<NodeKey, VirtualNode> virtualNodes = new HashMap<>(groups.size());
+        groups.forEach((key, partial) -> {
+            VirtualNode node = new VirtualNode(new Label[] {Label.label(key.label)}, key.values);
+            partial.writeTo(node);
+            virtualNodes.put(key, node);
+        });
+        return virtualNodes;
+    }
+
+    /**
+     * Creates the virtual relationships between the groups of {@link #groupNodes()}
+     */
+    void groupRelationships(Map<NodeKey, VirtualNode> virtualNodes) {
+        if (grouped == null || grouped.isEmpty()) return;
+        Queue<RelWorker> workers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<RelWorker> worker = ThreadLocal.withInitial(() -> register(workers, new RelWorker()));
+        if (walkChains()) {
+            // each relationship between two grouped nodes is in the outgoing chain of its start node
+            RelationshipSelection outgoing = RelationshipSelection.selection(Direction.OUTGOING);
+            scan(
+                    "relationships",
+                    (BiConsumer<KernelTransaction, NodeCursor> consumer) -> forNodes(grouped, consumer),
+                    (ktx, node) -> {
+                        try (RelationshipTraversalCursor rels =
+                                ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext())) {
+                            node.relationships(rels, outgoing);
+                            while (rels.next()) {
+                                worker.get().accept(ktx, rels);
+                            }
+                        }
+                    });
+        } else {
+            scan(
+                    "relationships",
+                    (BiConsumer<KernelTransaction, RelationshipScanCursor> consumer) ->
+                            MultiThreadedGlobalGraphOperations.forAllRelationships(db, pool, batchSize, consumer),
+                    (ktx, rel) -> worker.get().accept(ktx, rel));
+        }
+
+        Map<RelKey, Partial> groups = new HashMap<>();
+        for (RelWorker w : workers) {
+            w.groups.forEach((key, partial) -> groups.merge(key, partial, Partial::merge));
+            w.groups = null;
+        }
+        groups.forEach((key, partial) -> {
+            VirtualNode start = virtualNodes.get(key.startKey);
+            VirtualNode end = virtualNodes.get(key.endKey);
+            // the nodes have been changed since we grouped them
+            if (start == null || end == null) return;
+            VirtualRelationship rel = start.createRelationshipTo(end, RelationshipType.withName(key.type));
+            partial.writeTo(rel);
+        });
+    }
+
+    /**
+     * Passes the nodes which may have one of the labels to the consumer,
+     * the ids read from the label index being released once they're all read
+     */
+    private void forLabelledNodes(BiConsumer<KernelTransaction, NodeCursor> consumer) {
+        Roaring64NavigableMap labelled = labelledNodes();
+        if (labelled == null) {
+            MultiThreadedGlobalGraphOperations.forAllNodes(db, pool, batchSize, consumer);
+        } else {
+            forNodes(labelled, consumer);
+        }
+    }
+
+    /**
+     * @return the ids of the nodes with any of the labels, read from the label index,
+     * or null to scan the node store if all the labels were requested or there's no online label index
+     */
+    private Roaring64NavigableMap labelledNodes() {
+        if (allLabels) return null;
+        IndexDescriptor index =
+                Iterators.firstOrNull(ktx.schemaRead().index(SchemaDescriptors.forAnyEntityTokens(EntityType.NODE)));
+        if (index == null) return null;
+        try {
+            if (ktx.schemaRead().indexGetState(index) != InternalIndexState.ONLINE) return null;
+            Read read = ktx.dataRead();
+            TokenReadSession session = read.tokenReadSession(index);
+            Roaring64NavigableMap ids = new Roaring64NavigableMap();
+            try (NodeLabelIndexCursor cursor = ktx.cursors().allocateNodeLabelIndexCursor(ktx.cursorContext())) {
+                for (int label : labels) {
+                    read.nodeLabelScan(
+                            session,
+                            cursor,
+                            IndexQueryConstraints.unconstrained(),
+                            new TokenPredicate(label),
+                            ktx.cursorContext());
+                    while (cursor.next()) {
+                        ids.addLong(cursor.nodeReference());
+                    }
+                }
+            }
+            return ids;
+        } catch (KernelException e) {
+            log.warn("Cannot read the label index, grouping the nodes with a scan of the node store", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if walking the relationship chains of the grouped nodes reads fewer relationships than a store scan,
+     * each relationship being in the chains of both its nodes
+     */
+    private boolean walkChains() {
+        Read read = ktx.dataRead();
+        long relationships = read.relationshipsGetCount();
+        double walked = 2.0 * relationships * grouped.getLongCardinality() / Math.max(1, read.nodesGetCount());
+        return walked * CHAIN_WALK_RATIO < relationships;
+    }
+
+    /**
+     * Like {@link MultiThreadedGlobalGraphOperations#forAllNodes} for the given nodes only,
+     * but no more batches are submitted after the first failure, which is rethrown once the running ones are done.
+     * The batches are built while iterating the ids, with at most two of them per processor in flight
+     */
+    private void forNodes(Roaring64NavigableMap ids, BiConsumer<KernelTransaction, NodeCursor> consumer) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        LongIterator iterator = ids.getLongIterator();
+        int capacity = (int) Math.min(batchSize, ids.getLongCardinality());
+        try {
+            while (iterator.hasNext() && failure.get() == null) {
+                long[] batch = new long[capacity];
+                int size = 0;
+                while (size < batch.length && iterator.hasNext()) {
+                    batch[size++] = iterator.next();
+                }
+                long[] nodes = size == batch.length ? batch : Arrays.copyOf(batch, size);
+                inFlight.acquire();
+                try {
+                    pool.submit(() -> {
+                        try {
+                            readNodes(nodes, consumer);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            // waits for the last batches
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (failure.get() != null) throw failure.get();
+    }
+
+    private void readNodes(long[] nodes, BiConsumer<KernelTransaction, NodeCursor> consumer) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext())) {
+                for (long id : nodes) {
+                    ktx.dataRead().singleNode(id, node);
+                    if (!node.next()) continue;
+                    consumer.accept(ktx, node);
+                }
+            }
+            tx.commit();
+        }
+    }
+
+    private static <T> T register(Queue<T> workers, T worker) {
+        workers.add(worker);
+        return worker;
+    }
+
+    /**
+     * The batch jobs of the store scans only count the failures and go on with the other entities,
+     * so we keep the first one to fail the grouping with it, instead of returning groups missing some entities
+     */
+    private <C> void scan(
+            String entities,
+            Consumer<BiConsumer<KernelTransaction, C>> operation,
+            BiConsumer<KernelTransaction, C> consumer) {
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            operation.accept((ktx, cursor) -> {
+                try {
+                    consumer.accept(ktx, cursor);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            });
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException("Error grouping " + entities, failure.get());
+        }
+    }
+
+    private List<NodeKey> keysFor(Object[] values, NodeCursor node) {
+        Map<String, Object> groupValues = null;
+        List<NodeKey> result = Collections.emptyList();
+        for (int i = 0; i < labels.length; i++) {
+            if (!node.hasLabel(labels[i])) continue;
+            if (groupValues == null) {
+                groupValues = new HashMap<>(keys.length);
+                for (int k = 0; k < keys.length; k++) {
+                    groupValues.put(keys[k], values[k]);
+                }
+                result = new ArrayList<>(1);
+            }
+            result.add(new NodeKey(labelNames[i], groupValues));
+        }
+        return result;
+    }
+
+    private class NodeWorker {
+        Roaring64NavigableMap grouped = new Roaring64NavigableMap();
+        Map<NodeKey, Partial> groups = new HashMap<>();
+
+        void accept(KernelTransaction ktx, NodeCursor node) {
+            if (!hasAnyLabel(node)) return;
+            Object[] values;
+            try (PropertyCursor properties =
+                    ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker())) {
+                values = nodeReader.read(node, properties);
+            }
+            for (NodeKey key : keysFor(values, node)) {
+                groups.computeIfAbsent(key, k -> new Partial(nodeAggregations)).add(values);
+            }
+            grouped.addLong(node.nodeReference());
+        }
+
+        private boolean hasAnyLabel(NodeCursor node) {
+            for (int label : labels) {
+                if (node.hasLabel(label)) return true;
+            }
+            return false;
+        }
+    }
+
+    private class RelWorker {
+        Map<RelKey, Partial> groups = new HashMap<>();
+
+        void accept(KernelTransaction ktx, RelationshipDataAccessor rel) {
+            if (!includedTypes.get(rel.type())) return;
+            if (!grouped.contains(rel.sourceNodeReference()) || !grouped.contains(rel.targetNodeReference())) return;
+            String type = typeNames.get(rel.type());
+
+            try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+                    PropertyCursor properties =
+                            ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker())) {
+                List<NodeKey> startKeys = keysFor(ktx, rel.sourceNodeReference(), node, properties);
+                if (startKeys.isEmpty()) return;
+                List<NodeKey> endKeys = keysFor(ktx, rel.targetNodeReference(), node, properties);
+                if (endKeys.isEmpty()) return;
+                Object[] values = relReader.read(rel, properties);
+                for (NodeKey startKey : startKeys) {
+                    for (NodeKey endKey : endKeys) {
+                        if (!selfRels && startKey.equals(endKey)) continue;
+                        groups.computeIfAbsent(new RelKey(startKey, endKey, type), k -> new Partial(relAggregations))
+                                .add(values);
+                    }
+                }
+            }
+        }
+
+        private List<NodeKey> keysFor(KernelTransaction ktx, long nodeId, NodeCursor node, PropertyCursor properties) {
+            ktx.dataRead().singleNode(nodeId, node);
+            if (!node.next()) return Collections.emptyList();
+            return GroupScanner.this.keysFor(keyReader.read(node, properties), node);
+        }
+    }
+
+    /**
+     * Reads a fixed list of properties of the entities, the missing ones are null
+     */
+    private static class PropertyReader {
+        private final int[] tokens;
+        private final PropertySelection selection;
+
+        PropertyReader(TokenRead tokenRead, String[] names) {
+            this.tokens = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                tokens[i] = tokenRead.propertyKey(names[i]);
+            }
+            this.selection = names.length == 0 ? null : PropertySelection.selection(tokens);
+        }
+
+        Object[] read(EntityCursor entity, PropertyCursor properties) {
+            if (tokens.length == 0) return new Object[0];
+            entity.properties(properties, selection);
+            return values(properties);
+        }
+
+        Object[] read(RelationshipDataAccessor rel, PropertyCursor properties) {
+            if (tokens.length == 0) return new Object[0];
+            rel.properties(properties, selection);
+            return values(properties);
+        }
+
+        private Object[] values(PropertyCursor properties) {
+            Object[] values = new Object[tokens.length];
+            while (properties.next()) {
+                int key = properties.propertyKey();
+                for (int i = 0; i < tokens.length; i++) {
+                    if (tokens[i] == key) values[i] = properties.propertyValue().asObjectCopy();
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * The aggregations of the nodes or of the relationships, like `{age:['min','max'], `*`:'count'}`,
+     * each one with the name of its result, like `min_age`, and the index of its property in the values read
+     */
+    static class Aggregations {
+        final String[] names;
+        final String[] functions;
+        final int[] properties;
+
+        Aggregations(Map<String, List<String>> aggregations, String[] propertyNames) {
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < propertyNames.length; i++) {
+                indexes.putIfAbsent(propertyNames[i], i);
+            }
+            Map<String, Integer> byName = new LinkedHashMap<>();
+            List<String> functions = new ArrayList<>();
+            List<Integer> properties = new ArrayList<>();
+            aggregations.forEach((key, aggNames) -> {
+                for (String aggName : aggNames) {
+                    if (byName.putIfAbsent(aggName + "_" + key, byName.size()) != null) continue;
+                    functions.add(aggName);
+                    properties.add("*".equals(key) ? -1 : indexes.get(key));
+                }
+            });
+            this.names = byName.keySet().toArray(new String[0]);
+            this.functions = functions.toArray(new String[0]);
+            this.properties = properties.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * The partial aggregates of a group: for each aggregation the number of values seen,
+     * their sum, minimum or maximum, and the collected values
+     */
+    static class Partial {
+        private final Aggregations aggregations;
+        private final long[] counts;
+        private final double[] values;
+        private final List<Object>[] collected;
+
+        Partial(Aggregations aggregations) {
+            this.aggregations = aggregations;
+            int size = aggregations.functions.length;
+            this.counts = new long[size];
+            this.values = new double[size];
+            this.collected = new List[size];
+        }
+
+        void add(Object[] properties) {
+            for (int i = 0; i < counts.length; i++) {
+                int property = aggregations.properties[i];
+                String function = aggregations.functions[i];
+                if (property < 0) {
+                    // only `count_*` is defined over all the entities
+                    if ("count".equals(function)) counts[i]++;
+                    continue;
+                }
+                Object value = properties[property];
+                if (value == null) continue;
+                switch (function) {
+                    case "count":
+                        counts[i]++;
+                        break;
+                    case "collect":
+                        if (collected[i] == null) collected[i] = new ArrayList<>();
+                        collected[i].add(value);
+                        counts[i]++;
+                        break;
+                    case "sum":
+                    case "avg":
+                    case "min":
+                    case "max":
+                        Double number = Util.toDouble(value);
+                        if (number != null) accumulate(i, function, number, 1);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void accumulate(int i, String function, double value, long count) {
+            switch (function) {
+                case "min":
+                    values[i] = counts[i] == 0 ? value : Math.min(values[i], value);
+                    break;
+                case "max":
+                    values[i] = counts[i] == 0 ? value : Math.max(values[i], value);
+                    break;
+                default:
+                    values[i] += value;
+            }
+            counts[i] += count;
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < counts.length; i++) {
+                if (other.counts[i] == 0) continue;
+                switch (aggregations.functions[i]) {
+                    case "count":
+                        counts[i] += other.counts[i];
+                        break;
+                    case "collect":
+                        if (collected[i] == null) collected[i] = new ArrayList<>();
+                        collected[i].addAll(other.collected[i]);
+                        counts[i] += other.counts[i];
+                        break;
+                    default:
+                        accumulate(i, aggregations.functions[i], other.values[i], other.counts[i]);
+                }
+            }
+            return this;
+        }
+
+        void writeTo(Entity entity) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) continue;
+                String name = aggregations.names[i];
+                switch (aggregations.functions[i]) {
+                    case "count":
+                        entity.setProperty(name, counts[i]);
+                        break;
+                    case "collect":
+                        entity.setProperty(name, collected[i].toArray());
+                        break;
+                    case "avg":
+                        entity.setProperty(name, values[i] / counts[i]);
+                        break;
+                    default:
+                        // integral sums, minimums and maximums are returned as integers
+                        double value = values[i];
+                        entity.setProperty(name, value == (long) value ? (Object) (long) value : (Object) value);
+                }
+            }
+        }
+    }
+}
@@ -23,16 +23,13 @@ import static java.util.Collections.*;
 import apoc.Description;
 import apoc.Pools;
 import apoc.result.VirtualNode;
-import apoc.result.VirtualRelationship;
-import apoc.util.Util;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.neo4j.graphdb.*;
 import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
@@ -47,7 +44,7 @@ public class Grouping {
     private static final int BATCHSIZE = 10000;
 
     @Context
-    public GraphDatabaseService db;
+    public GraphDatabaseAPI db;
 
     @Context
     public Transaction tx;
@@ -94,7 +91,8 @@ public class Grouping {
             @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
 
         Set<String> labels = new HashSet<>(labelNames);
-        if (labels.remove("*"))
+        boolean allLabels = labels.remove("*");
+        if (allLabels)
             labels.addAll(Iterables.stream(tx.getAllLabels()).map(Label::name).collect(Collectors.toSet()));
 
         String[] keys = groupByProperties.toArray(new String[groupByProperties.size()]);
@@ -104,13 +102,10 @@ public class Grouping {
         }
         Map<String, List<String>> nodeAggNames =
                 (aggregations.size() > 0) ? toStringListMap(aggregations.get(0)) : emptyMap();
-        String[] nodeAggKeys = keyArray(nodeAggNames, "*");
 
         Map<String, List<String>> relAggNames =
                 (aggregations.size() > 1) ? toStringListMap(aggregations.get(1)) : emptyMap();
-        String[] relAggKeys = keyArray(relAggNames, "*");
 
-        // todo bitset
         Set<String> includeRels = computeIncludedRels(config);
 
         /*
@@ -127,111 +122,23 @@ public class Grouping {
         // also filter (esp. max) during aggregation?
         Map<String, Number> filter = configuredFilter(config);
 
-        Map<NodeKey, Set<Node>> grouped = new ConcurrentHashMap<>();
-        Map<NodeKey, VirtualNode> virtualNodes = new ConcurrentHashMap<>();
-        Map<RelKey, VirtualRelationship> virtualRels = new ConcurrentHashMap<>();
-
-        List<Future> futures = new ArrayList<>(1000);
-
-        ExecutorService pool = pools.getDefaultExecutorService();
-        for (String labelName : labels) {
-            Label label = Label.label(labelName);
-            Label[] singleLabel = {label};
-
-            try (ResourceIterator<Node> nodes =
-                    (labelName.equals("*")) ? tx.getAllNodes().iterator() : tx.findNodes(label)) {
-                while (nodes.hasNext()) {
-                    List<Node> batch = Util.take(nodes, BATCHSIZE);
-                    futures.add(Util.inTxFuture(pool, db, txInThread -> {
-                        try {
-                            for (Node node : batch) {
-                                final Node boundNode = Util.rebind(txInThread, node);
-                                NodeKey key = keyFor(boundNode, labelName, keys);
-                                grouped.compute(key, (k, v) -> {
-                                    if (v == null) v = new HashSet<>();
-                                    v.add(boundNode);
-                                    return v;
-                                });
-                                virtualNodes.compute(key, (k, v) -> {
-                                    if (v == null) {
-                                        v = new VirtualNode(singleLabel, propertiesFor(boundNode, keys));
-                                    }
-                                    VirtualNode vn = v;
-                                    if (!nodeAggNames.isEmpty()) {
-                                        aggregate(
-                                                vn,
-                                                nodeAggNames,
-                                                nodeAggKeys.length > 0
-                                                        ? boundNode.getProperties(nodeAggKeys)
-                                                        : Collections.emptyMap());
-                                    }
-                                    return vn;
-                                });
-                            }
-                        } catch (Exception e) {
-                            log.error("Error grouping nodes", e);
-                        }
-                        return null;
-                    }));
-                    Util.removeFinished(futures);
-                }
-            }
-        }
-        Util.waitForFutures(futures);
-        futures.clear();
-        Iterator<Map.Entry<NodeKey, Set<Node>>> entries = grouped.entrySet().iterator();
-        int size = 0;
-        List<Map.Entry<NodeKey, Set<Node>>> batch = new ArrayList<>();
-        while (entries.hasNext()) {
-            Map.Entry<NodeKey, Set<Node>> outerEntry = entries.next();
-            batch.add(outerEntry);
-            size += outerEntry.getValue().size();
-            if (size > BATCHSIZE || !entries.hasNext()) {
-                ArrayList<Map.Entry<NodeKey, Set<Node>>> submitted = new ArrayList<>(batch);
-                batch.clear();
-                size = 0;
-                futures.add(Util.inTxFuture(pool, db, txInThread -> {
-                    try {
-                        for (Map.Entry<NodeKey, Set<Node>> entry : submitted) {
-                            for (Node node : entry.getValue()) {
-                                node = Util.rebind(txInThread, node);
-                                NodeKey startKey = entry.getKey();
-                                VirtualNode v1 = virtualNodes.get(startKey);
-                                for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
-                                    if (includeRels != null
-                                            && !includeRels.contains(
-                                                    rel.getType().name())) continue;
-                                    Node endNode = rel.getEndNode();
-                                    for (NodeKey endKey : keysFor(endNode, labels, keys)) {
-                                        VirtualNode v2 = virtualNodes.get(endKey);
-                                        if (v2 == null) continue;
-                                        if (!selfRels && startKey.equals(endKey)) continue;
-                                        virtualRels.compute(new RelKey(startKey, endKey, rel), (rk, vRel) -> {
-                                            if (vRel == null) vRel = v1.createRelationshipTo(v2, rel.getType());
-                                            if (!relAggNames.isEmpty()) {
-                                                aggregate(
-                                                        vRel,
-                                                        relAggNames,
-                                                        relAggKeys.length > 0
-                                                                ? rel.getProperties(relAggKeys)
-                                                                : Collections.emptyMap());
-                                            }
-                                            return vRel;
-                                        });
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.error("Error grouping relationships", e);
-                    }
-                    return null;
-                }));
-                Util.removeFinished(futures);
-            }
-        }
-        Util.waitForFutures(futures);
-        Stream<VirtualNode> stream = fixAggregates(virtualNodes.values()).stream();
+        GroupScanner scanner = new GroupScanner(
+                db,
+                ((InternalTransaction) tx).kernelTransaction(),
+                pools.getDefaultExecutorService(),
+                BATCHSIZE,
+                log,
+                labels,
+                keys,
+                nodeAggNames,
+                relAggNames,
+                includeRels,
+                selfRels,
+                allLabels);
+        Map<NodeKey, VirtualNode> virtualNodes = scanner.groupNodes();
+        scanner.groupRelationships(virtualNodes);
+
+        Stream<VirtualNode> stream = virtualNodes.values().stream();
         // apply filter
         if (filter != null) stream = stream.filter(n -> filter(n.getLabels(), n.getAllProperties(), filter));
         if (limitNodes > -1) stream = stream.limit(limitNodes);
@@ -315,12 +222,6 @@ public class Grouping {
         return nodeAggNames;
     }
 
-    private String[] keyArray(Map<String, ?> map, String... removeKeys) {
-        List<String> keys = new ArrayList<>(map.keySet());
-        for (String key : removeKeys) keys.remove(key);
-        return keys.toArray(new String[keys.size()]);
-    }
-
     private <C extends Collection<T>, T extends Entity> C fixAggregates(C pcs) {
         for (Entity pc : pcs) {
             pc.getAllProperties().entrySet().forEach((entry) -> {
@@ -342,116 +243,13 @@ public class Grouping {
         return pcs;
     }
 
-    private void aggregate(Entity pc, Map<String, List<String>> aggregations, Map<String, Object> properties) {
-        aggregations.forEach((k2, aggNames) -> {
-            for (String aggName : aggNames) {
-                String key = aggName + "_" + k2;
-                if ("count_*".equals(key)) {
-                    pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
-                } else {
-                    Object value = properties.get(k2);
-                    if (value != null) {
-                        switch (aggName) {
-                            case "collect":
-                                List<Object> existing = (List<Object>) pc.getProperty(key, new ArrayList<>());
-                                existing.add(value);
-                                pc.setProperty(key, existing);
-                                break;
-                            case "count":
-                                pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
-                                break;
-                            case "sum":
-                                pc.setProperty(
-                                        key, ((Number) pc.getProperty(key, 0)).doubleValue() + Util.toDouble(value));
-                                break;
-                            case "min":
-                                pc.setProperty(
-                                        key,
-                                        Math.min(
-                                                ((Number) pc.getProperty(key, Double.MAX_VALUE)).doubleValue(),
-                                                Util.toDouble(value)));
-                                break;
-                            case "max":
-                                pc.setProperty(
-                                        key,
-                                        Math.max(
-                                                ((Number) pc.getProperty(key, Double.MIN_VALUE)).doubleValue(),
-                                                Util.toDouble(value)));
-                                break;
-                            case "avg": {
-                                double[] avg = (double[]) pc.getProperty(key, new double[2]);
-                                avg[0] += Util.toDouble(value);
-                                avg[1] += 1;
-                                pc.setProperty(key, avg);
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-        });
-    }
-
-    /**
-     * Returns the properties for the given node according to the specified keys. If a node does not have a property
-     * assigned to given key, the value is set to {@code null}.
-     *
-     * @param node node
-     * @param keys property keys
-     * @return node properties for keys
-     */
-    private Map<String, Object> propertiesFor(Node node, String[] keys) {
-        Map<String, Object> props = new HashMap<>(keys.length);
-
-        for (String key : keys) {
-            props.put(key, node.getProperty(key, null));
-        }
-
-        return props;
-    }
-
-    /**
-     * Creates a grouping key for the given node using its label and grouping properties.
-     *
-     * @param node  node
-     * @param label node label
-     * @param keys  property keys
-     * @return grouping key
-     */
-    private NodeKey keyFor(Node node, String label, String[] keys) {
-        return new NodeKey(label, propertiesFor(node, keys));
-    }
-
-    /**
-     * Creates a grouping key for each specified label.
-     *
-     * @param node   node
-     * @param labels node labels
-     * @param keys   property keys
-     * @return grouping keys
-     */
-    private Collection<NodeKey> keysFor(Node node, Collection<String> labels, String[] keys) {
-        Map<String, Object> props = propertiesFor(node, keys);
-        List<NodeKey> result = new ArrayList<>(labels.size());
-        if (labels.contains("*")) {
-            result.add(new NodeKey("*", props));
-        } else {
-            for (Label label : node.getLabels()) {
-                if (labels.contains(label.name())) {
-                    result.add(new NodeKey(label.name(), props));
-                }
-            }
-        }
-        return result;
-    }
-
     /**
      * Represents a grouping key for nodes.
      */
     static class NodeKey {
         private final int hash;
-        private final String label;
-        private final Map<String, Object> values;
+        final String label;
+        final Map<String, Object> values;
 
         NodeKey(String label, Map<String, Object> values) {
             this.label = label;
@@ -477,16 +275,16 @@ public class Grouping {
     /**
      * Represents a grouping key for relationships.
      */
-    private static class RelKey {
+    static class RelKey {
         private final int hash;
-        private final NodeKey startKey;
-        private final NodeKey endKey;
-        private final String type;
+        final NodeKey startKey;
+        final NodeKey endKey;
+        final String type;
 
-        RelKey(NodeKey startKey, NodeKey endKey, Relationship rel) {
+        RelKey(NodeKey startKey, NodeKey endKey, String type) {
             this.startKey = startKey;
             this.endKey = endKey;
-            this.type = rel.getType().name();
+            this.type = type;
             hash = 31 * (31 * startKey.hashCode() + endKey.hashCode()) + type.hashCode();
         }
 
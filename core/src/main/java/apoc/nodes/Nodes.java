@@ -36,7 +36,6 @@ import apoc.result.VirtualPath;
 import apoc.result.VirtualPathResult;
 import apoc.util.Util;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -64,11 +63,7 @@ import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.internal.helpers.collection.Pair;
-import org.neo4j.internal.kernel.api.CursorFactory;
 import org.neo4j.internal.kernel.api.NodeCursor;
-import org.neo4j.internal.kernel.api.Read;
-// import org.neo4j.internal.kernel.api.RelationshipGroupCursor;
-import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
 import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.procedure.Context;
@@ -77,7 +72,6 @@ import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 import org.neo4j.procedure.UserFunction;
-import org.neo4j.storageengine.api.RelationshipSelection;
 
 public class Nodes {
 
@@ -248,38 +242,47 @@ public class Nodes {
         if (start == null || end == null) return false;
         if (start.equals(end)) return true;
 
-        long startId = start.getId();
-        long endId = end.getId();
-        List<Pair<RelationshipType, Direction>> pairs = (types == null || types.isEmpty()) ? null : parse(types);
+        try (ConnectionChecker checker = new ConnectionChecker(ktx, typesAndDirections(types))) {
+            return checker.connected(start.getId(), end.getId());
+        }
+    }
 
-        Read dataRead = ktx.dataRead();
-        TokenRead tokenRead = ktx.tokenRead();
-        CursorFactory cursors = ktx.cursors();
+    private static List<Pair<RelationshipType, Direction>> typesAndDirections(String types) {
+        return (types == null || types.isEmpty()) ? null : parse(types);
+    }
 
-        try (NodeCursor startNodeCursor = cursors.allocateNodeCursor(ktx.cursorContext());
-                NodeCursor endNodeCursor = cursors.allocateNodeCursor(ktx.cursorContext())) {
+    public static class ConnectedResult {
+        public Node start;
+        public Node end;
+        public boolean connected;
 
-            dataRead.singleNode(startId, startNodeCursor);
-            if (!startNodeCursor.next()) {
-                throw new IllegalArgumentException("node with id " + startId + " does not exist.");
-            }
+        public ConnectedResult(Node start, Node end, boolean connected) {
+            this.start = start;
+            this.end = end;
+            this.connected = connected;
+        }
+    }
 
-            //            boolean startDense = startNodeCursor.supportsFastDegreeLookup();
-            dataRead.singleNode(endId, endNodeCursor);
-            if (!endNodeCursor.next()) {
-                throw new IllegalArgumentException("node with id " + endId + " does not exist.");
+    @Procedure("apoc.nodes.connectedMany")
+    @Description(
+            "apoc.nodes.connectedMany([[start, end], ...], rel-direction-pattern) yield start, end, connected - checks for each pair of nodes whether they are connected, like apoc.nodes.connected, reusing the same cursors for all the pairs")
+    public Stream<ConnectedResult> connectedMany(
+            @Name("pairs") List<List<Node>> pairs, @Name(value = "types", defaultValue = "") String types) {
+        if (pairs == null || pairs.isEmpty()) return Stream.empty();
+        List<ConnectedResult> results = new ArrayList<>(pairs.size());
+        try (ConnectionChecker checker = new ConnectionChecker(ktx, typesAndDirections(types))) {
+            for (List<Node> pair : pairs) {
+                if (pair == null || pair.size() != 2) {
+                    throw new IllegalArgumentException(
+                            "Each pair must be a list of two nodes, [start, end], but it was: " + pair);
+                }
+                Node start = pair.get(0);
+                Node end = pair.get(1);
+                boolean connected = start != null && end != null && checker.connected(start.getId(), end.getId());
+                results.add(new ConnectedResult(start, end, connected));
             }
-            //            boolean endDense = endNodeCursor.supportsFastDegreeLookup();
-
-            return connected(startNodeCursor, endId, typedDirections(tokenRead, pairs, true));
-
-            //            if (!startDense) return connected(startNodeCursor, endId, typedDirections(tokenRead, pairs,
-            // true));
-            //            if (!endDense) return connected(endNodeCursor, startId, typedDirections(tokenRead, pairs,
-            // false));
-            //            return connectedDense(startNodeCursor, endNodeCursor, typedDirections(tokenRead, pairs,
-            // true));
         }
+        return results.stream();
     }
 
     @Procedure
@@ -371,151 +374,6 @@ public class Nodes {
         PropertiesManager.mergeProperties(source.getAllProperties(), target, refactorConfig);
     }
 
-    /**
-     * TODO: be more efficient, in
-     * @param start
-     * @param end
-     * @param typedDirections
-     * @return
-     */
-    private boolean connected(NodeCursor start, long end, int[][] typedDirections) {
-        try (RelationshipTraversalCursor relationship =
-                ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext())) {
-            start.relationships(relationship, RelationshipSelection.selection(Direction.BOTH));
-            while (relationship.next()) {
-                if (relationship.otherNodeReference() == end) {
-                    if (typedDirections == null) {
-                        return true;
-                    } else {
-                        int direction = relationship.targetNodeReference() == end ? 0 : 1;
-                        int[] types = typedDirections[direction];
-                        if (arrayContains(types, relationship.type())) return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean arrayContains(int[] array, int element) {
-        for (int i = 0; i < array.length; i++) {
-            if (array[i] == element) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     *
-     * @param ops
-     * @param pairs
-     * @param outgoing
-     * @return a int[][] where the first index is 0 for outgoing, 1 for incoming. second array contains rel type ids
-     */
-    private int[][] typedDirections(TokenRead ops, List<Pair<RelationshipType, Direction>> pairs, boolean outgoing) {
-        if (pairs == null) return null;
-        int from = 0;
-        int to = 0;
-        int[][] result = new int[2][pairs.size()];
-        int outIdx = Direction.OUTGOING.ordinal();
-        int inIdx = Direction.INCOMING.ordinal();
-        for (Pair<RelationshipType, Direction> pair : pairs) {
-            int type = ops.relationshipType(pair.first().name());
-            if (type == -1) continue;
-            if (pair.other() != Direction.INCOMING) {
-                result[outIdx][from++] = type;
-            }
-            if (pair.other() != Direction.OUTGOING) {
-                result[inIdx][to++] = type;
-            }
-        }
-        result[outIdx] = Arrays.copyOf(result[outIdx], from);
-        result[inIdx] = Arrays.copyOf(result[inIdx], to);
-        if (!outgoing) {
-            int[] tmp = result[outIdx];
-            result[outIdx] = result[inIdx];
-            result[inIdx] = tmp;
-        }
-        return result;
-    }
-
-    static class Degree implements Comparable<Degree> {
-        public final long node;
-        private final long group;
-        public final int degree;
-        public final long other;
-
-        public Degree(long node, long group, int degree, long other) {
-            this.node = node;
-            this.group = group;
-            this.degree = degree;
-            this.other = other;
-        }
-
-        @Override
-        public int compareTo(Degree o) {
-            return Integer.compare(degree, o.degree);
-        }
-
-        public boolean isConnected(Read read, RelationshipTraversalCursor relationship) {
-            read.relationships(node, group, RelationshipSelection.ALL_RELATIONSHIPS, relationship);
-            while (relationship.next()) {
-                if (relationship.otherNodeReference() == other) {
-                    return true;
-                }
-            }
-            return false;
-        }
-    }
-
-    //    private boolean connectedDense(NodeCursor start, NodeCursor end, int[][] typedDirections) {
-    //        List<Degree> degrees = new ArrayList<>(32);
-    //
-    //        Read read = ktx.dataRead();
-    //
-    //        try (RelationshipGroupCursor relationshipGroup = ktx.cursors().allocateRelationshipGroupCursor()) {
-    //            addDegreesForNode(read, start, end, degrees, relationshipGroup, typedDirections);
-    //            addDegreesForNode(read, end, start, degrees, relationshipGroup, typedDirections);
-    //        }
-    //
-    //
-    //        Collections.sort(degrees);
-    //        try (RelationshipTraversalCursor relationship = ktx.cursors().allocateRelationshipTraversalCursor()) {
-    //            for (Degree degree : degrees) {
-    //                if (degree.isConnected(ktx.dataRead(), relationship)) return true;
-    //            }
-    //            return false;
-    //        }
-    //    }
-    //
-    //    private void addDegreesForNode(Read dataRead, NodeCursor node, NodeCursor other, List<Degree> degrees,
-    // RelationshipGroupCursor relationshipGroup, int[][] typedDirections) {
-    //        long nodeId = node.nodeReference();
-    //        long otherId = other.nodeReference();
-    //
-    //        dataRead.relationshipGroups(nodeId, node.relationshipGroupReference(), relationshipGroup);
-    //        while (relationshipGroup.next()) {
-    //            int type = relationshipGroup.type();
-    //            if ((typedDirections==null) || (arrayContains(typedDirections[0], type))) {
-    //                addDegreeWithDirection(degrees, relationshipGroup.outgoingReference(),
-    // relationshipGroup.outgoingCount(), nodeId, otherId);
-    //            }
-    //
-    //            if ((typedDirections==null) || (arrayContains(typedDirections[1], type))) {
-    //                addDegreeWithDirection(degrees, relationshipGroup.incomingReference(),
-    // relationshipGroup.incomingCount(), nodeId, otherId);
-    //            }
-    //        }
-    //    }
-
-    private void addDegreeWithDirection(
-            List<Degree> degrees, long relationshipGroup, int degree, long nodeId, long otherId) {
-        if (degree > 0) {
-            degrees.add(new Degree(nodeId, relationshipGroup, degree, otherId));
-        }
-    }
-
     @UserFunction("apoc.node.labels")
     @Description("returns labels for (virtual) nodes")
     public List<String> labels(@Name("node") Node node) {
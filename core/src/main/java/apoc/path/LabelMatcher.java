@@ -20,6 +20,8 @@ package apoc.path;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
 
 /**
  * A generic label matcher which evaluates whether or not a node has at least one of the labels added on the matcher.
@@ -38,6 +40,8 @@ import java.util.stream.Collectors;
 public class LabelMatcher {
     private List<String> labels = new ArrayList<>();
     private List<List<String>> compoundLabels;
+    private int[] labelTokens;
+    private int[][] compoundLabelTokens;
 
     private static LabelMatcher ACCEPTS_ALL_LABEL_MATCHER = new LabelMatcher() {
         @Override
@@ -45,6 +49,14 @@ public class LabelMatcher {
             return true;
         }
 
+        @Override
+        boolean matches(NodeCursor node) {
+            return true;
+        }
+
+        @Override
+        void resolve(TokenRead tokenRead) {}
+
         @Override
         public LabelMatcher addLabel(String label) {
             return this; // no-op
@@ -110,6 +122,55 @@ public class LabelMatcher {
         return false;
     }
 
+    /**
+     * Resolves the labels to their token ids, so that nodes can be matched through {@link #matches(NodeCursor)}.
+     * Labels which don't exist are dropped, as are the compound labels containing them, as no node can have them.
+     */
+    void resolve(TokenRead tokenRead) {
+        labelTokens = labels.stream()
+                .mapToInt(tokenRead::nodeLabel)
+                .filter(token -> token != TokenRead.NO_TOKEN)
+                .toArray();
+        if (compoundLabels == null) {
+            compoundLabelTokens = new int[0][];
+            return;
+        }
+        compoundLabelTokens = compoundLabels.stream()
+                .map(compoundLabel ->
+                        compoundLabel.stream().mapToInt(tokenRead::nodeLabel).toArray())
+                .filter(tokens -> Arrays.stream(tokens).noneMatch(token -> token == TokenRead.NO_TOKEN))
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * The same as {@link #matchesLabels(Set)}, for a node cursor positioned on the node
+     * and a matcher {@link #resolve(TokenRead) resolved} in the same transaction
+     */
+    boolean matches(NodeCursor node) {
+        for (int token : labelTokens) {
+            if (node.hasLabel(token)) {
+                return true;
+            }
+        }
+
+        for (int[] compoundLabel : compoundLabelTokens) {
+            if (hasAllLabels(node, compoundLabel)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasAllLabels(NodeCursor node, int[] tokens) {
+        for (int token : tokens) {
+            if (!node.hasLabel(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public boolean isEmpty() {
         return labels.isEmpty() && (compoundLabels == null || compoundLabels.isEmpty());
     }
@@ -29,6 +29,8 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
 
 // when no commas present, acts as a pathwide label filter
 public class LabelSequenceEvaluator implements Evaluator {
@@ -90,15 +92,36 @@ public class LabelSequenceEvaluator implements Evaluator {
 
         // if start node shouldn't be filtered, exclude/include based on if using termination/endnode filter or not
         // minLevel evaluator will separately enforce exclusion if we're below minLevel
-        if (depth == 0 && (!filterStartNode || !beginSequenceAtStart)) {
+        if (skipsStartNode(depth)) {
             return whitelistAllowedEvaluation;
         }
 
+        return matcherGroup(depth).evaluate(node, belowMinLevel);
+    }
+
+    /**
+     * The same as {@link #evaluate(Path)}, for a node cursor positioned on the end node of a path of the given depth
+     * and an evaluator {@link #resolve(TokenRead) resolved} in the same transaction
+     */
+    Evaluation evaluate(NodeCursor node, int depth) {
+        if (skipsStartNode(depth)) {
+            return whitelistAllowedEvaluation;
+        }
+
+        return matcherGroup(depth).evaluate(node, depth < minLevel);
+    }
+
+    void resolve(TokenRead tokenRead) {
+        sequenceMatchers.forEach(group -> group.resolve(tokenRead));
+    }
+
+    private boolean skipsStartNode(int depth) {
+        return depth == 0 && (!filterStartNode || !beginSequenceAtStart);
+    }
+
+    private LabelMatcherGroup matcherGroup(int depth) {
         // the user may want the sequence to begin at the start node (default), or the sequence may only apply from the
         // next node on
-        LabelMatcherGroup matcherGroup =
-                sequenceMatchers.get((beginSequenceAtStart ? depth : depth - 1) % sequenceMatchers.size());
-
-        return matcherGroup.evaluate(node, belowMinLevel);
+        return sequenceMatchers.get((beginSequenceAtStart ? depth : depth - 1) % sequenceMatchers.size());
     }
 }
@@ -20,15 +20,17 @@ package apoc.path;
 
 import static apoc.path.PathExplorer.NodeFilter.*;
 
-import apoc.algo.Cover;
+import apoc.Pools;
 import apoc.result.GraphResult;
 import apoc.result.NodeResult;
 import apoc.result.PathResult;
 import apoc.util.Util;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
@@ -40,17 +42,27 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 
 public class PathExplorer {
     public static final Uniqueness UNIQUENESS = Uniqueness.RELATIONSHIP_PATH;
     public static final boolean BFS = true;
 
+    @Context
+    public GraphDatabaseService db;
+
     @Context
     public Transaction tx;
 
     @Context
     public Log log;
 
+    @Context
+    public Pools pools;
+
+    @Context
+    public TerminationGuard terminationGuard;
+
     @Procedure("apoc.path.expand")
     @Description(
             "apoc.path.expand(startNode <id>|Node|list, 'TYPE|TYPE_OUT>|<TYPE_IN', '+YesLabel|-NoLabel', minLevel, maxLevel ) yield path - expand from start node following the given relationships from min to max-level adhering to the label filters")
@@ -102,8 +114,8 @@ public class PathExplorer {
             throw new IllegalArgumentException("minLevel can only be 0 or 1 in subgraphNodes()");
         }
 
-        return expandConfigPrivate(start, configMap)
-                .map(path -> path == null ? new NodeResult(null) : new NodeResult(path.endNode()));
+        return expandSubgraph(start, configMap, Path::endNode, SubgraphExpander::nodes)
+                .map(NodeResult::new);
     }
 
     @Procedure("apoc.path.subgraphAll")
@@ -121,9 +133,9 @@ public class PathExplorer {
             throw new IllegalArgumentException("minLevel can only be 0 or 1 in subgraphAll()");
         }
 
-        List<Node> subgraphNodes =
-                expandConfigPrivate(start, configMap).map(Path::endNode).collect(Collectors.toList());
-        List<Relationship> subgraphRels = Cover.coverNodes(subgraphNodes).collect(Collectors.toList());
+        List<Node> subgraphNodes = expandSubgraph(start, configMap, Path::endNode, SubgraphExpander::nodes)
+                .collect(Collectors.toList());
+        List<Relationship> subgraphRels = SubgraphExpander.cover(tx, subgraphNodes);
 
         return Stream.of(new GraphResult(subgraphNodes, subgraphRels));
     }
@@ -142,7 +154,8 @@ public class PathExplorer {
             throw new IllegalArgumentException("minLevel can only be 0 or 1 in spanningTree()");
         }
 
-        return expandConfigPrivate(start, configMap).map(PathResult::new);
+        return expandSubgraph(start, configMap, Function.identity(), SubgraphExpander::paths)
+                .map(PathResult::new);
     }
 
     private Uniqueness getUniqueness(String uniqueness) {
@@ -199,6 +212,30 @@ public class PathExplorer {
         String sequence = (String) config.getOrDefault("sequence", null);
         boolean beginSequenceAtStart = Util.toBoolean(config.getOrDefault("beginSequenceAtStart", true));
 
+        EnumMap<NodeFilter, List<Node>> nodeFilter = nodeFilter(config);
+
+        Stream<Path> results = explorePathPrivate(
+                nodes,
+                relationshipFilter,
+                labelFilter,
+                minLevel,
+                maxLevel,
+                bfs,
+                getUniqueness(uniqueness),
+                filterStartNode,
+                limit,
+                nodeFilter,
+                sequence,
+                beginSequenceAtStart);
+
+        if (optional) {
+            return optionalStream(results);
+        } else {
+            return results;
+        }
+    }
+
+    private EnumMap<NodeFilter, List<Node>> nodeFilter(Map<String, Object> config) throws Exception {
         List<Node> endNodes = startToNodes(config.get("endNodes"));
         List<Node> terminatorNodes = startToNodes(config.get("terminatorNodes"));
         List<Node> whitelistNodes = startToNodes(config.get("whitelistNodes"));
@@ -221,25 +258,54 @@ public class PathExplorer {
             nodeFilter.put(BLACKLIST_NODES, blacklistNodes);
         }
 
-        Stream<Path> results = explorePathPrivate(
+        return nodeFilter;
+    }
+
+    /**
+     * Expands the subgraph of subgraphNodes, subgraphAll and spanningTree, which have NODE_GLOBAL uniqueness:
+     * breadth first, a {@link SubgraphExpander} returns the same results as the traversal, without creating its branches
+     */
+    private <T> Stream<T> expandSubgraph(
+            Object start,
+            Map<String, Object> config,
+            Function<Path, T> fromPath,
+            Function<SubgraphExpander, Stream<T>> fromExpander)
+            throws Exception {
+        if (!Util.toBoolean(config.getOrDefault("bfs", true))) {
+            return expandConfigPrivate(start, config).map(path -> path == null ? null : fromPath.apply(path));
+        }
+
+        List<Node> nodes = startToNodes(start);
+
+        String relationshipFilter = (String) config.getOrDefault("relationshipFilter", null);
+        String labelFilter = (String) config.getOrDefault("labelFilter", null);
+        long minLevel = Util.toLong(config.getOrDefault("minLevel", "-1"));
+        long maxLevel = Util.toLong(config.getOrDefault("maxLevel", "-1"));
+        boolean filterStartNode = Util.toBoolean(config.getOrDefault("filterStartNode", false));
+        long limit = Util.toLong(config.getOrDefault("limit", "-1"));
+        boolean optional = Util.toBoolean(config.getOrDefault("optional", false));
+        String sequence = (String) config.getOrDefault("sequence", null);
+        boolean beginSequenceAtStart = Util.toBoolean(config.getOrDefault("beginSequenceAtStart", true));
+
+        SubgraphExpander expander = new SubgraphExpander(
+                db,
+                tx,
+                pools.getDefaultExecutorService(),
+                terminationGuard,
                 nodes,
-                relationshipFilter,
-                labelFilter,
+                relationshipExpander(relationshipFilter, sequence, beginSequenceAtStart),
+                labelEvaluator(labelFilter, sequence, filterStartNode, beginSequenceAtStart, minLevel),
                 minLevel,
                 maxLevel,
-                bfs,
-                getUniqueness(uniqueness),
                 filterStartNode,
-                limit,
-                nodeFilter,
-                sequence,
-                beginSequenceAtStart);
+                nodeFilter(config),
+                new SubgraphConfig(config));
 
-        if (optional) {
-            return optionalStream(results);
-        } else {
-            return results;
+        Stream<T> results = fromExpander.apply(expander);
+        if (limit != -1) {
+            results = results.limit(limit);
         }
+        return optional ? optionalStream(results) : results;
     }
 
     private Stream<Path> explorePathPrivate(
@@ -282,13 +348,13 @@ public class PathExplorer {
      * @param stream the input stream
      * @return a stream of a single null value if the input stream is empty, otherwise returns the equivalent of the input stream
      */
-    private Stream<Path> optionalStream(Stream<Path> stream) {
-        Stream<Path> optionalStream;
-        Iterator<Path> itr = stream.iterator();
+    private <T> Stream<T> optionalStream(Stream<T> stream) {
+        Stream<T> optionalStream;
+        Iterator<T> itr = stream.iterator();
         if (itr.hasNext()) {
             optionalStream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(itr, 0), false);
         } else {
-            List<Path> listOfNull = new ArrayList<>();
+            List<T> listOfNull = new ArrayList<>();
             listOfNull.add(null);
             optionalStream = listOfNull.stream();
         }
@@ -313,30 +379,15 @@ public class PathExplorer {
 
         td = bfs ? td.breadthFirst() : td.depthFirst();
 
-        // if `sequence` is present, it overrides `labelFilter` and `relationshipFilter`
-        if (sequence != null && !sequence.trim().isEmpty()) {
-            String[] sequenceSteps = sequence.split(",");
-            List<String> labelSequenceList = new ArrayList<>();
-            List<String> relSequenceList = new ArrayList<>();
-
-            for (int index = 0; index < sequenceSteps.length; index++) {
-                List<String> seq =
-                        (beginSequenceAtStart ? index : index - 1) % 2 == 0 ? labelSequenceList : relSequenceList;
-                seq.add(sequenceSteps[index]);
-            }
-
-            td = td.expand(new RelationshipSequenceExpander(relSequenceList, beginSequenceAtStart));
-            td = td.evaluator(new LabelSequenceEvaluator(
-                    labelSequenceList, filterStartNode, beginSequenceAtStart, (int) minLevel));
-        } else {
-            if (pathFilter != null && !pathFilter.trim().isEmpty()) {
-                td = td.expand(new RelationshipSequenceExpander(pathFilter.trim(), beginSequenceAtStart));
-            }
+        RelationshipSequenceExpander expander = relationshipExpander(pathFilter, sequence, beginSequenceAtStart);
+        if (expander != null) {
+            td = td.expand(expander);
+        }
 
-            if (labelFilter != null && sequence == null && !labelFilter.trim().isEmpty()) {
-                td = td.evaluator(new LabelSequenceEvaluator(
-                        labelFilter.trim(), filterStartNode, beginSequenceAtStart, (int) minLevel));
-            }
+        LabelSequenceEvaluator labelEvaluator =
+                labelEvaluator(labelFilter, sequence, filterStartNode, beginSequenceAtStart, minLevel);
+        if (labelEvaluator != null) {
+            td = td.evaluator(labelEvaluator);
         }
 
         if (minLevel != -1) td = td.evaluator(Evaluators.fromDepth((int) minLevel));
@@ -381,6 +432,55 @@ public class PathExplorer {
         return td.traverse(startNodes);
     }
 
+    /**
+     * @return the expander of the relationship filter or sequence, or null to expand all the relationships
+     */
+    private static RelationshipSequenceExpander relationshipExpander(
+            String pathFilter, String sequence, boolean beginSequenceAtStart) {
+        // if `sequence` is present, it overrides `labelFilter` and `relationshipFilter`
+        if (sequence != null && !sequence.trim().isEmpty()) {
+            return new RelationshipSequenceExpander(
+                    sequenceSteps(sequence, beginSequenceAtStart, false), beginSequenceAtStart);
+        }
+        if (pathFilter != null && !pathFilter.trim().isEmpty()) {
+            return new RelationshipSequenceExpander(pathFilter.trim(), beginSequenceAtStart);
+        }
+        return null;
+    }
+
+    /**
+     * @return the evaluator of the label filter or sequence, or null if there is none
+     */
+    private static LabelSequenceEvaluator labelEvaluator(
+            String labelFilter, String sequence, boolean filterStartNode, boolean beginSequenceAtStart, long minLevel) {
+        if (sequence != null && !sequence.trim().isEmpty()) {
+            return new LabelSequenceEvaluator(
+                    sequenceSteps(sequence, beginSequenceAtStart, true), filterStartNode, beginSequenceAtStart, (int)
+                            minLevel);
+        }
+        if (labelFilter != null && sequence == null && !labelFilter.trim().isEmpty()) {
+            return new LabelSequenceEvaluator(
+                    labelFilter.trim(), filterStartNode, beginSequenceAtStart, (int) minLevel);
+        }
+        return null;
+    }
+
+    /**
+     * @return the label or the relationship steps of the sequence, which alternate
+     */
+    private static List<String> sequenceSteps(String sequence, boolean beginSequenceAtStart, boolean labels) {
+        String[] sequenceSteps = sequence.split(",");
+        List<String> steps = new ArrayList<>();
+
+        for (int index = 0; index < sequenceSteps.length; index++) {
+            boolean labelStep = (beginSequenceAtStart ? index : index - 1) % 2 == 0;
+            if (labelStep == labels) {
+                steps.add(sequenceSteps[index]);
+            }
+        }
+        return steps;
+    }
+
     // keys to node filter map
     enum NodeFilter {
         WHITELIST_NODES,
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.path;
+
+import apoc.util.Util;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The options of the {@link SubgraphExpander} used by subgraphNodes, subgraphAll and spanningTree
+ */
+public class SubgraphConfig {
+
+    private final boolean parallel;
+    private final int concurrency;
+    private final int batchSize;
+    private final long maxMemory;
+
+    public SubgraphConfig(Map<String, Object> config) {
+        if (config == null) config = Collections.emptyMap();
+        this.parallel = Util.toBoolean(config.getOrDefault("parallel", false));
+        this.concurrency = Util.toInteger(
+                config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        this.batchSize = Util.toInteger(config.getOrDefault("batchSize", 10000));
+        this.maxMemory = Util.toLong(config.getOrDefault("maxMemory", -1));
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency parameter must be > 0");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize parameter must be > 0");
+        }
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the maximum number of bytes the state of the expansion can take, or -1 if it is unbounded
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+}
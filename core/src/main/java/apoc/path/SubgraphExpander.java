@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.path;
+
+import static apoc.path.PathExplorer.NodeFilter.*;
+
+import apoc.util.ParallelWorkers;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * A breadth first expansion with NODE_GLOBAL uniqueness, returning the same nodes in the same order as
+ * {@link PathExplorer#traverse} with the same filters, without creating any traversal branch.
+ *
+ * With this uniqueness the evaluation of a node only depends on the node and its depth,
+ * so the expansion goes level by level over node ids, reading the relationships and labels through kernel cursors,
+ * with the label filters resolved to token ids upfront.
+ * The visited nodes are kept in a bitmap and, only for the paths of spanningTree, the relationship each node was reached through.
+ *
+ * Levels larger than the batch size can be expanded concurrently with {@link ParallelWorkers},
+ * each worker taking batches of the level with its own cursors. The nodes discovered by the batches are merged in the order of the batches,
+ * so that the results are the same as the ones of a serial expansion.
+ * As the workers don't see the changes of the current transaction, a transaction with changes is always expanded serially.
+ */
+class SubgraphExpander {
+
+    // the parent node and relationship of a node are kept in two LongLongHashMaps, which are at most half full
+    private static final long PARENT_BYTES = 2 * 2 * 2 * Long.BYTES;
+
+    private final GraphDatabaseService db;
+    private final InternalTransaction tx;
+    private final KernelTransaction ktx;
+    private final ExecutorService pool;
+    private final TerminationGuard guard;
+    private final SubgraphConfig config;
+
+    private final List<Node> startNodes;
+    private final RelationshipSequenceExpander expander;
+    private final LabelSequenceEvaluator labelEvaluator;
+    private final long minLevel;
+    private final long maxLevel;
+    private final boolean filterStartNode;
+    private final Roaring64NavigableMap endNodes;
+    private final Roaring64NavigableMap terminatorNodes;
+    private final Roaring64NavigableMap whitelistNodes;
+    private final Roaring64NavigableMap blacklistNodes;
+
+    private final Roaring64NavigableMap visited = new Roaring64NavigableMap();
+    private LongLongHashMap parentNodes;
+    private LongLongHashMap parentRelationships;
+
+    /**
+     * @param expander the relationships to expand, or null for all of them
+     * @param labelEvaluator the label filter, or null for none
+     */
+    SubgraphExpander(
+            GraphDatabaseService db,
+            Transaction tx,
+            ExecutorService pool,
+            TerminationGuard guard,
+            List<Node> startNodes,
+            RelationshipSequenceExpander expander,
+            LabelSequenceEvaluator labelEvaluator,
+            long minLevel,
+            long maxLevel,
+            boolean filterStartNode,
+            EnumMap<PathExplorer.NodeFilter, List<Node>> nodeFilter,
+            SubgraphConfig config) {
+        this.db = db;
+        this.tx = (InternalTransaction) tx;
+        this.ktx = this.tx.kernelTransaction();
+        this.pool = pool;
+        this.guard = guard;
+        this.config = config;
+        this.startNodes = startNodes;
+        this.expander = expander;
+        this.labelEvaluator = labelEvaluator;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.filterStartNode = filterStartNode;
+        this.endNodes = ids(nodeFilter.getOrDefault(END_NODES, Collections.emptyList()));
+        this.terminatorNodes = ids(nodeFilter.getOrDefault(TERMINATOR_NODES, Collections.emptyList()));
+        this.blacklistNodes = ids(nodeFilter.getOrDefault(BLACKLIST_NODES, Collections.emptyList()));
+        this.whitelistNodes = ids(nodeFilter.getOrDefault(WHITELIST_NODES, Collections.emptyList()));
+        if (!whitelistNodes.isEmpty()) {
+            // ensure endNodes and terminatorNodes are whitelisted
+            whitelistNodes.or(endNodes);
+            whitelistNodes.or(terminatorNodes);
+        }
+
+        if (labelEvaluator != null) {
+            labelEvaluator.resolve(ktx.tokenRead());
+        }
+    }
+
+    private static Roaring64NavigableMap ids(List<Node> nodes) {
+        Roaring64NavigableMap ids = new Roaring64NavigableMap();
+        nodes.forEach(node -> ids.addLong(node.getId()));
+        return ids;
+    }
+
+    Stream<Node> nodes() {
+        return ids().mapToObj(tx::newNodeEntity);
+    }
+
+    /**
+     * As opposed to {@link #nodes()}, keeps the relationship each node was reached through
+     */
+    Stream<Path> paths() {
+        parentNodes = new LongLongHashMap();
+        parentRelationships = new LongLongHashMap();
+        return ids().mapToObj(this::path);
+    }
+
+    /**
+     * The same as {@link apoc.algo.Cover#coverNodes(java.util.Collection)}, reading the relationships through cursors
+     */
+    static List<Relationship> cover(Transaction transaction, List<Node> nodes) {
+        InternalTransaction tx = (InternalTransaction) transaction;
+        KernelTransaction ktx = tx.kernelTransaction();
+        Roaring64NavigableMap ids = ids(nodes);
+        List<Relationship> relationships = new ArrayList<>();
+        Read read = ktx.dataRead();
+        try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+                RelationshipTraversalCursor outgoing =
+                        ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext())) {
+            for (Node start : nodes) {
+                read.singleNode(start.getId(), node);
+                if (!node.next()) continue;
+                node.relationships(outgoing, RelationshipSelection.selection(Direction.OUTGOING));
+                while (outgoing.next()) {
+                    if (ids.contains(outgoing.targetNodeReference())) {
+                        relationships.add(tx.newRelationshipEntity(
+                                outgoing.relationshipReference(),
+                                outgoing.sourceNodeReference(),
+                                outgoing.type(),
+                                outgoing.targetNodeReference()));
+                    }
+                }
+            }
+        }
+        return relationships;
+    }
+
+    private LongStream ids() {
+        return StreamSupport.longStream(
+                Spliterators.spliteratorUnknownSize(new Expansion(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private Path path(long nodeId) {
+        LongArrayList relationships = new LongArrayList();
+        long start = nodeId;
+        while (parentNodes.containsKey(start)) {
+            relationships.add(parentRelationships.get(start));
+            start = parentNodes.get(start);
+        }
+        PathImpl.Builder builder = new PathImpl.Builder(tx.newNodeEntity(start));
+        for (int i = relationships.size() - 1; i >= 0; i--) {
+            builder = builder.push(tx.newRelationshipEntity(relationships.get(i)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The nodes discovered by a batch of the frontier, in order, with the relationship and node they were reached from
+     */
+    private static class Discoveries {
+        private final LongArrayList nodes = new LongArrayList();
+        private final LongArrayList relationships = new LongArrayList();
+        private final LongArrayList parents = new LongArrayList();
+        private final List<Evaluation> evaluations = new ArrayList<>();
+        private final Roaring64NavigableMap seen = new Roaring64NavigableMap();
+    }
+
+    /**
+     * Lazily expands the levels, a batch at a time when serial, a whole level at a time when parallel
+     */
+    private class Expansion implements PrimitiveIterator.OfLong {
+        private final LongArrayList results = new LongArrayList();
+        private int returned;
+
+        private LongArrayList frontier;
+        private LongArrayList next = new LongArrayList();
+        private int expanded;
+        private int depth;
+        private RelationshipSelection[] selections;
+
+        @Override
+        public boolean hasNext() {
+            while (returned == results.size()) {
+                results.clear();
+                returned = 0;
+                if (frontier == null) {
+                    start();
+                } else if (expanded < frontier.size()) {
+                    expandBatches();
+                } else if (next.isEmpty()) {
+                    return false;
+                } else {
+                    frontier = next;
+                    next = new LongArrayList();
+                    expanded = 0;
+                    depth++;
+                    selections = selections(depth);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return results.get(returned++);
+        }
+
+        private void start() {
+            frontier = new LongArrayList();
+            startNodes.forEach(node -> visited.addLong(node.getId()));
+            Read read = ktx.dataRead();
+            try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext())) {
+                for (Node startNode : startNodes) {
+                    Evaluation evaluation = evaluate(read, startNode.getId(), 0, node);
+                    if (evaluation.includes()) results.add(startNode.getId());
+                    if (evaluation.continues()) frontier.add(startNode.getId());
+                }
+            }
+            if (!frontier.isEmpty()) {
+                selections = selections(0);
+            }
+        }
+
+        private void expandBatches() {
+            if (config.isParallel()
+                    && config.getConcurrency() > 1
+                    && frontier.size() - expanded > config.getBatchSize()
+                    && !ktx.dataRead().transactionStateHasChanges()) {
+                expandInParallel().forEach(this::merge);
+                expanded = frontier.size();
+            } else {
+                int end = (int) Math.min((long) expanded + config.getBatchSize(), frontier.size());
+                merge(expandSerially(expanded, end));
+                expanded = end;
+                guard.check();
+            }
+            checkMemory();
+        }
+
+        private Discoveries expandSerially(int from, int to) {
+            Discoveries discoveries = new Discoveries();
+            expand(ktx, from, to, discoveries);
+            return discoveries;
+        }
+
+        private List<Discoveries> expandInParallel() {
+            Queue<int[]> batches = new ConcurrentLinkedQueue<>();
+            List<Discoveries> results = new ArrayList<>();
+            for (int from = expanded; from < frontier.size(); from += config.getBatchSize()) {
+                batches.add(new int[] {
+                    results.size(), from, (int) Math.min((long) from + config.getBatchSize(), frontier.size())
+                });
+                results.add(new Discoveries());
+            }
+
+            int workers = Math.min(config.getConcurrency(), batches.size());
+            ParallelWorkers.run(db, tx, pool, workers, guard, "expanding the subgraph", (workerTx, stopped) -> {
+                KernelTransaction workerKtx = workerTx.kernelTransaction();
+                int[] batch;
+                while (!stopped.getAsBoolean() && (batch = batches.poll()) != null) {
+                    expand(workerKtx, batch[1], batch[2], results.get(batch[0]));
+                }
+            });
+            return results;
+        }
+
+        /**
+         * Expands the nodes of the frontier between the given positions, only reading the visited nodes,
+         * which are updated when the discoveries are merged
+         */
+        private void expand(KernelTransaction ktx, int from, int to, Discoveries discoveries) {
+            Read read = ktx.dataRead();
+            try (NodeCursor node = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+                    NodeCursor other = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+                    RelationshipTraversalCursor relationships =
+                            ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext())) {
+                for (int i = from; i < to; i++) {
+                    long nodeId = frontier.get(i);
+                    read.singleNode(nodeId, node);
+                    if (!node.next()) continue;
+                    for (RelationshipSelection selection : selections) {
+                        node.relationships(relationships, selection);
+                        while (relationships.next()) {
+                            long otherId = relationships.otherNodeReference();
+                            if (visited.contains(otherId) || discoveries.seen.contains(otherId)) continue;
+                            discoveries.seen.addLong(otherId);
+                            discoveries.nodes.add(otherId);
+                            discoveries.relationships.add(relationships.relationshipReference());
+                            discoveries.parents.add(nodeId);
+                            discoveries.evaluations.add(evaluate(read, otherId, depth + 1, other));
+                        }
+                    }
+                }
+            }
+        }
+
+        private void merge(Discoveries discoveries) {
+            for (int i = 0; i < discoveries.nodes.size(); i++) {
+                long nodeId = discoveries.nodes.get(i);
+                // an earlier batch may have reached the node first
+                if (visited.contains(nodeId)) continue;
+                visited.addLong(nodeId);
+                if (parentNodes != null) {
+                    parentNodes.put(nodeId, discoveries.parents.get(i));
+                    parentRelationships.put(nodeId, discoveries.relationships.get(i));
+                }
+                Evaluation evaluation = discoveries.evaluations.get(i);
+                if (evaluation.includes()) results.add(nodeId);
+                if (evaluation.continues()) next.add(nodeId);
+            }
+        }
+
+        private void checkMemory() {
+            if (config.getMaxMemory() < 0) return;
+            long bytes = visited.getLongSizeInBytes()
+                    + (long) Long.BYTES * (frontier.size() + next.size() + results.size())
+                    + (parentNodes == null ? 0 : parentNodes.size() * PARENT_BYTES);
+            if (bytes > config.getMaxMemory()) {
+                throw new RuntimeException(String.format(
+                        "The expansion needs more than the maxMemory of %d bytes after visiting %d nodes, "
+                                + "please reduce the maxLevel or increase the maxMemory",
+                        config.getMaxMemory(), visited.getLongCardinality()));
+            }
+        }
+    }
+
+    /**
+     * Combines the evaluations of the label, level and node filters of {@link PathExplorer#traverse}:
+     * a node is included if all of them include it, and expanded if all of them continue.
+     */
+    private Evaluation evaluate(Read read, long nodeId, int depth, NodeCursor node) {
+        boolean includes = true;
+        boolean continues = true;
+        if (labelEvaluator != null) {
+            read.singleNode(nodeId, node);
+            if (!node.next()) return Evaluation.EXCLUDE_AND_PRUNE;
+            Evaluation evaluation = labelEvaluator.evaluate(node, depth);
+            includes = evaluation.includes();
+            continues = evaluation.continues();
+        }
+
+        if (minLevel != -1 && depth < minLevel) includes = false;
+        if (maxLevel != -1) {
+            includes &= depth <= maxLevel;
+            continues &= depth < maxLevel;
+        }
+
+        boolean unfilteredStartNode = depth == 0 && !filterStartNode;
+        if (!unfilteredStartNode && blacklistNodes.contains(nodeId)) {
+            return Evaluation.EXCLUDE_AND_PRUNE;
+        }
+        if (!endNodes.isEmpty() || !terminatorNodes.isEmpty()) {
+            if (unfilteredStartNode || depth < minLevel) {
+                includes = false;
+            } else {
+                boolean terminator = terminatorNodes.contains(nodeId);
+                includes &= terminator || endNodes.contains(nodeId);
+                continues &= !terminator;
+            }
+        }
+        if (!unfilteredStartNode && !whitelistNodes.isEmpty() && !whitelistNodes.contains(nodeId)) {
+            return Evaluation.EXCLUDE_AND_PRUNE;
+        }
+        return Evaluation.of(includes, continues);
+    }
+
+    private RelationshipSelection[] selections(int depth) {
+        if (expander == null) {
+            return new RelationshipSelection[] {RelationshipSelection.ALL_RELATIONSHIPS};
+        }
+        TokenRead tokenRead = ktx.tokenRead();
+        List<RelationshipSelection> selections = new ArrayList<>();
+        for (Pair<RelationshipType, Direction> pair : expander.stepRels(depth)) {
+            if (pair.first() == null) {
+                selections.add(RelationshipSelection.selection(pair.other()));
+                continue;
+            }
+            int type = tokenRead.relationshipType(pair.first().name());
+            // a type which doesn't exist has no relationships
+            if (type != TokenRead.NO_TOKEN) {
+                selections.add(RelationshipSelection.selection(type, pair.other()));
+            }
+        }
+        return selections.toArray(new RelationshipSelection[0]);
+    }
+}
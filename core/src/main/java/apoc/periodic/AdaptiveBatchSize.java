@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the batch size of an `apoc.periodic.iterate` between a lower and an upper bound,
+ * based on the observed time each batch needs to be executed and committed.
+ * A failed or retried batch halves the size, otherwise the size moves towards the value
+ * that would make a batch last `targetBatchMillis`, growing at most by a factor of two per step.
+ */
+public class AdaptiveBatchSize {
+
+    static final int MAX_TRAJECTORY_ENTRIES = 256;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetBatchNanos;
+
+    private final List<Map<String, Object>> trajectory = new ArrayList<>();
+    private volatile int batchSize;
+    private long completedBatches;
+
+    public AdaptiveBatchSize(int batchSize, int minBatchSize, int maxBatchSize, long targetBatchMillis) {
+        if (minBatchSize < 1) {
+            throw new IllegalArgumentException("minBatchSize parameter must be > 0");
+        }
+        if (maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("maxBatchSize parameter must be >= minBatchSize");
+        }
+        if (targetBatchMillis < 1) {
+            throw new IllegalArgumentException("targetBatchMillis parameter must be > 0");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetBatchNanos = TimeUnit.MILLISECONDS.toNanos(targetBatchMillis);
+        this.batchSize = clamp(batchSize);
+        this.trajectory.add(trajectoryEntry(0, this.batchSize));
+    }
+
+    /**
+     * @return an AdaptiveBatchSize if `adaptiveBatchSize: true` is set in the config, null otherwise
+     */
+    public static AdaptiveBatchSize fromConfig(Map<String, Object> config, long batchSize) {
+        if (!Util.toBoolean(config.getOrDefault("adaptiveBatchSize", false))) {
+            return null;
+        }
+        int min = Util.toInteger(config.getOrDefault("minBatchSize", Math.max(1, batchSize / 10)));
+        int max = Util.toInteger(config.getOrDefault("maxBatchSize", Math.min(Integer.MAX_VALUE, batchSize * 10)));
+        long target = Util.toLong(config.getOrDefault("targetBatchMillis", 1000));
+        return new AdaptiveBatchSize((int) batchSize, min, max, target);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Feeds the outcome of a completed batch into the controller
+     * @param size the number of rows of the batch
+     * @param elapsedNanos the time spent executing and committing it, retries included
+     * @param retries the number of times the batch has been retried
+     * @param failed true if the batch has not been committed
+     */
+    public synchronized void onBatchCompleted(int size, long elapsedNanos, long retries, boolean failed) {
+        completedBatches++;
+        int current = batchSize;
+        int next;
+        if (failed || retries > 0) {
+            next = clamp(current / 2);
+        } else if (size == 0 || elapsedNanos <= 0) {
+            next = current;
+        } else {
+            double nanosPerRow = (double) elapsedNanos / size;
+            double ideal = targetBatchNanos / nanosPerRow;
+            double bounded = Math.max(current / 2.0, Math.min(current * 2.0, ideal));
+            // move halfway towards the ideal value, to damp the noise of single measurements
+            next = clamp(Math.round(current + (bounded - current) / 2));
+        }
+        if (next != current) {
+            batchSize = next;
+            addToTrajectory(trajectoryEntry(completedBatches, next));
+        }
+    }
+
+    public synchronized List<Map<String, Object>> getTrajectory() {
+        return new ArrayList<>(trajectory);
+    }
+
+    private void addToTrajectory(Map<String, Object> entry) {
+        if (trajectory.size() >= MAX_TRAJECTORY_ENTRIES) {
+            // keep the shape of the whole run by halving the resolution of what we have so far
+            for (int i = trajectory.size() - 1; i > 0; i -= 2) {
+                trajectory.remove(i);
+            }
+        }
+        trajectory.add(entry);
+    }
+
+    private static Map<String, Object> trajectoryEntry(long batch, int size) {
+        return Util.map("batch", batch, "size", size);
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+}
@@ -40,9 +40,11 @@ public class BatchAndTotalCollector {
     private AtomicLong retried = new AtomicLong();
     private Map<String, Long> operationErrors = new ConcurrentHashMap<>();
     private AtomicInteger failedBatches = new AtomicInteger();
-    private Map<String, Long> batchErrors = new HashMap<>();
+    private Map<String, Long> batchErrors = new ConcurrentHashMap<>();
     private Map<String, List<Map<String, Object>>> failedParamsMap = new ConcurrentHashMap<>();
     private final boolean wasTerminated;
+    private AdaptiveBatchSize adaptiveBatchSize;
+    private List<Map<String, Object>> laneStats;
 
     private AtomicLong nodesCreated = new AtomicLong();
     private AtomicLong nodesDeleted = new AtomicLong();
@@ -80,7 +82,27 @@ public class BatchAndTotalCollector {
                 batchErrors,
                 wasTerminated,
                 failedParamsMap,
-                updateStatistics);
+                updateStatistics,
+                getBatchDetails());
+    }
+
+    private Map<String, Object> getBatchDetails() {
+        Map<String, Object> details = new HashMap<>();
+        if (adaptiveBatchSize != null) {
+            details.put("sizes", adaptiveBatchSize.getTrajectory());
+        }
+        if (laneStats != null) {
+            details.put("lanes", laneStats);
+        }
+        return details;
+    }
+
+    public void setAdaptiveBatchSize(AdaptiveBatchSize adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    public void setLaneStats(List<Map<String, Object>> laneStats) {
+        this.laneStats = laneStats;
     }
 
     public long getBatches() {
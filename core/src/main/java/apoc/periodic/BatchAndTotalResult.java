@@ -19,6 +19,7 @@
 package apoc.periodic;
 
 import apoc.util.Util;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,36 @@ public class BatchAndTotalResult {
             boolean wasTerminated,
             Map<String, List<Map<String, Object>>> failedParams,
             Map<String, Long> updateStatistics) {
+        this(
+                batches,
+                total,
+                timeTaken,
+                committedOperations,
+                failedOperations,
+                failedBatches,
+                retries,
+                operationErrors,
+                batchErrors,
+                wasTerminated,
+                failedParams,
+                updateStatistics,
+                Collections.emptyMap());
+    }
+
+    public BatchAndTotalResult(
+            long batches,
+            long total,
+            long timeTaken,
+            long committedOperations,
+            long failedOperations,
+            long failedBatches,
+            long retries,
+            Map<String, Long> operationErrors,
+            Map<String, Long> batchErrors,
+            boolean wasTerminated,
+            Map<String, List<Map<String, Object>>> failedParams,
+            Map<String, Long> updateStatistics,
+            Map<String, Object> batchDetails) {
         this.batches = batches;
         this.total = total;
         this.timeTaken = timeTaken;
@@ -62,6 +93,7 @@ public class BatchAndTotalResult {
         this.failedParams = failedParams;
         this.batch = Util.map(
                 "total", batches, "failed", failedBatches, "committed", batches - failedBatches, "errors", batchErrors);
+        this.batch.putAll(batchDetails);
         this.operations = Util.map(
                 "total",
                 total,
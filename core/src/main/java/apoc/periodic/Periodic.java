@@ -322,6 +322,8 @@ public class Periodic {
         long retries = Util.toLong(config.getOrDefault(
                 "retries", 0)); // todo sleep/delay or push to end of batch to try again or immediate ?
         int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        AdaptiveBatchSize adaptiveBatchSize = AdaptiveBatchSize.fromConfig(config, batchSize);
+        String partitionBy = (String) config.get("partitionBy");
 
         BatchMode batchMode = BatchMode.fromConfig(config);
         Map<String, Object> params = (Map<String, Object>) config.getOrDefault("params", Collections.emptyMap());
@@ -332,6 +334,10 @@ public class Periodic {
             String innerStatement = applyPlanner(
                     prepared.first(), Planner.valueOf((String) config.getOrDefault("planner", Planner.DEFAULT.name())));
             boolean iterateList = prepared.other();
+            if (partitionBy != null && !result.columns().contains(partitionBy)) {
+                throw new IllegalArgumentException("The partitionBy column `" + partitionBy
+                        + "` is not returned by the iterate statement, available columns are: " + result.columns());
+            }
             String periodicId = UUID.randomUUID().toString();
             if (log.isDebugEnabled()) {
                 log.debug(
@@ -344,6 +350,7 @@ public class Periodic {
                     log,
                     pools,
                     (int) batchSize,
+                    adaptiveBatchSize,
                     parallel,
                     iterateList,
                     retries,
@@ -354,6 +361,7 @@ public class Periodic {
                         return r.getQueryStatistics();
                     },
                     concurrency,
+                    partitionBy,
                     failedParams,
                     periodicId);
         }
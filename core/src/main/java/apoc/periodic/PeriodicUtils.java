@@ -22,17 +22,15 @@ import static apoc.periodic.Periodic.JobInfo;
 
 import apoc.Pools;
 import apoc.util.Util;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
-import java.util.function.ToLongFunction;
+import java.util.function.IntSupplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -100,58 +98,82 @@ public class PeriodicUtils {
             int concurrency,
             int failedParams,
             String periodicId) {
+        return iterateAndExecuteBatchedInSeparateThread(
+                db,
+                terminationGuard,
+                log,
+                pools,
+                batchsize,
+                null,
+                parallel,
+                iterateList,
+                retries,
+                iterator,
+                consumer,
+                concurrency,
+                null,
+                failedParams,
+                periodicId);
+    }
+
+    public static Stream<BatchAndTotalResult> iterateAndExecuteBatchedInSeparateThread(
+            GraphDatabaseService db,
+            TerminationGuard terminationGuard,
+            Log log,
+            Pools pools,
+            int batchsize,
+            AdaptiveBatchSize adaptiveBatchSize,
+            boolean parallel,
+            boolean iterateList,
+            long retries,
+            Iterator<Map<String, Object>> iterator,
+            BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency,
+            String partitionBy,
+            int failedParams,
+            String periodicId) {
 
         ExecutorService pool = parallel ? pools.getDefaultExecutorService() : pools.getSingleExecutorService();
-        List<Future<Long>> futures = new ArrayList<>(concurrency);
         BatchAndTotalCollector collector = new BatchAndTotalCollector(terminationGuard, failedParams);
-        AtomicInteger activeFutures = new AtomicInteger(0);
-
-        do {
-            if (Util.transactionIsTerminated(terminationGuard)) break;
-
-            if (activeFutures.get() < concurrency || !parallel) {
-                // we have capacity, add a new Future to the list
-                activeFutures.incrementAndGet();
-
-                if (log.isDebugEnabled())
-                    log.debug("Execute, in periodic iteration with id %s, no %d batch size ", periodicId, batchsize);
-                List<Map<String, Object>> batch = Util.take(iterator, batchsize);
-                final long currentBatchSize = batch.size();
-                Periodic.ExecuteBatch executeBatch = iterateList
-                        ? new Periodic.ListExecuteBatch(terminationGuard, collector, batch, consumer)
-                        : new Periodic.OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
-
-                futures.add(Util.inTxFuture(
-                        log,
-                        pool,
-                        db,
-                        executeBatch,
-                        retries,
-                        retryCount -> collector.incrementRetried(),
-                        onComplete -> {
-                            collector.incrementBatches();
-                            executeBatch.release();
-                            activeFutures.decrementAndGet();
-                        }));
-                collector.incrementCount(currentBatchSize);
+        collector.setAdaptiveBatchSize(adaptiveBatchSize);
+
+        PrefetchingBatchExecutor.BatchInTx batchInTx = (batch, onRetry) -> {
+            Periodic.ExecuteBatch executeBatch = iterateList
+                    ? new Periodic.ListExecuteBatch(terminationGuard, collector, batch, consumer)
+                    : new Periodic.OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
+            // we don't use Util.inTxFuture here, as the adaptive batch size
+            // needs to know whether the commit itself succeeded
+            AtomicLong batchRetries = new AtomicLong();
+            boolean committed = false;
+            long start = System.nanoTime();
+            try {
+                Long result = Util.retryInTx(log, db, executeBatch, 0, retries, (retryCount, e) -> {
+                    batchRetries.incrementAndGet();
+                    collector.incrementRetried();
+                    onRetry.accept(e);
+                });
+                committed = true;
+                return result;
+            } finally {
+                if (adaptiveBatchSize != null) {
+                    adaptiveBatchSize.onBatchCompleted(
+                            batch.size(), System.nanoTime() - start, batchRetries.get(), !committed);
+                }
+                collector.incrementBatches();
+                executeBatch.release();
                 if (log.isDebugEnabled()) {
                     log.debug(
                             "Processed in periodic iteration with id %s, %d iterations of %d total",
-                            periodicId, batchsize, collector.getCount());
+                            periodicId, batch.size(), collector.getCount());
                 }
-            } else {
-                // we can't block until the counter decrease as we might miss a cancellation, so
-                // let this thread be preempted for a bit before we check for cancellation or
-                // capacity.
-                LockSupport.parkNanos(1000);
             }
-        } while (iterator.hasNext());
+        };
+        IntSupplier batchSize = adaptiveBatchSize == null ? () -> batchsize : adaptiveBatchSize::getBatchSize;
 
-        boolean wasTerminated = Util.transactionIsTerminated(terminationGuard);
-        ToLongFunction<Future<Long>> toLongFunction = wasTerminated
-                ? f -> Util.getFutureOrCancel(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L)
-                : f -> Util.getFuture(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L);
-        collector.incrementSuccesses(futures.stream().mapToLong(toLongFunction).sum());
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                terminationGuard, collector, batchInTx, pool, parallel ? concurrency : 1, partitionBy);
+        collector.incrementSuccesses(executor.execute(iterator, batchSize));
+        collector.setLaneStats(executor.getLaneStats());
 
         Util.logErrors("Error during iterate.commit:", collector.getBatchErrors(), log);
         Util.logErrors("Error during iterate.execute:", collector.getOperationErrors(), log);
@@ -195,7 +217,7 @@ public class PeriodicUtils {
     }
 
     public static Runnable wrapTask(String name, Runnable task, Log log) {
-        return () -> {
+        return Pools.namedJob(name, () -> {
             log.debug("Executing task " + name);
             try {
                 task.run();
@@ -207,7 +229,7 @@ public class PeriodicUtils {
                 throw e;
             }
             log.debug("Executed task " + name);
-        };
+        });
     }
 }
 
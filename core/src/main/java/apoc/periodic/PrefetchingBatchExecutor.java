@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Executes the batches of an `apoc.periodic.iterate` as one pool task per batch,
+ * with at most `concurrency` of them in flight at a time.
+ *
+ * The calling thread keeps reading the outer statement (its result is bound to the procedure transaction)
+ * ahead of the running batches into a queue of at most `concurrency` ready batches, from which each pool task
+ * takes the oldest one once it starts, so that a free worker never waits for the next batch to be read,
+ * while the batches don't hold a pool thread between each other.
+ *
+ * With a `partitionBy` column each row is routed to the lane given by the hash of its `partitionBy` value.
+ * The batches of a lane are chained one after the other on the pool, with at most two of them pending,
+ * so that the rows with the same key are never written concurrently, while a lane never waits
+ * for a thread of its own.
+ */
+class PrefetchingBatchExecutor {
+
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 100;
+    private static final int PENDING_BATCHES_PER_LANE = 2;
+
+    /**
+     * Executes a batch in a new transaction, returning the number of committed operations
+     * and passing the exception of every retried attempt to `onRetry`
+     */
+    interface BatchInTx {
+        long execute(List<Map<String, Object>> batch, Consumer<Exception> onRetry);
+    }
+
+    private final TerminationGuard terminationGuard;
+    private final BatchAndTotalCollector collector;
+    private final BatchInTx batchInTx;
+    private final ExecutorService pool;
+    private final String partitionBy;
+    private final int workers;
+    private final List<Lane> lanes;
+
+    PrefetchingBatchExecutor(
+            TerminationGuard terminationGuard,
+            BatchAndTotalCollector collector,
+            BatchInTx batchInTx,
+            ExecutorService pool,
+            int concurrency,
+            String partitionBy) {
+        this.terminationGuard = terminationGuard;
+        this.collector = collector;
+        this.batchInTx = batchInTx;
+        this.pool = pool;
+        this.partitionBy = partitionBy;
+        this.workers = Math.max(1, concurrency);
+        this.lanes = IntStream.range(0, workers).mapToObj(i -> new Lane()).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the iterator in batches and submits them to the pool, until the iterator is exhausted
+     * or the transaction is terminated. The batches not started yet at termination are counted as failed.
+     * @return the number of committed operations
+     */
+    long execute(Iterator<Map<String, Object>> iterator, IntSupplier batchSize) {
+        return partitionBy == null ? executeShared(iterator, batchSize) : executePartitioned(iterator, batchSize);
+    }
+
+    /**
+     * @return the batches, failures, retries and deadlocks of each lane, or null if the rows are not partitioned
+     */
+    List<Map<String, Object>> getLaneStats() {
+        if (partitionBy == null) return null;
+        return IntStream.range(0, workers).mapToObj(i -> lanes.get(i).toMap(i)).collect(Collectors.toList());
+    }
+
+    private long executeShared(Iterator<Map<String, Object>> iterator, IntSupplier batchSize) {
+        AtomicLong committed = new AtomicLong();
+        Semaphore running = new Semaphore(workers);
+        BlockingQueue<List<Map<String, Object>>> ready = new ArrayBlockingQueue<>(workers);
+        // the ready batches no task was submitted for yet, each task taking one batch from the queue
+        int unassigned = 0;
+        try {
+            do {
+                if (Util.transactionIsTerminated(terminationGuard)) break;
+                List<Map<String, Object>> batch = Util.take(iterator, batchSize.getAsInt());
+                collector.incrementCount(batch.size());
+                boolean queued = ready.offer(batch);
+                while (!queued) {
+                    if (unassigned > 0) {
+                        // the queue is full, we wait for a free worker to start the oldest ready batch
+                        if (!acquire(running)) break;
+                        start(ready, running, committed);
+                        unassigned--;
+                        queued = ready.offer(batch);
+                    } else {
+                        // all the ready batches have their task already, which takes them once the pool runs it
+                        if (!offer(ready, batch)) break;
+                        queued = true;
+                    }
+                }
+                if (!queued) {
+                    collector.getFailedBatches().incrementAndGet();
+                    break;
+                }
+                unassigned++;
+                // the batches without a free worker wait in the queue, while we read the next one
+                while (unassigned > 0 && running.tryAcquire()) {
+                    start(ready, running, committed);
+                    unassigned--;
+                }
+            } while (iterator.hasNext());
+            while (unassigned > 0 && acquire(running)) {
+                start(ready, running, committed);
+                unassigned--;
+            }
+        } finally {
+            // waits for the batches in flight
+            running.acquireUninterruptibly(workers);
+            // the ready batches no worker started, because of a termination or a rejection
+            collector.getFailedBatches().addAndGet(ready.size());
+        }
+        return committed.get();
+    }
+
+    /**
+     * Submits a task executing the oldest ready batch, holding a permit of `running` until it completes
+     */
+    private void start(BlockingQueue<List<Map<String, Object>>> ready, Semaphore running, AtomicLong committed) {
+        try {
+            pool.submit(() -> {
+                try {
+                    List<Map<String, Object>> batch = ready.poll();
+                    if (batch == null) return;
+                    if (Util.transactionIsTerminated(terminationGuard)) {
+                        collector.getFailedBatches().incrementAndGet();
+                    } else {
+                        committed.addAndGet(executeBatch(batch, lanes.get(0)));
+                    }
+                } finally {
+                    running.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.release();
+            throw e;
+        }
+    }
+
+    /**
+     * waits for room in the queue, giving up if the transaction gets terminated
+     */
+    private boolean offer(BlockingQueue<List<Map<String, Object>>> ready, List<Map<String, Object>> batch) {
+        try {
+            // like acquire, we wait with a timeout so that we don't miss a cancellation
+            while (!ready.offer(batch, ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (Util.transactionIsTerminated(terminationGuard)) return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long executePartitioned(Iterator<Map<String, Object>> iterator, IntSupplier batchSize) {
+        AtomicLong committed = new AtomicLong();
+        List<List<Map<String, Object>>> pending = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            pending.add(new ArrayList<>());
+        }
+        try {
+            boolean running = true;
+            while (running && iterator.hasNext()) {
+                Map<String, Object> row = iterator.next();
+                int lane = laneOf(row.get(partitionBy));
+                List<Map<String, Object>> batch = pending.get(lane);
+                batch.add(row);
+                if (batch.size() >= batchSize.getAsInt()) {
+                    pending.set(lane, new ArrayList<>());
+                    running = submit(lanes.get(lane), batch, committed);
+                }
+            }
+            for (int lane = 0; running && lane < workers; lane++) {
+                List<Map<String, Object>> batch = pending.get(lane);
+                if (!batch.isEmpty()) {
+                    running = submit(lanes.get(lane), batch, committed);
+                }
+            }
+        } finally {
+            CompletableFuture.allOf(lanes.stream().map(lane -> lane.tail).toArray(CompletableFuture[]::new))
+                    .join();
+        }
+        return committed.get();
+    }
+
+    private boolean submit(Lane lane, List<Map<String, Object>> batch, AtomicLong committed) {
+        collector.incrementCount(batch.size());
+        if (Util.transactionIsTerminated(terminationGuard) || !acquire(lane.pending)) {
+            collector.getFailedBatches().incrementAndGet();
+            return false;
+        }
+        lane.tail = lane.tail
+                .thenRunAsync(
+                        () -> {
+                            try {
+                                if (Util.transactionIsTerminated(terminationGuard)) {
+                                    collector.getFailedBatches().incrementAndGet();
+                                } else {
+                                    committed.addAndGet(executeBatch(batch, lane));
+                                }
+                            } finally {
+                                lane.pending.release();
+                            }
+                        },
+                        pool)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (!(cause instanceof RejectedExecutionException)) throw new CompletionException(cause);
+                    // the batch never ran, while the next ones of the lane still may
+                    lane.pending.release();
+                    collector.getFailedBatches().incrementAndGet();
+                    collector.getBatchErrors().compute(cause.toString(), (s, i) -> i == null ? 1 : i + 1);
+                    return null;
+                });
+        return true;
+    }
+
+    /**
+     * waits for a permit, giving up if the transaction gets terminated
+     */
+    private boolean acquire(Semaphore permits) {
+        try {
+            // we wait with a timeout rather than blocking, so that we don't miss a cancellation
+            while (!permits.tryAcquire(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (Util.transactionIsTerminated(terminationGuard)) return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long executeBatch(List<Map<String, Object>> batch, Lane lane) {
+        lane.batches.incrementAndGet();
+        try {
+            return batchInTx.execute(batch, lane::retried);
+        } catch (Exception e) {
+            lane.failed(e);
+            collector.getFailedBatches().incrementAndGet();
+            collector.getBatchErrors().compute(e.toString(), (s, i) -> i == null ? 1 : i + 1);
+            return 0;
+        }
+    }
+
+    int laneOf(Object key) {
+        int hash;
+        if (key instanceof Entity) {
+            hash = Long.hashCode(((Entity) key).getId());
+        } else if (key instanceof Object[]) {
+            hash = Arrays.deepHashCode((Object[]) key);
+        } else {
+            hash = Objects.hashCode(key);
+        }
+        return Util.partitionOf(hash, workers);
+    }
+
+    private static boolean isDeadlock(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof Status.HasStatus
+                    && ((Status.HasStatus) t).status() == Status.Transaction.DeadlockDetected) {
+                return true;
+            }
+            if (t instanceof QueryExecutionException
+                    && Status.Transaction.DeadlockDetected.code()
+                            .serialize()
+                            .equals(((QueryExecutionException) t).getStatusCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Lane {
+        private final Semaphore pending = new Semaphore(PENDING_BATCHES_PER_LANE);
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong deadlocks = new AtomicLong();
+
+        void retried(Exception e) {
+            retries.incrementAndGet();
+            if (isDeadlock(e)) deadlocks.incrementAndGet();
+        }
+
+        void failed(Exception e) {
+            failed.incrementAndGet();
+            if (isDeadlock(e)) deadlocks.incrementAndGet();
+        }
+
+        Map<String, Object> toMap(int lane) {
+            return Util.map(
+                    "lane",
+                    lane,
+                    "batches",
+                    batches.get(),
+                    "failed",
+                    failed.get(),
+                    "retries",
+                    retries.get(),
+                    "deadlocks",
+                    deadlocks.get());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.pools;
+
+import apoc.Pools;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Procedure;
+
+public class PoolsStats {
+
+    @Context
+    public Pools pools;
+
+    @Procedure
+    @Description(
+            "apoc.pools.stats() - returns, for each APOC thread pool, the submitted, completed and failed tasks, how many times and how long the callers have been blocked because the pool was saturated, the completed tasks per second, the percentiles of the time spent by the tasks in the queue and running, and the current state of the pool")
+    public Stream<PoolStatsResult> stats() {
+        return pools.getPoolStats().stream().map(PoolStatsResult::new);
+    }
+
+    @Procedure
+    @Description(
+            "apoc.pools.jobs() - returns, for each background job submitted via apoc.periodic.submit/repeat/countdown, its runs, failures and the percentiles of the time it waited to be started and it ran")
+    public Stream<JobStatsResult> jobs() {
+        return pools.getJobStats().stream().map(JobStatsResult::new);
+    }
+
+    public static class PoolStatsResult {
+        public final String name;
+        public final long submitted;
+        public final long completed;
+        public final long failed;
+        public final long blocked;
+        public final long blockedMillis;
+        public final double throughput;
+        public final Map<String, Object> queueTime;
+        public final Map<String, Object> runTime;
+        public final Map<String, Object> state;
+
+        public PoolStatsResult(Map<String, Object> stats) {
+            this.name = (String) stats.get("name");
+            this.submitted = (long) stats.get("submitted");
+            this.completed = (long) stats.get("completed");
+            this.failed = (long) stats.get("failed");
+            this.blocked = (long) stats.get("blocked");
+            this.blockedMillis = (long) stats.get("blockedMillis");
+            this.throughput = (double) stats.get("throughput");
+            this.queueTime = (Map<String, Object>) stats.get("queueTime");
+            this.runTime = (Map<String, Object>) stats.get("runTime");
+            this.state = (Map<String, Object>) stats.get("state");
+        }
+    }
+
+    public static class JobStatsResult {
+        public final String name;
+        public final boolean scheduled;
+        public final long runs;
+        public final long failed;
+        public final Map<String, Object> queueTime;
+        public final Map<String, Object> runTime;
+
+        public JobStatsResult(Map<String, Object> stats) {
+            this.name = (String) stats.get("name");
+            this.scheduled = (boolean) stats.get("scheduled");
+            this.runs = (long) stats.get("completed");
+            this.failed = (long) stats.get("failed");
+            this.queueTime = (Map<String, Object>) stats.get("queueTime");
+            this.runTime = (Map<String, Object>) stats.get("runTime");
+        }
+    }
+}
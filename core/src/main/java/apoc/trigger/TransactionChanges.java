@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+/**
+ * The labels, relationship types and property keys touched by a transaction, matched against the trigger selectors.
+ * For each label and type we keep the property keys changed on the nodes and relationships having it.
+ *
+ * It's built before the commit, while the labels and types of the changed entities can still be read.
+ */
+class TransactionChanges {
+
+    private final Map<String, Set<String>> keysByLabel = new HashMap<>();
+    private final Map<String, Set<String>> keysByType = new HashMap<>();
+    private final Set<String> keys = new HashSet<>();
+
+    static TransactionChanges of(TransactionData txData) {
+        TransactionChanges changes = new TransactionChanges();
+        // the labels of the deleted nodes are only available as removed labels
+        Map<Long, Set<String>> deletedLabels = new HashMap<>();
+        for (Node node : txData.deletedNodes()) {
+            deletedLabels.put(node.getId(), new HashSet<>());
+        }
+        for (LabelEntry entry : txData.removedLabels()) {
+            changes.keysByLabel.computeIfAbsent(entry.label().name(), k -> new HashSet<>());
+            Set<String> labels = deletedLabels.get(entry.node().getId());
+            if (labels != null) labels.add(entry.label().name());
+        }
+        // created nodes have all their labels assigned
+        for (LabelEntry entry : txData.assignedLabels()) {
+            changes.keysByLabel.computeIfAbsent(entry.label().name(), k -> new HashSet<>());
+        }
+        for (Relationship rel : txData.createdRelationships()) {
+            changes.keysByType.computeIfAbsent(rel.getType().name(), k -> new HashSet<>());
+        }
+        for (Relationship rel : txData.deletedRelationships()) {
+            changes.keysByType.computeIfAbsent(rel.getType().name(), k -> new HashSet<>());
+        }
+        changes.addNodeProperties(txData.assignedNodeProperties(), deletedLabels);
+        changes.addNodeProperties(txData.removedNodeProperties(), deletedLabels);
+        changes.addRelationshipProperties(txData.assignedRelationshipProperties());
+        changes.addRelationshipProperties(txData.removedRelationshipProperties());
+        return changes;
+    }
+
+    private void addNodeProperties(Iterable<PropertyEntry<Node>> entries, Map<Long, Set<String>> deletedLabels) {
+        for (PropertyEntry<Node> entry : entries) {
+            keys.add(entry.key());
+            Set<String> labels = deletedLabels.get(entry.entity().getId());
+            if (labels != null) {
+                labels.forEach(label -> addKey(keysByLabel, label, entry.key()));
+            } else {
+                for (Label label : entry.entity().getLabels()) {
+                    addKey(keysByLabel, label.name(), entry.key());
+                }
+            }
+        }
+    }
+
+    private void addRelationshipProperties(Iterable<PropertyEntry<Relationship>> entries) {
+        for (PropertyEntry<Relationship> entry : entries) {
+            keys.add(entry.key());
+            addKey(keysByType, entry.entity().getType().name(), entry.key());
+        }
+    }
+
+    private static void addKey(Map<String, Set<String>> keysByToken, String token, String key) {
+        keysByToken.computeIfAbsent(token, k -> new HashSet<>()).add(key);
+    }
+
+    Set<String> getLabels() {
+        return keysByLabel.keySet();
+    }
+
+    Set<String> getTypes() {
+        return keysByType.keySet();
+    }
+
+    Set<String> getKeys() {
+        return keys;
+    }
+
+    Set<String> getKeysByLabel(String label) {
+        return keysByLabel.getOrDefault(label, Set.of());
+    }
+
+    Set<String> getKeysByType(String type) {
+        return keysByType.getOrDefault(type, Set.of());
+    }
+}
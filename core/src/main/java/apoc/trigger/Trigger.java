@@ -152,6 +152,39 @@ public class Trigger {
                         (Boolean) e.getValue().getOrDefault("paused", false)));
     }
 
+    @Admin
+    @Procedure(mode = Mode.READ)
+    @Description(
+            "CALL apoc.trigger.stats() | it returns, for each coalescing afterAsync trigger of the session database, the transactions waiting in its buffer, the age of the oldest one, and the counters of the flushed batches")
+    public Stream<TriggerStatsResult> stats() {
+        return triggerHandler.batchStats().entrySet().stream()
+                .map(e -> new TriggerStatsResult(e.getKey(), e.getValue()));
+    }
+
+    public static class TriggerStatsResult {
+        public final String name;
+        public final long queued;
+        public final long lagMillis;
+        public final long transactions;
+        public final long batches;
+        public final long failedBatches;
+        public final long blocked;
+        public final long dropped;
+        public final Map<String, Object> stats;
+
+        public TriggerStatsResult(String name, Map<String, Object> stats) {
+            this.name = name;
+            this.queued = ((Number) stats.get("queued")).longValue();
+            this.lagMillis = (long) stats.get("lagMillis");
+            this.transactions = (long) stats.get("transactions");
+            this.batches = (long) stats.get("batches");
+            this.failedBatches = (long) stats.get("failedBatches");
+            this.blocked = (long) stats.get("blocked");
+            this.dropped = (long) stats.get("dropped");
+            this.stats = stats;
+        }
+    }
+
     @Admin
     @Deprecated
     @Procedure(mode = Mode.WRITE, deprecatedBy = "apoc.trigger.stop")
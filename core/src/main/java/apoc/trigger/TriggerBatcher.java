@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.neo4j.logging.Log;
+
+/**
+ * Buffers the changes of the transactions committed for a coalescing `afterAsync` trigger,
+ * and runs the trigger once for each batch of them, merged in a single change set.
+ *
+ * A batch is flushed as soon as `batchSize` transactions are buffered, or every `flushInterval` milliseconds.
+ * The buffer is bounded: when it's full, the committing threads wait for the batches to be flushed.
+ */
+class TriggerBatcher {
+
+    static final String COALESCE = "coalesce";
+    static final String BATCH_SIZE = "batchSize";
+    static final String FLUSH_INTERVAL = "flushInterval";
+    static final String QUEUE_SIZE = "queueSize";
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    static class Options {
+        private final int batchSize;
+        private final long flushInterval;
+        private final int queueSize;
+
+        Options(Map<String, Object> selector) {
+            this.batchSize = Util.toInteger(selector.getOrDefault(BATCH_SIZE, 1000));
+            this.flushInterval = Util.toLong(selector.getOrDefault(FLUSH_INTERVAL, 1000));
+            this.queueSize = Util.toInteger(selector.getOrDefault(QUEUE_SIZE, batchSize * 10));
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize parameter must be > 0");
+            }
+            if (flushInterval < 1) {
+                throw new IllegalArgumentException("flushInterval parameter must be > 0");
+            }
+            if (queueSize < batchSize) {
+                throw new IllegalArgumentException("queueSize parameter must be >= batchSize");
+            }
+        }
+
+        /**
+         * @return the options of the selector, or null if the trigger doesn't coalesce the transactions
+         */
+        static Options of(Map<String, Object> selector) {
+            if (selector == null || !Util.toBoolean(selector.get(COALESCE))) return null;
+            if (!"afterAsync".equals(selector.get("phase"))) {
+                throw new IllegalArgumentException("The coalesce selector is only supported in the afterAsync phase");
+            }
+            return new Options(selector);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Options)) return false;
+            Options other = (Options) o;
+            return batchSize == other.batchSize && flushInterval == other.flushInterval && queueSize == other.queueSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (31 * batchSize + flushInterval) + queueSize);
+        }
+    }
+
+    private static class Pending {
+        private final TriggerMetadata metadata;
+        private final long enqueuedAt = System.nanoTime();
+
+        private Pending(TriggerMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+
+    private final Options options;
+    private final ExecutorService executor;
+    private final BiConsumer<TriggerIndex.Entry, TriggerMetadata> action;
+    private final Log log;
+    private final BlockingQueue<Pending> queue;
+    private final ScheduledFuture<?> timer;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile TriggerIndex.Entry trigger;
+    private volatile boolean closed;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong flushedTransactions = new AtomicLong();
+    private volatile long lastBatchLagMillis;
+    private volatile long lastBatchMillis;
+
+    /**
+     * @param action runs the trigger for a merged change set
+     */
+    TriggerBatcher(
+            TriggerIndex.Entry trigger,
+            Options options,
+            ExecutorService executor,
+            ScheduledExecutorService scheduler,
+            BiConsumer<TriggerIndex.Entry, TriggerMetadata> action,
+            Log log) {
+        this.trigger = trigger;
+        this.options = options;
+        this.executor = executor;
+        this.action = action;
+        this.log = log;
+        this.queue = new ArrayBlockingQueue<>(options.queueSize);
+        this.timer = scheduler.scheduleWithFixedDelay(
+                this::requestFlush, options.flushInterval, options.flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    Options getOptions() {
+        return options;
+    }
+
+    /**
+     * The statement or the params of the trigger may change without its batching options
+     */
+    void setTrigger(TriggerIndex.Entry trigger) {
+        this.trigger = trigger;
+    }
+
+    /**
+     * Buffers the changes of a committed transaction, waiting for room in the buffer if it's full
+     *
+     * @param metadata the parameters referenced by the statement, already built
+     */
+    void add(TriggerMetadata metadata) {
+        Pending pending = new Pending(metadata);
+        try {
+            if (!queue.offer(pending)) {
+                blocked.incrementAndGet();
+                requestFlush();
+                while (!queue.offer(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return;
+        }
+        enqueued.incrementAndGet();
+        if (queue.size() >= options.batchSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (queue.isEmpty() || !flushing.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::flush);
+        } catch (RuntimeException e) {
+            flushing.set(false);
+            log.warn("Cannot flush the transactions of the trigger " + trigger.getName(), e);
+        }
+    }
+
+    private void flush() {
+        try {
+            // we keep flushing as long as full batches are waiting, the rest waits for the timer unless we're closed
+            do {
+                List<Pending> batch = new ArrayList<>(options.batchSize);
+                queue.drainTo(batch, options.batchSize);
+                if (batch.isEmpty()) break;
+                run(batch);
+            } while (queue.size() >= options.batchSize || closed);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        long start = System.nanoTime();
+        lastBatchLagMillis = TimeUnit.NANOSECONDS.toMillis(start - batch.get(0).enqueuedAt);
+        List<TriggerMetadata> metadata = new ArrayList<>(batch.size());
+        batch.forEach(pending -> metadata.add(pending.metadata));
+        try {
+            action.accept(trigger, TriggerMetadata.merge(metadata));
+        } catch (Exception e) {
+            // the errors of the statement are already logged while executing it
+            failedBatches.incrementAndGet();
+        } finally {
+            batches.incrementAndGet();
+            flushedTransactions.addAndGet(batch.size());
+            lastBatchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Stops the timer, and flushes the buffered transactions if required, otherwise they are discarded
+     */
+    void close(boolean flush) {
+        closed = true;
+        timer.cancel(false);
+        if (flush) {
+            requestFlush();
+        } else {
+            dropped.addAndGet(queue.size());
+            queue.clear();
+        }
+    }
+
+    /**
+     * @return the depth of the buffer, the age of its oldest transaction and the counters of the flushed batches
+     */
+    Map<String, Object> getStats() {
+        Pending oldest = queue.peek();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("queueSize", options.queueSize);
+        stats.put("batchSize", options.batchSize);
+        stats.put("flushInterval", options.flushInterval);
+        stats.put(
+                "lagMillis",
+                oldest == null ? 0L : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedAt));
+        stats.put("transactions", enqueued.get());
+        stats.put("flushedTransactions", flushedTransactions.get());
+        stats.put("batches", batches.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("blocked", blocked.get());
+        stats.put("dropped", dropped.get());
+        stats.put("lastBatchLagMillis", lastBatchLagMillis);
+        stats.put("lastBatchMillis", lastBatchMillis);
+        return Collections.unmodifiableMap(stats);
+    }
+}
@@ -26,8 +26,11 @@ import apoc.Pools;
 import apoc.SystemLabels;
 import apoc.SystemPropertyKeys;
 import apoc.util.Util;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -50,7 +53,7 @@ import org.neo4j.scheduler.Group;
 import org.neo4j.scheduler.JobHandle;
 import org.neo4j.scheduler.JobScheduler;
 
-public class TriggerHandler extends LifecycleAdapter implements TransactionEventListener<Void> {
+public class TriggerHandler extends LifecycleAdapter implements TransactionEventListener<TransactionChanges> {
 
     private enum Phase {
         before,
@@ -64,6 +67,8 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
     public static final String TRIGGER_REFRESH = "apoc.trigger.refresh";
 
     private final ConcurrentHashMap<String, Map<String, Object>> activeTriggers = new ConcurrentHashMap();
+    private volatile TriggerIndex triggerIndex = TriggerIndex.EMPTY;
+    private final Map<String, TriggerBatcher> batchers = new ConcurrentHashMap<>();
     private final Log log;
     private final GraphDatabaseService db;
     private final DatabaseManagementService databaseManagementService;
@@ -127,10 +132,63 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
                                     "paused", node.getProperty(SystemPropertyKeys.paused.name()))));
             return null;
         });
+        triggerIndex = new TriggerIndex(activeTriggers);
+        reconcileBatchers(triggerIndex);
 
         reconcileKernelRegistration();
     }
 
+    /**
+     * Creates a batcher for each coalescing `afterAsync` trigger, flushing the ones whose options changed
+     * and discarding the ones of the removed triggers
+     */
+    private synchronized void reconcileBatchers(TriggerIndex index) {
+        Map<String, TriggerBatcher> previous = new HashMap<>(batchers);
+        batchers.clear();
+        for (TriggerIndex.Entry trigger : index.getEntries()) {
+            TriggerBatcher.Options options;
+            try {
+                options = TriggerBatcher.Options.of(trigger.getSelector());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid batching options for the trigger " + trigger.getName() + ": " + e.getMessage());
+                options = null;
+            }
+            if (options == null) continue;
+            TriggerBatcher batcher = previous.remove(trigger.getName());
+            if (batcher != null && batcher.getOptions().equals(options)) {
+                batcher.setTrigger(trigger);
+            } else {
+                if (batcher != null) batcher.close(true);
+                batcher = new TriggerBatcher(
+                        trigger,
+                        options,
+                        pools.getTriggerExecutorService(),
+                        pools.getScheduledExecutorService(),
+                        this::executeBatch,
+                        log);
+            }
+            batchers.put(trigger.getName(), batcher);
+        }
+        previous.values().forEach(batcher -> batcher.close(false));
+    }
+
+    private void executeBatch(TriggerIndex.Entry trigger, TriggerMetadata triggerMetadata) {
+        try (Transaction tx = db.beginTx()) {
+            setTriggerMetadata(tx);
+            executeTriggers(tx, triggerMetadata.rebind(tx), Phase.afterAsync, List.of(trigger));
+            tx.commit();
+        }
+    }
+
+    /**
+     * @return the statistics of the batches of each coalescing `afterAsync` trigger
+     */
+    public Map<String, Map<String, Object>> batchStats() {
+        checkEnabled();
+        return batchers.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getStats()));
+    }
+
     /**
      * There is substantial memory overhead to the kernel event system, so if a user has enabled apoc triggers in
      * config, but there are no triggers set up, unregister to let the kernel bypass the event handling system.
@@ -160,6 +218,7 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
     public Map<String, Object> add(
             String name, String statement, Map<String, Object> selector, Map<String, Object> params) {
         checkEnabled();
+        TriggerSelector.validate(selector);
         Map<String, Object> previous = activeTriggers.get(name);
 
         withSystemDb(tx -> {
@@ -236,16 +295,24 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         return Map.copyOf(activeTriggers);
     }
 
+    /**
+     * @return the changes of the transaction, passed to the other phases to skip the triggers they're not relevant to
+     */
     @Override
-    public Void beforeCommit(TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
-        if (hasPhase(Phase.before)) {
-            executeTriggers(transaction, txData, Phase.before);
+    public TransactionChanges beforeCommit(
+            TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
+        TriggerIndex index = triggerIndex;
+        TransactionChanges changes = index.isFiltering() ? TransactionChanges.of(txData) : null;
+        List<TriggerIndex.Entry> triggers = triggers(index, changes, Phase.before);
+        if (!triggers.isEmpty()) {
+            // built before any statement runs, so that no trigger sees the changes of the previous triggers' statements
+            executeTriggers(transaction, metadata(txData, false, triggers), Phase.before, triggers);
         }
-        return null;
+        return changes;
     }
 
     @Override
-    public void afterCommit(TransactionData txData, Void state, GraphDatabaseService databaseService) {
+    public void afterCommit(TransactionData txData, TransactionChanges changes, GraphDatabaseService databaseService) {
         // if `txData.metaData()` is equal to TRIGGER_META,
         // it means that the transaction comes from another TriggerHandler transaction,
         // therefore the execution must be blocked to prevent a deadlock due to cascading transactions
@@ -253,14 +320,16 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
             return;
         }
 
-        if (hasPhase(Phase.after)) {
+        TriggerIndex index = triggerIndex;
+        List<TriggerIndex.Entry> triggers = triggers(index, changes, Phase.after);
+        if (!triggers.isEmpty()) {
             try (Transaction tx = db.beginTx()) {
                 setTriggerMetadata(tx);
-                executeTriggers(tx, txData, Phase.after);
+                executeTriggers(tx, metadata(txData, false, triggers), Phase.after, triggers);
                 tx.commit();
             }
         }
-        afterAsync(txData);
+        afterAsync(txData, triggers(index, changes, Phase.afterAsync));
     }
 
     private static boolean isTransactionCreatedByTrigger(TransactionData txData) {
@@ -268,60 +337,91 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         return metaData.equals(TRIGGER_META);
     }
 
-    private void afterAsync(TransactionData txData) {
-        if (hasPhase(Phase.afterAsync)) {
-            TriggerMetadata triggerMetadata = TriggerMetadata.from(txData, true);
+    private void afterAsync(TransactionData txData, List<TriggerIndex.Entry> triggers) {
+        if (triggers.isEmpty()) return;
+        // the transaction data won't be available anymore, so we build the parameters the statements need now
+        TriggerMetadata triggerMetadata = metadata(txData, true, triggers);
+
+        List<TriggerIndex.Entry> direct = new ArrayList<>();
+        for (TriggerIndex.Entry trigger : triggers) {
+            TriggerBatcher batcher = batchers.get(trigger.getName());
+            if (batcher == null) {
+                direct.add(trigger);
+            } else {
+                batcher.add(triggerMetadata.project(trigger.getParameters()));
+            }
+        }
+        if (!direct.isEmpty()) {
             Util.inTxFuture(pools.getDefaultExecutorService(), db, (inner) -> {
                 setTriggerMetadata(inner);
-                executeTriggers(inner, triggerMetadata.rebind(inner), Phase.afterAsync);
+                executeTriggers(inner, triggerMetadata.rebind(inner), Phase.afterAsync, direct);
                 return null;
             });
         }
     }
 
+    /**
+     * @return the parameters referenced by any of the triggers, built once for the whole phase
+     */
+    private static TriggerMetadata metadata(
+            TransactionData txData, boolean rebindDeleted, List<TriggerIndex.Entry> triggers) {
+        return TriggerMetadata.from(txData, rebindDeleted)
+                .materialize(triggers.stream()
+                        .flatMap(trigger -> trigger.getParameters().stream())
+                        .collect(Collectors.toSet()));
+    }
+
     private static void setTriggerMetadata(Transaction tx) {
         tx.execute("CALL tx.setMetaData($data)", Map.of("data", TRIGGER_META));
     }
 
+    /**
+     * @param changes null if the transaction failed before the commit, in which case no trigger is skipped
+     */
     @Override
-    public void afterRollback(TransactionData txData, Void state, GraphDatabaseService databaseService) {
-        if (hasPhase(Phase.rollback)) {
+    public void afterRollback(
+            TransactionData txData, TransactionChanges changes, GraphDatabaseService databaseService) {
+        List<TriggerIndex.Entry> triggers = triggers(triggerIndex, changes, Phase.rollback);
+        if (!triggers.isEmpty()) {
             try (Transaction tx = db.beginTx()) {
-                executeTriggers(tx, txData, Phase.rollback);
+                executeTriggers(tx, metadata(txData, false, triggers), Phase.rollback, triggers);
                 tx.commit();
             }
         }
     }
 
-    private boolean hasPhase(Phase phase) {
-        return activeTriggers.values().stream()
-                .map(data -> (Map<String, Object>) data.get("selector"))
-                .anyMatch(selector -> when(selector, phase));
-    }
-
-    private void executeTriggers(Transaction tx, TransactionData txData, Phase phase) {
-        executeTriggers(tx, TriggerMetadata.from(txData, false), phase);
+    /**
+     * @return the running triggers of the phase which are relevant to the changes
+     */
+    private List<TriggerIndex.Entry> triggers(TriggerIndex index, TransactionChanges changes, Phase phase) {
+        if (index.isEmpty()) return Collections.emptyList();
+        List<TriggerIndex.Entry> result = new ArrayList<>();
+        for (TriggerIndex.Entry trigger : index.candidates(changes)) {
+            if (!trigger.isPaused() && when(trigger.getSelector(), phase)) {
+                result.add(trigger);
+            }
+        }
+        return result;
     }
 
-    private void executeTriggers(Transaction tx, TriggerMetadata triggerMetadata, Phase phase) {
+    private void executeTriggers(
+            Transaction tx, TriggerMetadata triggerMetadata, Phase phase, List<TriggerIndex.Entry> triggers) {
         Map<String, String> exceptions = new LinkedHashMap<>();
-        activeTriggers.forEach((name, data) -> {
-            Map<String, Object> params = triggerMetadata.toMap();
-            if (data.get("params") != null) {
-                params.putAll((Map<String, Object>) data.get("params"));
+        for (TriggerIndex.Entry trigger : triggers) {
+            String name = trigger.getName();
+            Map<String, Object> params = triggerMetadata.toMap(trigger.getParameters());
+            if (trigger.getParams() != null) {
+                params.putAll(trigger.getParams());
             }
-            Map<String, Object> selector = (Map<String, Object>) data.get("selector");
-            if ((!(boolean) data.get("paused")) && when(selector, phase)) {
-                try {
-                    params.put("trigger", name);
-                    Result result = tx.execute((String) data.get("statement"), params);
-                    Iterators.count(result);
-                } catch (Exception e) {
-                    log.warn("Error executing trigger " + name + " in phase " + phase, e);
-                    exceptions.put(name, e.getMessage());
-                }
+            try {
+                params.put("trigger", name);
+                Result result = tx.execute(trigger.getStatement(), params);
+                Iterators.count(result);
+            } catch (Exception e) {
+                log.warn("Error executing trigger " + name + " in phase " + phase, e);
+                exceptions.put(name, e.getMessage());
             }
-        });
+        }
         if (!exceptions.isEmpty()) {
             throw new RuntimeException("Error executing triggers " + exceptions.toString());
         }
@@ -356,6 +456,8 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         if (restoreTriggerHandler != null) {
             restoreTriggerHandler.cancel();
         }
+        batchers.values().forEach(batcher -> batcher.close(true));
+        batchers.clear();
     }
 
     private <T> T withSystemDb(Function<Transaction, T> action) {
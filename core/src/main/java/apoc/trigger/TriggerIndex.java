@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A snapshot of the installed triggers of a database, compiled to find the ones a transaction is relevant to
+ * without executing their statements: the triggers with a filtering {@link TriggerSelector} are indexed
+ * by their labels and relationship types, or by their property keys when they only filter by them.
+ */
+class TriggerIndex {
+
+    static final TriggerIndex EMPTY = new TriggerIndex(Collections.emptyMap());
+
+    static class Entry {
+        private final String name;
+        private final String statement;
+        private final Map<String, Object> selector;
+        private final Map<String, Object> params;
+        private final boolean paused;
+        private final Set<String> parameters;
+
+        private Entry(String name, Map<String, Object> data) {
+            this.name = name;
+            this.statement = (String) data.get("statement");
+            this.selector = (Map<String, Object>) data.get("selector");
+            this.params = (Map<String, Object>) data.get("params");
+            this.paused = (boolean) data.get("paused");
+            this.parameters = TriggerMetadata.referencedParameters(statement);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getStatement() {
+            return statement;
+        }
+
+        Map<String, Object> getSelector() {
+            return selector;
+        }
+
+        Map<String, Object> getParams() {
+            return params;
+        }
+
+        boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * @return the {@link TriggerMetadata#PARAMETERS} referenced by the statement
+         */
+        Set<String> getParameters() {
+            return parameters;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Entry> unfiltered = new ArrayList<>();
+    private final Map<String, List<Entry>> byLabel = new HashMap<>();
+    private final Map<String, List<Entry>> byType = new HashMap<>();
+    private final Map<String, List<Entry>> byKey = new HashMap<>();
+    private final Map<Entry, TriggerSelector> selectors = new HashMap<>();
+
+    TriggerIndex(Map<String, Map<String, Object>> triggers) {
+        triggers.forEach((name, data) -> {
+            Entry entry = new Entry(name, data);
+            entries.add(entry);
+            TriggerSelector selector;
+            try {
+                selector = new TriggerSelector(entry.getSelector());
+            } catch (IllegalArgumentException e) {
+                // the selectors are validated on install, we just run the triggers installed by earlier versions
+                selector = new TriggerSelector(null);
+            }
+            if (!selector.isFiltering()) {
+                unfiltered.add(entry);
+                return;
+            }
+            selectors.put(entry, selector);
+            if (selector.getLabels().isEmpty() && selector.getRelTypes().isEmpty()) {
+                selector.getPropertyKeys().forEach(key -> add(byKey, key, entry));
+            } else {
+                selector.getLabels().forEach(label -> add(byLabel, label, entry));
+                selector.getRelTypes().forEach(type -> add(byType, type, entry));
+            }
+        });
+    }
+
+    private static void add(Map<String, List<Entry>> index, String token, Entry entry) {
+        index.computeIfAbsent(token, k -> new ArrayList<>()).add(entry);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return true if some triggers can be skipped, depending on the changes of the transaction
+     */
+    boolean isFiltering() {
+        return !selectors.isEmpty();
+    }
+
+    /**
+     * @param changes the changes of the transaction, or null if they're not available
+     * @return the triggers to run for the changes, regardless of their phase
+     */
+    Collection<Entry> candidates(TransactionChanges changes) {
+        if (changes == null || selectors.isEmpty()) return entries;
+        Set<Entry> result = new LinkedHashSet<>(unfiltered);
+        addMatching(result, byLabel, changes.getLabels(), changes);
+        addMatching(result, byType, changes.getTypes(), changes);
+        addMatching(result, byKey, changes.getKeys(), changes);
+        return result;
+    }
+
+    private void addMatching(
+            Set<Entry> result, Map<String, List<Entry>> index, Set<String> tokens, TransactionChanges changes) {
+        if (index.isEmpty()) return;
+        for (String token : tokens) {
+            for (Entry entry : index.getOrDefault(token, Collections.emptyList())) {
+                if (!result.contains(entry) && selectors.get(entry).matches(changes)) {
+                    result.add(entry);
+                }
+            }
+        }
+    }
+}
@@ -25,14 +25,21 @@ import apoc.result.VirtualNode;
 import apoc.result.VirtualRelationship;
 import apoc.util.Util;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.event.LabelEntry;
@@ -40,100 +47,176 @@ import org.neo4j.graphdb.event.PropertyEntry;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.internal.helpers.collection.Iterables;
 
+/**
+ * The parameters describing the changes of a transaction, passed to the trigger statements.
+ * Each parameter is only built from the {@link TransactionData} the first time it's requested,
+ * so that the statements which don't reference, say, `$assignedNodeProperties` don't pay for its conversion.
+ */
 public class TriggerMetadata {
-    private final long transactionId;
-    private final long commitTime;
-    private final List<Node> createdNodes;
-    private final List<Relationship> createdRelationships;
-    private final List<Node> deletedNodes;
-    private final List<Relationship> deletedRelationships;
-    private final Map<String, List<Node>> removedLabels;
-    private final Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties;
-    private final Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties;
-    private final Map<String, List<Node>> assignedLabels;
-    private final Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties;
-    private final Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties;
-    private final Map<String, Object> metaData;
-
-    private TriggerMetadata(
-            long transactionId,
-            long commitTime,
-            List<Node> createdNodes,
-            List<Relationship> createdRelationships,
-            List<Node> deletedNodes,
-            List<Relationship> deletedRelationships,
-            Map<String, List<Node>> removedLabels,
-            Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties,
-            Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties,
-            Map<String, List<Node>> assignedLabels,
-            Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties,
-            Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties,
-            Map<String, Object> metaData) {
-        this.transactionId = transactionId;
-        this.commitTime = commitTime;
-        this.createdNodes = createdNodes;
-        this.createdRelationships = createdRelationships;
-        this.deletedNodes = deletedNodes;
-        this.deletedRelationships = deletedRelationships;
-        this.removedLabels = removedLabels;
-        this.removedNodeProperties = removedNodeProperties;
-        this.removedRelationshipProperties = removedRelationshipProperties;
-        this.assignedLabels = assignedLabels;
-        this.assignedNodeProperties = assignedNodeProperties;
-        this.assignedRelationshipProperties = assignedRelationshipProperties;
-        this.metaData = metaData;
+    public static final List<String> PARAMETERS = List.of(
+            "transactionId",
+            "commitTime",
+            "createdNodes",
+            "createdRelationships",
+            "deletedNodes",
+            "deletedRelationships",
+            "removedLabels",
+            "removedNodeProperties",
+            "removedRelationshipProperties",
+            "assignedLabels",
+            "assignedNodeProperties",
+            "assignedRelationshipProperties",
+            "metaData");
+
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile("\\$\\s*`?(\\w+)`?");
+
+    // null once rebound to another transaction, then only the already built parameters are available
+    private final TransactionData txData;
+    private final boolean rebindDeleted;
+    private final Map<String, Object> values;
+    // true for the changes of several transactions, in which the entities may have been deleted since
+    private final boolean merged;
+    private final Map<String, Object> converted = new HashMap<>();
+
+    private TriggerMetadata(TransactionData txData, boolean rebindDeleted, Map<String, Object> values, boolean merged) {
+        this.txData = txData;
+        this.rebindDeleted = rebindDeleted;
+        this.values = values;
+        this.merged = merged;
     }
 
     public static TriggerMetadata from(TransactionData txData, boolean rebindDeleted) {
-        long txId, commitTime;
-        try {
-            txId = txData.getTransactionId();
-        } catch (Exception ignored) {
-            txId = -1L;
+        return new TriggerMetadata(txData, rebindDeleted, new HashMap<>(), false);
+    }
+
+    /**
+     * Merges the already built parameters of several transactions in a single change set:
+     * the entities and the property entries are concatenated,
+     * while the `transactionId`, the `commitTime` and the `metaData` are the ones of the last transaction.
+     */
+    public static TriggerMetadata merge(List<TriggerMetadata> batch) {
+        Map<String, Object> values = new HashMap<>();
+        for (TriggerMetadata metadata : batch) {
+            metadata.values.forEach((parameter, value) -> {
+                switch (parameter) {
+                    case "transactionId":
+                    case "commitTime":
+                    case "metaData":
+                        values.put(parameter, value);
+                        break;
+                    case "createdNodes":
+                    case "createdRelationships":
+                    case "deletedNodes":
+                    case "deletedRelationships":
+                        ((List<Object>) values.computeIfAbsent(parameter, k -> new ArrayList<>()))
+                                .addAll((List<Object>) value);
+                        break;
+                    default:
+                        Map<String, List<Object>> merged =
+                                (Map<String, List<Object>>) values.computeIfAbsent(parameter, k -> new HashMap<>());
+                        ((Map<String, List<Object>>) value)
+                                .forEach((key, list) -> merged.computeIfAbsent(key, k -> new ArrayList<>())
+                                        .addAll(list));
+                }
+            });
         }
-        try {
-            commitTime = txData.getCommitTime();
-        } catch (Exception ignored) {
-            commitTime = -1L;
+        boolean rebindDeleted = !batch.isEmpty() && batch.get(0).rebindDeleted;
+        return new TriggerMetadata(null, rebindDeleted, values, true);
+    }
+
+    /**
+     * @return the names of the {@link #PARAMETERS} referenced by the statement
+     */
+    public static Set<String> referencedParameters(String statement) {
+        Set<String> result = new HashSet<>();
+        Matcher matcher = PARAMETER_PATTERN.matcher(statement);
+        while (matcher.find()) {
+            if (PARAMETERS.contains(matcher.group(1))) {
+                result.add(matcher.group(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the parameters right away, as the transaction data is no longer available after the commit
+     */
+    public TriggerMetadata materialize(Collection<String> parameters) {
+        parameters.forEach(this::get);
+        return this;
+    }
+
+    /**
+     * @return the given parameters only, which must have been built already
+     */
+    public TriggerMetadata project(Collection<String> parameters) {
+        Map<String, Object> projected = new HashMap<>();
+        for (String parameter : parameters) {
+            projected.put(parameter, get(parameter));
         }
-        List<Node> createdNodes = Convert.convertToList(txData.createdNodes());
-        List<Relationship> createdRelationships = Convert.convertToList(txData.createdRelationships());
-        List<Node> deletedNodes = rebindDeleted
-                ? rebindDeleted(Convert.convertToList(txData.deletedNodes()), txData)
-                : Convert.convertToList(txData.deletedNodes());
-        List<Relationship> deletedRelationships = rebindDeleted
-                ? rebindDeleted(Convert.convertToList(txData.deletedRelationships()), txData)
-                : Convert.convertToList(txData.deletedRelationships());
-        Map<String, List<Node>> removedLabels = aggregateLabels(txData.removedLabels());
-        Map<String, List<Node>> assignedLabels = aggregateLabels(txData.assignedLabels());
-        Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties =
-                aggregatePropertyKeys(txData.removedNodeProperties(), true);
-        Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties =
-                aggregatePropertyKeys(txData.removedRelationshipProperties(), true);
-        final Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties =
-                aggregatePropertyKeys(txData.assignedNodeProperties(), false);
-        final Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties =
-                aggregatePropertyKeys(txData.assignedRelationshipProperties(), false);
-        if (rebindDeleted) {
-            removedLabels = removedLabels.entrySet().stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey, e -> rebindDeleted(e.getValue(), txData)));
-            removedNodeProperties = rebindPropsEntries(txData, removedNodeProperties);
-            removedRelationshipProperties = rebindPropsEntries(txData, removedRelationshipProperties);
+        return new TriggerMetadata(null, rebindDeleted, projected, merged);
+    }
+
+    private Object get(String parameter) {
+        if (values.containsKey(parameter) || txData == null) {
+            return values.get(parameter);
+        }
+        Object value = build(parameter);
+        values.put(parameter, value);
+        return value;
+    }
+
+    private Object build(String parameter) {
+        switch (parameter) {
+            case "transactionId":
+                try {
+                    return txData.getTransactionId();
+                } catch (Exception ignored) {
+                    return -1L;
+                }
+            case "commitTime":
+                try {
+                    return txData.getCommitTime();
+                } catch (Exception ignored) {
+                    return -1L;
+                }
+            case "createdNodes":
+                return Convert.convertToList(txData.createdNodes());
+            case "createdRelationships":
+                return Convert.convertToList(txData.createdRelationships());
+            case "deletedNodes":
+                List<Node> deletedNodes = Convert.convertToList(txData.deletedNodes());
+                return rebindDeleted ? rebindDeleted(deletedNodes, txData) : deletedNodes;
+            case "deletedRelationships":
+                List<Relationship> deletedRelationships = Convert.convertToList(txData.deletedRelationships());
+                return rebindDeleted ? rebindDeleted(deletedRelationships, txData) : deletedRelationships;
+            case "removedLabels":
+                Map<String, List<Node>> removedLabels = aggregateLabels(txData.removedLabels());
+                return rebindDeleted
+                        ? removedLabels.entrySet().stream()
+                                .collect(Collectors.toMap(Map.Entry::getKey, e -> rebindDeleted(e.getValue(), txData)))
+                        : removedLabels;
+            case "removedNodeProperties":
+                Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties =
+                        aggregatePropertyKeys(txData.removedNodeProperties(), true);
+                return rebindDeleted ? rebindPropsEntries(txData, removedNodeProperties) : removedNodeProperties;
+            case "removedRelationshipProperties":
+                Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties =
+                        aggregatePropertyKeys(txData.removedRelationshipProperties(), true);
+                return rebindDeleted
+                        ? rebindPropsEntries(txData, removedRelationshipProperties)
+                        : removedRelationshipProperties;
+            case "assignedLabels":
+                return aggregateLabels(txData.assignedLabels());
+            case "assignedNodeProperties":
+                return aggregatePropertyKeys(txData.assignedNodeProperties(), false);
+            case "assignedRelationshipProperties":
+                return aggregatePropertyKeys(txData.assignedRelationshipProperties(), false);
+            case "metaData":
+                return txData.metaData();
+            default:
+                throw new IllegalArgumentException("Unknown trigger parameter " + parameter);
         }
-        return new TriggerMetadata(
-                txId,
-                commitTime,
-                createdNodes,
-                createdRelationships,
-                deletedNodes,
-                deletedRelationships,
-                removedLabels,
-                removedNodeProperties,
-                removedRelationshipProperties,
-                assignedLabels,
-                assignedNodeProperties,
-                assignedRelationshipProperties,
-                txData.metaData());
     }
 
     private static <T extends Entity> Map<String, List<PropertyEntryContainer<T>>> rebindPropsEntries(
@@ -172,45 +255,60 @@ public class TriggerMetadata {
     }
 
     public TriggerMetadata rebind(Transaction tx) {
-        final List<Node> createdNodes = Util.rebind(this.createdNodes, tx);
-        final List<Relationship> createdRelationships = Util.rebind(this.createdRelationships, tx);
-        //        final List<Node> deletedNodes = Util.rebind(this.deletedNodes, tx);
-        //        final List<Relationship> deletedRelationships = Util.rebind(this.deletedRelationships, tx);
-        final Map<String, List<Node>> removedLabels = rebindMap(this.removedLabels, tx);
-        final Map<String, List<Node>> assignedLabels = rebindMap(this.assignedLabels, tx);
-        final Map<String, List<PropertyEntryContainer<Node>>> removedNodeProperties =
-                rebindPropertyEntryContainer(this.removedNodeProperties, tx);
-        final Map<String, List<PropertyEntryContainer<Relationship>>> removedRelationshipProperties =
-                rebindPropertyEntryContainer(this.removedRelationshipProperties, tx);
-        final Map<String, List<PropertyEntryContainer<Node>>> assignedNodeProperties =
-                rebindPropertyEntryContainer(this.assignedNodeProperties, tx);
-        final Map<String, List<PropertyEntryContainer<Relationship>>> assignedRelationshipProperties =
-                rebindPropertyEntryContainer(this.assignedRelationshipProperties, tx);
-        return new TriggerMetadata(
-                transactionId,
-                commitTime,
-                createdNodes,
-                createdRelationships,
-                deletedNodes,
-                deletedRelationships,
-                removedLabels,
-                removedNodeProperties,
-                removedRelationshipProperties,
-                assignedLabels,
-                assignedNodeProperties,
-                assignedRelationshipProperties,
-                metaData);
+        Map<String, Object> rebound = new HashMap<>();
+        values.forEach((parameter, value) -> rebound.put(parameter, rebind(parameter, value, tx)));
+        return new TriggerMetadata(null, rebindDeleted, rebound, merged);
+    }
+
+    private Object rebind(String parameter, Object value, Transaction tx) {
+        switch (parameter) {
+            case "createdNodes":
+            case "createdRelationships":
+                return rebindList((List<Entity>) value, tx);
+            case "removedLabels":
+            case "assignedLabels":
+                return rebindMap((Map<String, List<Entity>>) value, tx);
+            case "removedNodeProperties":
+            case "removedRelationshipProperties":
+            case "assignedNodeProperties":
+            case "assignedRelationshipProperties":
+                return rebindPropertyEntryContainer((Map<String, List<PropertyEntryContainer<Entity>>>) value, tx);
+            default:
+                // the deleted entities can't be rebound, they are virtual ones if the transaction data was rebound
+                return value;
+        }
     }
 
     private <T extends Entity> Map<String, List<PropertyEntryContainer<T>>> rebindPropertyEntryContainer(
             Map<String, List<PropertyEntryContainer<T>>> map, Transaction tx) {
         return map.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().stream()
-                .map(p -> p.rebind(tx))
+                .map(p -> p.copy(rebindEntity(p.entity, tx)))
+                .filter(p -> p.entity != null)
                 .collect(Collectors.toList())));
     }
 
     private <T extends Entity> Map<String, List<T>> rebindMap(Map<String, List<T>> map, Transaction tx) {
-        return map.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> Util.rebind(e.getValue(), tx)));
+        return map.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> rebindList(e.getValue(), tx)));
+    }
+
+    private <T extends Entity> List<T> rebindList(List<T> entities, Transaction tx) {
+        if (!merged) return Util.rebind(entities, tx);
+        return entities.stream()
+                .map(e -> rebindEntity(e, tx))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the entity in the transaction, or null if it has been deleted since the changes were merged
+     */
+    private <T extends Entity> T rebindEntity(T entity, Transaction tx) {
+        try {
+            return Util.rebind(tx, entity);
+        } catch (NotFoundException e) {
+            if (merged) return null;
+            throw e;
+        }
     }
 
     private <T extends Entity> Map<String, List<Map<String, Object>>> convertMapOfPropertyEntryContainers(
@@ -221,33 +319,26 @@ public class TriggerMetadata {
     }
 
     public Map<String, Object> toMap() {
-        return map(
-                "transactionId",
-                transactionId,
-                "commitTime",
-                commitTime,
-                "createdNodes",
-                createdNodes,
-                "createdRelationships",
-                createdRelationships,
-                "deletedNodes",
-                deletedNodes,
-                "deletedRelationships",
-                deletedRelationships,
-                "removedLabels",
-                removedLabels,
-                "removedNodeProperties",
-                convertMapOfPropertyEntryContainers(removedNodeProperties),
-                "removedRelationshipProperties",
-                convertMapOfPropertyEntryContainers(removedRelationshipProperties),
-                "assignedLabels",
-                assignedLabels,
-                "assignedNodeProperties",
-                convertMapOfPropertyEntryContainers(assignedNodeProperties),
-                "assignedRelationshipProperties",
-                convertMapOfPropertyEntryContainers(assignedRelationshipProperties),
-                "metaData",
-                metaData);
+        return toMap(PARAMETERS);
+    }
+
+    /**
+     * @return a new map with the given parameters, the property entries being converted to maps
+     */
+    public Map<String, Object> toMap(Collection<String> parameters) {
+        Map<String, Object> result = new HashMap<>();
+        for (String parameter : parameters) {
+            result.put(parameter, converted.computeIfAbsent(parameter, this::convert));
+        }
+        return result;
+    }
+
+    private Object convert(String parameter) {
+        Object value = get(parameter);
+        if (parameter.endsWith("Properties") && value != null) {
+            return convertMapOfPropertyEntryContainers((Map<String, List<PropertyEntryContainer<Entity>>>) value);
+        }
+        return value;
     }
 
     private static Map<String, List<Node>> aggregateLabels(Iterable<LabelEntry> labelEntries) {
@@ -276,10 +367,6 @@ public class TriggerMetadata {
             this.newVal = newVal;
         }
 
-        PropertyEntryContainer<T> rebind(Transaction tx) {
-            return new PropertyEntryContainer<T>(key, Util.rebind(tx, entity), oldVal, newVal);
-        }
-
         PropertyEntryContainer<T> copy(T entity) {
             return new PropertyEntryContainer<T>(key, entity, oldVal, newVal);
         }
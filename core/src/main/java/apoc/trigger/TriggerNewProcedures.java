@@ -106,6 +106,7 @@ public class TriggerNewProcedures {
                 WRITE,
                 READ_WRITE);
 
+        TriggerSelector.validate(selector);
         Map<String, Object> params = (Map) config.getOrDefault("params", Collections.emptyMap());
 
         return withTransaction(tx -> {
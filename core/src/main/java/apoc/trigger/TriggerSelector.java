@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The optional filters of a trigger selector, besides its phase:
+ * the trigger runs only for the transactions changing a node with one of the `labels`,
+ * or a relationship with one of the `relTypes`.
+ * With `propertyKeys`, the change must also be the assignment or the removal of one of them.
+ */
+class TriggerSelector {
+
+    static final String LABELS = "labels";
+    static final String REL_TYPES = "relTypes";
+    static final String PROPERTY_KEYS = "propertyKeys";
+
+    private final Set<String> labels;
+    private final Set<String> relTypes;
+    private final Set<String> propertyKeys;
+
+    TriggerSelector(Map<String, Object> selector) {
+        if (selector == null) selector = Collections.emptyMap();
+        this.labels = toSet(selector, LABELS);
+        this.relTypes = toSet(selector, REL_TYPES);
+        this.propertyKeys = toSet(selector, PROPERTY_KEYS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the filters are not strings or lists of strings,
+     * or if the batching options are invalid
+     */
+    static void validate(Map<String, Object> selector) {
+        new TriggerSelector(selector);
+        TriggerBatcher.Options.of(selector);
+    }
+
+    private static Set<String> toSet(Map<String, Object> selector, String key) {
+        Object value = selector.get(key);
+        if (value == null) return Collections.emptySet();
+        if (value instanceof String) return Set.of((String) value);
+        if (value instanceof Collection && ((Collection<?>) value).stream().allMatch(String.class::isInstance)) {
+            return ((Collection<?>) value).stream().map(String.class::cast).collect(Collectors.toSet());
+        }
+        throw new IllegalArgumentException("The selector " + key + " must be a string or a list of strings");
+    }
+
+    /**
+     * @return false if the trigger runs for every transaction
+     */
+    boolean isFiltering() {
+        return !labels.isEmpty() || !relTypes.isEmpty() || !propertyKeys.isEmpty();
+    }
+
+    Set<String> getLabels() {
+        return labels;
+    }
+
+    Set<String> getRelTypes() {
+        return relTypes;
+    }
+
+    Set<String> getPropertyKeys() {
+        return propertyKeys;
+    }
+
+    boolean matches(TransactionChanges changes) {
+        if (labels.isEmpty() && relTypes.isEmpty()) {
+            return propertyKeys.isEmpty() || intersects(propertyKeys, changes.getKeys());
+        }
+        for (String label : labels) {
+            if (changes.getLabels().contains(label) && matchesKeys(changes.getKeysByLabel(label))) return true;
+        }
+        for (String type : relTypes) {
+            if (changes.getTypes().contains(type) && matchesKeys(changes.getKeysByType(type))) return true;
+        }
+        return false;
+    }
+
+    private boolean matchesKeys(Set<String> changedKeys) {
+        return propertyKeys.isEmpty() || intersects(propertyKeys, changedKeys);
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        return !Collections.disjoint(a, b);
+    }
+}
@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.temporal.Temporal;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterators;
@@ -145,6 +146,45 @@ public class JsonUtil {
         }
     }
 
+    /**
+     * Like {@link #loadJson(Object, Map, String, String, boolean, String, List)}, but the path is evaluated while parsing
+     * and each matching element is returned as soon as it's read, see {@link StreamingJsonPath} for the supported paths.
+     * The source is closed along with the stream.
+     */
+    public static Stream<Object> streamJson(
+            Object urlOrBinary,
+            Map<String, Object> headers,
+            String payload,
+            String path,
+            boolean failOnError,
+            String compressionAlgo) {
+        StreamingJsonPath streamingPath = new StreamingJsonPath(path);
+        try {
+            if (urlOrBinary instanceof String) {
+                String url = (String) urlOrBinary;
+                urlOrBinary = Util.getLoadUrlByConfigFile("json", url, "url").orElse(url);
+            }
+            InputStream input = FileUtils.inputStreamFor(urlOrBinary, headers, payload, compressionAlgo);
+            JsonParser parser = OBJECT_MAPPER.getFactory().createParser(input);
+            Iterator<Object> it = streamingPath.iterator(parser, OBJECT_MAPPER, failOnError);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, 0), false)
+                    .onClose(() -> {
+                        try {
+                            parser.close();
+                            input.close();
+                        } catch (IOException ignored) {
+                            // we've read what we needed
+                        }
+                    });
+        } catch (IOException e) {
+            if (!failOnError) {
+                return Stream.of();
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     public static Stream<Object> loadJson(String url) {
         return loadJson(url, null, null, "", true, null, null);
     }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Runs a work split in items, which the calling thread and up to `workers - 1` pool tasks take from a shared source
+ * until there's none left.
+ *
+ * The calling thread works too, so that the work goes on even if no pool task ever starts:
+ * once it's out of items, the tasks which haven't started yet are cancelled and the running ones are awaited,
+ * checking if the query has been terminated. The first failure stops all the others.
+ *
+ * With a transaction, each pool task reads in its own one, started with the security context of the calling one,
+ * so that the workers never read more than the caller is allowed to.
+ * As they wouldn't see the changes of the calling transaction, a transaction with changes runs the work alone.
+ */
+public class ParallelWorkers {
+
+    private static final long CHECK_TERMINATION_MILLIS = 100;
+
+    public interface Work {
+        /**
+         * Takes and processes the items until there's none left or `stopped` returns true
+         */
+        void run(BooleanSupplier stopped) throws Exception;
+    }
+
+    public interface TxWork {
+        /**
+         * Like {@link Work#run(BooleanSupplier)}, reading through the given transaction
+         */
+        void run(InternalTransaction tx, BooleanSupplier stopped) throws Exception;
+    }
+
+    /**
+     * @param guard checked while waiting for the pool tasks, or null
+     * @param action what the work does, for the error messages, e.g. "sampling the nodes"
+     */
+    public static void run(ExecutorService pool, int workers, TerminationGuard guard, String action, Work work) {
+        run(pool, workers, guard, action, work, work);
+    }
+
+    /**
+     * @param tx the transaction of the caller, whose security context the pool tasks are started with
+     */
+    public static void run(
+            GraphDatabaseService db,
+            Transaction tx,
+            ExecutorService pool,
+            int workers,
+            TerminationGuard guard,
+            String action,
+            TxWork work) {
+        InternalTransaction callerTx = (InternalTransaction) tx;
+        if (callerTx.kernelTransaction().dataRead().transactionStateHasChanges()) workers = 1;
+        run(pool, workers, guard, action, stopped -> work.run(callerTx, stopped), stopped -> {
+            try (InternalTransaction workerTx = ((GraphDatabaseAPI) db)
+                    .beginTransaction(
+                            KernelTransaction.Type.EXPLICIT,
+                            callerTx.kernelTransaction().securityContext())) {
+                work.run(workerTx, stopped);
+            }
+        });
+    }
+
+    private static void run(
+            ExecutorService pool, int workers, TerminationGuard guard, String action, Work caller, Work worker) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BooleanSupplier stopped = () -> failure.get() != null;
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int i = 1; i < workers; i++) {
+                tasks.add(pool.submit(() -> {
+                    if (stopped.getAsBoolean()) return;
+                    try {
+                        worker.run(stopped);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }));
+            }
+            caller.run(stopped);
+            for (Future<?> task : tasks) {
+                // the tasks which haven't started yet have no items left to take
+                if (!task.cancel(false)) await(task, failure, guard);
+            }
+        } catch (Throwable t) {
+            if (t instanceof InterruptedException) Thread.currentThread().interrupt();
+            failure.compareAndSet(null, t);
+            tasks.forEach(task -> task.cancel(false));
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        if (t != null) throw new RuntimeException("Error while " + action, t);
+    }
+
+    private static void await(Future<?> task, AtomicReference<Throwable> failure, TerminationGuard guard)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                task.get(CHECK_TERMINATION_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (failure.get() != null) return;
+                if (guard != null) guard.check();
+            }
+        }
+    }
+}
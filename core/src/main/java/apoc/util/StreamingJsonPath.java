@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A restricted JsonPath, evaluated while the JSON is being parsed:
+ * each matching element is read as soon as the parser reaches it, so that only one element at a time is held in memory,
+ * and the parser skips the tokens of the non matching ones.
+ *
+ * Only the `$` root followed by child selectors is supported: `.name`, `['name']`, `.*`, `[*]` and `[index]`,
+ * e.g. `$.data.items[*]`. Without a path, or with the bare `$` root,
+ * the elements of a root array are returned one by one.
+ * If the source contains several root values, the path is applied to each one of them.
+ */
+class StreamingJsonPath {
+
+    private static final Pattern SEGMENT =
+            Pattern.compile("\\.([^.\\[\\]]+)|\\[\\*\\]|\\[(\\d+)\\]|\\['([^']*)'\\]|\\[\"([^\"]*)\"\\]");
+
+    private final List<Segment> segments;
+
+    StreamingJsonPath(String path) {
+        this.segments = parse(path);
+    }
+
+    /**
+     * @param failOnError if false, an error while reading ends the elements instead of failing
+     * @return the matching elements, read lazily from the parser
+     */
+    Iterator<Object> iterator(JsonParser parser, ObjectMapper mapper, boolean failOnError) {
+        return new MatchIterator(parser, mapper, failOnError);
+    }
+
+    private static List<Segment> parse(String path) {
+        List<Segment> segments = new ArrayList<>();
+        if (path == null || path.isBlank() || path.trim().equals("$")) {
+            // the elements of a root array, or the root value itself
+            segments.add(Segment.ROOT_ELEMENTS);
+            return segments;
+        }
+        String trimmed = path.trim();
+        if (!trimmed.startsWith("$")) {
+            throw unsupported(path);
+        }
+        Matcher matcher = SEGMENT.matcher(trimmed);
+        int position = 1;
+        while (position < trimmed.length()) {
+            if (!matcher.find(position) || matcher.start() != position) {
+                throw unsupported(path);
+            }
+            if (matcher.group(1) != null) {
+                segments.add(matcher.group(1).equals("*") ? Segment.WILDCARD : Segment.field(matcher.group(1)));
+            } else if (matcher.group(2) != null) {
+                segments.add(Segment.index(Integer.parseInt(matcher.group(2))));
+            } else if (matcher.group(3) != null) {
+                segments.add(Segment.field(matcher.group(3)));
+            } else if (matcher.group(4) != null) {
+                segments.add(Segment.field(matcher.group(4)));
+            } else {
+                segments.add(Segment.WILDCARD);
+            }
+            position = matcher.end();
+        }
+        return segments;
+    }
+
+    private static IllegalArgumentException unsupported(String path) {
+        return new IllegalArgumentException(
+                "The path " + path
+                        + " is not supported with streaming, only the child selectors .name, ['name'], .*, [*] and [index] are");
+    }
+
+    private static class Segment {
+        static final Segment WILDCARD = new Segment(null, -1);
+        static final Segment ROOT_ELEMENTS = new Segment(null, -1);
+
+        private final String field;
+        private final int index;
+
+        private Segment(String field, int index) {
+            this.field = field;
+            this.index = index;
+        }
+
+        static Segment field(String field) {
+            return new Segment(field, -1);
+        }
+
+        static Segment index(int index) {
+            return new Segment(null, index);
+        }
+
+        /**
+         * @return true if no other child of the same container can match, once one did
+         */
+        boolean isDefinite() {
+            return field != null || index >= 0;
+        }
+
+        boolean matches(String name, int position) {
+            if (this == WILDCARD) return true;
+            return name != null ? name.equals(field) : position == index;
+        }
+    }
+
+    /**
+     * A container matched by the first `depth` segments, whose children are matched by the next one
+     */
+    private static class Frame {
+        private final int depth;
+        private final boolean array;
+        private int position;
+        private boolean exhausted;
+
+        Frame(int depth, boolean array) {
+            this.depth = depth;
+            this.array = array;
+        }
+    }
+
+    private class MatchIterator implements Iterator<Object> {
+        private final JsonParser parser;
+        private final ObjectMapper mapper;
+        private final boolean failOnError;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private Object next;
+        private boolean hasNext;
+        private boolean done;
+
+        MatchIterator(JsonParser parser, ObjectMapper mapper, boolean failOnError) {
+            this.parser = parser;
+            this.mapper = mapper;
+            this.failOnError = failOnError;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!hasNext && !done) {
+                try {
+                    hasNext = advance();
+                    done = !hasNext;
+                } catch (IOException e) {
+                    // like an error before the first element, see JsonUtil.streamJson
+                    if (failOnError) throw new RuntimeException(e);
+                    hasNext = false;
+                    done = true;
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            hasNext = false;
+            Object result = next;
+            next = null;
+            return result;
+        }
+
+        private boolean advance() throws IOException {
+            while (true) {
+                if (stack.isEmpty()) {
+                    JsonToken token = parser.nextToken();
+                    if (token == null) return false;
+                    if (segments.get(0) == Segment.ROOT_ELEMENTS) {
+                        if (token == JsonToken.START_ARRAY) {
+                            stack.push(new Frame(0, true));
+                            continue;
+                        }
+                        return read();
+                    }
+                    if (!push(token, 0)) parser.skipChildren();
+                    continue;
+                }
+
+                Frame frame = stack.peek();
+                if (frame.exhausted) {
+                    skipRest();
+                    stack.pop();
+                    continue;
+                }
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                    stack.pop();
+                    continue;
+                }
+                String name = null;
+                if (!frame.array) {
+                    name = parser.currentName();
+                    token = parser.nextToken();
+                }
+                Segment segment = segments.get(frame.depth);
+                boolean matches = segment == Segment.ROOT_ELEMENTS || segment.matches(name, frame.position);
+                frame.position++;
+                if (!matches) {
+                    parser.skipChildren();
+                    continue;
+                }
+                frame.exhausted = segment.isDefinite();
+                if (frame.depth + 1 == segments.size()) {
+                    return read();
+                }
+                if (!push(token, frame.depth + 1)) parser.skipChildren();
+            }
+        }
+
+        private boolean push(JsonToken token, int depth) {
+            if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) return false;
+            stack.push(new Frame(depth, token == JsonToken.START_ARRAY));
+            return true;
+        }
+
+        private boolean read() throws IOException {
+            next = mapper.readValue(parser, Object.class);
+            return true;
+        }
+
+        /**
+         * skips the remaining children of the current container, up to its end
+         */
+        private void skipRest() throws IOException {
+            for (int depth = 1; depth > 0; ) {
+                JsonToken token = parser.nextToken();
+                if (token == null) return;
+                if (token.isStructStart()) depth++;
+                else if (token.isStructEnd()) depth--;
+            }
+        }
+    }
+}
@@ -81,6 +81,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -270,6 +271,20 @@ public class Util {
             long retry,
             long maxRetries,
             Consumer<Long> callbackForRetry) {
+        return retryInTx(log, db, function, retry, maxRetries, (retryCount, e) -> callbackForRetry.accept(retryCount));
+    }
+
+    /**
+     * Same as {@link #retryInTx(Log, GraphDatabaseService, Function, long, long, Consumer)},
+     * but the callback also receives the exception which caused the retry
+     */
+    public static <T> T retryInTx(
+            Log log,
+            GraphDatabaseService db,
+            Function<Transaction, T> function,
+            long retry,
+            long maxRetries,
+            BiConsumer<Long, Exception> callbackForRetry) {
         try (Transaction tx = db.beginTx()) {
             T result = function.apply(tx);
             tx.commit();
@@ -279,7 +294,7 @@ public class Util {
             if (log != null) {
                 log.warn("Retrying operation %d of %d", retry, maxRetries);
             }
-            callbackForRetry.accept(retry);
+            callbackForRetry.accept(retry, e);
             Util.sleep(100);
             return retryInTx(log, db, function, retry + 1, maxRetries, callbackForRetry);
         }
@@ -1290,6 +1305,15 @@ public class Util {
         return ListUtils.indexOf(list, (i) -> Util.valueEquals(i, value));
     }
 
+    /**
+     * @return the partition of a key with the given hash, out of `partitions`.
+     * The hash is multiplied by the golden ratio and the partition taken from the high bits of the product,
+     * as sequential ids and multiples of the same number would otherwise map to few partitions
+     */
+    public static int partitionOf(int hash, int partitions) {
+        return (int) (Integer.toUnsignedLong(hash * 0x9E3779B9) * partitions >>> 32);
+    }
+
     public static boolean constraintIsUnique(ConstraintType type) {
         return type == ConstraintType.NODE_KEY || type == ConstraintType.UNIQUENESS;
     }
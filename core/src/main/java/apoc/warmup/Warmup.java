@@ -18,19 +18,32 @@
  */
 package apoc.warmup;
 
+import apoc.Pools;
+import apoc.periodic.Periodic;
 import apoc.util.Util;
+import apoc.warmup.WarmupEngine.FileWarmup;
+import apoc.warmup.WarmupEngine.WarmupStore;
 import java.io.File;
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.io.pagecache.PageCache;
-import org.neo4j.io.pagecache.PageCursor;
 import org.neo4j.io.pagecache.PagedFile;
-import org.neo4j.kernel.api.KernelTransaction;
-import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.impl.coreapi.schema.IndexDefinitionImpl;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
@@ -53,6 +66,13 @@ public class Warmup {
     @Context
     public Log log;
 
+    @Context
+    public Pools pools;
+
+    public static final String JOB_NAME = "apoc.warmup";
+    private static final List<String> DEFAULT_STORES = List.of(
+            "relationships", "nodes", "relationshipGroups", "indexes", "properties", "strings", "arrays", "other");
+
     static class PageResult {
         public final String file;
         public final boolean index;
@@ -61,13 +81,13 @@ public class Warmup {
         public final String error;
         public final long time;
 
-        public PageResult(String file, boolean index, long fileSize, long pages, String error, long start) {
+        public PageResult(String file, boolean index, long fileSize, long pages, String error, long time) {
             this.file = file;
             this.index = index;
             this.fileSize = fileSize;
             this.pages = pages;
             this.error = error;
-            this.time = System.currentTimeMillis() - start;
+            this.time = time;
         }
     }
 
@@ -91,11 +111,8 @@ public class Warmup {
             @Name(value = "loadIndexes", defaultValue = "false") boolean loadIndexes)
             throws IOException {
         PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
-        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
 
-        List<PagedFile> pagedFiles = pageCache.listExistingMappings();
-
-        Map<String, PageResult> records = pagedFiles.parallelStream()
+        List<FileWarmup> files = pageCache.listExistingMappings().stream()
                 .filter(pF -> {
                     String name = pF.path().toFile().getName();
                     if (isSchema(pF.path().toFile()) && !loadIndexes) return false;
@@ -104,30 +121,26 @@ public class Warmup {
                     if ((name.startsWith("propertystore.db")) && !loadProperties) return false;
                     return true;
                 })
-                .map((pagedFile -> {
-                    File file = pagedFile.path().toFile();
-                    boolean index = isSchema(file);
-                    String fileName = index ? subPath(file, "schema") : file.getName();
-                    long pages = 0;
-                    long start = System.currentTimeMillis();
-                    try {
-                        if (pagedFile.fileSize() > 0) {
-                            PageCursor cursor = pagedFile.io(
-                                    0L, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK, ktx.cursorContext());
-                            while (cursor.next()) {
-                                cursor.getByte();
-                                pages++;
-                                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
-                                    break;
-                                }
-                            }
-                        }
-                        return new PageResult(fileName, index, pagedFile.fileSize(), pages, null, start);
-                    } catch (IOException e) {
-                        return new PageResult(fileName, index, -1L, pages, e.getMessage(), start);
-                    }
-                }))
-                .collect(Collectors.toMap(r -> r.file, r -> r));
+                .map(this::fileWarmup)
+                .collect(Collectors.toList());
+
+        WarmupEngine engine = new WarmupEngine(
+                pools.getIoExecutorService(),
+                Runtime.getRuntime().availableProcessors(),
+                WarmupEngine.DEFAULT_RANGE_PAGES,
+                Long.MAX_VALUE,
+                () -> Util.transactionIsTerminated(guard));
+        Map<String, PageResult> records;
+        try (Stream<FileWarmup> warmed = warm(engine, files)) {
+            records = warmed.map(f -> new PageResult(
+                            f.name,
+                            f.isIndex(),
+                            f.error == null ? f.fileSize : -1L,
+                            f.getPages(),
+                            f.error,
+                            f.getTime()))
+                    .collect(Collectors.toMap(r -> r.file, r -> r));
+        }
 
         WarmupResult result = new WarmupResult(
                 pageCache.pageSize(),
@@ -148,8 +161,163 @@ public class Warmup {
         return Stream.of(result);
     }
 
+    @Procedure
+    @Description(
+            "apoc.warmup.stream(config) - loads the pages of the store files into the page cache, splitting each file in ranges loaded concurrently, and streams a row as soon as each file is done")
+    public Stream<WarmupProgress> stream(@Name(value = "config", defaultValue = "{}") Map<String, Object> config)
+            throws IOException {
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        List<FileWarmup> files = selectFiles(pageCache, config);
+
+        AtomicBoolean closed = new AtomicBoolean();
+        WarmupEngine engine = engine(pageCache, config, () -> closed.get() || Util.transactionIsTerminated(guard));
+        Stream<FileWarmup> warmed = warm(engine, files);
+        long plannedPages = files.stream().mapToLong(f -> f.plannedPages).sum();
+        AtomicLong pages = new AtomicLong();
+        return warmed.map(f -> new WarmupProgress(f, pages.addAndGet(f.getPages()), plannedPages))
+                .onClose(() -> closed.set(true));
+    }
+
+    @Procedure
+    @Description(
+            "apoc.warmup.submit(config) - loads the pages of the store files into the page cache like apoc.warmup.stream, in a background job named 'apoc.warmup', listed by apoc.periodic.list and cancelled by apoc.periodic.cancel")
+    public Stream<Periodic.JobInfo> submit(@Name(value = "config", defaultValue = "{}") Map<String, Object> config)
+            throws IOException {
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        List<FileWarmup> files = selectFiles(pageCache, config);
+
+        Periodic.JobInfo info = new Periodic.JobInfo(JOB_NAME);
+        Future<?> previous = pools.getJobList().remove(info);
+        if (previous != null && !previous.isDone()) previous.cancel(false);
+
+        // cancelled by apoc.periodic.cancel
+        CompletableFuture<Void> job = new CompletableFuture<>();
+        WarmupEngine engine = engine(pageCache, config, job::isDone);
+        pools.getJobList().put(info, job);
+        long start = System.currentTimeMillis();
+        AtomicLong pages = new AtomicLong();
+        engine.start(
+                files,
+                f -> log.info(
+                        "%s loaded %d of %d pages of %s in %d ms",
+                        JOB_NAME, f.getPages(), f.totalPages, f.name, f.getTime()),
+                () -> {
+                    log.info(
+                            "%s loaded %d pages of %d files in %d ms",
+                            JOB_NAME,
+                            files.stream().mapToLong(FileWarmup::getPages).sum(),
+                            files.size(),
+                            System.currentTimeMillis() - start);
+                    job.complete(null);
+                });
+        return Stream.of(info.update(job));
+    }
+
+    /**
+     * @return the files of the \`stores\` in the config, in their order, restricting the indexes to the \`indexLabels\` ones
+     */
+    private List<FileWarmup> selectFiles(PageCache pageCache, Map<String, Object> config) throws IOException {
+        List<WarmupStore> stores = ((List<?>) config.getOrDefault("stores", DEFAULT_STORES))
+                .stream().map(store -> WarmupStore.from((String) store)).collect(Collectors.toList());
+        List<?> indexLabels = (List<?>) config.get("indexLabels");
+        Set<String> indexIds = indexLabels == null
+                ? null
+                : indexLabels.stream()
+                        .flatMap(label -> StreamSupport.stream(
+                                tx.schema()
+                                        .getIndexes(Label.label((String) label))
+                                        .spliterator(),
+                                false))
+                        .map(index -> String.valueOf(((IndexDefinitionImpl) index)
+                                .getIndexReference()
+                                .getId()))
+                        .collect(Collectors.toSet());
+
+        return pageCache.listExistingMappings().stream()
+                .map(this::fileWarmup)
+                .filter(f -> stores.contains(f.store))
+                .filter(f -> !f.isIndex()
+                        || indexIds == null
+                        || indexIds.contains(indexId(f.pagedFile.path().toFile())))
+                .sorted(Comparator.comparingInt(f -> stores.indexOf(f.store)))
+                .collect(Collectors.toList());
+    }
+
+    private WarmupEngine engine(PageCache pageCache, Map<String, Object> config, BooleanSupplier terminated) {
+        return new WarmupEngine(
+                pools.getIoExecutorService(),
+                Util.toInteger(
+                        config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors())),
+                Util.toLong(config.getOrDefault("rangePages", WarmupEngine.DEFAULT_RANGE_PAGES)),
+                Util.toLong(config.getOrDefault("maxPages", pageCache.maxCachedPages())),
+                terminated);
+    }
+
+    private FileWarmup fileWarmup(PagedFile pagedFile) {
+        File file = pagedFile.path().toFile();
+        return FileWarmup.of(pagedFile, isSchema(file) ? subPath(file, "schema") : file.getName());
+    }
+
+    /**
+     * Starts the engine, the stream returns each file as soon as it's done
+     */
+    private static Stream<FileWarmup> warm(WarmupEngine engine, List<FileWarmup> files) {
+        BlockingQueue<FileWarmup> done = new LinkedBlockingQueue<>();
+        engine.start(files, done::add, () -> {});
+        return Stream.generate(() -> {
+                    try {
+                        return done.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for the warmup", e);
+                    }
+                })
+                .limit(files.size());
+    }
+
+    /**
+     * @return the id of the index of a file in \`schema/index/<provider>/<id>/\`, or null
+     */
+    private static String indexId(File file) {
+        for (File dir = file; dir != null; dir = dir.getParentFile()) {
+            File provider = dir.getParentFile();
+            File index = provider == null ? null : provider.getParentFile();
+            File schema = index == null ? null : index.getParentFile();
+            if (schema != null
+                    && index.getName().equals("index")
+                    && schema.getName().equals("schema")) {
+                return dir.getName();
+            }
+        }
+        return null;
+    }
+
     public boolean isSchema(File file) {
-        return file.getAbsolutePath().contains(File.separator + "schema" + File.separator);
+        return WarmupStore.isSchema(file);
+    }
+
+    public static class WarmupProgress {
+        public final String file;
+        public final String store;
+        public final long fileSize;
+        public final long filePages;
+        public final long pages;
+        public final long time;
+        public final String error;
+        public final long totalPages;
+        public final double progress;
+
+        public WarmupProgress(FileWarmup file, long totalPages, long plannedPages) {
+            this.file = file.name;
+            this.store = file.store.key;
+            this.fileSize = file.fileSize;
+            this.filePages = file.totalPages;
+            this.pages = file.getPages();
+            this.time = file.getTime();
+            this.error = file.error;
+            this.totalPages = totalPages;
+            this.progress = plannedPages == 0 ? 1D : (double) totalPages / plannedPages;
+        }
     }
 
     public static class WarmupResult {
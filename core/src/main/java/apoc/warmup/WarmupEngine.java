@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.context.CursorContext;
+
+/**
+ * Loads the pages of the store files into the page cache.
+ *
+ * Each file is split in ranges of pages, which are queued in the given order of the files,
+ * and a fixed number of workers on the pool take the next range as soon as they're done with the previous one,
+ * so that a single huge file is loaded by all of them.
+ * The pages are granted to the files in the same order until the budget is exhausted,
+ * as loading more pages than the cache holds would only evict the ones loaded before.
+ */
+class WarmupEngine {
+
+    static final long DEFAULT_RANGE_PAGES = 4096;
+    private static final long CHECK_TERMINATION_PAGES = 1000;
+
+    private final ExecutorService pool;
+    private final int concurrency;
+    private final long rangePages;
+    private final long maxPages;
+    private final BooleanSupplier terminated;
+
+    /**
+     * @param terminated checked by the workers every 1000 pages
+     */
+    WarmupEngine(ExecutorService pool, int concurrency, long rangePages, long maxPages, BooleanSupplier terminated) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency parameter must be > 0");
+        }
+        if (rangePages < 1) {
+            throw new IllegalArgumentException("rangePages parameter must be > 0");
+        }
+        if (maxPages < 0) {
+            throw new IllegalArgumentException("maxPages parameter must be >= 0");
+        }
+        this.pool = pool;
+        this.concurrency = concurrency;
+        this.rangePages = rangePages;
+        this.maxPages = maxPages;
+        this.terminated = terminated;
+    }
+
+    /**
+     * Starts loading the files and returns immediately
+     * @param files in the order they should be loaded
+     * @param onFile called, by one of the workers, as soon as each file is done
+     * @param onDone called, by the last worker, once all the files are done
+     */
+    void start(List<FileWarmup> files, Consumer<FileWarmup> onFile, Runnable onDone) {
+        Queue<Range> ranges = new ConcurrentLinkedQueue<>();
+        long budget = maxPages;
+        for (FileWarmup file : files) {
+            file.plannedPages = Math.min(file.totalPages, budget);
+            budget -= file.plannedPages;
+            long fileRanges = 0;
+            for (long start = 0; start < file.plannedPages; start += rangePages) {
+                ranges.add(new Range(file, start, Math.min(start + rangePages, file.plannedPages)));
+                fileRanges++;
+            }
+            file.remainingRanges.set(fileRanges);
+        }
+        for (FileWarmup file : files) {
+            if (file.remainingRanges.get() == 0) {
+                file.done(onFile);
+            }
+        }
+
+        int workers = Math.max(1, Math.min(concurrency, ranges.size()));
+        AtomicInteger running = new AtomicInteger(workers);
+        Runnable worker = () -> {
+            try {
+                Range range;
+                while (!terminated.getAsBoolean() && (range = ranges.poll()) != null) {
+                    range.warm(onFile);
+                }
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    // the files whose ranges were not all loaded, because of a termination
+                    files.forEach(file -> file.done(onFile));
+                    onDone.run();
+                }
+            }
+        };
+        for (int i = 0; i < workers; i++) {
+            try {
+                pool.execute(worker);
+            } catch (RejectedExecutionException e) {
+                worker.run();
+            }
+        }
+    }
+
+    private class Range {
+        private final FileWarmup file;
+        private final long start;
+        private final long end;
+
+        Range(FileWarmup file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        void warm(Consumer<FileWarmup> onFile) {
+            file.started();
+            // the cursor context of a transaction can't be shared by the workers
+            try (PageCursor cursor = file.pagedFile.io(
+                    start, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK, CursorContext.NULL)) {
+                for (long pageId = start; pageId < end && cursor.next(pageId); pageId++) {
+                    cursor.getByte();
+                    file.pages.incrementAndGet();
+                    if ((pageId - start + 1) % CHECK_TERMINATION_PAGES == 0 && terminated.getAsBoolean()) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                file.error = e.getMessage();
+            } finally {
+                if (file.remainingRanges.decrementAndGet() == 0) {
+                    file.done(onFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * The progress of a store file
+     */
+    static class FileWarmup {
+        final PagedFile pagedFile;
+        final String name;
+        final WarmupStore store;
+        final long fileSize;
+        final long totalPages;
+        volatile String error;
+        long plannedPages;
+
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong remainingRanges = new AtomicLong();
+        private final AtomicLong startNanos = new AtomicLong();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile long time;
+
+        FileWarmup(PagedFile pagedFile, String name, WarmupStore store) {
+            this.pagedFile = pagedFile;
+            this.name = name;
+            this.store = store;
+            long fileSize;
+            long totalPages;
+            try {
+                fileSize = pagedFile.fileSize();
+                totalPages = fileSize > 0 ? pagedFile.getLastPageId() + 1 : 0;
+            } catch (IOException e) {
+                fileSize = -1;
+                totalPages = 0;
+                this.error = e.getMessage();
+            }
+            this.fileSize = fileSize;
+            this.totalPages = totalPages;
+        }
+
+        static FileWarmup of(PagedFile pagedFile, String name) {
+            return new FileWarmup(
+                    pagedFile, name, WarmupStore.of(pagedFile.path().toFile()));
+        }
+
+        long getPages() {
+            return pages.get();
+        }
+
+        /**
+         * @return the milliseconds from the loading of the first page of the file to the last one
+         */
+        long getTime() {
+            return time;
+        }
+
+        boolean isIndex() {
+            return store == WarmupStore.INDEXES;
+        }
+
+        private void started() {
+            startNanos.compareAndSet(0, System.nanoTime());
+        }
+
+        private void done(Consumer<FileWarmup> onFile) {
+            if (!done.compareAndSet(false, true)) return;
+            long start = startNanos.get();
+            time = start == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            onFile.accept(this);
+        }
+    }
+
+    /**
+     * The kinds of store files, named as in the `stores` config
+     */
+    enum WarmupStore {
+        NODES("nodes"),
+        RELATIONSHIPS("relationships"),
+        RELATIONSHIP_GROUPS("relationshipGroups"),
+        PROPERTIES("properties"),
+        STRINGS("strings"),
+        ARRAYS("arrays"),
+        INDEXES("indexes"),
+        OTHER("other");
+
+        final String key;
+
+        WarmupStore(String key) {
+            this.key = key;
+        }
+
+        static WarmupStore of(File file) {
+            if (isSchema(file)) return INDEXES;
+            switch (file.getName()) {
+                case "neostore.nodestore.db":
+                    return NODES;
+                case "neostore.relationshipstore.db":
+                    return RELATIONSHIPS;
+                case "neostore.relationshipgroupstore.db":
+                    return RELATIONSHIP_GROUPS;
+                case "neostore.propertystore.db":
+                    return PROPERTIES;
+                case "neostore.propertystore.db.strings":
+                    return STRINGS;
+                case "neostore.propertystore.db.arrays":
+                    return ARRAYS;
+                default:
+                    return OTHER;
+            }
+        }
+
+        static WarmupStore from(String key) {
+            for (WarmupStore store : values()) {
+                if (store.key.equalsIgnoreCase(key)) return store;
+            }
+            throw new IllegalArgumentException("Unknown store " + key + ", expected one of: " + keys());
+        }
+
+        static List<String> keys() {
+            List<String> keys = new ArrayList<>();
+            for (WarmupStore store : values()) {
+                keys.add(store.key);
+            }
+            return keys;
+        }
+
+        static boolean isSchema(File file) {
+            return file.getAbsolutePath().contains(File.separator + "schema" + File.separator);
+        }
+    }
+}
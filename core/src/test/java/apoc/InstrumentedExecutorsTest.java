@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class InstrumentedExecutorsTest {
+
+    @Test
+    public void shouldRecordTasksAndBlockedCallers() throws Exception {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor(
+                "test",
+                1,
+                1,
+                0L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                Executors.defaultThreadFactory(),
+                new Pools.CallerBlocksPolicy());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                int value = i;
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(10);
+                    if (value == 0) throw new RuntimeException("failed");
+                    return value;
+                }));
+            }
+            for (Future<?> future : futures) {
+                while (!future.isDone()) Thread.sleep(1);
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            Map<String, Object> stats = executor.getMetrics().toMap();
+            assertEquals("test", stats.get("name"));
+            assertEquals(5L, stats.get("submitted"));
+            assertEquals(5L, stats.get("completed"));
+            assertEquals(1L, stats.get("failed"));
+            assertTrue((long) stats.get("blocked") > 0);
+            assertEquals(5L, ((Map<String, Object>) stats.get("queueTime")).get("count"));
+            assertTrue((double) ((Map<String, Object>) stats.get("runTime")).get("0.5") >= 10D);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRecordRunsOfNamedJobs() throws Exception {
+        Map<String, PoolMetrics> jobs = new ConcurrentHashMap<>();
+        InstrumentedScheduledExecutor executor = new InstrumentedScheduledExecutor(
+                "scheduled", 1, Executors.defaultThreadFactory(), name -> jobs.computeIfAbsent(name, PoolMetrics::new));
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            ScheduledFuture<?> repeated = executor.scheduleWithFixedDelay(
+                    Pools.namedJob("repeated", runs::incrementAndGet), 0, 1, TimeUnit.MILLISECONDS);
+            while (runs.get() < 3) Thread.sleep(1);
+            repeated.cancel(false);
+
+            executor.submit(Pools.namedJob("failing", () -> {
+                        throw new RuntimeException("failed");
+                    }))
+                    .get(10, TimeUnit.SECONDS);
+        } catch (Exception expected) {
+            // the failing job
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(jobs.get("repeated").getCompleted() >= 3);
+        assertEquals(0L, jobs.get("repeated").toMap().get("failed"));
+        assertEquals(1L, jobs.get("failing").toMap().get("failed"));
+        assertEquals(2L, executor.getMetrics().toMap().get("submitted"));
+    }
+}
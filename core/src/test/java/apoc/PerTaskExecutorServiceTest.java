@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.Test;
+
+public class PerTaskExecutorServiceTest {
+
+    @Test
+    public void shouldBoundConcurrentTasks() throws Exception {
+        PerTaskExecutorService executor = new PerTaskExecutorService(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                running.decrementAndGet();
+                return value;
+            }));
+        }
+        int sum = 0;
+        for (Future<Integer> future : futures) {
+            sum += future.get();
+        }
+
+        assertEquals(190, sum);
+        assertTrue(maxRunning.get() <= 3);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Map<String, Object> stats = executor.getStats();
+        assertEquals(20L, stats.get("submitted"));
+        assertEquals(20L, stats.get("completed"));
+        assertEquals(0, stats.get("active"));
+        assertEquals(3, stats.get("maxConcurrency"));
+        assertTrue((int) stats.get("peakActive") <= 3);
+        assertTrue((long) stats.get("blocked") > 0);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shouldRejectAfterShutdown() {
+        PerTaskExecutorService executor = new PerTaskExecutorService(1);
+        executor.shutdown();
+        executor.execute(() -> {});
+    }
+
+    @Test
+    public void shutdownNowInterruptsRunningTasks() throws Exception {
+        PerTaskExecutorService executor = new PerTaskExecutorService(2);
+        Future<?> future = executor.submit(() -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        while (executor.getStats().get("active").equals(0) && !future.isDone()) {
+            Thread.yield();
+        }
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+}
@@ -161,6 +161,59 @@ public class PathFindingTest {
                 });
     }
 
+    @Test
+    public void testDijkstraMany() {
+        db.executeTransactionally(SETUP_SIMPLE);
+        testResult(
+                db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc) WHERE to.name IN ['D', 'B', 'A', 'C'] "
+                        + "WITH from, to ORDER BY to.name DESC "
+                        + "WITH from, collect(to) AS tos "
+                        + "CALL apoc.algo.dijkstraMany(from, tos, 'ROAD>', 'd') yield path, weight "
+                        + "RETURN path, weight",
+                result -> {
+                    List<Map<String, Object>> records = Iterators.asList(result);
+                    // in the order of the end nodes
+                    assertThat(map(records, map -> map.get("weight")), contains(50.0, 20.0, 10.0, 0.0));
+                    assertThat(map(records, map -> ((Path) map.get("path")).length()), contains(2, 1, 1, 0));
+                });
+    }
+
+    @Test
+    public void testDijkstraManyBidirectional() {
+        db.executeTransactionally(SETUP_SIMPLE);
+        testCall(
+                db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc{name:'D'}) "
+                        + "CALL apoc.algo.dijkstraMany(from, [to], 'ROAD>', 'd', 0.0/0.0, {bidirectional:true}) yield path, weight "
+                        + "RETURN path, weight",
+                row -> {
+                    assertEquals(50.0, row.get("weight"));
+                    assertEquals(2, ((Path) (row.get("path"))).length());
+                });
+    }
+
+    @Test
+    public void testDijkstraManySkipsMissingWeights() {
+        db.executeTransactionally(SETUP_MISSING_PROPERTY);
+        testCall(
+                db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc{name:'D'}) "
+                        + "CALL apoc.algo.dijkstraMany(from, [to], 'ROAD>', 'd', 10.5) yield path, weight "
+                        + "RETURN path, weight",
+                row -> assertEquals(30.5, row.get("weight")));
+        // without a default weight, (c)-[:ROAD]->(d) is not traversed
+        testCall(
+                db,
+                "MATCH (from:Loc{name:'A'}), (to:Loc{name:'D'}) "
+                        + "CALL apoc.algo.dijkstraMany(from, [to], 'ROAD>', 'd') yield path, weight "
+                        + "RETURN path, weight",
+                row -> {
+                    assertEquals(100.0, row.get("weight"));
+                    assertEquals(1, ((Path) (row.get("path"))).length());
+                });
+    }
+
     @Test
     public void testAllSimplePaths() {
         db.executeTransactionally(SETUP_MISSING_PROPERTY);
@@ -51,6 +51,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -290,6 +291,33 @@ public class ExportCsvTest {
         testExportCsvAllCommon(fileName);
     }
 
+    @Test
+    public void testExportAllCsvParallel() {
+        String fileName = "all_parallel.csv";
+        TestUtil.testCall(
+                db,
+                "CALL apoc.export.csv.all($file, {parallel: true, rangeSize: 2})",
+                map("file", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        assertEquals(EXPECTED, readFile(fileName));
+    }
+
+    @Test
+    public void testExportAllCsvParallelPartFiles() {
+        String fileName = "all_parts.csv";
+        TestUtil.testCall(
+                db,
+                "CALL apoc.export.csv.all($file, {parallel: true, rangeSize: 3, partFiles: true, separateHeader: true})",
+                map("file", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        File[] parts = directory.listFiles((dir, name) -> name.startsWith("all_parts.part-"));
+        assertTrue(parts.length > 1);
+        Arrays.sort(parts);
+        String actual = readFile("all_parts.header.csv")
+                + Stream.of(parts).map(part -> readFile(part.getName())).collect(Collectors.joining());
+        assertEquals(EXPECTED, actual);
+    }
+
     @Test
     public void testExportAllCsvWithDotInName() {
         String fileName = "all.with.dot.filename.csv";
@@ -765,6 +765,34 @@ public class ImportCsvTest {
         commonAssertionIgnoreFieldType(config, query, false);
     }
 
+    @Test
+    public void ignoreFieldTypeWithCompactIdMapping() {
+        final String query =
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], [{fileName: $relFile, type: 'KNOWS'}], $config)";
+        final Map<String, Object> config = map(
+                "nodeFile",
+                "file:/ignore-nodes.csv",
+                "relFile",
+                "file:/ignore-relationships.csv",
+                "config",
+                map("delimiter", '|', "batchSize", 1, "idMapping", "compact", "idMappingMemory", 0));
+        commonAssertionIgnoreFieldType(config, query, true);
+    }
+
+    @Test
+    public void ignoreFieldTypeInParallel() {
+        final String query =
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], [{fileName: $relFile, type: 'KNOWS'}], $config)";
+        final Map<String, Object> config = map(
+                "nodeFile",
+                "file:/ignore-nodes.csv",
+                "relFile",
+                "file:/ignore-relationships.csv",
+                "config",
+                map("delimiter", '|', "batchSize", 1, "parallel", true, "concurrency", 4));
+        commonAssertionIgnoreFieldType(config, query, true);
+    }
+
     private void commonAssertionIgnoreFieldType(Map<String, Object> config, String query, boolean isFile) {
         TestUtil.testCall(db, query, config, (r) -> {
             assertEquals(2L, r.get("nodes"));
@@ -809,6 +837,46 @@ public class ImportCsvTest {
                         map("delimiter", '|', "stringIds", false, "ignoreDuplicateNodes", false)));
     }
 
+    @Test(expected = QueryExecutionException.class)
+    public void testIgnoreDuplicateNodesWithCompactIdMapping() {
+        db.executeTransactionally(
+                "CALL apoc.import.csv([{fileName: $file, labels: ['Person']}], [], $config)",
+                map(
+                        "file",
+                        "file:/id-with-duplicates.csv",
+                        "config",
+                        map(
+                                "delimiter",
+                                '|',
+                                "stringIds",
+                                false,
+                                "ignoreDuplicateNodes",
+                                false,
+                                "idMapping",
+                                "compact")));
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIgnoreDuplicateNodesInParallel() {
+        db.executeTransactionally(
+                "CALL apoc.import.csv([{fileName: $file, labels: ['Person']}], [], $config)",
+                map(
+                        "file",
+                        "file:/id-with-duplicates.csv",
+                        "config",
+                        map(
+                                "delimiter",
+                                '|',
+                                "stringIds",
+                                false,
+                                "ignoreDuplicateNodes",
+                                false,
+                                "parallel",
+                                true,
+                                "batchSize",
+                                1)));
+    }
+
     @Test
     public void testLoadDuplicateNodes() {
         TestUtil.testCall(
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class StringIdDictionaryTest {
+
+    @Test
+    public void shouldMapIdsAcrossGrowth() {
+        try (PagedMemory memory = new PagedMemory(Long.MAX_VALUE)) {
+            StringIdDictionary dictionary = new StringIdDictionary(memory);
+            int ids = 1_000_000;
+            for (int i = 0; i < ids; i++) {
+                assertTrue(dictionary.putIfAbsent("person-" + i, i * 2L));
+            }
+            assertEquals(ids, dictionary.size());
+            for (int i = 0; i < ids; i++) {
+                assertEquals(i * 2L, dictionary.get("person-" + i));
+            }
+            assertEquals(IdMapping.NOT_FOUND, dictionary.get("person-" + ids));
+            assertEquals(0, memory.getMappedBytes());
+        }
+    }
+
+    @Test
+    public void shouldKeepTheFirstNodeIdOfDuplicates() {
+        try (PagedMemory memory = new PagedMemory(Long.MAX_VALUE)) {
+            StringIdDictionary dictionary = new StringIdDictionary(memory);
+            assertTrue(dictionary.putIfAbsent("Ünïcödé", 1L));
+            assertFalse(dictionary.putIfAbsent("Ünïcödé", 2L));
+            assertTrue(dictionary.putIfAbsent("", 3L));
+            assertEquals(1L, dictionary.get("Ünïcödé"));
+            assertEquals(3L, dictionary.get(""));
+            assertEquals(2, dictionary.size());
+        }
+    }
+
+    @Test
+    public void shouldSpillToDiskOverTheBudget() {
+        try (CompactIdMapping idMapping = new CompactIdMapping(true, PagedMemory.PAGE_SIZE)) {
+            for (int i = 0; i < 100_000; i++) {
+                idMapping.putIfAbsent("Person", String.valueOf(i), i);
+                idMapping.putIfAbsent("Movie", String.valueOf(i), -i);
+            }
+            assertEquals(42L, idMapping.get("Person", "42"));
+            assertEquals(-42L, idMapping.get("Movie", "42"));
+            assertEquals(IdMapping.NOT_FOUND, idMapping.get("Other", "42"));
+
+            Map<String, Object> stats = idMapping.getStats();
+            assertEquals(200_000L, stats.get("ids"));
+            assertEquals((long) PagedMemory.PAGE_SIZE, stats.get("offHeapBytes"));
+            assertTrue((long) stats.get("spilledBytes") > 0);
+        }
+    }
+
+    @Test
+    public void shouldMapNumericIds() {
+        try (CompactIdMapping idMapping = new CompactIdMapping(false, 0)) {
+            assertTrue(idMapping.putIfAbsent("Person", "12", 0));
+            assertFalse(idMapping.putIfAbsent("Person", "12", 1));
+            assertEquals(0L, idMapping.get("Person", "12"));
+            assertEquals(IdMapping.NOT_FOUND, idMapping.get("Person", "13"));
+            assertEquals(0L, idMapping.getStats().get("spilledBytes"));
+        }
+    }
+
+    @Test
+    public void shouldMapNonCanonicalNumericIdsLikeTheHeapMapping() {
+        try (CompactIdMapping compact = new CompactIdMapping(false, Long.MAX_VALUE);
+                HeapIdMapping heap = new HeapIdMapping()) {
+            String[] ids = {"7", "007", "-0", "0", "", null, "+7", "9223372036854775807", "9223372036854775808", "a"};
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(compact.putIfAbsent("Person", ids[i], i));
+                assertTrue(heap.putIfAbsent("Person", ids[i], i));
+            }
+            for (String id : ids) {
+                assertFalse(compact.putIfAbsent("Person", id, -2));
+                assertEquals(heap.get("Person", id), compact.get("Person", id));
+            }
+            assertEquals(IdMapping.NOT_FOUND, compact.get("Person", "8"));
+            assertEquals(IdMapping.NOT_FOUND, compact.get("Other", null));
+            assertEquals((long) ids.length, compact.getStats().get("ids"));
+        }
+    }
+}
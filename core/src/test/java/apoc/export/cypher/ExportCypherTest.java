@@ -31,6 +31,7 @@ import static org.junit.Assert.*;
 import static org.neo4j.configuration.SettingImpl.newBuilder;
 import static org.neo4j.configuration.SettingValueParsers.BOOL;
 
+import apoc.export.cypher.formatter.JsonParameters;
 import apoc.export.util.ExportConfig;
 import apoc.util.BinaryTestUtil;
 import apoc.util.CompressionAlgo;
@@ -39,6 +40,7 @@ import apoc.util.TestUtil;
 import apoc.util.Util;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -976,6 +978,52 @@ public class ExportCypherTest {
         assertEquals(EXPECTED_QUERY_CYPHER_SHELL_PARAMS_OPTIMIZED_ODD, readFile(fileName, algo));
     }
 
+    @Test
+    public void testExportAllCypherUnwindBatchJson() {
+        String fileName = "allUnwindBatchJson.cypher";
+        TestUtil.testCall(
+                db,
+                "CALL apoc.export.cypher.all($file,{format:'plain', useOptimizations: { type: 'unwind_batch_json', unwindBatchSize: 2}})",
+                map("file", fileName),
+                (r) -> {
+                    assertEquals(3L, r.get("nodes"));
+                    assertEquals(1L, r.get("relationships"));
+                });
+        String actual = readFile(fileName);
+        assertFalse(actual, actual.contains("UNWIND ["));
+
+        String[] lines = actual.split("\\R");
+        int blocks = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (!lines[i].startsWith(":json rows => [")) continue;
+            blocks++;
+            assertEquals("UNWIND $rows AS row", lines[i + 1]);
+            List<Map<String, Object>> rows =
+                    (List<Map<String, Object>>) JsonParameters.parse(lines[i]).get("rows");
+            rows.forEach(row -> assertTrue(row.toString(), row.containsKey("properties")));
+        }
+        assertEquals(4, blocks);
+        assertTrue(
+                actual,
+                actual.contains(
+                        ":json rows => [{\"start\":{\"_id\":0},\"end\":{\"name\":\"bar\"},\"properties\":{\"since\":2016}}]"));
+    }
+
+    @Test
+    public void testJsonParametersOnlyDecodeTypedPropertyValues() {
+        Map<String, Object> row = ((List<Map<String, Object>>) JsonParameters.parse(
+                                ":json rows => [{\"_id\":0, \"properties\":{\"$type\":\"date\", \"value\":\"foo\"}}]")
+                        .get("rows"))
+                .get(0);
+        assertEquals(map("$type", "date", "value", "foo"), row.get("properties"));
+
+        row = ((List<Map<String, Object>>) JsonParameters.parse(
+                                ":json rows => [{\"_id\":0, \"properties\":{\"born\":{\"$type\":\"date\", \"value\":\"2015-07-04\"}}}]")
+                        .get("rows"))
+                .get(0);
+        assertEquals(map("born", LocalDate.of(2015, 7, 4)), row.get("properties"));
+    }
+
     @Test
     public void testExportAllCypherPlainOptimized() {
         String fileName = "queryPlainOptimized.cypher";
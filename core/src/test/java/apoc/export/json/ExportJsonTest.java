@@ -44,6 +44,8 @@ import apoc.util.Util;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -96,6 +98,42 @@ public class ExportJsonTest {
         assertFileEquals(filename);
     }
 
+    @Test
+    public void testExportAllJsonParallel() {
+        // one id per range, the output of each json format is the same as the serial one
+        Map<String, Object> expectedByFormat = map(
+                "JSON_LINES", "all.json",
+                "ARRAY_JSON", "all_array.json",
+                "JSON", "all_fields.json",
+                "JSON_ID_AS_KEYS", "all_id_as_keys.json");
+        expectedByFormat.forEach((jsonFormat, expected) -> {
+            String filename = "parallel_" + expected;
+            TestUtil.testCall(
+                    db,
+                    "CALL apoc.export.json.all($file, {jsonFormat: $format, parallel: true, rangeSize: 1})",
+                    map("file", filename, "format", jsonFormat),
+                    (r) -> assertResults(filename, r, "database"));
+            String actualText = BinaryTestUtil.readFileToString(new File(directory, filename), UTF_8, NONE);
+            assertStreamEquals((String) expected, actualText);
+        });
+    }
+
+    @Test
+    public void testExportAllJsonParallelPartFiles() {
+        String filename = "parts.json";
+        TestUtil.testCall(
+                db,
+                "CALL apoc.export.json.all($file, {parallel: true, rangeSize: 2, partFiles: true})",
+                map("file", filename),
+                (r) -> assertResults(filename, r, "database"));
+        // the nodes are split over two parts, then the relationship has its own
+        String actualText = Stream.of("parts.part-00001.json", "parts.part-00002.json", "parts.part-00003.json")
+                .map(part -> BinaryTestUtil.readFileToString(new File(directory, part), UTF_8, NONE))
+                .collect(Collectors.joining("\n"));
+        assertStreamEquals("all.json", actualText);
+        assertFalse(new File(directory, "parts.part-00004.json").exists());
+    }
+
     @Test
     public void testJsonRoundtrip() {
         db.executeTransactionally("CREATE CONSTRAINT ON (n:User) assert n.neo4jImportId IS UNIQUE;");
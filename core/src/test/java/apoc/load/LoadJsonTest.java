@@ -162,6 +162,51 @@ public class LoadJsonTest {
         });
     }
 
+    @Test
+    public void testLoadJsonStreaming() {
+        URL url = ClassLoader.getSystemResource("items.json");
+        testResult(
+                db,
+                "CALL apoc.load.json($url, '$.data.items[*]', {streaming: true})",
+                map("url", url.toString()),
+                (r) -> {
+                    assertEquals(map("id", 1L, "name", "one"), r.next().get("value"));
+                    assertEquals(map("id", 2L, "name", "two"), r.next().get("value"));
+                    assertEquals(map("id", 3L, "name", "three"), r.next().get("value"));
+                    assertFalse(r.hasNext());
+                });
+    }
+
+    @Test
+    public void testLoadJsonStreamingWithLimit() {
+        URL url = ClassLoader.getSystemResource("items.json");
+        testResult(
+                db,
+                "CALL apoc.load.json($url, '$.data.items[*]', {streaming: true, limit: 2})",
+                map("url", url.toString()),
+                (r) -> assertEquals(2, Iterators.count(r)));
+    }
+
+    @Test
+    public void testLoadMultiJsonStreaming() {
+        URL url = ClassLoader.getSystemResource("multi.json");
+        testResult(
+                db,
+                "CALL apoc.load.json($url, '', {streaming: true})",
+                map("url", url.toString()),
+                this::commonAssertionsLoadJsonMulti);
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testLoadJsonStreamingWithUnsupportedPath() {
+        URL url = ClassLoader.getSystemResource("items.json");
+        testCall(
+                db,
+                "CALL apoc.load.json($url, '$.data.items[?(@.id > 1)]', {streaming: true})",
+                map("url", url.toString()),
+                (r) -> {});
+    }
+
     @Test
     public void testLoadJsonPathRoot() {
         URL url = ClassLoader.getSystemResource("map.json");
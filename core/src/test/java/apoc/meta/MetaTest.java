@@ -25,6 +25,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -49,6 +50,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -63,6 +66,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.cypher.export.DatabaseSubGraph;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
@@ -2102,6 +2106,93 @@ public class MetaTest {
         db.executeTransactionally("MATCH (n) DETACH DELETE n");
     }
 
+    @Test
+    public void testCachedSchema() {
+        db.executeTransactionally("CREATE (:Person {name: 'a'})-[:KNOWS]->(:Person {name: 'b'})");
+        testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+            Map<String, Object> person = (Map<String, Object>) ((Map<String, Object>) row.get("value")).get("Person");
+            assertEquals(2L, person.get("count"));
+        });
+
+        // same shape: the cached result is returned, with the counts up to date
+        db.executeTransactionally("CREATE (:Person {name: 'c'})");
+        testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+            Map<String, Object> person = (Map<String, Object>) ((Map<String, Object>) row.get("value")).get("Person");
+            assertEquals(3L, person.get("count"));
+        });
+        testCall(db, "CALL apoc.meta.cacheStats()", (row) -> {
+            assertEquals(1L, row.get("hits"));
+            assertEquals(1L, row.get("misses"));
+            assertEquals(0L, row.get("invalidations"));
+        });
+
+        // a new property key invalidates the cached result
+        db.executeTransactionally("CREATE (:Person {name: 'd', age: 42})");
+        testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+            Map<String, Object> person = (Map<String, Object>) ((Map<String, Object>) row.get("value")).get("Person");
+            assertTrue(((Map<String, Object>) person.get("properties")).containsKey("age"));
+        });
+        testCall(db, "CALL apoc.meta.cacheStats()", (row) -> {
+            assertEquals(1L, row.get("hits"));
+            assertEquals(2L, row.get("misses"));
+            assertEquals(1L, row.get("invalidations"));
+            assertEquals(1, ((List<Object>) row.get("entries")).size());
+        });
+    }
+
+    @Test
+    public void testCachedSchemaAfterATransientLabel() {
+        db.executeTransactionally("CREATE (:Person {name: 'a'})");
+        testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+            assertFalse(((Map<String, Object>) row.get("value")).containsKey("Transient"));
+        });
+        db.executeTransactionally("CREATE (:Transient {name: 'x'})");
+        testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+            assertTrue(((Map<String, Object>) row.get("value")).containsKey("Transient"));
+        });
+
+        // the label is gone, so is the result describing it, but not the result computed once it's gone
+        db.executeTransactionally("MATCH (n:Transient) DELETE n");
+        for (int i = 0; i < 2; i++) {
+            testCall(db, "CALL apoc.meta.schema({cached: true})", (row) -> {
+                assertFalse(((Map<String, Object>) row.get("value")).containsKey("Transient"));
+            });
+        }
+        testCall(db, "CALL apoc.meta.cacheStats()", (row) -> {
+            assertEquals(1L, row.get("hits"));
+            assertEquals(3L, row.get("misses"));
+        });
+    }
+
+    @Test
+    public void testNodeTypePropertiesSamplesLargeLabels() {
+        db.executeTransactionally("UNWIND range(1, 150000) AS id CREATE (:Big {id: id})");
+        db.executeTransactionally("CREATE (:Small {name: 'a'}), (:Small {name: 'b'})");
+
+        TestUtil.testResult(
+                db,
+                "CALL apoc.meta.nodeTypeProperties({sample: 100}) YIELD nodeLabels, propertyName, totalObservations "
+                        + "RETURN nodeLabels[0] AS label, propertyName, totalObservations ORDER BY label",
+                (r) -> {
+                    Map<String, Object> big = r.next();
+                    assertEquals("Big", big.get("label"));
+                    assertEquals("id", big.get("propertyName"));
+                    // about 100 nodes are sampled, instead of reading all of them
+                    long observations = (long) big.get("totalObservations");
+                    assertTrue(observations > 0 && observations < 1000);
+
+                    Map<String, Object> small = r.next();
+                    assertEquals("Small", small.get("label"));
+                    assertEquals(2L, small.get("totalObservations"));
+                    assertFalse(r.hasNext());
+                });
+        testCall(db, "CALL apoc.meta.schema({sample: 100})", (row) -> {
+            Map<String, Object> big = (Map<String, Object>) ((Map<String, Object>) row.get("value")).get("Big");
+            assertEquals(150000L, big.get("count"));
+            assertTrue(((Map<String, Object>) big.get("properties")).containsKey("id"));
+        });
+    }
+
     @Test
     public void testMetaGraphSparseSampling() {
         // The 3 procedures using this sampling, set to look at the whole graph
@@ -2185,4 +2276,41 @@ public class MetaTest {
 
         db.executeTransactionally("MATCH (n) DETACH DELETE n");
     }
+
+    @Test
+    public void testMetaCountsInParallelAreTheSameAsSerial() {
+        try (Transaction tx = db.beginTx()) {
+            List<Node> nodes = new ArrayList<>();
+            for (int id = 0; id < 1000; id++) {
+                nodes.add(tx.createNode(
+                        Label.label("Node"), Label.label("L" + (id % 7)), Label.label("M" + (id % 3))));
+            }
+            for (int id = 0; id < 1000; id++) {
+                for (int other = id % 13; other < 1000; other += 97) {
+                    nodes.get(id)
+                            .createRelationshipTo(
+                                    nodes.get(other), RelationshipType.withName("T" + ((id + other) % 5)));
+                }
+            }
+            tx.commit();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (Transaction tx = db.beginTx()) {
+            DatabaseSubGraph subGraph = new DatabaseSubGraph(tx);
+            List<Label> labels = Iterables.asList(subGraph.getAllLabelsInUse());
+            List<RelationshipType> types = subGraph.relTypesInUse(List.of());
+            MetaCounts serial = MetaCounts.of(subGraph, labels, types, db, tx, pool, Integer.MAX_VALUE);
+            MetaCounts parallel = MetaCounts.of(subGraph, labels, types, db, tx, pool, 0);
+
+            assertEquals(11, labels.size());
+            assertEquals(5, types.size());
+            assertArrayEquals(serial.nodeCounts, parallel.nodeCounts);
+            assertArrayEquals(serial.typeCounts, parallel.typeCounts);
+            assertArrayEquals(serial.out, parallel.out);
+            assertArrayEquals(serial.in, parallel.in);
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import apoc.util.TestUtil;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.junit.After;
 import org.junit.Before;
@@ -211,4 +212,24 @@ public class NeighborsTest {
                         + "RETURN number",
                 (row) -> assertEquals(1L, row.get("number")));
     }
+
+    @Test
+    public void getNeighborsInParallel() {
+        db.executeTransactionally("MATCH (d:Neighbor {name: 'd'}) "
+                + "UNWIND range(1, 100) AS i CREATE (d)-[:KNOWS]->(:Neighbor {name: 'e' + i})");
+        String query = "MATCH (n:First) "
+                + "CALL apoc.neighbors.byhop.count(n, 'KNOWS>', 5, $config) YIELD value AS numbers "
+                + "CALL apoc.neighbors.tohop.count(n, 'KNOWS>', 5, $config) YIELD value AS number "
+                + "RETURN numbers, number";
+        Map<String, Object> parallel = Map.of("parallel", true, "batchSize", 1, "concurrency", 4);
+
+        TestUtil.testCall(db, query, Map.of("config", Map.of()), (row) -> {
+            assertEquals(Arrays.asList(1L, 1L, 1L, 100L, 0L), row.get("numbers"));
+            assertEquals(103L, row.get("number"));
+        });
+        TestUtil.testCall(db, query, Map.of("config", parallel), (row) -> {
+            assertEquals(Arrays.asList(1L, 1L, 1L, 100L, 0L), row.get("numbers"));
+            assertEquals(103L, row.get("number"));
+        });
+    }
 }
@@ -23,6 +23,7 @@ import static apoc.util.Util.map;
 import static org.junit.Assert.*;
 
 import apoc.util.TestUtil;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.After;
@@ -284,4 +285,46 @@ public class GroupingTest {
             assertEquals("User", Iterables.single(node.getLabels()).name());
         });
     }
+
+    @Test
+    public void testGroupAcrossBatches() {
+        // more nodes than a batch, so that the partial aggregates of several workers are merged
+        db.executeTransactionally("UNWIND range(1, 25000) AS i CREATE (:Item {bucket: i % 2, value: i - 100})");
+        db.executeTransactionally(
+                "MATCH (a:Item) WHERE a.value % 5 = 0 MATCH (b:Item {value: a.value + 1}) CREATE (a)-[:NEXT {weight: 2}]->(b)");
+        TestUtil.testResult(
+                db,
+                "CALL apoc.nodes.group(['Item'],['bucket'],[{`*`:'count', value:['sum','min','max','avg']},{`*`:'count', weight:'sum'}])",
+                result -> {
+                    Map<Object, Map<String, Object>> rows = new HashMap<>();
+                    result.forEachRemaining(row -> rows.put(((Node) row.get("node")).getProperty("bucket"), row));
+                    assertEquals(2, rows.size());
+
+                    Node even = (Node) rows.get(0L).get("node");
+                    assertEquals(
+                            map(
+                                    "bucket",
+                                    0L,
+                                    "count_*",
+                                    12500L,
+                                    "sum_value",
+                                    155012500L,
+                                    "min_value",
+                                    -98L,
+                                    "max_value",
+                                    24900L,
+                                    "avg_value",
+                                    12401D),
+                            even.getAllProperties());
+                    Relationship evenRel = (Relationship) rows.get(0L).get("relationship");
+                    assertEquals(map("count_*", 2499L, "sum_weight", 4998L), evenRel.getAllProperties());
+
+                    Node odd = (Node) rows.get(1L).get("node");
+                    assertEquals(12500L, odd.getProperty("count_*"));
+                    assertEquals(-99L, odd.getProperty("min_value"));
+                    assertEquals(24899L, odd.getProperty("max_value"));
+                    Relationship oddRel = (Relationship) rows.get(1L).get("relationship");
+                    assertEquals(map("count_*", 2500L, "sum_weight", 5000L), oddRel.getAllProperties());
+                });
+    }
 }
@@ -579,6 +579,44 @@ public class NodesTest {
         // todo inverse e,s then also incoming
     }
 
+    @Test
+    public void testConnectedDenseNodes() {
+        db.executeTransactionally("CREATE (h1:Hub {id:1}), (h2:Hub {id:2}), (h3:Hub {id:3}) "
+                + "WITH * UNWIND range(1, 200) AS i CREATE (h1)-[:A]->(:Leaf), (h2)<-[:A]-(:Leaf), (h3)-[:B]->(:Leaf)");
+        db.executeTransactionally("MATCH (h1:Hub {id:1}), (h2:Hub {id:2}) CREATE (h1)-[:B]->(h2)");
+
+        TestUtil.testCall(
+                db,
+                "MATCH (h1:Hub {id:1}), (h2:Hub {id:2}), (h3:Hub {id:3}) "
+                        + "RETURN apoc.nodes.isDense(h1) AS dense1, apoc.nodes.isDense(h2) AS dense2, "
+                        + "apoc.nodes.connected(h1, h2) AS any, apoc.nodes.connected(h1, h2, 'B>') AS out, "
+                        + "apoc.nodes.connected(h1, h2, '<B') AS in, apoc.nodes.connected(h2, h1, '<B') AS reversed, "
+                        + "apoc.nodes.connected(h1, h2, 'A') AS otherType, apoc.nodes.connected(h1, h3) AS notConnected",
+                (r) -> {
+                    assertEquals(true, r.get("dense1"));
+                    assertEquals(true, r.get("dense2"));
+                    assertEquals(true, r.get("any"));
+                    assertEquals(true, r.get("out"));
+                    assertEquals(false, r.get("in"));
+                    assertEquals(true, r.get("reversed"));
+                    assertEquals(false, r.get("otherType"));
+                    assertEquals(false, r.get("notConnected"));
+                });
+    }
+
+    @Test
+    public void testConnectedMany() {
+        db.executeTransactionally("CREATE (a:A)-[:KNOWS]->(b:B), (c:C)-[:LIKES]->(b)");
+
+        TestUtil.testResult(
+                db,
+                "MATCH (a:A), (b:B), (c:C) CALL apoc.nodes.connectedMany([[a, b], [b, a], [c, b], [a, c], [null, a]], 'KNOWS>') "
+                        + "YIELD connected RETURN collect(connected) AS connected",
+                (r) -> assertEquals(
+                        List.of(true, false, false, false, false), Iterators.single(r.columnAs("connected"))));
+        TestUtil.testCallEmpty(db, "CALL apoc.nodes.connectedMany([])", emptyMap());
+    }
+
     @Test
     public void testDegreeTypeAndDirection() {
         db.executeTransactionally(
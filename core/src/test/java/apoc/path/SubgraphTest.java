@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import apoc.algo.Cover;
+import apoc.map.Maps;
 import apoc.result.NodeResult;
 import apoc.result.RelationshipResult;
 import apoc.util.TestUtil;
@@ -53,7 +54,7 @@ public class SubgraphTest {
 
     @BeforeClass
     public static void setUp() throws Exception {
-        TestUtil.registerProcedure(db, PathExplorer.class, Cover.class);
+        TestUtil.registerProcedure(db, PathExplorer.class, Cover.class, Maps.class);
         String movies = Util.readResourceFile("movies.cypher");
         String bigbrother =
                 "MATCH (per:Person) MERGE (bb:BigBrother {name : 'Big Brother' })  MERGE (bb)-[:FOLLOWS]->(per)";
@@ -343,6 +344,95 @@ public class SubgraphTest {
                 "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.spanningTree(m,{minLevel:2}) yield path return count(distinct path) as cnt");
     }
 
+    @Test
+    public void testSubgraphNodesInParallelShouldMatchTheTraversal() throws Throwable {
+        String config = "{maxLevel:4, labelFilter:'-BigBrother', relationshipFilter:'ACTED_IN|DIRECTED>|<FOLLOWS'}";
+        String controlQuery = "MATCH (m:Movie {title: 'The Matrix'}) "
+                + "CALL apoc.path.expandConfig(m, apoc.map.merge(" + config
+                + ", {uniqueness:'NODE_GLOBAL'})) yield path "
+                + "return collect(last(nodes(path))) as subgraph";
+        List<NodeResult> subgraph;
+        try (Transaction tx = db.beginTx()) {
+            Result result = tx.execute(controlQuery);
+            subgraph = (List<NodeResult>) result.next().get("subgraph");
+        }
+
+        String query = "MATCH (m:Movie {title: 'The Matrix'}) "
+                + "CALL apoc.path.subgraphNodes(m, apoc.map.merge(" + config
+                + ", {parallel:true, batchSize:2})) yield node "
+                + "return COLLECT(node) as subgraphNodes";
+        // the same nodes in the same order
+        TestUtil.testCall(db, query, (row) -> assertEquals(subgraph, row.get("subgraphNodes")));
+    }
+
+    @Test
+    public void testSubgraphNodesSerialAndInParallelShouldMatchTheTraversalOnAGeneratedGraph() throws Throwable {
+        db.executeTransactionally("UNWIND range(0, 299) AS id "
+                + "CREATE (n:Gen {id: id}) "
+                + "FOREACH (_ IN CASE id % 3 WHEN 0 THEN [1] ELSE [] END | SET n:G0) "
+                + "FOREACH (_ IN CASE id % 3 WHEN 1 THEN [1] ELSE [] END | SET n:G1) "
+                + "FOREACH (_ IN CASE id % 3 WHEN 2 THEN [1] ELSE [] END | SET n:G2)");
+        db.executeTransactionally("MATCH (a:Gen), (b:Gen) WHERE b.id = (a.id * 7 + 1) % 300 CREATE (a)-[:A]->(b)");
+        db.executeTransactionally(
+                "MATCH (a:Gen), (b:Gen) WHERE a.id % 4 <> 0 AND b.id = (a.id * 13 + 5) % 300 CREATE (a)-[:B]->(b)");
+        List<String> configs = List.of(
+                "{}",
+                "{relationshipFilter:'A>'}",
+                "{relationshipFilter:'<B|A', maxLevel:4}",
+                "{labelFilter:'-G1'}",
+                "{labelFilter:'+Gen|/G2'}",
+                "{labelFilter:'>G0', maxLevel:3}",
+                "{labelFilter:'-G1', relationshipFilter:'B>', filterStartNode:true}",
+                "{minLevel:1, maxLevel:5, relationshipFilter:'A'}");
+        try {
+            for (String config : configs) {
+                List<Long> traversal = TestUtil.singleResultFirstColumn(
+                        db,
+                        "MATCH (g:Gen {id: 0}) CALL apoc.path.expandConfig(g, apoc.map.merge(" + config
+                                + ", {uniqueness:'NODE_GLOBAL'})) yield path "
+                                + "return collect(id(last(nodes(path))))");
+                for (String parallel : List.of("{parallel:false}", "{parallel:true, concurrency:4, batchSize:5}")) {
+                    List<Long> nodes = TestUtil.singleResultFirstColumn(
+                            db,
+                            "MATCH (g:Gen {id: 0}) CALL apoc.path.subgraphNodes(g, apoc.map.merge(" + config + ", "
+                                    + parallel + ")) yield node return collect(id(node))");
+                    // the same nodes in the same order
+                    assertEquals(config + " " + parallel, traversal, nodes);
+                }
+            }
+        } finally {
+            db.executeTransactionally("MATCH (n:Gen) DETACH DELETE n");
+        }
+    }
+
+    @Test
+    public void testSpanningTreeShouldMatchTheTraversal() throws Throwable {
+        String config = "{maxLevel:3, labelFilter:'>Person|-BigBrother', filterStartNode:true}";
+        String controlQuery = "MATCH (m:Movie {title: 'The Matrix'}) "
+                + "CALL apoc.path.expandConfig(m, apoc.map.merge(" + config
+                + ", {uniqueness:'NODE_GLOBAL'})) yield path "
+                + "return collect(path) as paths";
+        List<Object> paths;
+        try (Transaction tx = db.beginTx()) {
+            Result result = tx.execute(controlQuery);
+            paths = (List<Object>) result.next().get("paths");
+        }
+
+        String query = "MATCH (m:Movie {title: 'The Matrix'}) " + "CALL apoc.path.spanningTree(m, " + config
+                + ") yield path return collect(path) as paths";
+        TestUtil.testCall(db, query, (row) -> assertEquals(paths, row.get("paths")));
+    }
+
+    @Test
+    public void testSubgraphNodesErrorsAboveMaxMemory() throws Throwable {
+        thrown.expect(QueryExecutionException.class);
+        thrown.expect(new RootCauseMatcher<>(
+                RuntimeException.class, "The expansion needs more than the maxMemory of 64 bytes"));
+        TestUtil.singleResultFirstColumn(
+                db,
+                "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.subgraphNodes(m,{maxMemory:64}) yield node return count(distinct node) as cnt");
+    }
+
     public class RootCauseMatcher<T> extends TypeSafeMatcher<Throwable> {
         private final Class<T> rootCause;
         private final String message;
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import static apoc.util.Util.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AdaptiveBatchSizeTest {
+
+    @Test
+    public void disabledByDefault() {
+        assertNull(AdaptiveBatchSize.fromConfig(map("batchSize", 100), 100));
+    }
+
+    @Test
+    public void defaultBoundsFromBatchSize() {
+        AdaptiveBatchSize adaptive = AdaptiveBatchSize.fromConfig(map("adaptiveBatchSize", true), 100);
+        for (int i = 0; i < 20; i++) {
+            adaptive.onBatchCompleted(adaptive.getBatchSize(), 1, 0, false);
+        }
+        assertEquals(1000, adaptive.getBatchSize());
+        for (int i = 0; i < 20; i++) {
+            adaptive.onBatchCompleted(adaptive.getBatchSize(), 0, 0, true);
+        }
+        assertEquals(10, adaptive.getBatchSize());
+    }
+
+    @Test
+    public void growsAtMostTwiceWhenBatchesAreFast() {
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(100, 10, 10_000, 1000);
+        adaptive.onBatchCompleted(100, TimeUnit.MILLISECONDS.toNanos(1), 0, false);
+        assertEquals(150, adaptive.getBatchSize());
+    }
+
+    @Test
+    public void shrinksWhenBatchesAreSlow() {
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(1000, 10, 10_000, 1000);
+        adaptive.onBatchCompleted(1000, TimeUnit.MILLISECONDS.toNanos(1250), 0, false);
+        assertEquals(900, adaptive.getBatchSize());
+    }
+
+    @Test
+    public void halvesOnRetriesAndFailures() {
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(1000, 10, 10_000, 1000);
+        adaptive.onBatchCompleted(1000, TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        assertEquals(500, adaptive.getBatchSize());
+        adaptive.onBatchCompleted(500, TimeUnit.MILLISECONDS.toNanos(10), 0, true);
+        assertEquals(250, adaptive.getBatchSize());
+
+        List<Map<String, Object>> trajectory = adaptive.getTrajectory();
+        assertEquals(
+                List.of(map("batch", 0L, "size", 1000), map("batch", 1L, "size", 500), map("batch", 2L, "size", 250)),
+                trajectory);
+    }
+
+    @Test
+    public void trajectoryIsBounded() {
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(100, 1, 200, 1000);
+        for (int i = 0; i < 10_000; i++) {
+            boolean fail = i % 2 == 0;
+            adaptive.onBatchCompleted(adaptive.getBatchSize(), 1, 0, fail);
+        }
+        List<Map<String, Object>> trajectory = adaptive.getTrajectory();
+        assertTrue(trajectory.size() <= AdaptiveBatchSize.MAX_TRAJECTORY_ENTRIES);
+        assertEquals(0L, trajectory.get(0).get("batch"));
+        assertEquals(10_000L, trajectory.get(trajectory.size() - 1).get("batch"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        AdaptiveBatchSize.fromConfig(map("adaptiveBatchSize", true, "minBatchSize", 100, "maxBatchSize", 10), 50);
+    }
+}
@@ -681,6 +681,63 @@ public class PeriodicTest {
                 });
     }
 
+    @Test
+    public void testIterateWithAdaptiveBatchSize() {
+        db.executeTransactionally("UNWIND range(1,1000) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(
+                db,
+                "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname = p.name', {batchSize:10, adaptiveBatchSize:true, maxBatchSize:200, targetBatchMillis:10000})",
+                result -> {
+                    Map<String, Object> row = Iterators.single(result);
+                    assertEquals(1000L, row.get("total"));
+                    List<Map<String, Object>> sizes = (List<Map<String, Object>>) ((Map) row.get("batch")).get("sizes");
+                    assertEquals(map("batch", 0L, "size", 10), sizes.get(0));
+                    assertEquals(200, sizes.get(sizes.size() - 1).get("size"));
+                    assertTrue((long) row.get("batches") < 100L);
+                });
+
+        testCall(
+                db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(1000L, row.get("count")));
+    }
+
+    @Test
+    public void testIterateParallelWithPartitionBy() {
+        db.executeTransactionally("UNWIND range(1,10) AS x CREATE (:Account{id:x, balance:0})");
+
+        testResult(
+                db,
+                "CALL apoc.periodic.iterate('UNWIND range(1,1000) AS x MATCH (a:Account{id:x % 10 + 1}) RETURN a', 'SET a.balance = a.balance + 1', {batchSize:10, parallel:true, concurrency:4, partitionBy:'a'})",
+                result -> {
+                    Map<String, Object> row = Iterators.single(result);
+                    assertEquals(1000L, row.get("total"));
+                    assertEquals(0L, row.get("failedBatches"));
+                    List<Map<String, Object>> lanes = (List<Map<String, Object>>) ((Map) row.get("batch")).get("lanes");
+                    assertEquals(4, lanes.size());
+                    assertEquals(
+                            row.get("batches"),
+                            lanes.stream()
+                                    .mapToLong(l -> (long) l.get("batches"))
+                                    .sum());
+                    assertTrue(lanes.stream().allMatch(l -> (long) l.get("deadlocks") == 0L));
+                });
+
+        testCall(db, "MATCH (a:Account) RETURN sum(a.balance) AS total, min(a.balance) AS min", row -> {
+            assertEquals(1000L, row.get("total"));
+            assertEquals(100L, row.get("min"));
+        });
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testIteratePartitionByMustBeAColumn() {
+        testCall(
+                db,
+                "CALL apoc.periodic.iterate('RETURN 1 AS x', 'RETURN $x', {parallel:true, partitionBy:'y'})",
+                row -> {});
+    }
+
     @Test
     public void testIterateFail() throws Exception {
         db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
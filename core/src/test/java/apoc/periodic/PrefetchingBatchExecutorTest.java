@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Test;
+import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.procedure.TerminationGuard;
+
+public class PrefetchingBatchExecutorTest {
+
+    private static final TerminationGuard NOT_TERMINATED = () -> {};
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void shouldExecuteAllBatchesWithBoundedConcurrency() {
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger rows = new AtomicInteger();
+
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED,
+                collector,
+                (batch, onRetry) -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    rows.addAndGet(batch.size());
+                    running.decrementAndGet();
+                    collector.incrementBatches();
+                    return batch.size();
+                },
+                pool,
+                4,
+                null);
+
+        long committed = executor.execute(rows(1000), () -> 7);
+
+        assertEquals(1000L, committed);
+        assertEquals(1000, rows.get());
+        assertEquals(1000L, collector.getCount());
+        assertEquals(143L, collector.getBatches());
+        assertTrue(maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void shouldCountFailedBatches() {
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED,
+                collector,
+                (batch, onRetry) -> {
+                    if ((int) batch.get(0).get("id") % 20 == 0) {
+                        throw new RuntimeException("failed batch");
+                    }
+                    return batch.size();
+                },
+                pool,
+                2,
+                null);
+
+        long committed = executor.execute(rows(100), () -> 10);
+
+        assertEquals(50L, committed);
+        assertEquals(5, collector.getFailedBatches().get());
+        assertEquals(Map.of("java.lang.RuntimeException: failed batch", 5L), collector.getBatchErrors());
+    }
+
+    @Test
+    public void shouldStopReadingWhenTerminated() {
+        AtomicInteger checks = new AtomicInteger();
+        TerminationGuard terminateAfterFewBatches = () -> {
+            if (checks.incrementAndGet() > 5) {
+                throw new TransactionTerminatedException(Status.Transaction.Terminated);
+            }
+        };
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                terminateAfterFewBatches, collector, (batch, onRetry) -> batch.size(), pool, 2, null);
+
+        Iterator<Map<String, Object>> iterator = rows(1000);
+        executor.execute(iterator, () -> 10);
+
+        assertTrue(iterator.hasNext());
+        assertTrue(collector.getCount() < 1000L);
+    }
+
+    @Test
+    public void shouldNeverRunRowsWithTheSameKeyConcurrently() {
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+        Set<Object> runningKeys = ConcurrentHashMap.newKeySet();
+        Set<Object> keysRunConcurrently = ConcurrentHashMap.newKeySet();
+
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED,
+                collector,
+                (batch, onRetry) -> {
+                    Set<Object> keys = batch.stream().map(row -> row.get("key")).collect(Collectors.toSet());
+                    for (Object key : keys) {
+                        if (!runningKeys.add(key)) keysRunConcurrently.add(key);
+                    }
+                    LockSupport.parkNanos(100_000);
+                    runningKeys.removeAll(keys);
+                    if ((int) batch.get(0).get("id") % 3 == 0) {
+                        onRetry.accept(new RuntimeException("retried"));
+                    }
+                    return batch.size();
+                },
+                pool,
+                4,
+                "key");
+
+        Iterator<Map<String, Object>> rows = IntStream.range(0, 1000)
+                .mapToObj(i -> Map.<String, Object>of("id", i, "key", i % 17))
+                .iterator();
+        long committed = executor.execute(rows, () -> 10);
+
+        assertEquals(1000L, committed);
+        assertEquals(1000L, collector.getCount());
+        assertTrue(keysRunConcurrently.isEmpty());
+
+        List<Map<String, Object>> lanes = executor.getLaneStats();
+        assertEquals(4, lanes.size());
+        long batches = lanes.stream().mapToLong(l -> (long) l.get("batches")).sum();
+        long retries = lanes.stream().mapToLong(l -> (long) l.get("retries")).sum();
+        assertTrue(batches >= 100);
+        assertTrue(retries > 0);
+        assertTrue(lanes.stream().allMatch(l -> (long) l.get("deadlocks") == 0L));
+    }
+
+    @Test
+    public void shouldNotNeedAThreadPerLane() {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+            PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                    NOT_TERMINATED, collector, (batch, onRetry) -> batch.size(), singleThread, 4, "id");
+            assertEquals(100L, executor.execute(rows(100), () -> 3));
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReadAheadABoundedNumberOfBatches() throws Exception {
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED,
+                collector,
+                (batch, onRetry) -> {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return batch.size();
+                },
+                pool,
+                2,
+                null);
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Map<String, Object>> rows = rows(20);
+        Iterator<Map<String, Object>> counted = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                read.incrementAndGet();
+                return rows.next();
+            }
+        };
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> committed = caller.submit(() -> executor.execute(counted, () -> 1));
+            // the 2 running batches, the 2 ready ones and the one waiting for room in the queue
+            while (read.get() < 5) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+            assertEquals(5, read.get());
+            blocked.countDown();
+            assertEquals(20L, (long) committed.get(10, TimeUnit.SECONDS));
+        } finally {
+            blocked.countDown();
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotHoldAPoolThreadBetweenBatches() {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+            AtomicBoolean otherTaskRan = new AtomicBoolean();
+            AtomicBoolean ranBeforeTheLastBatch = new AtomicBoolean();
+            PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                    NOT_TERMINATED,
+                    collector,
+                    (batch, onRetry) -> {
+                        int id = (int) batch.get(0).get("id");
+                        if (id == 0) singleThread.submit(() -> otherTaskRan.set(true));
+                        if (id == 99) ranBeforeTheLastBatch.set(otherTaskRan.get());
+                        return batch.size();
+                    },
+                    singleThread,
+                    4,
+                    null);
+            assertEquals(100L, executor.execute(rows(100), () -> 1));
+            assertTrue(ranBeforeTheLastBatch.get());
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void shouldCountTheRejectedBatchesOfALaneAsFailed() {
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED, collector, (batch, onRetry) -> batch.size(), shutDown, 2, "id");
+
+        // the permits of the rejected batches are released, so the next batches of the lane don't wait forever
+        assertEquals(0L, executor.execute(rows(100), () -> 10));
+        assertEquals(100L, collector.getCount());
+        long failed = collector.getFailedBatches().get();
+        assertTrue("failed batches: " + failed, failed >= 10 && failed <= 11);
+    }
+
+    @Test
+    public void laneStatsOnlyWhenPartitioned() {
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(NOT_TERMINATED, -1);
+        PrefetchingBatchExecutor executor = new PrefetchingBatchExecutor(
+                NOT_TERMINATED, collector, (batch, onRetry) -> batch.size(), pool, 2, null);
+        executor.execute(rows(10), () -> 5);
+        assertNull(executor.getLaneStats());
+    }
+
+    private static Iterator<Map<String, Object>> rows(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Map.<String, Object>of("id", i))
+                .iterator();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.pools;
+
+import static apoc.util.TestUtil.testCall;
+import static apoc.util.TestUtil.testResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.test.assertion.Assert.assertEventually;
+
+import apoc.periodic.Periodic;
+import apoc.util.TestUtil;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.test.rule.DbmsRule;
+import org.neo4j.test.rule.ImpermanentDbmsRule;
+
+public class PoolsStatsTest {
+
+    @Rule
+    public DbmsRule db = new ImpermanentDbmsRule();
+
+    @Before
+    public void setUp() {
+        TestUtil.registerProcedure(db, PoolsStats.class, Periodic.class);
+    }
+
+    @After
+    public void teardown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testPoolStats() {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{id:x})");
+        db.executeTransactionally(
+                "CALL apoc.periodic.iterate('MATCH (p:Person) RETURN p', 'SET p.name = \"foo\"', {batchSize:10, parallel:true})");
+
+        testResult(db, "CALL apoc.pools.stats()", result -> {
+            Map<String, Map<String, Object>> pools =
+                    result.stream().collect(Collectors.toMap(row -> (String) row.get("name"), row -> row));
+            assertEquals(Set.of("single", "default", "trigger", "scheduled"), pools.keySet());
+
+            Map<String, Object> defaultPool = pools.get("default");
+            assertTrue((long) defaultPool.get("completed") > 0);
+            assertEquals(0L, defaultPool.get("failed"));
+            Map<String, Object> runTime = (Map<String, Object>) defaultPool.get("runTime");
+            assertEquals(defaultPool.get("completed"), runTime.get("count"));
+            assertTrue(runTime.containsKey("0.99"));
+            assertTrue(((Map<String, Object>) defaultPool.get("state")).containsKey("queued"));
+        });
+    }
+
+    @Test
+    public void testJobStats() {
+        db.executeTransactionally("CALL apoc.periodic.submit('ok', 'CREATE (:Job)')");
+
+        assertEventually(
+                () -> db.executeTransactionally(
+                        "CALL apoc.pools.jobs() YIELD name, runs WHERE name = 'ok' RETURN runs",
+                        Map.of(),
+                        result -> result.hasNext() ? (long) result.next().get("runs") : 0L),
+                runs -> runs == 1L,
+                5L,
+                TimeUnit.SECONDS);
+
+        testCall(db, "CALL apoc.pools.jobs() YIELD name, failed, queueTime WHERE name = 'ok' RETURN *", row -> {
+            assertEquals(0L, row.get("failed"));
+            assertEquals(1L, ((Map<String, Object>) row.get("queueTime")).get("count"));
+        });
+    }
+}
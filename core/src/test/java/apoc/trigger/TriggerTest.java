@@ -30,6 +30,7 @@ import apoc.util.TestUtil;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
@@ -117,6 +118,20 @@ public class TriggerTest {
         db.executeTransactionally("CALL apoc.trigger.remove('myTrig')");
     }
 
+    @Test
+    public void testBeforeTriggersDontSeeEachOthersChanges() {
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('first','UNWIND $createdNodes AS n WITH n WHERE n:Person CREATE (:Seen {by: $trigger, count: size($createdNodes)})',{})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('second','UNWIND $createdNodes AS n WITH n WHERE n:Person CREATE (:Seen {by: $trigger, count: size($createdNodes)})',{})");
+        db.executeTransactionally("CREATE (:Person)");
+        TestUtil.testResult(db, "MATCH (s:Seen) RETURN s.by AS by, s.count AS count ORDER BY by", result -> {
+            assertEquals(map("by", "first", "count", 1L), result.next());
+            assertEquals(map("by", "second", "count", 1L), result.next());
+            assertFalse(result.hasNext());
+        });
+    }
+
     @Test
     public void testRemoveRelationship() throws Exception {
         db.executeTransactionally("CREATE (:Counter {count:0})");
@@ -392,4 +407,87 @@ public class TriggerTest {
                 30L,
                 TimeUnit.SECONDS);
     }
+
+    @Test
+    public void testTriggerSelectorFilters() {
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('persons', 'UNWIND $createdNodes AS n SET n.person = true', {labels: ['Person']})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('ages', 'UNWIND $assignedNodeProperties.age AS p WITH p.node AS n SET n.aged = true', {propertyKeys: ['age']})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('since', 'UNWIND $assignedRelationshipProperties.since AS p WITH p.relationship AS r SET r.dated = true', {relTypes: ['KNOWS'], propertyKeys: ['since']})");
+
+        db.executeTransactionally("CREATE (:Person {name: 'a'})-[:KNOWS {since: 2020}]->(:Movie {age: 1})");
+        db.executeTransactionally("CREATE (:Other {name: 'b'})-[:KNOWS]->(:Other {name: 'c'})");
+
+        TestUtil.testResult(
+                db,
+                "MATCH (n) RETURN coalesce(n.name, '') AS name, n.person AS person, n.aged AS aged ORDER BY name",
+                (result) -> {
+                    assertEquals(map("name", "", "person", null, "aged", true), result.next());
+                    assertEquals(map("name", "a", "person", true, "aged", null), result.next());
+                    assertEquals(map("name", "b", "person", null, "aged", null), result.next());
+                    assertEquals(map("name", "c", "person", null, "aged", null), result.next());
+                    assertFalse(result.hasNext());
+                });
+        TestUtil.testResult(db, "MATCH ()-[r:KNOWS]->() RETURN r.dated AS dated ORDER BY dated", (result) -> {
+            assertEquals(true, result.next().get("dated"));
+            assertNull(result.next().get("dated"));
+            assertFalse(result.hasNext());
+        });
+    }
+
+    @Test
+    public void testInvalidTriggerSelector() {
+        try {
+            testCall(db, "CALL apoc.trigger.add('invalid', 'RETURN 1', {labels: 1})", r -> fail(""));
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("The selector labels must be a string or a list of strings"));
+        }
+    }
+
+    @Test
+    public void testCoalescedAfterAsyncTrigger() {
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('counter', 'MERGE (c:Counter) SET c.count = coalesce(c.count, 0) + size($createdNodes), c.runs = coalesce(c.runs, 0) + 1', "
+                        + "{phase: 'afterAsync', labels: ['Item'], coalesce: true, batchSize: 5, flushInterval: 100})");
+        for (int i = 0; i < 12; i++) {
+            db.executeTransactionally("CREATE (:Item {id: $id})", map("id", i));
+        }
+
+        org.neo4j.test.assertion.Assert.assertEventually(
+                () -> db.executeTransactionally(
+                        "MATCH (c:Counter) RETURN c.count AS count",
+                        Map.of(),
+                        result -> result.hasNext() ? result.next().get("count") : 0L),
+                (value) -> value.equals(12L),
+                30L,
+                TimeUnit.SECONDS);
+        testCall(db, "MATCH (c:Counter) RETURN c.runs AS runs", r -> assertTrue((long) r.get("runs") < 12L));
+        testCall(db, "CALL apoc.trigger.stats()", r -> {
+            assertEquals("counter", r.get("name"));
+            assertEquals(12L, r.get("transactions"));
+            assertEquals(0L, r.get("failedBatches"));
+        });
+    }
+
+    @Test
+    public void testCoalesceOnlyInAfterAsync() {
+        try {
+            testCall(
+                    db,
+                    "CALL apoc.trigger.add('invalid', 'RETURN 1', {phase: 'before', coalesce: true})",
+                    r -> fail(""));
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("The coalesce selector is only supported in the afterAsync phase"));
+        }
+    }
+
+    @Test
+    public void testReferencedParameters() {
+        assertEquals(
+                Set.of("createdNodes", "assignedNodeProperties"),
+                TriggerMetadata.referencedParameters(
+                        "UNWIND $createdNodes AS n SET n.x = size($`assignedNodeProperties`), n.y = $other"));
+    }
 }
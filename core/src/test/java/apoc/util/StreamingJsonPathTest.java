@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class StreamingJsonPathTest {
+
+    private static final String JSON = "{\"meta\": {\"count\": 3}, \"data\": {\"items\": ["
+            + "{\"id\": 1, \"tags\": [\"a\", \"b\"]}, {\"id\": 2, \"tags\": []}, {\"id\": 3}"
+            + "], \"next\": null}, \"items\": [\"ignored\"]}";
+
+    @Test
+    public void shouldStreamTheElementsOfANestedArray() throws IOException {
+        assertEquals(
+                List.of(
+                        Map.of("id", 1L, "tags", List.of("a", "b")),
+                        Map.of("id", 2L, "tags", List.of()),
+                        Map.of("id", 3L)),
+                read(JSON, "$.data.items[*]"));
+        assertEquals(
+                List.of(
+                        Map.of("id", 1L, "tags", List.of("a", "b")),
+                        Map.of("id", 2L, "tags", List.of()),
+                        Map.of("id", 3L)),
+                read(JSON, "$['data'][\"items\"].*"));
+    }
+
+    @Test
+    public void shouldSelectFieldsAndIndexes() throws IOException {
+        assertEquals(List.of(3L), read(JSON, "$.meta.count"));
+        assertEquals(List.of(Map.of("id", 2L, "tags", List.of())), read(JSON, "$.data.items[1]"));
+        assertEquals(List.of("a", "b"), read(JSON, "$.data.items[*].tags[*]"));
+        assertEquals(List.of(1L, 2L, 3L), read(JSON, "$.data.items[*].id"));
+        assertEquals(List.of(), read(JSON, "$.data.missing[*]"));
+        assertEquals(List.of(), read(JSON, "$.data.items[7]"));
+    }
+
+    @Test
+    public void shouldStreamRootArraysAndMultipleRootValues() throws IOException {
+        assertEquals(List.of(Map.of("a", 1L), Map.of("a", 2L)), read("[{\"a\": 1}, {\"a\": 2}]", ""));
+        assertEquals(List.of(Map.of("a", 1L), Map.of("a", 2L)), read("{\"a\": 1}\n{\"a\": 2}", null));
+        assertEquals(List.of(1L, 2L), read("{\"a\": 1}\n{\"b\": 0}\n{\"a\": 2}", "$.a"));
+        assertEquals(List.of(Map.of("a", 1L)), read("[{\"a\": 1}, {\"a\": 2}]", "$[0]"));
+    }
+
+    @Test
+    public void shouldReadTheRootValueWithTheRootPath() throws IOException {
+        assertEquals(List.of(Map.of("a", 1L), Map.of("a", 2L)), read("[{\"a\": 1}, {\"a\": 2}]", "$"));
+        assertEquals(List.of(Map.of("a", 1L), Map.of("b", 2L)), read("{\"a\": 1}\n{\"b\": 2}", " $ "));
+        assertEquals(List.of(1L), read("1", "$"));
+    }
+
+    @Test
+    public void shouldReadLazily() throws IOException {
+        JsonParser parser = JsonUtil.OBJECT_MAPPER.getFactory().createParser("{\"items\": [1, 2, {\"broken\" ");
+        Iterator<Object> it = new StreamingJsonPath("$.items[*]").iterator(parser, JsonUtil.OBJECT_MAPPER, true);
+        assertEquals(1L, it.next());
+        assertEquals(2L, it.next());
+    }
+
+    @Test
+    public void shouldEndTheElementsOnErrorsWithoutFailOnError() throws IOException {
+        String broken = "{\"items\": [1, 2, {\"broken\" ";
+        JsonParser parser = JsonUtil.OBJECT_MAPPER.getFactory().createParser(broken);
+        List<Object> result = new ArrayList<>();
+        new StreamingJsonPath("$.items[*]")
+                .iterator(parser, JsonUtil.OBJECT_MAPPER, false)
+                .forEachRemaining(result::add);
+        assertEquals(List.of(1L, 2L), result);
+
+        Iterator<Object> it = new StreamingJsonPath("$.items[*]")
+                .iterator(JsonUtil.OBJECT_MAPPER.getFactory().createParser(broken), JsonUtil.OBJECT_MAPPER, true);
+        it.next();
+        it.next();
+        assertThrows(RuntimeException.class, it::hasNext);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectFilters() {
+        new StreamingJsonPath("$.items[?(@.id > 1)]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDeepScans() {
+        new StreamingJsonPath("$..id");
+    }
+
+    private static List<Object> read(String json, String path) throws IOException {
+        JsonParser parser = JsonUtil.OBJECT_MAPPER.getFactory().createParser(json);
+        List<Object> result = new ArrayList<>();
+        new StreamingJsonPath(path)
+                .iterator(parser, JsonUtil.OBJECT_MAPPER, true)
+                .forEachRemaining(result::add);
+        return result;
+    }
+}
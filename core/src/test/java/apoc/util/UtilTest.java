@@ -25,6 +25,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.junit.AfterClass;
@@ -91,6 +92,20 @@ public class UtilTest {
         assertEquals(10, Util.partitionSubList(list, 20).count());
     }
 
+    @Test
+    public void testPartitionOfSpreadsSequentialAndStridedHashes() {
+        for (int stride : new int[] {1, 4, 64, 1024}) {
+            int[] sizes = new int[4];
+            for (int i = 0; i < 64; i++) {
+                sizes[Util.partitionOf(i * stride, 4)]++;
+            }
+            for (int size : sizes) {
+                assertTrue("stride " + stride + ": " + Arrays.toString(sizes), size >= 8);
+            }
+        }
+        assertTrue(Util.partitionOf(-1, 3) >= 0);
+    }
+
     @Test
     public void cleanPassword() throws Exception {
         String url = "http://%slocalhost:7474/path?query#ref";
@@ -19,12 +19,18 @@
 package apoc.warmup;
 
 import static org.junit.Assert.assertEquals;
+import static org.neo4j.test.assertion.Assert.assertEventually;
 
+import apoc.periodic.Periodic;
 import apoc.util.TestUtil;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -39,7 +45,7 @@ public class WarmupTest {
 
     @Before
     public void setUp() throws Exception {
-        TestUtil.registerProcedure(db, Warmup.class);
+        TestUtil.registerProcedure(db, Warmup.class, Periodic.class);
         // Create enough nodes and relationships to span 2 pages
         db.executeTransactionally("CREATE CONSTRAINT ON (f:Foo) ASSERT f.foo IS UNIQUE");
         db.executeTransactionally(
@@ -91,4 +97,53 @@ public class WarmupTest {
             assertEquals(6L, r.get("indexPages"));
         });
     }
+
+    @Test
+    public void testWarmupStream() {
+        List<Map<String, Object>> rows = db.executeTransactionally(
+                "CALL apoc.warmup.stream({stores: ['relationships', 'nodes'], rangePages: 1, concurrency: 2})",
+                Map.of(),
+                Iterators::asList);
+        assertEquals(2, rows.size());
+        Map<String, Object> rels = rows.stream()
+                .filter(r -> r.get("store").equals("relationships"))
+                .findFirst()
+                .get();
+        assertEquals("neostore.relationshipstore.db", rels.get("file"));
+        assertEquals(2L, rels.get("filePages"));
+        assertEquals(2L, rels.get("pages"));
+        assertEquals(4L, rows.get(1).get("totalPages"));
+        assertEquals(1D, rows.get(1).get("progress"));
+    }
+
+    @Test
+    public void testWarmupStreamWithBudget() {
+        TestUtil.testResult(
+                db, "CALL apoc.warmup.stream({stores: ['relationships', 'nodes'], maxPages: 3, rangePages: 1})", r -> {
+                    long pages = 0;
+                    while (r.hasNext()) {
+                        Map<String, Object> row = r.next();
+                        if (row.get("store").equals("relationships")) {
+                            assertEquals(2L, row.get("pages"));
+                        }
+                        pages += (long) row.get("pages");
+                    }
+                    assertEquals(3L, pages);
+                });
+    }
+
+    @Test
+    public void testWarmupSubmit() {
+        TestUtil.testCall(db, "CALL apoc.warmup.submit({stores: ['nodes']})", r -> {
+            assertEquals("apoc.warmup", r.get("name"));
+        });
+        assertEventually(
+                () -> db.executeTransactionally(
+                        "CALL apoc.periodic.list() YIELD name, done WHERE name = 'apoc.warmup' RETURN done",
+                        Map.of(),
+                        r -> r.<Boolean>columnAs("done").next()),
+                done -> done,
+                10,
+                TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.full.it;
+
+import static apoc.util.TestContainerUtil.createEnterpriseDB;
+import static apoc.util.TestContainerUtil.testCall;
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.configuration.GraphDatabaseSettings.SYSTEM_DATABASE_NAME;
+import static org.neo4j.driver.SessionConfig.forDatabase;
+
+import apoc.util.Neo4jContainerExtension;
+import apoc.util.TestContainerUtil;
+import apoc.util.TestUtil;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+
+public class CustomResultCacheEnterpriseTest {
+    private static final String RESTRICTED_USER = "restricted";
+    private static final String RESTRICTED_PWD = "restricted1234";
+
+    private static Neo4jContainerExtension neo4jContainer;
+    private static Session session;
+
+    @BeforeClass
+    public static void beforeAll() {
+        // We build the project, the artifact will be placed into ./build/libs
+        neo4jContainer = createEnterpriseDB(List.of(TestContainerUtil.ApocPackage.FULL), !TestUtil.isRunningInCI());
+        neo4jContainer.start();
+        session = neo4jContainer.getSession();
+
+        try (Session sysSession = neo4jContainer.getDriver().session(forDatabase(SYSTEM_DATABASE_NAME))) {
+            sysSession.run(String.format(
+                    "CREATE USER %s SET PASSWORD '%s' SET PASSWORD CHANGE NOT REQUIRED",
+                    RESTRICTED_USER, RESTRICTED_PWD));
+            sysSession.run("CREATE ROLE noSecret");
+            sysSession.run("GRANT MATCH {*} ON GRAPH neo4j TO noSecret");
+            sysSession.run("DENY TRAVERSE ON GRAPH neo4j NODES Secret TO noSecret");
+            sysSession.run(String.format("GRANT ROLE noSecret TO %s", RESTRICTED_USER));
+        }
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        session.close();
+        neo4jContainer.close();
+    }
+
+    @Test
+    public void testCachedResultsAreNotSharedBetweenUsersWithDifferentPrivileges() {
+        session.writeTransaction(tx -> tx.run("CREATE (:Person), (:Person), (:Secret)"));
+        session.writeTransaction(tx -> tx.run("CALL apoc.custom.declareFunction('visibleNodes() :: INT', "
+                + "'MATCH (n) RETURN count(n) AS count', false, '', {cache: true})"));
+
+        String query = "RETURN custom.visibleNodes() AS count";
+        testCall(session, query, r -> assertEquals(3L, r.get("count")));
+
+        try (Driver userDriver = GraphDatabase.driver(
+                        neo4jContainer.getBoltUrl(), AuthTokens.basic(RESTRICTED_USER, RESTRICTED_PWD));
+                Session userSession = userDriver.session()) {
+            // the result cached for the admin includes the Secret node, which this user can't see
+            testCall(userSession, query, r -> assertEquals(2L, r.get("count")));
+            testCall(userSession, query, r -> assertEquals(2L, r.get("count")));
+        }
+        testCall(session, query, r -> assertEquals(3L, r.get("count")));
+
+        testCall(
+                session,
+                "CALL apoc.custom.list() YIELD name, cache WHERE name = 'visibleNodes' RETURN cache",
+                r -> {
+                    Map<String, Object> cache = (Map<String, Object>) r.get("cache");
+                    assertEquals(2L, cache.get("hits"));
+                    assertEquals(2L, cache.get("misses"));
+                });
+    }
+}
@@ -51,7 +51,8 @@ public class ExtendedApocGlobalComponents implements ApocGlobalComponents {
                 dependencies.scheduler(),
                 dependencies.apocConfig(),
                 dependencies.log().getUserLog(CypherProcedures.class),
-                dependencies.globalProceduresRegistry());
+                dependencies.globalProceduresRegistry(),
+                dependencies.databaseManagementService());
         cypherProcedureHandlers.put(db, cypherProcedureHandler);
 
         return MapUtil.genericMap(
@@ -70,8 +71,7 @@ public class ExtendedApocGlobalComponents implements ApocGlobalComponents {
                                 dependencies.scheduler(),
                                 dependencies.pools()),
                 "directory",
-                        new LoadDirectoryHandler(
-                                db, dependencies.log().getUserLog(LoadDirectory.class), dependencies.pools()),
+                        new LoadDirectoryHandler(db, dependencies.log().getUserLog(LoadDirectory.class)),
                 "cypherProcedures", cypherProcedureHandler);
     }
 
@@ -21,6 +21,7 @@ package apoc.algo;
 import static apoc.algo.PathFinding.buildPathExpander;
 
 import apoc.Extended;
+import apoc.Pools;
 import apoc.result.WeightedPathResult;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,7 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 
 @Extended
 public class PathFindingFull {
@@ -47,6 +49,12 @@ public class PathFindingFull {
     @Context
     public Transaction tx;
 
+    @Context
+    public Pools pools;
+
+    @Context
+    public TerminationGuard terminationGuard;
+
     @Procedure
     @Description(
             "apoc.algo.aStarWithPoint(startNode, endNode, 'relTypesAndDirs', 'distance','pointProp') - "
@@ -68,7 +76,7 @@ public class PathFindingFull {
 
     @Procedure
     @Description(
-            "apoc.algo.travellingSalesman(nodes,  $config) - resolve travelling salesman problem via simulated annealing algo")
+            "apoc.algo.travellingSalesman(nodes, $config) - resolve travelling salesman problem with 2-opt and Or-opt local searches from several start nodes")
     public Stream<TravellingSalesman.Result> travellingSalesman(
             @Name("startNode") List<Node> nodes,
             @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
@@ -76,6 +84,8 @@ public class PathFindingFull {
             throw new RuntimeException("The nodes parameter must have at least 3 nodes");
         }
         TravellingSalesman.Config conf = new TravellingSalesman.Config(config);
-        return Stream.of(TravellingSalesman.Algo.simulateAnnealing(nodes, conf));
+        TravellingSalesman.Algo algo =
+                new TravellingSalesman.Algo(db, tx, pools.getDefaultExecutorService(), terminationGuard, conf);
+        return Stream.of(algo.solve(nodes));
     }
 }
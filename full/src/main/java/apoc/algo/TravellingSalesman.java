@@ -23,112 +23,520 @@ import static org.neo4j.graphdb.RelationshipType.withName;
 import apoc.result.VirtualNode;
 import apoc.result.VirtualPath;
 import apoc.result.VirtualRelationship;
+import apoc.util.ParallelWorkers;
 import apoc.util.Util;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.values.storable.PointValue;
 
 public class TravellingSalesman {
 
-    public static class Tour {
-        private final List<Node> travel;
-        private final EstimateEvaluator<Double> evaluator;
+    /**
+     * The cost of going from a stop to another one, the stops being identified by their index in the list of nodes
+     */
+    interface Distances {
+        int size();
 
-        public Tour(List<Node> travel, EstimateEvaluator<Double> evaluator) {
-            this.travel = new ArrayList<>(travel);
-            this.evaluator = evaluator;
-        }
+        double get(int from, int to);
+
+        boolean isSymmetric();
+    }
 
-        public void swapCities() {
-            int a = generateRandomIndex();
-            int b = generateRandomIndex();
-            while (a == b) {
-                b = generateRandomIndex();
+    /**
+     * The distances between points on the Earth, as in {@link PathFinding.GeoEstimateEvaluatorPointCustom},
+     * computed on the fly from their cartesian coordinates
+     */
+    static class PointDistances implements Distances {
+        private static final double EARTH_RADIUS = 6371 * 1000; // Meters
+
+        private final int size;
+        private final double[] coordinates;
+
+        PointDistances(double[] longitudes, double[] latitudes) {
+            this.size = longitudes.length;
+            this.coordinates = new double[3 * size];
+            for (int i = 0; i < size; i++) {
+                double latitude = Math.toRadians(latitudes[i]);
+                double longitude = Math.toRadians(longitudes[i]);
+                double cLa = Math.cos(latitude);
+                coordinates[3 * i] = EARTH_RADIUS * cLa * Math.cos(longitude);
+                coordinates[3 * i + 1] = EARTH_RADIUS * cLa * Math.sin(longitude);
+                coordinates[3 * i + 2] = EARTH_RADIUS * Math.sin(latitude);
             }
-            Collections.swap(travel, a, b);
         }
 
-        private int generateRandomIndex() {
-            return (int) (travel.size() * Math.random());
+        @Override
+        public int size() {
+            return size;
         }
 
-        public double getDistance() {
-            return IntStream.rangeClosed(1, travel.size())
-                    .mapToDouble(idx -> {
-                        Node starting = travel.get(idx - 1);
-                        Node destination = travel.get(idx == travel.size() ? 0 : idx);
-                        return evaluator.getCost(starting, destination);
-                    })
-                    .sum();
+        @Override
+        public double get(int from, int to) {
+            double x = coordinates[3 * from] - coordinates[3 * to];
+            double y = coordinates[3 * from + 1] - coordinates[3 * to + 1];
+            double z = coordinates[3 * from + 2] - coordinates[3 * to + 2];
+            return Math.sqrt(x * x + y * y + z * z);
         }
 
-        public Tour copy() {
-            return new Tour(travel, evaluator);
+        @Override
+        public boolean isSymmetric() {
+            return true;
         }
     }
 
-    public static class Algo {
+    /**
+     * The costs of the shortest paths between all the stops, row by row
+     */
+    static class MatrixDistances implements Distances {
+        private final int size;
+        private final double[] matrix;
+        private final boolean symmetric;
+
+        MatrixDistances(int size, double[] matrix) {
+            this.size = size;
+            this.matrix = matrix;
+            this.symmetric = symmetric(size, matrix);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public double get(int from, int to) {
+            return matrix[from * size + to];
+        }
+
+        @Override
+        public boolean isSymmetric() {
+            return symmetric;
+        }
+
+        private static boolean symmetric(int size, double[] matrix) {
+            for (int from = 0; from < size; from++) {
+                for (int to = from + 1; to < size; to++) {
+                    if (matrix[from * size + to] != matrix[to * size + from]) return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A tour built with the nearest neighbour heuristic, then improved with 2-opt and Or-opt moves
+     * until none of them shortens it, or we run out of time.
+     *
+     * Only the moves adding an edge from a stop to one of its nearest neighbours are tried.
+     * For asymmetric distances, the cost of a reversed segment is taken from the prefix sums of the costs of the tour
+     * in both directions.
+     */
+    static class LocalSearch {
+        private static final int MAX_SEGMENT = 3;
+        private static final int CHECK_EXPIRED_EVERY = 256;
+        // the gains below are lost in the rounding errors of the prefix sums
+        private static final double MIN_GAIN_RATIO = 1e-10;
+
+        private final Distances distances;
+        private final int[][] neighbours;
+        private final BooleanSupplier expired;
+        private final boolean symmetric;
+        private final int size;
+        private final int[] tour;
+        private final int[] positions;
+        private final int[] scratch;
+        private final double[] forward;
+        private final double[] backward;
+        private double minGain;
+
+        LocalSearch(Distances distances, int[][] neighbours, int start, BooleanSupplier expired) {
+            this.distances = distances;
+            this.neighbours = neighbours;
+            this.expired = expired;
+            this.symmetric = distances.isSymmetric();
+            this.size = distances.size();
+            this.tour = new int[size];
+            this.positions = new int[size];
+            this.scratch = new int[size];
+            this.forward = new double[size + 1];
+            this.backward = new double[size + 1];
+            nearestNeighbourTour(start);
+            update();
+        }
+
+        int[] getTour() {
+            return tour;
+        }
+
+        double getLength() {
+            return forward[size];
+        }
+
+        void improve() {
+            if (size < 3) return;
+            boolean improved = true;
+            while (improved && !expired.getAsBoolean()) {
+                improved = twoOpt();
+                improved |= orOpt();
+            }
+        }
 
-        public static Result simulateAnnealing(List<Node> cities, Config config) {
-            final double coolingFactor = config.getCoolingFactor();
-            if (coolingFactor > 1) {
-                throw new RuntimeException("coolingFactor must be less than 1");
+        private void nearestNeighbourTour(int start) {
+            boolean[] visited = new boolean[size];
+            int current = start;
+            for (int i = 0; i < size; i++) {
+                tour[i] = current;
+                visited[current] = true;
+                int next = -1;
+                for (int neighbour : neighbours[current]) {
+                    if (!visited[neighbour]) {
+                        next = neighbour;
+                        break;
+                    }
+                }
+                if (next == -1) {
+                    double nearest = Double.POSITIVE_INFINITY;
+                    for (int other = 0; other < size; other++) {
+                        if (!visited[other] && (next == -1 || distances.get(current, other) < nearest)) {
+                            next = other;
+                            nearest = distances.get(current, other);
+                        }
+                    }
+                }
+                current = next;
             }
-            final double endTemperature = config.getEndTemperature();
-            final double startTemperature = config.getStartTemperature();
-            if (coolingFactor < 0 || endTemperature < 0 || startTemperature < 0) {
-                throw new RuntimeException("coolingFactor, endTemperature amd startTemperature must be positive");
+        }
+
+        /**
+         * Replaces the edges (a, b) and (c, d) with (a, c) and (b, d), where b is the successor of a and d of c,
+         * by reversing the tour from b to c
+         */
+        private boolean twoOpt() {
+            boolean improved = false;
+            for (int i = 0; i < size; i++) {
+                if (i % CHECK_EXPIRED_EVERY == 0 && expired.getAsBoolean()) break;
+                int a = tour[i];
+                double ab = distances.get(a, tour[next(i)]);
+                for (int c : neighbours[a]) {
+                    if (distances.get(a, c) >= ab) break;
+                    int from = Math.min(i, positions[c]);
+                    int to = Math.max(i, positions[c]);
+                    if (to - from < 2) continue;
+                    if (twoOptGain(from, to) > minGain) {
+                        reverse(from + 1, to);
+                        improved = true;
+                        break;
+                    }
+                }
             }
+            return improved;
+        }
 
-            EstimateEvaluator<Double> evaluator =
-                    new PathFinding.GeoEstimateEvaluatorPointCustom(config.getPointProp());
+        private double twoOptGain(int from, int to) {
+            int a = tour[from];
+            int b = tour[from + 1];
+            int c = tour[to];
+            int d = tour[next(to)];
+            double gain = distances.get(a, b) + distances.get(c, d) - distances.get(a, c) - distances.get(b, d);
+            if (!symmetric) {
+                gain += (forward[to] - forward[from + 1]) - (backward[to] - backward[from + 1]);
+            }
+            return gain;
+        }
 
-            Tour current = new Tour(cities, evaluator);
-            Tour best = current.copy();
+        /**
+         * Moves segments of up to {@link #MAX_SEGMENT} stops next to one of the nearest neighbours of their ends
+         */
+        private boolean orOpt() {
+            boolean improved = false;
+            for (int length = 1; length <= MAX_SEGMENT && length + 3 <= size; length++) {
+                for (int i = 0; i + length <= size; i++) {
+                    if (i % CHECK_EXPIRED_EVERY == 0 && expired.getAsBoolean()) return improved;
+                    improved |= moveSegment(i, length);
+                }
+            }
+            return improved;
+        }
 
-            double temperature = config.getStartTemperature();
-            while (temperature > config.getEndTemperature()) {
-                Tour neighbor = current.copy();
-                neighbor.swapCities();
+        private boolean moveSegment(int start, int length) {
+            int end = start + length - 1;
+            int first = tour[start];
+            int last = tour[end];
+            int previous = tour[previous(start)];
+            int next = tour[next(end)];
+            double removalGain =
+                    distances.get(previous, first) + distances.get(last, next) - distances.get(previous, next);
+            if (removalGain <= minGain) return false;
+
+            // between one of the neighbours and its successor
+            for (int neighbour : neighbours[first]) {
+                double cost = distances.get(neighbour, first);
+                if (cost >= removalGain) break;
+                int position = positions[neighbour];
+                if (neighbour == previous || (position >= start && position <= end)) continue;
+                int successor = tour[next(position)];
+                double insertionCost = cost + distances.get(last, successor) - distances.get(neighbour, successor);
+                if (removalGain - insertionCost > minGain) {
+                    move(start, length, position);
+                    return true;
+                }
+            }
+            // between one of the neighbours and its predecessor
+            for (int neighbour : neighbours[last]) {
+                double cost = distances.get(last, neighbour);
+                if (cost >= removalGain) break;
+                int position = positions[neighbour];
+                if (neighbour == next || (position >= start && position <= end)) continue;
+                int predecessor = tour[previous(position)];
+                double insertionCost = distances.get(predecessor, first) + cost - distances.get(predecessor, neighbour);
+                if (removalGain - insertionCost > minGain) {
+                    move(start, length, previous(position));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void reverse(int from, int to) {
+            for (int i = from, j = to; i < j; i++, j--) {
+                int stop = tour[i];
+                tour[i] = tour[j];
+                tour[j] = stop;
+            }
+            update();
+        }
 
-                // Get distance of current and new (swapped) travel
-                double currentDistance = current.getDistance();
-                double newDistance = neighbor.getDistance();
+        /**
+         * Moves the segment of the given length right after the stop at the given position
+         */
+        private void move(int start, int length, int after) {
+            int moved = 0;
+            for (int i = 0; i < size; i++) {
+                if (i >= start && i < start + length) continue;
+                scratch[moved++] = tour[i];
+                if (i == after) {
+                    System.arraycopy(tour, start, scratch, moved, length);
+                    moved += length;
+                }
+            }
+            System.arraycopy(scratch, 0, tour, 0, size);
+            update();
+        }
 
-                // Decide if we should accept the new result
-                if (Math.random() < Math.exp((currentDistance - newDistance) / temperature)) {
-                    current = neighbor.copy();
+        private void update() {
+            for (int i = 0; i < size; i++) {
+                positions[tour[i]] = i;
+                forward[i + 1] = forward[i] + distances.get(tour[i], tour[next(i)]);
+                if (!symmetric) {
+                    backward[i + 1] = backward[i] + distances.get(tour[next(i)], tour[i]);
                 }
+            }
+            minGain = forward[size] * MIN_GAIN_RATIO;
+        }
+
+        private int next(int position) {
+            return position == size - 1 ? 0 : position + 1;
+        }
+
+        private int previous(int position) {
+            return position == 0 ? size - 1 : position - 1;
+        }
+    }
+
+    /**
+     * Computes the distances between the stops and their nearest neighbours,
+     * then runs a {@link LocalSearch} from several start stops, keeping the shortest tour.
+     * Both the distances and the searches are spread over the given executor with {@link ParallelWorkers}.
+     */
+    public static class Algo {
+        private static final int NEIGHBOURS = 10;
+        private static final String ACTION = "solving the travelling salesman problem";
+
+        private final GraphDatabaseService db;
+        private final Transaction tx;
+        private final ExecutorService pool;
+        private final TerminationGuard guard;
+        private final Config config;
+
+        public Algo(
+                GraphDatabaseService db, Transaction tx, ExecutorService pool, TerminationGuard guard, Config config) {
+            this.db = db;
+            this.tx = tx;
+            this.pool = pool;
+            this.guard = guard;
+            this.config = config;
+        }
 
-                // Keep the best distance found
-                if (current.getDistance() < best.getDistance()) {
-                    best = current.copy();
+        public Result solve(List<Node> nodes) {
+            long start = System.nanoTime();
+            long timeout = config.getTimeout() < 0 ? -1 : (long) (config.getTimeout() * TimeUnit.SECONDS.toNanos(1));
+            BooleanSupplier expired = () -> timeout >= 0 && System.nanoTime() - start > timeout;
+
+            Distances distances = config.getWeight() == null ? pointDistances(nodes) : matrixDistances(nodes);
+            int[][] neighbours = neighbours(distances);
+            int[] tour = shortestTour(distances, neighbours, expired);
+            return result(nodes, distances, tour);
+        }
+
+        private Distances pointDistances(List<Node> nodes) {
+            double[] longitudes = new double[nodes.size()];
+            double[] latitudes = new double[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                Object point = node.getProperty(config.getPointProp(), null);
+                if (point instanceof PointValue) {
+                    double[] coordinate = ((PointValue) point).coordinate();
+                    longitudes[i] = coordinate[0];
+                    latitudes[i] = coordinate[1];
+                } else if (node.hasProperty(config.getLatitudeProp()) && node.hasProperty(config.getLongitudeProp())) {
+                    longitudes[i] = Util.toDouble(node.getProperty(config.getLongitudeProp()));
+                    latitudes[i] = Util.toDouble(node.getProperty(config.getLatitudeProp()));
+                } else {
+                    throw new IllegalArgumentException(String.format(
+                            "The node %d has neither the %s point property nor the %s and %s properties",
+                            node.getId(), config.getPointProp(), config.getLatitudeProp(), config.getLongitudeProp()));
                 }
+            }
+            return new PointDistances(longitudes, latitudes);
+        }
 
-                // decrement temp via coolingFactor
-                temperature *= config.getCoolingFactor();
+        /**
+         * Runs a Dijkstra search from each stop to all the others
+         */
+        private Distances matrixDistances(List<Node> nodes) {
+            int size = nodes.size();
+            // the matrix takes 8 bytes per pair of nodes, i.e. 200MB for the default maximum of 5000 nodes
+            if (size > config.getMaxWeightedNodes() || (long) size * size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(String.format(
+                        "Too many nodes to compute the distances between all of them with the weight config: "
+                                + "%d, more than the %d of the maxWeightedNodes config, the distances take %d MB",
+                        size, config.getMaxWeightedNodes(), (long) size * size * Double.BYTES / (1024 * 1024)));
             }
+            long[] ids = nodes.stream().mapToLong(Node::getId).toArray();
+            double[] matrix = new double[size * size];
+            AtomicInteger nextRow = new AtomicInteger();
+            int workers = Math.min(config.getConcurrency(), size);
+            ParallelWorkers.run(db, tx, pool, workers, guard, ACTION, (workerTx, stopped) -> {
+                try (DijkstraSearch search = new DijkstraSearch(
+                        workerTx,
+                        guard,
+                        config.getRelationshipFilter(),
+                        config.getWeight(),
+                        config.getDefaultWeight())) {
+                    int row;
+                    while (!stopped.getAsBoolean() && (row = nextRow.getAndIncrement()) < size) {
+                        double[] costs = search.costs(ids[row], ids);
+                        for (int column = 0; column < size; column++) {
+                            if (costs[column] == Double.POSITIVE_INFINITY) {
+                                throw new IllegalArgumentException(String.format(
+                                        "The node %d cannot be reached from the node %d", ids[column], ids[row]));
+                            }
+                        }
+                        System.arraycopy(costs, 0, matrix, row * size, size);
+                    }
+                }
+            });
+            return new MatrixDistances(size, matrix);
+        }
 
-            // return virtual path result
-            final List<VirtualNode> vNodes =
-                    best.travel.stream().map(VirtualNode::from).collect(Collectors.toList());
+        private int[][] neighbours(Distances distances) {
+            int size = distances.size();
+            int[][] neighbours = new int[size][];
+            AtomicInteger next = new AtomicInteger();
+            ParallelWorkers.run(pool, Math.min(config.getConcurrency(), size), guard, ACTION, stopped -> {
+                int stop;
+                while (!stopped.getAsBoolean() && (stop = next.getAndIncrement()) < size) {
+                    neighbours[stop] = nearest(distances, stop, Math.min(NEIGHBOURS, size - 1));
+                }
+            });
+            return neighbours;
+        }
 
-            final VirtualNode node = vNodes.get(0);
-            final VirtualPath virtualPath = new VirtualPath(node);
+        /**
+         * @return the given number of stops nearest to the given one, from the nearest to the farthest
+         */
+        static int[] nearest(Distances distances, int from, int count) {
+            int[] nearest = new int[count];
+            double[] costs = new double[count];
+            int found = 0;
+            for (int to = 0; to < distances.size(); to++) {
+                if (to == from) continue;
+                double cost = distances.get(from, to);
+                if (found == count && (count == 0 || cost >= costs[count - 1])) continue;
+                int i = found < count ? found++ : count - 1;
+                for (; i > 0 && costs[i - 1] > cost; i--) {
+                    costs[i] = costs[i - 1];
+                    nearest[i] = nearest[i - 1];
+                }
+                costs[i] = cost;
+                nearest[i] = to;
+            }
+            return nearest;
+        }
 
-            IntStream.range(0, best.travel.size() - 1).forEach(i -> {
-                final VirtualRelationship vRel =
-                        new VirtualRelationship(vNodes.get(i), vNodes.get(i + 1), withName(config.getRelName()));
-                virtualPath.addRel(vRel);
+        /**
+         * Starts the searches from stops spread over the list, the first one being the first stop,
+         * so that the result only depends on the time limit, not on how the searches are scheduled
+         */
+        private int[] shortestTour(Distances distances, int[][] neighbours, BooleanSupplier expired) {
+            int restarts = Math.min(config.getRestarts(), distances.size());
+            int[][] tours = new int[restarts][];
+            double[] lengths = new double[restarts];
+            AtomicInteger next = new AtomicInteger();
+            ParallelWorkers.run(pool, Math.min(config.getConcurrency(), restarts), guard, ACTION, stopped -> {
+                BooleanSupplier stoppedOrExpired = () -> stopped.getAsBoolean() || expired.getAsBoolean();
+                int restart;
+                while (!stopped.getAsBoolean() && (restart = next.getAndIncrement()) < restarts) {
+                    // the first tour is always built, so that we have one to return
+                    if (restart > 0 && expired.getAsBoolean()) break;
+                    int start = (int) ((long) restart * distances.size() / restarts);
+                    LocalSearch search = new LocalSearch(distances, neighbours, start, stoppedOrExpired);
+                    search.improve();
+                    tours[restart] = search.getTour();
+                    lengths[restart] = search.getLength();
+                }
             });
+            int best = 0;
+            for (int restart = 1; restart < restarts; restart++) {
+                if (tours[restart] != null && lengths[restart] < lengths[best]) {
+                    best = restart;
+                }
+            }
+            return tours[best];
+        }
 
-            return new Result(virtualPath, best.getDistance());
+        /**
+         * @return the path following the tour from the first node, and the length of the tour back to it
+         */
+        private Result result(List<Node> nodes, Distances distances, int[] tour) {
+            int offset = 0;
+            while (tour[offset] != 0) offset++;
+
+            VirtualNode previous = VirtualNode.from(nodes.get(0));
+            VirtualPath virtualPath = new VirtualPath(previous);
+            double distance = 0;
+            for (int i = 1; i <= tour.length; i++) {
+                int from = tour[(offset + i - 1) % tour.length];
+                int to = tour[(offset + i) % tour.length];
+                distance += distances.get(from, to);
+                if (i < tour.length) {
+                    VirtualNode node = VirtualNode.from(nodes.get(to));
+                    virtualPath.addRel(new VirtualRelationship(previous, node, withName(config.getRelName())));
+                    previous = node;
+                }
+            }
+            return new Result(virtualPath, distance);
         }
     }
 
@@ -144,44 +552,106 @@ public class TravellingSalesman {
 
     public static class Config {
         public static final String POINT_PROP_KEY = "pointProp";
+        // the options of the simulated annealing, which the local searches replaced
+        private static final List<String> REMOVED_KEYS = List.of("coolingFactor", "startTemperature", "endTemperature");
 
-        private final Double coolingFactor;
-        private final Double startTemperature;
-        private final Double endTemperature;
         private final String pointProp;
         private final String latitudeProp;
         private final String longitudeProp;
         private final String relName;
+        private final String relationshipFilter;
+        private final String weight;
+        private final double defaultWeight;
+        private final int restarts;
+        private final int concurrency;
+        private final double timeout;
+        private final long maxWeightedNodes;
 
         public Config(Map<String, Object> config) {
             if (config == null) config = Collections.emptyMap();
-            this.coolingFactor = Util.toDouble(config.getOrDefault("coolingFactor", 0.995));
-            this.startTemperature = Util.toDouble(config.getOrDefault("startTemperature", 100000));
-            this.endTemperature = Util.toDouble(config.getOrDefault("endTemperature", 0.1));
+            List<String> removedKeys = REMOVED_KEYS.stream().filter(config::containsKey).collect(Collectors.toList());
+            if (!removedKeys.isEmpty()) {
+                throw new IllegalArgumentException(String.format(
+                        "The config parameters %s are no longer supported, "
+                                + "as the simulated annealing has been replaced by 2-opt and Or-opt local searches: "
+                                + "use `restarts` and `timeout` instead",
+                        removedKeys));
+            }
             this.pointProp = (String) config.getOrDefault(POINT_PROP_KEY, "place");
             this.latitudeProp = (String) config.getOrDefault("latitudeProp", "latitude");
             this.longitudeProp = (String) config.getOrDefault("longitudeProp", "longitude");
             this.relName = (String) config.getOrDefault("relName", "CONNECT_TO");
+            this.relationshipFilter = (String) config.get("relationshipFilter");
+            this.weight = (String) config.get("weight");
+            this.defaultWeight = Util.toDouble(config.getOrDefault("default", Double.NaN));
+            this.restarts = Util.toInteger(config.getOrDefault("restarts", 8));
+            this.concurrency = Util.toInteger(
+                    config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+            this.timeout = Util.toDouble(config.getOrDefault("timeout", -1));
+            this.maxWeightedNodes = Util.toLong(config.getOrDefault("maxWeightedNodes", 5000));
+            if (restarts < 1) {
+                throw new IllegalArgumentException("restarts parameter must be > 0");
+            }
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency parameter must be > 0");
+            }
         }
 
-        public Double getCoolingFactor() {
-            return coolingFactor;
-        }
-
-        public Double getStartTemperature() {
-            return startTemperature;
+        public String getPointProp() {
+            return pointProp;
         }
 
-        public Double getEndTemperature() {
-            return endTemperature;
+        public String getLatitudeProp() {
+            return latitudeProp;
         }
 
-        public String getPointProp() {
-            return pointProp;
+        public String getLongitudeProp() {
+            return longitudeProp;
         }
 
         public String getRelName() {
             return relName;
         }
+
+        /**
+         * @return the relationships to follow when the distances are the costs of the shortest paths, null for all
+         */
+        public String getRelationshipFilter() {
+            return relationshipFilter;
+        }
+
+        /**
+         * @return the relationship property the distances are computed from, or null to use the points of the nodes
+         */
+        public String getWeight() {
+            return weight;
+        }
+
+        public double getDefaultWeight() {
+            return defaultWeight;
+        }
+
+        public int getRestarts() {
+            return restarts;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return the time in seconds after which we return the best tour found so far, or -1 if there is no limit
+         */
+        public double getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * @return the maximum number of nodes whose distances are computed with the weight config,
+         * as they're held in a matrix with the distance between each pair of them
+         */
+        public long getMaxWeightedNodes() {
+            return maxWeightedNodes;
+        }
     }
 }
@@ -21,10 +21,11 @@ package apoc.cache;
 import apoc.ApocConfig;
 import apoc.Extended;
 import apoc.result.KeyValueResult;
+import apoc.result.MapResult;
 import apoc.result.ObjectResult;
-import apoc.util.Util;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
@@ -37,27 +38,31 @@ import org.neo4j.procedure.*;
 @Extended
 public class Static {
 
+    public static final String MAX_ENTRIES = "apoc.cache.static.max_entries";
+    public static final String MAX_BYTES = "apoc.cache.static.max_bytes";
+
     @Context
     public GraphDatabaseAPI db;
 
     @Context
     public ApocConfig apocConfig;
 
-    private static Map<String, Object> storage = new HashMap<>();
+    private static final StaticStorage storage = new StaticStorage();
 
     @Procedure("apoc.static.get")
     @Deprecated
     @Description(
             "apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Stream<ObjectResult> getProcedure(@Name("key") String key) {
-        return Stream.of(new ObjectResult(storage.getOrDefault(key, fromConfig(key))));
+        return Stream.of(new ObjectResult(get(key)));
     }
 
     @UserFunction("apoc.static.get")
     @Description(
             "apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Object get(@Name("key") String key) {
-        return storage.getOrDefault(key, fromConfig(key));
+        Object value = storage().get(key);
+        return value == null ? fromConfig(key) : value;
     }
 
     @UserFunction("apoc.static.getAll")
@@ -73,7 +78,7 @@ public class Static {
         String configPrefix = prefix.isEmpty() ? "apoc.static" : "apoc.static." + prefix;
         Iterators.stream(apocConfig.getKeys(configPrefix))
                 .forEach(s -> result.put(s.substring(configPrefix.length() + 1), apocConfig.getString(s)));
-        result.putAll(Util.subMap(storage, prefix));
+        result.putAll(storage().subMap(prefix));
         return result;
     }
 
@@ -91,12 +96,63 @@ public class Static {
 
     @Procedure("apoc.static.set")
     @Description(
-            "apoc.static.set(name, value) - stores value under key for server lifetime storage, returns previously stored or configured value")
-    public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value) {
-        Object previous = value == null ? storage.remove(key) : storage.put(key, value);
+            "apoc.static.set(name, value, config) - stores value under key for server lifetime storage, or until the `ttl` in seconds of the config, returns previously stored or configured value")
+    public Stream<ObjectResult> set(
+            @Name("key") String key,
+            @Name("value") Object value,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        Object previous = value == null ? storage().remove(key) : storage().put(key, value, ttlMillis(config));
         return Stream.of(new ObjectResult(previous == null ? fromConfig(key) : previous));
     }
 
+    @Procedure("apoc.static.setIfAbsent")
+    @Description(
+            "apoc.static.setIfAbsent(name, value, config) - atomically stores value under key if there is no stored value, returns the value stored under the key")
+    public Stream<ObjectResult> setIfAbsent(
+            @Name("key") String key,
+            @Name("value") Object value,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (value == null) {
+            throw new IllegalArgumentException("The value to store under the key `" + key + "` can't be null");
+        }
+        return Stream.of(new ObjectResult(storage().putIfAbsent(key, value, ttlMillis(config))));
+    }
+
+    @Procedure("apoc.static.increment")
+    @Description(
+            "apoc.static.increment(name, delta, config) - atomically adds delta to the number stored under key, or stores delta if there is none, returns the new number")
+    public Stream<ObjectResult> increment(
+            @Name("key") String key,
+            @Name(value = "delta", defaultValue = "1") Number delta,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        if (delta == null) {
+            throw new IllegalArgumentException("The delta to add to the key `" + key + "` can't be null");
+        }
+        return Stream.of(new ObjectResult(storage().increment(key, delta, ttlMillis(config))));
+    }
+
+    @Procedure("apoc.static.stats")
+    @Description(
+            "apoc.static.stats() - returns the number of entries, their estimated size, the limits and the hits, misses, evictions and expirations of the server lifetime storage")
+    public Stream<MapResult> stats() {
+        return Stream.of(new MapResult(storage().stats()));
+    }
+
+    private StaticStorage storage() {
+        storage.setLimits(
+                apocConfig.getInt(MAX_ENTRIES, 0), apocConfig.getConfig().getLong(MAX_BYTES, 0L));
+        return storage;
+    }
+
+    private static long ttlMillis(Map<String, Object> config) {
+        Object ttl = config == null ? null : config.get("ttl");
+        if (ttl == null) return 0;
+        if (!(ttl instanceof Number) || ((Number) ttl).doubleValue() < 0) {
+            throw new IllegalArgumentException("The ttl must be a number of seconds >= 0, but was: " + ttl);
+        }
+        return (long) (((Number) ttl).doubleValue() * TimeUnit.SECONDS.toMillis(1));
+    }
+
     public static void clear() {
         storage.clear();
     }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.cache;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server lifetime storage of `apoc.static`.
+ *
+ * The entries are kept in a sorted concurrent map, so that the values with a prefix are read from a range of the keys.
+ * Each entry can expire after a ttl, the expired entries are removed when they're read or when we need to evict.
+ *
+ * When a maximum number of entries or an estimated maximum number of bytes is configured,
+ * the entries are evicted with the CLOCK algorithm, an approximation of LRU which doesn't lock:
+ * the entries are queued when stored and flagged when read, the flagged entries get a second chance
+ * when they reach the head of the queue, the others are evicted.
+ */
+class StaticStorage {
+
+    // how many stale entries, i.e. replaced or removed ones, the queue may hold before we purge them
+    private static final int MAX_STALE = 1024;
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long maxEntries;
+    private volatile long maxBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private static class Entry {
+        private final String key;
+        private final Object value;
+        private final long expiresAt;
+        private final long bytes;
+        private volatile boolean referenced;
+
+        Entry(String key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.bytes = sizeOf(key) + sizeOf(value);
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt > 0 && now >= expiresAt;
+        }
+    }
+
+    /**
+     * @param maxEntries the maximum number of entries, 0 for no limit
+     * @param maxBytes the maximum estimated size of the keys and values, 0 for no limit
+     */
+    void setLimits(long maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("The limits of the static storage must be >= 0");
+        }
+        if (this.maxEntries == maxEntries && this.maxBytes == maxBytes) return;
+        synchronized (clock) {
+            boolean wasBounded = isBounded();
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            if (!wasBounded && isBounded()) {
+                // the entries stored so far haven't been queued
+                entries.values().forEach(this::enqueue);
+            }
+        }
+        evictIfNeeded();
+    }
+
+    private boolean isBounded() {
+        return maxEntries > 0 || maxBytes > 0;
+    }
+
+    /**
+     * @return the value, or null if there is none or it has expired
+     */
+    Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            expire(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        entry.referenced = true;
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * @param ttlMillis the time to live of the value, 0 to keep it until it's replaced or evicted
+     * @return the previous value, or null
+     */
+    Object put(String key, Object value, long ttlMillis) {
+        Entry entry = new Entry(key, value, expiresAt(ttlMillis));
+        Entry previous = entries.put(key, entry);
+        stored(entry, previous);
+        return value(previous);
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    Object remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) bytes.addAndGet(-previous.bytes);
+        return value(previous);
+    }
+
+    /**
+     * @param ttlMillis the time to live of the value, if it's stored
+     * @return the value now stored under the key, i.e. the current one or the new one if there was none
+     */
+    Object putIfAbsent(String key, Object value, long ttlMillis) {
+        Entry[] previous = new Entry[1];
+        Entry current = entries.compute(key, (k, entry) -> {
+            previous[0] = entry;
+            if (entry != null && !entry.isExpired(System.currentTimeMillis())) return entry;
+            return new Entry(key, value, expiresAt(ttlMillis));
+        });
+        if (current != previous[0]) {
+            stored(current, previous[0]);
+        } else {
+            current.referenced = true;
+        }
+        return current.value;
+    }
+
+    /**
+     * Adds the delta to the number stored under the key, or stores the delta if there is none.
+     * The sum is an integer if both the numbers are.
+     *
+     * @param ttlMillis the time to live of the number, if there was none, otherwise the number keeps its expiration
+     * @return the new number
+     */
+    Number increment(String key, Number delta, long ttlMillis) {
+        Entry[] previous = new Entry[1];
+        Entry current = entries.compute(key, (k, entry) -> {
+            previous[0] = entry;
+            if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+                return new Entry(key, delta, expiresAt(ttlMillis));
+            }
+            if (!(entry.value instanceof Number)) {
+                throw new IllegalArgumentException(
+                        "The value of the key `" + key + "` is not a number: " + entry.value);
+            }
+            return new Entry(key, add((Number) entry.value, delta), entry.expiresAt);
+        });
+        stored(current, previous[0]);
+        return (Number) current.value;
+    }
+
+    private static Number add(Number value, Number delta) {
+        if (isInteger(value) && isInteger(delta)) {
+            return value.longValue() + delta.longValue();
+        }
+        return value.doubleValue() + delta.doubleValue();
+    }
+
+    private static boolean isInteger(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * @return the values whose key starts with the prefix, keyed by what follows the prefix and its separating dot
+     */
+    Map<String, Object> subMap(String prefix) {
+        Map<String, Object> result = new HashMap<>();
+        int length = prefix.length() + (prefix.isEmpty() || prefix.endsWith(".") ? 0 : 1);
+        long now = System.currentTimeMillis();
+        ConcurrentNavigableMap<String, Entry> range = entries.tailMap(prefix, true);
+        for (Entry entry : range.values()) {
+            if (!entry.key.startsWith(prefix)) break;
+            if (entry.isExpired(now)) {
+                expire(entry);
+                continue;
+            }
+            entry.referenced = true;
+            result.put(entry.key.substring(Math.min(length, entry.key.length())), entry.value);
+        }
+        return result;
+    }
+
+    void clear() {
+        entries.clear();
+        synchronized (clock) {
+            clock.clear();
+            queued.set(0);
+        }
+        bytes.set(0);
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        expirations.set(0);
+    }
+
+    Map<String, Object> stats() {
+        long hits = this.hits.get();
+        long misses = this.misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", (long) entries.size());
+        stats.put("bytes", bytes.get());
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : hits / (double) (hits + misses));
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    private static long expiresAt(long ttlMillis) {
+        return ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+    }
+
+    private static Object value(Entry entry) {
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry.value;
+    }
+
+    private void stored(Entry entry, Entry previous) {
+        bytes.addAndGet(entry.bytes - (previous == null ? 0 : previous.bytes));
+        if (isBounded()) {
+            enqueue(entry);
+            evictIfNeeded();
+        }
+    }
+
+    private void expire(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            bytes.addAndGet(-entry.bytes);
+            expirations.incrementAndGet();
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        clock.offer(entry);
+        if (queued.incrementAndGet() > 2L * entries.size() + MAX_STALE) {
+            synchronized (clock) {
+                clock.removeIf(queuedEntry -> entries.get(queuedEntry.key) != queuedEntry);
+                queued.set(clock.size());
+            }
+        }
+    }
+
+    private boolean isOverLimits() {
+        long maxEntries = this.maxEntries;
+        long maxBytes = this.maxBytes;
+        return (maxEntries > 0 && entries.size() > maxEntries) || (maxBytes > 0 && bytes.get() > maxBytes);
+    }
+
+    private void evictIfNeeded() {
+        // each entry gets at most one second chance per round, then we evict regardless of the flags
+        long secondChances = queued.get();
+        while (isOverLimits()) {
+            Entry entry = clock.poll();
+            if (entry == null) return;
+            queued.decrementAndGet();
+            if (entries.get(entry.key) != entry) continue;
+            if (entry.isExpired(System.currentTimeMillis())) {
+                expire(entry);
+                continue;
+            }
+            if (entry.referenced && secondChances-- > 0) {
+                entry.referenced = false;
+                clock.offer(entry);
+                queued.incrementAndGet();
+                continue;
+            }
+            if (entries.remove(entry.key, entry)) {
+                bytes.addAndGet(-entry.bytes);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return a rough estimate of the heap used by a value, the entities and the other objects count as 64 bytes
+     */
+    static long sizeOf(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return 40 + 2L * ((String) value).length();
+        if (value instanceof Number || value instanceof Boolean) return 16;
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) value) {
+                size += 8 + sizeOf(element);
+            }
+            return size;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (value.getClass().getComponentType().isPrimitive()) return 16 + 8L * length;
+            long size = 16;
+            for (int i = 0; i < length; i++) {
+                size += 8 + sizeOf(Array.get(value, i));
+            }
+            return size;
+        }
+        return 64;
+    }
+}
@@ -19,6 +19,9 @@
 package apoc.config;
 
 import static apoc.ApocConfig.APOC_CONFIG_JOBS_POOL_NUM_THREADS;
+import static apoc.ApocConfig.APOC_CONFIG_JOBS_POOL_STATS_LOG_INTERVAL;
+import static apoc.ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL;
+import static apoc.ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY;
 import static apoc.ApocConfig.APOC_CONFIG_JOBS_QUEUE_SIZE;
 import static apoc.ApocConfig.APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS;
 import static apoc.ApocConfig.APOC_EXPORT_FILE_ENABLED;
@@ -84,6 +87,9 @@ public class Config {
             APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS,
             APOC_CONFIG_JOBS_POOL_NUM_THREADS,
             APOC_CONFIG_JOBS_QUEUE_SIZE,
+            APOC_CONFIG_JOBS_POOL_VIRTUAL,
+            APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY,
+            APOC_CONFIG_JOBS_POOL_STATS_LOG_INTERVAL,
 
             // apoc.http.
             "apoc.http.timeout.connect",
@@ -29,6 +29,7 @@ import static apoc.custom.CypherProceduresUtil.getProcedureInfo;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.neo4j.graphdb.Node;
 import org.neo4j.internal.helpers.collection.Iterables;
@@ -43,6 +44,7 @@ public class CustomProcedureInfo {
     public List<List<String>> inputs;
     public Object outputs;
     public Boolean forceSingle;
+    public Map<String, Object> cache;
 
     public CustomProcedureInfo(
             String type,
@@ -53,6 +55,19 @@ public class CustomProcedureInfo {
             List<List<String>> inputs,
             Object outputs,
             Boolean forceSingle) {
+        this(type, name, description, mode, statement, inputs, outputs, forceSingle, null);
+    }
+
+    public CustomProcedureInfo(
+            String type,
+            String name,
+            String description,
+            String mode,
+            String statement,
+            List<List<String>> inputs,
+            Object outputs,
+            Boolean forceSingle,
+            Map<String, Object> cache) {
         this.type = type;
         this.name = name;
         this.description = description;
@@ -61,6 +76,7 @@ public class CustomProcedureInfo {
         this.inputs = inputs;
         this.forceSingle = forceSingle;
         this.mode = mode;
+        this.cache = cache;
     }
 
     public static CustomProcedureInfo fromNode(Node node) {
@@ -74,6 +90,14 @@ public class CustomProcedureInfo {
     }
 
     public static CustomProcedureInfo getCustomProcedureInfo(ProcedureSignature signature, String statement) {
+        return getCustomProcedureInfo(signature, statement, null);
+    }
+
+    /**
+     * @param cache the config of the cache of the results, along with its counters if they're known, or null
+     */
+    public static CustomProcedureInfo getCustomProcedureInfo(
+            ProcedureSignature signature, String statement, Map<String, Object> cache) {
         return new CustomProcedureInfo(
                 PROCEDURE,
                 signature.name().toString().substring(PREFIX.length() + 1),
@@ -83,11 +107,20 @@ public class CustomProcedureInfo {
                 convertInputSignature(signature.inputSignature()),
                 Iterables.asList(Iterables.map(
                         f -> Arrays.asList(f.name(), prettyPrintType(f.neo4jType())), signature.outputSignature())),
-                null);
+                null,
+                cache);
     }
 
     public static CustomProcedureInfo getCustomFunctionInfo(
             UserFunctionSignature signature, boolean forceSingle, String statement) {
+        return getCustomFunctionInfo(signature, forceSingle, statement, null);
+    }
+
+    /**
+     * @param cache the config of the cache of the results, along with its counters if they're known, or null
+     */
+    public static CustomProcedureInfo getCustomFunctionInfo(
+            UserFunctionSignature signature, boolean forceSingle, String statement, Map<String, Object> cache) {
         return new CustomProcedureInfo(
                 FUNCTION,
                 signature.name().toString().substring(PREFIX.length() + 1),
@@ -96,7 +129,8 @@ public class CustomProcedureInfo {
                 statement,
                 convertInputSignature(signature.inputSignature()),
                 prettyPrintType(signature.outputType()),
-                forceSingle);
+                forceSingle,
+                cache);
     }
 
     public static List<List<String>> convertInputSignature(List<FieldSignature> signatures) {
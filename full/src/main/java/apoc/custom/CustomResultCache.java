@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.custom;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.security.SecurityContext;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.impl.util.ValueUtils;
+import org.neo4j.values.AnyValue;
+import org.neo4j.values.storable.FloatingPointArray;
+import org.neo4j.values.storable.FloatingPointValue;
+import org.neo4j.values.storable.IntegralArray;
+import org.neo4j.values.storable.IntegralValue;
+import org.neo4j.values.virtual.ListValue;
+import org.neo4j.values.virtual.MapValue;
+import org.neo4j.values.virtual.MapValueBuilder;
+import org.neo4j.values.virtual.VirtualNodeValue;
+import org.neo4j.values.virtual.VirtualPathValue;
+import org.neo4j.values.virtual.VirtualRelationshipValue;
+import org.neo4j.values.virtual.VirtualValues;
+
+/**
+ * The results of a custom procedure or function declared with a `cache` config, keyed by its input values.
+ *
+ * The cache holds at most `maxSize` results, evicting the least recently used one,
+ * and each result expires `ttl` seconds after it was computed (never if `ttl` is 0).
+ * All the results are dropped when a transaction changes the data of the `labels` of the config,
+ * i.e. creates, deletes or changes nodes with these labels or their relationships,
+ * or when any data changes if the config has no `labels`.
+ *
+ * The nodes and the relationships of a result are kept by id, and looked up again in the transaction reading it.
+ * The results are cached per user and roles, as each one only holds what its security context can read.
+ */
+class CustomResultCache {
+
+    static final String MAX_SIZE = "maxSize";
+    static final String TTL = "ttl";
+    static final String LABELS = "labels";
+
+    private static final long DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_TTL = 60;
+
+    private final String statement;
+    private final Map<String, Object> config;
+    private final long maxSize;
+    private final long ttlMillis;
+    private final Set<String> labels;
+    private final Map<Key, CachedResult> entries;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    CustomResultCache(String statement, Map<String, Object> config) {
+        this.statement = statement;
+        this.config = config;
+        this.maxSize = ((Number) config.get(MAX_SIZE)).longValue();
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(((Number) config.get(TTL)).longValue());
+        Collection<String> labels = (Collection<String>) config.get(LABELS);
+        this.labels = labels == null ? null : Set.copyOf(labels);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                boolean evict = size() > CustomResultCache.this.maxSize;
+                if (evict) evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * @param cache the `cache` entry of the config, either `true` or a map of `maxSize`, `ttl` (in seconds) and `labels`
+     * @return the config with the defaults filled in, or null if the results are not to be cached
+     */
+    static Map<String, Object> config(Object cache) {
+        if (cache == null || Boolean.FALSE.equals(cache)) return null;
+        Map<String, Object> map;
+        if (Boolean.TRUE.equals(cache)) {
+            map = Map.of();
+        } else if (cache instanceof Map) {
+            map = (Map<String, Object>) cache;
+        } else {
+            throw new IllegalArgumentException("The cache config must be a boolean or a map, but was: " + cache);
+        }
+        long maxSize = Util.toLong(map.getOrDefault(MAX_SIZE, DEFAULT_MAX_SIZE));
+        long ttl = Util.toLong(map.getOrDefault(TTL, DEFAULT_TTL));
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache maxSize must be > 0");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("The cache ttl must be >= 0");
+        }
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put(MAX_SIZE, maxSize);
+        config.put(TTL, ttl);
+        Object labels = map.get(LABELS);
+        if (labels != null) {
+            if (!(labels instanceof Collection)) {
+                throw new IllegalArgumentException("The cache labels must be a list of strings, but was: " + labels);
+            }
+            config.put(
+                    LABELS,
+                    ((Collection<?>) labels)
+                            .stream().map(String::valueOf).distinct().sorted().collect(Collectors.toList()));
+        }
+        return config;
+    }
+
+    boolean isDefinedBy(String statement, Map<String, Object> config) {
+        return this.statement.equals(statement) && this.config.equals(config);
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(AnyValue[], Transaction, List, long)}, so that a result computed
+     * while a transaction invalidates the cache isn't stored
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @return the rows cached for the input, with their entities bound to the transaction, or null
+     */
+    List<AnyValue[]> get(AnyValue[] input, Transaction tx) {
+        Key key = new Key(detach(input), accessOf(tx));
+        CachedResult entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(ttlMillis)) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!entry.entities) {
+            hits.incrementAndGet();
+            return entry.rows;
+        }
+        try {
+            List<AnyValue[]> rows = new ArrayList<>(entry.rows.size());
+            for (AnyValue[] row : entry.rows) {
+                AnyValue[] bound = new AnyValue[row.length];
+                for (int i = 0; i < row.length; i++) {
+                    bound[i] = rebind(row[i], tx);
+                }
+                rows.add(bound);
+            }
+            hits.incrementAndGet();
+            return rows;
+        } catch (NotFoundException e) {
+            // an entity of the result has been deleted meanwhile
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    void put(AnyValue[] input, Transaction tx, List<AnyValue[]> rows, long generation) {
+        boolean entities = false;
+        List<AnyValue[]> detached = new ArrayList<>(rows.size());
+        for (AnyValue[] row : rows) {
+            AnyValue[] copy = detach(row);
+            entities |= copy != row;
+            detached.add(copy);
+        }
+        CachedResult entry = new CachedResult(detached, entities);
+        Key key = new Key(detach(input), accessOf(tx));
+        synchronized (entries) {
+            if (this.generation.get() == generation) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Counts a call made by a transaction with uncommitted changes, which can't see the same data as the cached results
+     */
+    void bypass() {
+        bypassed.incrementAndGet();
+    }
+
+    /**
+     * @param labels the labels of the nodes a transaction changed, or null if it changed data we can't relate to labels
+     */
+    boolean isInvalidatedBy(Set<String> labels) {
+        if (this.labels == null || labels == null) return true;
+        for (String label : labels) {
+            if (this.labels.contains(label)) return true;
+        }
+        return false;
+    }
+
+    void invalidate() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (!entries.isEmpty()) {
+                entries.clear();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    boolean hasLabels() {
+        return labels != null;
+    }
+
+    Map<String, Object> getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the config of the cache and its counters
+     */
+    Map<String, Object> stats() {
+        long hits = this.hits.get();
+        long misses = this.misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>(config);
+        synchronized (entries) {
+            stats.put("size", (long) entries.size());
+        }
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : hits / (double) (hits + misses));
+        stats.put("bypassed", bypassed.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * @return the user and the roles of the transaction, as a result only holds what they're allowed to read
+     */
+    private static String accessOf(Transaction tx) {
+        SecurityContext securityContext = ((InternalTransaction) tx).kernelTransaction().securityContext();
+        return securityContext.subject().executingUser() + "/" + new TreeSet<>(securityContext.roles());
+    }
+
+    private static AnyValue[] detach(AnyValue[] values) {
+        AnyValue[] detached = null;
+        for (int i = 0; i < values.length; i++) {
+            AnyValue value = detach(values[i]);
+            if (value != values[i]) {
+                if (detached == null) detached = values.clone();
+                detached[i] = value;
+            }
+        }
+        return detached == null ? values : detached;
+    }
+
+    /**
+     * @return the value with its entities replaced by references, or the value itself if it has none
+     */
+    private static AnyValue detach(AnyValue value) {
+        if (value instanceof VirtualNodeValue) {
+            return VirtualValues.node(((VirtualNodeValue) value).id());
+        }
+        if (value instanceof VirtualRelationshipValue) {
+            return VirtualValues.relationship(((VirtualRelationshipValue) value).id());
+        }
+        if (value instanceof VirtualPathValue) {
+            VirtualPathValue path = (VirtualPathValue) value;
+            return VirtualValues.pathReference(path.nodeIds(), path.relationshipIds());
+        }
+        if (value instanceof ListValue) {
+            ListValue list = (ListValue) value;
+            AnyValue[] values = list.asArray();
+            AnyValue[] detached = detach(values);
+            return detached == values ? value : VirtualValues.list(detached);
+        }
+        if (value instanceof MapValue) {
+            MapValue map = (MapValue) value;
+            MapValueBuilder builder = new MapValueBuilder(map.size());
+            boolean[] changed = {false};
+            map.foreach((key, entry) -> {
+                AnyValue detached = detach(entry);
+                changed[0] |= detached != entry;
+                builder.add(key, detached);
+            });
+            return changed[0] ? builder.build() : value;
+        }
+        return value;
+    }
+
+    private static AnyValue rebind(AnyValue value, Transaction tx) {
+        if (value instanceof VirtualNodeValue) {
+            return ValueUtils.fromNodeEntity(tx.getNodeById(((VirtualNodeValue) value).id()));
+        }
+        if (value instanceof VirtualRelationshipValue) {
+            return ValueUtils.fromRelationshipEntity(tx.getRelationshipById(((VirtualRelationshipValue) value).id()));
+        }
+        if (value instanceof VirtualPathValue) {
+            VirtualPathValue path = (VirtualPathValue) value;
+            PathImpl.Builder builder = new PathImpl.Builder(tx.getNodeById(path.nodeIds()[0]));
+            for (long relationshipId : path.relationshipIds()) {
+                builder = builder.push(tx.getRelationshipById(relationshipId));
+            }
+            return ValueUtils.fromPath(builder.build());
+        }
+        if (value instanceof ListValue) {
+            AnyValue[] values = ((ListValue) value).asArray();
+            AnyValue[] bound = new AnyValue[values.length];
+            for (int i = 0; i < values.length; i++) {
+                bound[i] = rebind(values[i], tx);
+            }
+            return VirtualValues.list(bound);
+        }
+        if (value instanceof MapValue) {
+            MapValue map = (MapValue) value;
+            MapValueBuilder builder = new MapValueBuilder(map.size());
+            map.foreach((key, entry) -> builder.add(key, rebind(entry, tx)));
+            return builder.build();
+        }
+        return value;
+    }
+
+    /**
+     * The input values and the access of the caller, equal when both the values and their Cypher types are,
+     * e.g. `1` and `1.0` are not, as the statement may depend on the type like `$x / 2` or `toString($x)`
+     */
+    private static class Key {
+        private final AnyValue[] values;
+        private final String types;
+        private final String access;
+        private final int hash;
+
+        Key(AnyValue[] values, String access) {
+            this.values = values;
+            StringBuilder types = new StringBuilder();
+            for (AnyValue value : values) {
+                appendType(value, types.append(','));
+            }
+            this.types = types.toString();
+            this.access = access;
+            this.hash = 31 * (31 * Arrays.hashCode(values) + this.types.hashCode()) + access.hashCode();
+        }
+
+        private static void appendType(AnyValue value, StringBuilder types) {
+            if (value instanceof ListValue) {
+                types.append('[');
+                for (AnyValue element : (ListValue) value) {
+                    appendType(element, types.append(','));
+                }
+                types.append(']');
+            } else if (value instanceof MapValue) {
+                // the equal maps may iterate their entries in different orders
+                Map<String, AnyValue> entries = new TreeMap<>();
+                ((MapValue) value).foreach(entries::put);
+                types.append('{');
+                entries.forEach((key, entry) -> appendType(entry, types.append(key).append(':')));
+                types.append('}');
+            } else if (value instanceof IntegralValue) {
+                types.append("INTEGER");
+            } else if (value instanceof FloatingPointValue) {
+                types.append("FLOAT");
+            } else if (value instanceof IntegralArray) {
+                types.append("INTEGER[]");
+            } else if (value instanceof FloatingPointArray) {
+                types.append("FLOAT[]");
+            } else {
+                types.append(value == null ? "null" : value.getClass().getName());
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && types.equals(other.types)
+                    && access.equals(other.access)
+                    && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class CachedResult {
+        private final List<AnyValue[]> rows;
+        private final boolean entities;
+        private final long computedAt = System.currentTimeMillis();
+
+        CachedResult(List<AnyValue[]> rows, boolean entities) {
+            this.rows = rows;
+            this.entities = entities;
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return ttlMillis > 0 && System.currentTimeMillis() - computedAt >= ttlMillis;
+        }
+    }
+}
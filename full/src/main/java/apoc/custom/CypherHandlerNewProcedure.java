@@ -55,6 +55,11 @@ import org.neo4j.internal.kernel.api.procs.UserFunctionSignature;
 public class CypherHandlerNewProcedure {
 
     public static void installProcedure(String databaseName, ProcedureSignature signature, String statement) {
+        installProcedure(databaseName, signature, statement, null);
+    }
+
+    public static void installProcedure(
+            String databaseName, ProcedureSignature signature, String statement, Map<String, Object> cacheConfig) {
         withSystemDb(tx -> {
             Node node = Util.mergeNode(
                     tx,
@@ -68,6 +73,7 @@ public class CypherHandlerNewProcedure {
             node.setProperty(inputs.name(), serializeSignatures(signature.inputSignature()));
             node.setProperty(outputs.name(), serializeSignatures(signature.outputSignature()));
             node.setProperty(mode.name(), signature.mode().name());
+            CypherProceduresUtil.setCacheConfig(node, cacheConfig);
 
             setLastUpdate(tx, databaseName);
         });
@@ -75,6 +81,15 @@ public class CypherHandlerNewProcedure {
 
     public static void installFunction(
             String databaseName, UserFunctionSignature signature, String statement, boolean forceSingle) {
+        installFunction(databaseName, signature, statement, forceSingle, null);
+    }
+
+    public static void installFunction(
+            String databaseName,
+            UserFunctionSignature signature,
+            String statement,
+            boolean forceSingle,
+            Map<String, Object> cacheConfig) {
         withSystemDb(tx -> {
             Node node = Util.mergeNode(
                     tx,
@@ -88,6 +103,7 @@ public class CypherHandlerNewProcedure {
             node.setProperty(inputs.name(), serializeSignatures(signature.inputSignature()));
             node.setProperty(output.name(), signature.outputType().toString());
             node.setProperty(SystemPropertyKeys.forceSingle.name(), forceSingle);
+            CypherProceduresUtil.setCacheConfig(node, cacheConfig);
 
             setLastUpdate(tx, databaseName);
         });
@@ -23,6 +23,7 @@ import static apoc.util.SystemDbUtil.checkInSystemDb;
 
 import apoc.Extended;
 import apoc.util.SystemDbUtil;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.internal.kernel.api.procs.ProcedureSignature;
@@ -60,14 +61,16 @@ public class CypherNewProcedures {
             @Name("statement") String statement,
             @Name(value = "databaseName", defaultValue = "neo4j") String databaseName,
             @Name(value = "mode", defaultValue = "read") String mode,
-            @Name(value = "description", defaultValue = "") String description) {
+            @Name(value = "description", defaultValue = "") String description,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         checkIsValidDatabase(databaseName);
 
         Mode modeProcedure = CypherProceduresUtil.mode(mode);
+        Map<String, Object> cacheConfig = CypherProceduresUtil.cacheConfig(config, modeProcedure);
         ProcedureSignature procedureSignature =
                 new Signatures(PREFIX).asProcedureSignature(signature, description, modeProcedure);
 
-        CypherHandlerNewProcedure.installProcedure(databaseName, procedureSignature, statement);
+        CypherHandlerNewProcedure.installProcedure(databaseName, procedureSignature, statement, cacheConfig);
     }
 
     // TODO - change with @SystemOnlyProcedure
@@ -80,12 +83,15 @@ public class CypherNewProcedures {
             @Name("statement") String statement,
             @Name(value = "databaseName", defaultValue = "neo4j") String databaseName,
             @Name(value = "forceSingle", defaultValue = "false") boolean forceSingle,
-            @Name(value = "description", defaultValue = "") String description) {
+            @Name(value = "description", defaultValue = "") String description,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         checkIsValidDatabase(databaseName);
 
+        Map<String, Object> cacheConfig = CypherProceduresUtil.cacheConfig(config, null);
         UserFunctionSignature userFunctionSignature =
                 new Signatures(PREFIX).asFunctionSignature(signature, description);
-        CypherHandlerNewProcedure.installFunction(databaseName, userFunctionSignature, statement, forceSingle);
+        CypherHandlerNewProcedure.installFunction(
+                databaseName, userFunctionSignature, statement, forceSingle, cacheConfig);
     }
 
     // TODO - change with @SystemOnlyProcedure
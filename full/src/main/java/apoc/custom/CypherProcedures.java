@@ -42,6 +42,7 @@ import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.kernel.api.exceptions.ProcedureException;
 import org.neo4j.internal.kernel.api.procs.FieldSignature;
 import org.neo4j.internal.kernel.api.procs.ProcedureSignature;
+import org.neo4j.internal.kernel.api.procs.QualifiedName;
 import org.neo4j.internal.kernel.api.procs.UserFunctionSignature;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.api.exceptions.Status;
@@ -109,20 +110,22 @@ public class CypherProcedures {
     @Deprecated
     @Procedure(value = "apoc.custom.declareProcedure", mode = Mode.WRITE, deprecatedBy = "apoc.custom.installProcedure")
     @Description(
-            "apoc.custom.declareProcedure(signature, statement, mode, description) - register a custom cypher procedure")
+            "apoc.custom.declareProcedure(signature, statement, mode, description, config) - register a custom cypher procedure")
     public void declareProcedure(
             @Name("signature") String signature,
             @Name("statement") String statement,
             @Name(value = "mode", defaultValue = "read") String mode,
-            @Name(value = "description", defaultValue = "") String description) {
+            @Name(value = "description", defaultValue = "") String description,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         checkWriteAllowed(api, MSG_DEPRECATION);
         Mode modeProcedure = CypherProceduresUtil.mode(mode);
+        Map<String, Object> cacheConfig = CypherProceduresUtil.cacheConfig(config, modeProcedure);
         ProcedureSignature procedureSignature =
                 new Signatures(PREFIX).asProcedureSignature(signature, description, modeProcedure);
         validateProcedure(
                 statement, procedureSignature.inputSignature(), procedureSignature.outputSignature(), modeProcedure);
 
-        cypherProceduresHandler.storeProcedure(procedureSignature, statement);
+        cypherProceduresHandler.storeProcedure(procedureSignature, statement, cacheConfig);
     }
 
     @Procedure(value = "apoc.custom.asFunction", mode = Mode.WRITE, deprecatedBy = "apoc.custom.declareFunction")
@@ -145,14 +148,16 @@ public class CypherProcedures {
     @Deprecated
     @Procedure(value = "apoc.custom.declareFunction", mode = Mode.WRITE, deprecatedBy = "apoc.custom.installFunction")
     @Description(
-            "apoc.custom.declareFunction(signature, statement, forceSingle, description) - register a custom cypher function")
+            "apoc.custom.declareFunction(signature, statement, forceSingle, description, config) - register a custom cypher function")
     public void declareFunction(
             @Name("signature") String signature,
             @Name("statement") String statement,
             @Name(value = "forceSingle", defaultValue = "false") boolean forceSingle,
-            @Name(value = "description", defaultValue = "") String description)
+            @Name(value = "description", defaultValue = "") String description,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config)
             throws ProcedureException {
         checkWriteAllowed(api, MSG_DEPRECATION);
+        Map<String, Object> cacheConfig = CypherProceduresUtil.cacheConfig(config, null);
         UserFunctionSignature userFunctionSignature =
                 new Signatures(PREFIX).asFunctionSignature(signature, description);
         final Signatures signatures = new Signatures(PREFIX);
@@ -160,7 +165,7 @@ public class CypherProcedures {
         validateFunction(statement, userFunctionSignature.inputSignature());
         final boolean mapResult = signatures.isMapResult(functionContext);
 
-        cypherProceduresHandler.storeFunction(userFunctionSignature, statement, forceSingle, mapResult);
+        cypherProceduresHandler.storeFunction(userFunctionSignature, statement, forceSingle, mapResult, cacheConfig);
     }
 
     @Procedure(value = "apoc.custom.list", mode = Mode.READ)
@@ -172,17 +177,28 @@ public class CypherProcedures {
                 CypherProceduresHandler.ProcedureDescriptor procedureDescriptor =
                         (CypherProceduresHandler.ProcedureDescriptor) descriptor;
                 ProcedureSignature signature = procedureDescriptor.getSignature();
-                return CustomProcedureInfo.getCustomProcedureInfo(signature, statement);
+                return CustomProcedureInfo.getCustomProcedureInfo(
+                        signature, statement, cacheInfo(PROCEDURE, signature.name(), descriptor));
             } else {
                 CypherProceduresHandler.UserFunctionDescriptor userFunctionDescriptor =
                         (CypherProceduresHandler.UserFunctionDescriptor) descriptor;
                 UserFunctionSignature signature = userFunctionDescriptor.getSignature();
                 return CustomProcedureInfo.getCustomFunctionInfo(
-                        signature, userFunctionDescriptor.isForceSingle(), statement);
+                        signature,
+                        userFunctionDescriptor.isForceSingle(),
+                        statement,
+                        cacheInfo(FUNCTION, signature.name(), descriptor));
             }
         });
     }
 
+    private Map<String, Object> cacheInfo(
+            String type, QualifiedName name, CypherProceduresHandler.ProcedureOrFunctionDescriptor descriptor) {
+        // the counters are known only once the procedure or function has been registered with its cache
+        Map<String, Object> stats = cypherProceduresHandler.cacheStats(type, name);
+        return stats == null ? descriptor.getCacheConfig() : stats;
+    }
+
     @Deprecated
     @Procedure(value = "apoc.custom.removeProcedure", mode = Mode.WRITE, deprecatedBy = "apoc.custom.dropProcedure")
     @Description("apoc.custom.removeProcedure(name) - remove the targeted custom procedure")
@@ -56,19 +56,28 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.neo4j.collection.RawIterator;
+import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.function.ThrowingFunction;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
 import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.helpers.collection.Pair;
 import org.neo4j.internal.kernel.api.exceptions.ProcedureException;
@@ -99,7 +108,8 @@ import org.neo4j.values.storable.Values;
 import org.neo4j.values.virtual.MapValueBuilder;
 import org.neo4j.values.virtual.VirtualValues;
 
-public class CypherProceduresHandler extends LifecycleAdapter implements AvailabilityListener {
+public class CypherProceduresHandler extends LifecycleAdapter
+        implements AvailabilityListener, TransactionEventListener<Set<String>> {
 
     public static final String PREFIX = "custom";
     public static final String FUNCTION = "function";
@@ -125,13 +135,21 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     private static Group REFRESH_GROUP = Group.STORAGE_MAINTENANCE;
     private JobHandle restoreProceduresHandle;
 
+    // the label of the changes we can't relate to labels, which invalidate all the caches
+    private static final String ANY_LABEL = "\u0000";
+    private final DatabaseManagementService databaseManagementService;
+    private final Map<String, CustomResultCache> caches = new ConcurrentHashMap<>();
+    private final AtomicBoolean registeredWithKernel = new AtomicBoolean(false);
+
     public CypherProceduresHandler(
             GraphDatabaseAPI db,
             JobScheduler jobScheduler,
             ApocConfig apocConfig,
             Log userLog,
-            GlobalProcedures globalProceduresRegistry) {
+            GlobalProcedures globalProceduresRegistry,
+            DatabaseManagementService databaseManagementService) {
         this.api = db;
+        this.databaseManagementService = databaseManagementService;
         this.log = userLog;
         this.jobScheduler = jobScheduler;
         this.systemDb = apocConfig.getSystemDb();
@@ -192,7 +210,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         String statement = (String) node.getProperty(SystemPropertyKeys.statement.name());
 
         ProcedureSignature procedureSignature = getProcedureSignature(node);
-        return new ProcedureDescriptor(procedureSignature, statement);
+        return new ProcedureDescriptor(procedureSignature, statement, getCacheConfig(node));
     }
 
     private UserFunctionDescriptor userFunctionDescriptor(Node node) {
@@ -201,7 +219,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         boolean mapResult = (boolean) node.getProperty(SystemPropertyKeys.mapResult.name(), false);
 
         UserFunctionSignature signature = getUserFunctionSignature(node);
-        return new UserFunctionDescriptor(signature, statement, forceSingle, mapResult);
+        return new UserFunctionDescriptor(signature, statement, forceSingle, mapResult, getCacheConfig(node));
     }
 
     public synchronized void restoreProceduresAndFunctions() {
@@ -237,6 +255,15 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
 
     public synchronized void storeFunction(
             UserFunctionSignature signature, String statement, boolean forceSingle, boolean mapResult) {
+        storeFunction(signature, statement, forceSingle, mapResult, null);
+    }
+
+    public synchronized void storeFunction(
+            UserFunctionSignature signature,
+            String statement,
+            boolean forceSingle,
+            boolean mapResult,
+            Map<String, Object> cacheConfig) {
         withSystemDb(tx -> {
             Node node = Util.mergeNode(
                     tx,
@@ -254,9 +281,10 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
                     SystemPropertyKeys.output.name(), signature.outputType().toString());
             node.setProperty(SystemPropertyKeys.forceSingle.name(), forceSingle);
             node.setProperty(SystemPropertyKeys.mapResult.name(), mapResult);
+            setCacheConfig(node, cacheConfig);
 
             setLastUpdate(tx);
-            if (!registerFunction(signature, statement, forceSingle, mapResult)) {
+            if (!registerFunction(signature, statement, forceSingle, mapResult, cacheConfig)) {
                 throw new IllegalStateException("Error registering function " + signature + ", see log.");
             }
             return null;
@@ -264,6 +292,11 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
     }
 
     public synchronized void storeProcedure(ProcedureSignature signature, String statement) {
+        storeProcedure(signature, statement, null);
+    }
+
+    public synchronized void storeProcedure(
+            ProcedureSignature signature, String statement, Map<String, Object> cacheConfig) {
         withSystemDb(tx -> {
             Node node = Util.mergeNode(
                     tx,
@@ -279,8 +312,9 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             node.setProperty(SystemPropertyKeys.inputs.name(), serializeSignatures(signature.inputSignature()));
             node.setProperty(SystemPropertyKeys.outputs.name(), serializeSignatures(signature.outputSignature()));
             node.setProperty(SystemPropertyKeys.mode.name(), signature.mode().name());
+            setCacheConfig(node, cacheConfig);
             setLastUpdate(tx);
-            if (!registerProcedure(signature, statement)) {
+            if (!registerProcedure(signature, statement, cacheConfig)) {
                 throw new IllegalStateException("Error registering procedure " + signature.name() + ", see log.");
             }
             return null;
@@ -380,6 +414,13 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
      * @return
      */
     public boolean registerProcedure(ProcedureSignature signature, String statement) {
+        return registerProcedure(signature, statement, null);
+    }
+
+    /**
+     * @param cacheConfig the config of the cache of the results, see {@link CustomResultCache}, or null
+     */
+    public boolean registerProcedure(ProcedureSignature signature, String statement, Map<String, Object> cacheConfig) {
         QualifiedName name = signature.name();
         try {
             boolean exists = globalProceduresRegistry.getAllProcedures().stream()
@@ -390,6 +431,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             }
 
             final boolean isStatementNull = statement == null;
+            final CustomResultCache cache = updateCache(PROCEDURE, name, statement, cacheConfig);
             globalProceduresRegistry.register(
                     new CallableProcedure.BasicProcedure(signature) {
                         @Override
@@ -408,6 +450,12 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
                                 Map<String, Object> params =
                                         params(input, signature.inputSignature(), ctx.valueMapper());
                                 Transaction tx = transactionComponentFunction.apply(ctx);
+                                boolean cached = useCache(cache, ctx);
+                                if (cached) {
+                                    List<AnyValue[]> rows = cache.get(input, tx);
+                                    if (rows != null) return Iterators.asRawIterator(rows.stream());
+                                }
+                                long generation = cached ? cache.generation() : 0L;
                                 Result result = tx.execute(statement, params);
                                 resourceTracker.registerCloseableResource(result);
 
@@ -421,6 +469,11 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
 
                                 Stream<AnyValue[]> stream =
                                         result.stream().map(row -> toResult(row, names, defaultOutputs));
+                                if (cached) {
+                                    List<AnyValue[]> rows = stream.collect(Collectors.toList());
+                                    cache.put(input, tx, rows, generation);
+                                    return Iterators.asRawIterator(rows.stream());
+                                }
                                 return Iterators.asRawIterator(stream);
                             }
                         }
@@ -448,6 +501,18 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
 
     public boolean registerFunction(
             UserFunctionSignature signature, String statement, boolean forceSingle, boolean mapResult) {
+        return registerFunction(signature, statement, forceSingle, mapResult, null);
+    }
+
+    /**
+     * @param cacheConfig the config of the cache of the results, see {@link CustomResultCache}, or null
+     */
+    public boolean registerFunction(
+            UserFunctionSignature signature,
+            String statement,
+            boolean forceSingle,
+            boolean mapResult,
+            Map<String, Object> cacheConfig) {
         try {
             QualifiedName name = signature.name();
             boolean exists = globalProceduresRegistry
@@ -459,6 +524,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
             }
 
             final boolean isStatementNull = statement == null;
+            final CustomResultCache cache = updateCache(FUNCTION, name, statement, cacheConfig);
             globalProceduresRegistry.register(
                     new CallableUserFunction.BasicUserFunction(signature) {
                         @Override
@@ -473,33 +539,18 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
                                 AnyType outType = signature.outputType();
 
                                 Transaction tx = transactionComponentFunction.apply(ctx);
-                                try (Result result = tx.execute(statement, params)) {
-                                    //                resourceTracker.registerCloseableResource(result); // TODO
-                                    if (!result.hasNext()) return Values.NO_VALUE;
-                                    if (outType.equals(NTAny)) {
-                                        return ValueUtils.of(result.stream().collect(Collectors.toList()));
-                                    }
-                                    List<String> cols = result.columns();
-                                    if (cols.isEmpty()) return null;
-                                    if (!forceSingle && outType instanceof Neo4jTypes.ListType) {
-                                        Neo4jTypes.ListType listType = (Neo4jTypes.ListType) outType;
-                                        AnyType innerType = listType.innerType();
-                                        if (isWrapped(innerType, mapResult))
-                                            return ValueUtils.of(result.stream().collect(Collectors.toList()));
-                                        if (cols.size() == 1)
-                                            return ValueUtils.of(result.stream()
-                                                    .map(row -> row.get(cols.get(0)))
-                                                    .collect(Collectors.toList()));
-                                    } else {
-                                        Map<String, Object> row = result.next();
-                                        if (isWrapped(outType, mapResult)) {
-                                            return ValueUtils.of(row);
-                                        }
-                                        if (cols.size() == 1) return ValueUtils.of(row.get(cols.get(0)));
-                                    }
-                                    throw new IllegalStateException(
-                                            "Result mismatch " + cols + " output type is " + outType);
+                                boolean cached = useCache(cache, ctx);
+                                if (cached) {
+                                    List<AnyValue[]> rows = cache.get(input, tx);
+                                    if (rows != null) return rows.get(0)[0];
+                                }
+                                long generation = cached ? cache.generation() : 0L;
+                                AnyValue value =
+                                        executeFunction(tx, statement, params, outType, forceSingle, mapResult);
+                                if (cached) {
+                                    cache.put(input, tx, Collections.singletonList(new AnyValue[] {value}), generation);
                                 }
+                                return value;
                             }
                         }
                     },
@@ -519,6 +570,40 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         }
     }
 
+    private AnyValue executeFunction(
+            Transaction tx,
+            String statement,
+            Map<String, Object> params,
+            AnyType outType,
+            boolean forceSingle,
+            boolean mapResult) {
+        try (Result result = tx.execute(statement, params)) {
+            //                resourceTracker.registerCloseableResource(result); // TODO
+            if (!result.hasNext()) return Values.NO_VALUE;
+            if (outType.equals(NTAny)) {
+                return ValueUtils.of(result.stream().collect(Collectors.toList()));
+            }
+            List<String> cols = result.columns();
+            if (cols.isEmpty()) return null;
+            if (!forceSingle && outType instanceof Neo4jTypes.ListType) {
+                Neo4jTypes.ListType listType = (Neo4jTypes.ListType) outType;
+                AnyType innerType = listType.innerType();
+                if (isWrapped(innerType, mapResult))
+                    return ValueUtils.of(result.stream().collect(Collectors.toList()));
+                if (cols.size() == 1)
+                    return ValueUtils.of(
+                            result.stream().map(row -> row.get(cols.get(0))).collect(Collectors.toList()));
+            } else {
+                Map<String, Object> row = result.next();
+                if (isWrapped(outType, mapResult)) {
+                    return ValueUtils.of(row);
+                }
+                if (cols.size() == 1) return ValueUtils.of(row.get(cols.get(0)));
+            }
+            throw new IllegalStateException("Result mismatch " + cols + " output type is " + outType);
+        }
+    }
+
     /**
      * We wrap the result only if we have a "true" map,
      * that is: the output signature is not a `MAP` / `LIST OF MAP`
@@ -779,25 +864,162 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         });
     }
 
+    /**
+     * @return the cache of the results of the procedure or function, replaced when its statement or its config change,
+     * or null if it isn't cached or has been removed
+     */
+    private CustomResultCache updateCache(
+            String type, QualifiedName name, String statement, Map<String, Object> cacheConfig) {
+        String key = type + " " + name;
+        if (statement == null || cacheConfig == null) {
+            caches.remove(key);
+            return null;
+        }
+        registerWithKernel();
+        return caches.compute(
+                key,
+                (k, cache) -> cache != null && cache.isDefinedBy(statement, cacheConfig)
+                        ? cache
+                        : new CustomResultCache(statement, cacheConfig));
+    }
+
+    /**
+     * The calls made by a transaction with uncommitted changes neither read nor fill the cache,
+     * as they may see a different graph than the other transactions
+     */
+    private static boolean useCache(CustomResultCache cache, Context ctx) throws ProcedureException {
+        if (cache == null) return false;
+        if (ctx.internalTransaction().kernelTransaction().dataRead().transactionStateHasChanges()) {
+            cache.bypass();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the config and the counters of the cache of a procedure or function, or null if it isn't cached
+     */
+    public Map<String, Object> cacheStats(String type, QualifiedName name) {
+        CustomResultCache cache = caches.get(type + " " + name);
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * @return the labels of the nodes the transaction changes, along with the labels of the endpoints
+     * of the relationships it changes, or null if it doesn't change any data
+     */
+    @Override
+    public Set<String> beforeCommit(
+            TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
+        if (caches.isEmpty()) return null;
+        boolean byLabel = caches.values().stream().anyMatch(CustomResultCache::hasLabels);
+        Set<String> labels = new HashSet<>();
+        for (LabelEntry entry : txData.assignedLabels()) {
+            labels.add(entry.label().name());
+        }
+        for (LabelEntry entry : txData.removedLabels()) {
+            labels.add(entry.label().name());
+        }
+        boolean changed = !labels.isEmpty()
+                || txData.createdNodes().iterator().hasNext()
+                || txData.deletedNodes().iterator().hasNext();
+        for (PropertyEntry<Node> entry : txData.assignedNodeProperties()) {
+            changed = true;
+            if (byLabel) addLabels(labels, txData, entry.entity());
+        }
+        for (PropertyEntry<Node> entry : txData.removedNodeProperties()) {
+            changed = true;
+            if (byLabel) addLabels(labels, txData, entry.entity());
+        }
+        for (Relationship relationship : txData.createdRelationships()) {
+            changed = true;
+            if (byLabel) addEndpointLabels(labels, txData, relationship);
+        }
+        for (Relationship relationship : txData.deletedRelationships()) {
+            changed = true;
+            if (byLabel) addEndpointLabels(labels, txData, relationship);
+        }
+        for (PropertyEntry<Relationship> entry : txData.assignedRelationshipProperties()) {
+            changed = true;
+            if (byLabel) addEndpointLabels(labels, txData, entry.entity());
+        }
+        for (PropertyEntry<Relationship> entry : txData.removedRelationshipProperties()) {
+            changed = true;
+            if (byLabel) addEndpointLabels(labels, txData, entry.entity());
+        }
+        return changed ? labels : null;
+    }
+
+    private static void addEndpointLabels(Set<String> labels, TransactionData txData, Relationship relationship) {
+        try {
+            addLabels(labels, txData, relationship.getStartNode());
+            addLabels(labels, txData, relationship.getEndNode());
+        } catch (NotFoundException e) {
+            labels.add(ANY_LABEL);
+        }
+    }
+
+    private static void addLabels(Set<String> labels, TransactionData txData, Node node) {
+        // the labels of the deleted nodes are among the removed ones
+        if (txData.isDeleted(node)) return;
+        try {
+            node.getLabels().forEach(label -> labels.add(label.name()));
+        } catch (NotFoundException e) {
+            labels.add(ANY_LABEL);
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionData txData, Set<String> labels, GraphDatabaseService databaseService) {
+        if (labels == null) return;
+        Set<String> changed = labels.contains(ANY_LABEL) ? null : labels;
+        caches.values().forEach(cache -> {
+            if (cache.isInvalidatedBy(changed)) cache.invalidate();
+        });
+    }
+
+    @Override
+    public void afterRollback(TransactionData txData, Set<String> labels, GraphDatabaseService databaseService) {}
+
+    private void registerWithKernel() {
+        if (registeredWithKernel.compareAndSet(false, true)) {
+            databaseManagementService.registerTransactionEventListener(api.databaseName(), this);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (registeredWithKernel.compareAndSet(true, false)) {
+            databaseManagementService.unregisterTransactionEventListener(api.databaseName(), this);
+        }
+        caches.clear();
+    }
+
     public abstract class ProcedureOrFunctionDescriptor {
         private final String statement;
+        private final Map<String, Object> cacheConfig;
 
-        protected ProcedureOrFunctionDescriptor(String statement) {
+        protected ProcedureOrFunctionDescriptor(String statement, Map<String, Object> cacheConfig) {
             this.statement = statement;
+            this.cacheConfig = cacheConfig;
         }
 
         public String getStatement() {
             return statement;
         }
 
+        public Map<String, Object> getCacheConfig() {
+            return cacheConfig;
+        }
+
         public abstract void register();
     }
 
     public class ProcedureDescriptor extends ProcedureOrFunctionDescriptor {
         private final ProcedureSignature signature;
 
-        public ProcedureDescriptor(ProcedureSignature signature, String statement) {
-            super(statement);
+        public ProcedureDescriptor(ProcedureSignature signature, String statement, Map<String, Object> cacheConfig) {
+            super(statement, cacheConfig);
             this.signature = signature;
         }
 
@@ -807,7 +1029,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
 
         @Override
         public void register() {
-            registerProcedure(getSignature(), getStatement());
+            registerProcedure(getSignature(), getStatement(), getCacheConfig());
         }
     }
 
@@ -817,8 +1039,12 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
         private final boolean mapResult;
 
         public UserFunctionDescriptor(
-                UserFunctionSignature signature, String statement, boolean forceSingle, boolean mapResult) {
-            super(statement);
+                UserFunctionSignature signature,
+                String statement,
+                boolean forceSingle,
+                boolean mapResult,
+                Map<String, Object> cacheConfig) {
+            super(statement, cacheConfig);
             this.signature = signature;
             this.forceSingle = forceSingle;
             this.mapResult = mapResult;
@@ -834,7 +1060,7 @@ public class CypherProceduresHandler extends LifecycleAdapter implements Availab
 
         @Override
         public void register() {
-            registerFunction(getSignature(), getStatement(), isForceSingle(), mapResult);
+            registerFunction(getSignature(), getStatement(), isForceSingle(), mapResult, getCacheConfig());
         }
     }
 }
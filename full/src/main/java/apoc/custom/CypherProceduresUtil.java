@@ -57,19 +57,47 @@ public class CypherProceduresUtil {
         return s == null ? Mode.READ : Mode.valueOf(s.toUpperCase());
     }
 
+    /**
+     * @param config the config of the procedure or function, whose `cache` entry enables the cache of its results
+     * @param mode the mode of the procedure, or null for a function
+     * @return the config of the cache, see {@link CustomResultCache}, or null if the results are not to be cached
+     */
+    public static Map<String, Object> cacheConfig(Map<String, Object> config, Mode mode) {
+        Map<String, Object> cacheConfig = CustomResultCache.config(config == null ? null : config.get("cache"));
+        if (cacheConfig != null && mode != null && mode != Mode.READ) {
+            throw new IllegalArgumentException(
+                    "Only the results of read procedures can be cached, but the mode is " + mode);
+        }
+        return cacheConfig;
+    }
+
+    public static Map<String, Object> getCacheConfig(Node node) {
+        String cacheConfig = (String) node.getProperty(SystemPropertyKeys.cache.name(), null);
+        // the numbers are read back as integers, so we normalize the config again
+        return cacheConfig == null ? null : CustomResultCache.config(Util.fromJson(cacheConfig, Map.class));
+    }
+
+    public static void setCacheConfig(Node node, Map<String, Object> cacheConfig) {
+        if (cacheConfig == null) {
+            node.removeProperty(SystemPropertyKeys.cache.name());
+        } else {
+            node.setProperty(SystemPropertyKeys.cache.name(), Util.toJson(cacheConfig));
+        }
+    }
+
     public static CustomProcedureInfo getFunctionInfo(Node node) {
         String statement = (String) node.getProperty(SystemPropertyKeys.statement.name());
         boolean forceSingle = (boolean) node.getProperty(SystemPropertyKeys.forceSingle.name(), false);
         UserFunctionSignature signature = getUserFunctionSignature(node);
 
-        return CustomProcedureInfo.getCustomFunctionInfo(signature, forceSingle, statement);
+        return CustomProcedureInfo.getCustomFunctionInfo(signature, forceSingle, statement, getCacheConfig(node));
     }
 
     public static CustomProcedureInfo getProcedureInfo(Node node) {
         String statement = (String) node.getProperty(SystemPropertyKeys.statement.name());
         ProcedureSignature signature = getProcedureSignature(node);
 
-        return CustomProcedureInfo.getCustomProcedureInfo(signature, statement);
+        return CustomProcedureInfo.getCustomProcedureInfo(signature, statement, getCacheConfig(node));
     }
 
     public static UserFunctionSignature getUserFunctionSignature(Node node) {
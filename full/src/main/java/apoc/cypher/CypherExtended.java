@@ -24,15 +24,18 @@ import static apoc.util.Util.quote;
 import static java.lang.String.format;
 import static java.lang.String.join;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static org.neo4j.procedure.Mode.READ;
 import static org.neo4j.procedure.Mode.WRITE;
 
 import apoc.Extended;
 import apoc.Pools;
+import apoc.export.cypher.formatter.JsonParameters;
 import apoc.result.MapResult;
 import apoc.util.EntityUtil;
 import apoc.util.FileUtils;
+import apoc.util.ParallelWorkers;
 import apoc.util.QueueBasedSpliterator;
 import apoc.util.QueueUtil;
 import apoc.util.Util;
@@ -44,15 +47,21 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Scanner;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -139,7 +148,7 @@ public class CypherExtended {
         return runFiles(fileNames, config, parameters, schemaOperation, defaultStatistics);
     }
 
-    // This runs the files sequentially
+    // This runs the files sequentially, unless they are flagged as `independentFiles`
     private Stream<RowResult> runFiles(
             List<String> fileNames,
             Map<String, Object> config,
@@ -150,6 +159,12 @@ public class CypherExtended {
         boolean addStatistics = Util.toBoolean(config.getOrDefault("statistics", defaultStatistics));
         int timeout = Util.toInteger(config.getOrDefault("timeout", 10));
         int queueCapacity = Util.toInteger(config.getOrDefault("queueCapacity", 100));
+        // schema statements always run serially
+        Semaphore permits = parallelPermits(config, schemaOperation);
+        if (permits != null && fileNames.size() > 1 && Util.toBoolean(config.get("independentFiles"))) {
+            return runIndependentFiles(
+                    fileNames, parameters, addStatistics, queueCapacity, reportError, permits, concurrency(config));
+        }
         var result = fileNames.stream().flatMap(fileName -> {
             final Reader reader = readerForFile(fileName);
             final Scanner scanner = createScannerFor(reader);
@@ -161,7 +176,8 @@ public class CypherExtended {
                             timeout,
                             queueCapacity,
                             reportError,
-                            fileName)
+                            fileName,
+                            permits)
                     .onClose(() -> Util.close(
                             scanner,
                             (e) -> log.info(
@@ -173,6 +189,85 @@ public class CypherExtended {
         return result;
     }
 
+    private Semaphore parallelPermits(Map<String, Object> config, boolean schemaOperation) {
+        if (schemaOperation || !Util.toBoolean(config.get("parallel"))) {
+            return null;
+        }
+        return new Semaphore(concurrency(config));
+    }
+
+    private static int concurrency(Map<String, Object> config) {
+        int concurrency = Util.toInteger(
+                config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors()));
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be > 0");
+        }
+        return concurrency;
+    }
+
+    /**
+     * Runs up to `concurrency` files at the same time on the I/O pool, sending their results to the same queue,
+     * while the permits bound the statements running at the same time across all the files
+     */
+    private Stream<RowResult> runIndependentFiles(
+            List<String> fileNames,
+            Map<String, Object> parameters,
+            boolean addStatistics,
+            int queueCapacity,
+            boolean reportError,
+            Semaphore permits,
+            int concurrency) {
+        List<Scanner> scanners = fileNames.stream()
+                .map(this::readerForFile)
+                .map(this::createScannerFor)
+                .collect(toList());
+        BlockingQueue<RowResult> queue = runInSeparateThreadAndSendTombstone(
+                queueCapacity,
+                internalQueue -> {
+                    Queue<Integer> unclaimed = IntStream.range(0, fileNames.size())
+                            .boxed()
+                            .collect(toCollection(ConcurrentLinkedQueue::new));
+                    ExecutorService pool = pools.getIoExecutorService();
+                    ParallelWorkers.run(
+                            pool,
+                            fileRunners(pool, fileNames.size(), concurrency),
+                            null,
+                            "running the files",
+                            stopped -> {
+                                Integer i;
+                                while (!stopped.getAsBoolean() && (i = unclaimed.poll()) != null) {
+                                    runDataStatementsInTx(
+                                            scanners.get(i),
+                                            internalQueue,
+                                            parameters,
+                                            addStatistics,
+                                            reportError,
+                                            fileNames.get(i),
+                                            new ParallelStatements(pools.getDefaultExecutorService(), permits));
+                                }
+                            });
+                },
+                RowResult.TOMBSTONE);
+        return StreamSupport.stream(
+                        new QueueBasedSpliterator<>(queue, RowResult.TOMBSTONE, terminationGuard, Integer.MAX_VALUE),
+                        false)
+                .onClose(() -> scanners.forEach(scanner -> Util.close(
+                        scanner, (e) -> log.info("Cannot close the scanner because the following exception", e))));
+    }
+
+    /**
+     * @return the number of files run at the same time, the thread sending the tombstone being one of the runners:
+     * if the I/O pool is the one of the statements, the other runners take at most half of its core threads,
+     * so that the statements they submit don't wait in the queue for one of the threads the runners hold
+     */
+    private int fileRunners(ExecutorService pool, int files, int concurrency) {
+        int runners = Math.min(files, concurrency);
+        if (pool == pools.getDefaultExecutorService() && pool instanceof ThreadPoolExecutor) {
+            runners = Math.min(runners, ((ThreadPoolExecutor) pool).getCorePoolSize() / 2 + 1);
+        }
+        return runners;
+    }
+
     @Procedure(mode = Mode.SCHEMA)
     @Description(
             "apoc.cypher.runSchemaFile(file or url,[{statistics:true,timeout:10}]) - allows only schema operations, runs each schema statement in the file, all semicolon separated")
@@ -200,7 +295,8 @@ public class CypherExtended {
             int timeout,
             int queueCapacity,
             boolean reportError,
-            String fileName) {
+            String fileName,
+            Semaphore permits) {
         BlockingQueue<RowResult> queue = runInSeparateThreadAndSendTombstone(
                 queueCapacity,
                 internalQueue -> {
@@ -208,7 +304,11 @@ public class CypherExtended {
                         runSchemaStatementsInTx(
                                 scanner, internalQueue, params, addStatistics, timeout, reportError, fileName);
                     } else {
-                        runDataStatementsInTx(scanner, internalQueue, params, addStatistics, reportError, fileName);
+                        ParallelStatements parallel = permits == null
+                                ? null
+                                : new ParallelStatements(pools.getDefaultExecutorService(), permits);
+                        runDataStatementsInTx(
+                                scanner, internalQueue, params, addStatistics, reportError, fileName, parallel);
                     }
                 },
                 RowResult.TOMBSTONE);
@@ -244,13 +344,38 @@ public class CypherExtended {
     private void runDataStatementsInTx(
             Scanner scanner,
             BlockingQueue<RowResult> queue,
-            Map<String, Object> params,
+            Map<String, Object> parameters,
             boolean addStatistics,
             boolean reportError,
-            String fileName) {
+            String fileName,
+            ParallelStatements parallel) {
+        int statementIndex = 0;
         while (scanner.hasNext()) {
-            String stmt = removeShellControlCommands(scanner.next());
-            if (isCommentOrEmpty(stmt)) continue;
+            String statement = removeShellControlCommands(scanner.next());
+            if (isCommentOrEmpty(statement)) continue;
+            final Map<String, Object> params;
+            if (JsonParameters.isParameterBlock(statement.trim())) {
+                // the rows of the `UNWIND_BATCH_JSON` export are read as a parameter of the statement following them,
+                // so that its text is the same for every batch and the query plan is taken from the cache
+                params = new HashMap<>(parameters);
+                statement = readJsonParameters(statement.trim(), params);
+                if (isCommentOrEmpty(statement)) continue;
+            } else {
+                params = parameters;
+            }
+            final String stmt = statement;
+            final int index = statementIndex++;
+            final int reportedIndex = parallel == null ? -1 : index;
+
+            if (parallel != null) {
+                if (!isPeriodicOperation(stmt) && !isSchemaStatement(stmt)) {
+                    parallel.submit(() ->
+                            runDataStatementInTx(stmt, params, queue, addStatistics, reportError, fileName, index));
+                    continue;
+                }
+                // the periodic and schema statements are barriers, as they run in their own transactions
+                parallel.await();
+            }
 
             // Periodic operations cannot be schema operations, so no need to check that here (will fail as invalid
             // query)
@@ -258,7 +383,9 @@ public class CypherExtended {
                 Util.inThread(pools, () -> {
                     try {
                         return db.executeTransactionally(
-                                stmt, params, result -> consumeResult(result, queue, addStatistics, tx, fileName));
+                                stmt,
+                                params,
+                                result -> consumeResult(result, queue, addStatistics, tx, fileName, reportedIndex));
                     } catch (Exception e) {
                         collectError(queue, reportError, e, fileName);
                         return null;
@@ -269,11 +396,10 @@ public class CypherExtended {
                 try {
                     Util.inTx(db, pools, threadTx -> {
                         try (Result result = threadTx.execute(stmt, params)) {
-                            return consumeResult(result, queue, addStatistics, tx, fileName);
+                            return consumeResult(result, queue, addStatistics, tx, fileName, reportedIndex);
                         } catch (Exception e) {
                             // APOC historically skips schema operations
-                            if (!(e.getMessage().contains("Schema operations on database")
-                                    && e.getMessage().contains("are not allowed"))) {
+                            if (!isSchemaOperationNotAllowed(e)) {
                                 collectError(queue, reportError, e, fileName);
                                 return null;
                             }
@@ -290,6 +416,55 @@ public class CypherExtended {
                 }
             }
         }
+        if (parallel != null) {
+            parallel.await();
+        }
+    }
+
+    /**
+     * Runs one of the statements submitted to {@link ParallelStatements},
+     * its statistics have the index of the statement in the file, as the results of the statements are interleaved
+     */
+    private void runDataStatementInTx(
+            String stmt,
+            Map<String, Object> params,
+            BlockingQueue<RowResult> queue,
+            boolean addStatistics,
+            boolean reportError,
+            String fileName,
+            int statementIndex) {
+        try (Transaction threadTx = db.beginTx()) {
+            try (Result result = threadTx.execute(stmt, params)) {
+                consumeResult(result, queue, addStatistics, tx, fileName, statementIndex);
+            } catch (Exception e) {
+                // APOC historically skips schema operations
+                if (!isSchemaOperationNotAllowed(e)) {
+                    collectError(queue, reportError, e, fileName);
+                }
+                return;
+            }
+            threadTx.commit();
+        }
+    }
+
+    private static boolean isSchemaOperationNotAllowed(Exception e) {
+        return e.getMessage() != null
+                && e.getMessage().contains("Schema operations on database")
+                && e.getMessage().contains("are not allowed");
+    }
+
+    /**
+     * Reads the leading `:json <name> => <json>` lines of the statement into the params
+     * @return the rest of the statement
+     */
+    private static String readJsonParameters(String statement, Map<String, Object> params) {
+        while (JsonParameters.isParameterBlock(statement)) {
+            int newLine = statement.indexOf('\n');
+            String block = newLine < 0 ? statement : statement.substring(0, newLine);
+            params.putAll(JsonParameters.parse(block.trim()));
+            statement = newLine < 0 ? "" : statement.substring(newLine + 1).trim();
+        }
+        return statement;
     }
 
     private void collectError(BlockingQueue<RowResult> queue, boolean reportError, Exception e, String fileName) {
@@ -343,22 +518,43 @@ public class CypherExtended {
         return trimStatement.isEmpty() || trimStatement.startsWith("//");
     }
 
+    private static final Pattern schemaStatement = Pattern.compile(
+            "((create|drop)\\s+(\\w+\\s+)?(index|constraint)\\b)|(call\\s+db\\.(index|awaitIndex|create))",
+            Pattern.CASE_INSENSITIVE);
+
     private static final Pattern shellControl =
             Pattern.compile("^:?\\b(begin|commit|rollback)\\b", Pattern.CASE_INSENSITIVE);
 
     private Object consumeResult(
             Result result, BlockingQueue<RowResult> queue, boolean addStatistics, Transaction tx, String fileName) {
+        return consumeResult(result, queue, addStatistics, tx, fileName, -1);
+    }
+
+    private Object consumeResult(
+            Result result,
+            BlockingQueue<RowResult> queue,
+            boolean addStatistics,
+            Transaction tx,
+            String fileName,
+            int statementIndex) {
         try {
             long time = System.currentTimeMillis();
             int row = 0;
             while (result.hasNext()) {
                 terminationGuard.check();
-                Map<String, Object> res = EntityUtil.anyRebind(tx, result.next());
+                Map<String, Object> res;
+                // the statements run in parallel share the transaction of the procedure
+                synchronized (tx) {
+                    res = EntityUtil.anyRebind(tx, result.next());
+                }
                 queue.put(new RowResult(row++, res, fileName));
             }
             if (addStatistics) {
-                queue.put(new RowResult(
-                        -1, toMap(result.getQueryStatistics(), System.currentTimeMillis() - time, row), fileName));
+                Map<String, Object> stats = toMap(result.getQueryStatistics(), System.currentTimeMillis() - time, row);
+                if (statementIndex >= 0) {
+                    stats.put("statement", statementIndex);
+                }
+                queue.put(new RowResult(-1, stats, fileName));
             }
             return row;
         } catch (InterruptedException e) {
@@ -380,6 +576,10 @@ public class CypherExtended {
         return Util.isQueryValid(db, stmt, QueryExecutionType.QueryType.SCHEMA_WRITE);
     }
 
+    private boolean isSchemaStatement(String stmt) {
+        return schemaStatement.matcher(stmt.trim()).lookingAt();
+    }
+
     private boolean isPeriodicOperation(String stmt) {
         return stmt.matches("(?is)(.*using\\s+periodic.*)|(.*call\\s+\\{.*\\}\\s+in\\s+transactions.*)");
     }
@@ -595,7 +795,7 @@ public class CypherExtended {
             String key,
             List<Object> partition,
             TerminationGuard terminationGuard) {
-        return pools.getDefaultExecutorService().submit(() -> {
+        return pools.getIoExecutorService().submit(() -> {
             terminationGuard.check();
             return db.executeTransactionally(
                     statement, parallelParams(params, key, partition), result -> Iterators.asList(result));
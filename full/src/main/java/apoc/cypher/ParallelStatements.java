@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.cypher;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the data statements of a file concurrently on the given pool.
+ * The permits are shared by all the files run in parallel, so that they bound the statements running at the same time,
+ * while {@link #await()} is the barrier before the statements which have to run serially.
+ */
+class ParallelStatements {
+
+    private final ExecutorService pool;
+    private final Semaphore permits;
+    private final Deque<Future<?>> running = new ArrayDeque<>();
+
+    ParallelStatements(ExecutorService pool, Semaphore permits) {
+        this.pool = pool;
+        this.permits = permits;
+    }
+
+    void submit(Runnable statement) {
+        failFast();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to run the next statement", e);
+        }
+        try {
+            running.add(pool.submit(() -> {
+                try {
+                    statement.run();
+                } finally {
+                    permits.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all the submitted statements
+     * @throws RuntimeException the first error of the statements, if any
+     */
+    void await() {
+        RuntimeException error = null;
+        while (!running.isEmpty()) {
+            try {
+                running.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running.forEach(future -> future.cancel(true));
+                running.clear();
+                throw new RuntimeException("Interrupted while waiting for the statements", e);
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new RuntimeException(e.getCause());
+                }
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    /**
+     * Stops at the first failed statement, like the serial execution does
+     */
+    private void failFast() {
+        while (!running.isEmpty() && running.peek().isDone()) {
+            Future<?> done = running.poll();
+            try {
+                done.get();
+            } catch (InterruptedException | ExecutionException e) {
+                running.addFirst(done);
+                await();
+            }
+        }
+    }
+}
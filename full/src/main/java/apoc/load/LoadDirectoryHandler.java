@@ -27,7 +27,7 @@ import static java.nio.file.WatchEvent.Kind;
 import static org.apache.commons.lang3.StringUtils.replaceOnce;
 
 import apoc.ApocConfig;
-import apoc.Pools;
+import apoc.util.Util;
 import java.io.File;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
@@ -41,6 +41,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Stream;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -55,12 +56,10 @@ public class LoadDirectoryHandler extends LifecycleAdapter {
 
     private final Log log;
     private final GraphDatabaseService db;
-    private final Pools pools;
 
-    public LoadDirectoryHandler(GraphDatabaseService db, Log log, Pools pools) {
+    public LoadDirectoryHandler(GraphDatabaseService db, Log log) {
         this.db = db;
         this.log = log;
-        this.pools = pools;
     }
 
     private static Kind[] fromListStringToKindArray(List<String> listenEventType) {
@@ -112,10 +111,22 @@ public class LoadDirectoryHandler extends LifecycleAdapter {
                 } catch (Exception ignored) {
                 }
             }
-            return pools.getDefaultExecutorService().submit(createListener(loadDirectoryItem));
+            return startListener(loadDirectoryItem);
         });
     }
 
+    /**
+     * Runs the listener on its own daemon thread, as it lives until it's removed,
+     * so it would hold a thread, or a permit, of the pools all that time
+     */
+    private Future<?> startListener(LoadDirectoryItem item) {
+        FutureTask<?> listener = new FutureTask<>(createListener(item), null);
+        Thread thread = Util.newDaemonThread(listener);
+        thread.setName("apoc-load-directory-" + item.getName());
+        thread.start();
+        return listener;
+    }
+
     public Stream<LoadDirectoryItem.LoadDirectoryResult> list() {
         return Collections.unmodifiableMap(storage).keySet().stream().map(LoadDirectoryItem::toResult);
     }
@@ -21,15 +21,19 @@ package apoc.algo;
 import static apoc.algo.AlgoUtil.SETUP_GEO;
 import static apoc.algo.TravellingSalesman.Config.POINT_PROP_KEY;
 import static apoc.util.TestUtil.testResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import apoc.util.TestUtil;
 import java.util.Map;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.neo4j.graphdb.Path;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -106,6 +110,92 @@ public class PathFindingFullTest {
                 PathFindingFullTest::travelingSalesmanAssertions);
     }
 
+    @Test
+    public void testTravellingSalesmanLatitudeLongitudeProps() {
+        db.executeTransactionally("CREATE (:City {name:'Brescia', lat:45.541553, lon:10.211802}),\n"
+                + "(:City {name:'Genova', lat:37.95, lon:12.7}), \n"
+                + "(:City {name:'Milano', lat:45.4654219, lon:9.1859243}), \n"
+                + "(:City {name:'Firenze', lat:43.833333, lon:11.333333}), \n"
+                + "(:City {name:'Frosinone', lat:41.633333, lon:13.316667}), \n"
+                + "(:City {name:'Messina', lat:38.1938137, lon:15.5540152}), \n"
+                + "(:City {name:'Catanzaro', lat:38.9, lon:16.583333}), \n"
+                + "(:City {name:'Cosenza', lat:39.3, lon:16.25}), \n"
+                + "(:City {name:'Salerno', lat:40.6824408, lon:14.7680961}), \n"
+                + "(:City {name:'Lecce', lat:40.35481, lon:18.172073})");
+
+        TestUtil.testCall(
+                db,
+                "MATCH (n:City) with collect(n) as nodes "
+                        + "CALL apoc.algo.travellingSalesman(nodes, {latitudeProp: 'lat', longitudeProp: 'lon'}) "
+                        + "YIELD path, distance RETURN path, distance",
+                r -> {
+                    assertEquals(9, ((Path) r.get("path")).length());
+                    travelingSalesmanAssertions(r);
+                });
+
+        // without time to improve it, we still get a tour through all the nodes
+        TestUtil.testCall(
+                db,
+                "MATCH (n:City) with collect(n) as nodes "
+                        + "CALL apoc.algo.travellingSalesman(nodes, {latitudeProp: 'lat', longitudeProp: 'lon', timeout: 0}) "
+                        + "YIELD path, distance RETURN path, distance",
+                r -> assertEquals(9, ((Path) r.get("path")).length()));
+    }
+
+    @Test
+    public void testTravellingSalesmanWithRelationshipWeights() {
+        // going around the ring clockwise costs 1 per stop, counterclockwise 5
+        db.executeTransactionally("UNWIND range(0, 19) AS i CREATE (:Stop {idx: i})");
+        db.executeTransactionally("MATCH (a:Stop), (b:Stop) WHERE b.idx = (a.idx + 1) % 20 "
+                + "CREATE (a)-[:ONE_WAY {cost: 1}]->(b), (b)-[:ONE_WAY {cost: 5}]->(a)");
+
+        TestUtil.testCall(
+                db,
+                "MATCH (n:Stop) WITH n ORDER BY n.idx DESC WITH collect(n) as nodes "
+                        + "CALL apoc.algo.travellingSalesman(nodes, {relationshipFilter: 'ONE_WAY>', weight: 'cost'}) "
+                        + "YIELD path, distance RETURN path, distance",
+                r -> {
+                    assertEquals(20.0, r.get("distance"));
+                    assertEquals(19, ((Path) r.get("path")).length());
+                });
+    }
+
+    @Test
+    public void testTravellingSalesmanWithTooManyWeightedNodes() {
+        db.executeTransactionally("UNWIND range(0, 19) AS i CREATE (:Stop {idx: i})");
+
+        RuntimeException e = assertThrows(
+                RuntimeException.class,
+                () -> TestUtil.testCall(
+                        db,
+                        "MATCH (n:Stop) WITH collect(n) as nodes "
+                                + "CALL apoc.algo.travellingSalesman(nodes, {weight: 'cost', maxWeightedNodes: 10}) "
+                                + "YIELD path, distance RETURN path, distance",
+                        r -> {}));
+        Throwable rootCause = ExceptionUtils.getRootCause(e);
+        assertTrue(rootCause instanceof IllegalArgumentException);
+        assertTrue(rootCause.getMessage(), rootCause.getMessage().contains("more than the 10 of the maxWeightedNodes"));
+    }
+
+    @Test
+    public void testTravellingSalesmanWithTheRemovedAnnealingConfig() {
+        db.executeTransactionally("UNWIND range(0, 4) AS i CREATE (:Stop {idx: i})");
+
+        RuntimeException e = assertThrows(
+                RuntimeException.class,
+                () -> TestUtil.testCall(
+                        db,
+                        "MATCH (n:Stop) WITH collect(n) as nodes "
+                                + "CALL apoc.algo.travellingSalesman(nodes, {coolingFactor: 0.9, endTemperature: 1}) "
+                                + "YIELD path, distance RETURN path, distance",
+                        r -> {}));
+        Throwable rootCause = ExceptionUtils.getRootCause(e);
+        assertTrue(rootCause instanceof IllegalArgumentException);
+        assertTrue(
+                rootCause.getMessage(),
+                rootCause.getMessage().contains("[coolingFactor, endTemperature] are no longer supported"));
+    }
+
     private static void travelingSalesmanAssertions(Map<String, Object> r) {
         final double distance = (double) r.get("distance");
         final boolean assertCondition = distance > 2500000 && distance < 3000000;
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.cache;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import apoc.util.TestUtil;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.ProvideSystemProperty;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.test.rule.DbmsRule;
+import org.neo4j.test.rule.ImpermanentDbmsRule;
+
+/**
+ * The storage bounded to a few entries, apart from {@link StaticTest} so that the bound doesn't affect its tests
+ */
+public class StaticEvictionTest {
+
+    @Rule
+    public final ProvideSystemProperty systemPropertyRule = new ProvideSystemProperty(Static.MAX_ENTRIES, "3");
+
+    @Rule
+    public DbmsRule db = new ImpermanentDbmsRule()
+            .withSetting(GraphDatabaseSettings.procedure_unrestricted, Collections.singletonList("apoc.*"));
+
+    @Before
+    public void setUp() throws Exception {
+        TestUtil.registerProcedure(db, Static.class);
+        Static.clear();
+    }
+
+    @After
+    public void teardown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testEvictionAndStats() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            TestUtil.testCall(
+                    db, "call apoc.static.set('evicted.' + $i, $i)", map("i", i), r -> assertNull(r.get("value")));
+        }
+        TestUtil.testCall(db, "call apoc.static.stats()", r -> {
+            Map<String, Object> stats = (Map<String, Object>) r.get("value");
+            assertEquals(3L, stats.get("entries"));
+            assertEquals(3L, stats.get("maxEntries"));
+            assertEquals(2L, stats.get("evictions"));
+        });
+        TestUtil.testCall(
+                db,
+                "return apoc.static.getAll('evicted') as value",
+                r -> assertEquals(map("2", 2L, "3", 3L, "4", 4L), r.get("value")));
+    }
+}
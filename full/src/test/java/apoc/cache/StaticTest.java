@@ -20,15 +20,19 @@ package apoc.cache;
 
 import static apoc.util.MapUtil.map;
 import static org.junit.Assert.*;
+import static org.neo4j.test.assertion.Assert.assertEventually;
 
 import apoc.util.TestUtil;
 import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.ProvideSystemProperty;
 import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -40,8 +44,8 @@ public class StaticTest {
     public static final String VALUE = "testValue";
 
     @Rule
-    public final ProvideSystemProperty systemPropertyRule =
-            new ProvideSystemProperty("apoc.static.test", VALUE).and("apoc.static.all.test", VALUE);
+    public final ProvideSystemProperty systemPropertyRule = new ProvideSystemProperty("apoc.static.test", VALUE)
+            .and("apoc.static.all.test", VALUE);
 
     @Rule
     public DbmsRule db = new ImpermanentDbmsRule()
@@ -109,4 +113,27 @@ public class StaticTest {
         TestUtil.testCall(db, "call apoc.static.set('test2',null)", r -> assertEquals(42L, r.get("value")));
         TestUtil.testCall(db, "call apoc.static.get('test2')", r -> assertNull(r.get("value")));
     }
+
+    @Test
+    public void testSetWithTtl() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.set('ttl.test', 42, {ttl: 1})", r -> assertNull(r.get("value")));
+        TestUtil.testCall(db, "return apoc.static.get('ttl.test') as value", r -> assertEquals(42L, r.get("value")));
+        // the entry expires after a second, but a slow build may need more to run the calls
+        assertEventually(
+                () -> TestUtil.singleResultFirstColumn(db, "return apoc.static.get('ttl.test') as value"),
+                Objects::isNull,
+                10,
+                TimeUnit.SECONDS);
+        TestUtil.testCall(db, "return apoc.static.getAll('ttl') as value", r -> assertEquals(map(), r.get("value")));
+    }
+
+    @Test
+    public void testIncrementAndSetIfAbsent() throws Exception {
+        TestUtil.testCall(db, "call apoc.static.increment('counter')", r -> assertEquals(1L, r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.increment('counter', 41)", r -> assertEquals(42L, r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.increment('counter', 0.5)", r -> assertEquals(42.5D, r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.setIfAbsent('first', 'a')", r -> assertEquals("a", r.get("value")));
+        TestUtil.testCall(db, "call apoc.static.setIfAbsent('first', 'b')", r -> assertEquals("a", r.get("value")));
+        TestUtil.testFail(db, "call apoc.static.increment('first')", QueryExecutionException.class);
+    }
 }
@@ -1671,6 +1671,93 @@ public class CypherProceduresTest {
                 Map.of("signature", "testFour() :: VOID", "statement", statement, "mode", Mode.DBMS.name()));
     }
 
+    @Test
+    public void testFunctionWithCachedResults() {
+        db.executeTransactionally("UNWIND range(1, 5) AS age CREATE (:Person {age: age}), (:City {age: age})");
+        db.executeTransactionally("CALL apoc.custom.declareFunction('older(age::NUMBER) :: INT', "
+                + "'MATCH (p:Person) WHERE p.age > $age RETURN count(p) AS count', false, '', "
+                + "{cache: {maxSize: 10, ttl: 60, labels: ['Person']}})");
+
+        testCall(db, "RETURN custom.older(2) AS count", row -> assertEquals(3L, row.get("count")));
+        testCall(db, "RETURN custom.older(2) AS count", row -> assertEquals(3L, row.get("count")));
+        assertCacheStats("older", 1L, 1L);
+        // equal values of another type have their own results, as the statement may depend on the type
+        testCall(db, "RETURN custom.older(2.0) AS count", row -> assertEquals(3L, row.get("count")));
+        assertCacheStats("older", 1L, 2L);
+
+        // changing nodes with other labels doesn't invalidate the results
+        db.executeTransactionally("CREATE (:City {age: 10})");
+        testCall(db, "RETURN custom.older(2) AS count", row -> assertEquals(3L, row.get("count")));
+        assertCacheStats("older", 2L, 2L);
+
+        db.executeTransactionally("CREATE (:Person {age: 10})");
+        testCall(db, "RETURN custom.older(2) AS count", row -> assertEquals(4L, row.get("count")));
+        assertCacheStats("older", 2L, 3L);
+
+        // the calls made by a transaction with changes don't use the cache
+        testCall(
+                db,
+                "CREATE (:Person {age: 20}) WITH 1 AS ignored RETURN custom.older(2) AS count",
+                row -> assertEquals(5L, row.get("count")));
+        testCall(db, "CALL apoc.custom.list() YIELD cache RETURN cache", row -> {
+            Map<String, Object> cache = (Map<String, Object>) row.get("cache");
+            assertEquals(1L, cache.get("bypassed"));
+            // the new Person nodes invalidated the results twice
+            assertEquals(2L, cache.get("invalidations"));
+        });
+    }
+
+    @Test
+    public void testProcedureWithCachedEntities() {
+        db.executeTransactionally(
+                "UNWIND range(1, 3) AS age CREATE (:Person {name: 'p' + age, age: age})-[:LIVES_IN]->(:City)");
+        db.executeTransactionally(
+                "CALL apoc.custom.declareProcedure('residents(age::INT) :: (person::NODE, lives::RELATIONSHIP)', "
+                        + "'MATCH (person:Person)-[lives:LIVES_IN]->() WHERE person.age >= $age RETURN person, lives', "
+                        + "'read', '', {cache: true})");
+
+        for (int i = 0; i < 2; i++) {
+            TestUtil.testResult(
+                    db,
+                    "CALL custom.residents(2) YIELD person, lives "
+                            + "RETURN person.name AS name, startNode(lives) = person AS start ORDER BY name",
+                    result -> {
+                        List<Map<String, Object>> rows = Iterators.asList(result);
+                        assertEquals(
+                                List.of(Map.of("name", "p2", "start", true), Map.of("name", "p3", "start", true)),
+                                rows);
+                    });
+        }
+        assertCacheStats("residents", 1L, 1L);
+
+        // without labels, any change invalidates the results
+        db.executeTransactionally("MATCH (p:Person {name: 'p3'}) DETACH DELETE p");
+        testCallCount(db, "CALL custom.residents(2)", 1);
+        assertCacheStats("residents", 1L, 2L);
+    }
+
+    @Test
+    public void testCachedResultsOnlyForReadProcedures() {
+        assertProcedureFails(
+                "Only the results of read procedures can be cached",
+                "CALL apoc.custom.declareProcedure('create() :: (node::NODE)', 'CREATE (node) RETURN node', 'write', '', {cache: true})");
+        assertProcedureFails(
+                "The cache maxSize must be > 0",
+                "CALL apoc.custom.declareFunction('answer() :: INT', 'RETURN 42', false, '', {cache: {maxSize: 0}})");
+    }
+
+    private void assertCacheStats(String name, long hits, long misses) {
+        testCall(
+                db,
+                "CALL apoc.custom.list() YIELD name, cache WHERE name = $name RETURN cache",
+                Map.of("name", name),
+                row -> {
+                    Map<String, Object> cache = (Map<String, Object>) row.get("cache");
+                    assertEquals(hits, cache.get("hits"));
+                    assertEquals(misses, cache.get("misses"));
+                });
+    }
+
     private void assertProcedureFails(String expectedMessage, String query) {
         assertProcedureFails(expectedMessage, query, Map.of());
     }
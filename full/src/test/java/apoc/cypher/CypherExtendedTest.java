@@ -38,6 +38,8 @@ import apoc.util.Utils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -51,7 +53,9 @@ import org.apache.commons.io.FileUtils;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
 import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
@@ -61,6 +65,9 @@ import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.Values;
 
 /**
  * @author mh
@@ -341,6 +348,91 @@ public class CypherExtendedTest {
         }
     }
 
+    @Test
+    public void testRunFileParallel() throws IOException {
+        File file = new File(IMPORT_DIR, "parallelStatements.cypher");
+        String content = IntStream.range(0, 20)
+                        .mapToObj(
+                                i -> String.format("UNWIND range(1, 10) AS x CREATE (:Parallel {batch: %d, x: x});", i))
+                        .collect(Collectors.joining("\n"))
+                + "\nCREATE INDEX parallelIndex FOR (n:Parallel) ON (n.batch);\n"
+                + "MATCH (n:Parallel) SET n.done = true;\n";
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        try {
+            testResult(
+                    db,
+                    "CALL apoc.cypher.runFile($file, {parallel: true, concurrency: 4}) YIELD result RETURN result",
+                    Map.of("file", file.getName()),
+                    r -> {
+                        List<Map<String, Object>> stats = Iterators.asList(r.columnAs("result"));
+                        // the index is skipped, as runFile doesn't run schema operations
+                        assertEquals(21, stats.size());
+                        Set<Integer> statements = stats.stream()
+                                .map(CypherExtendedTest::statementIndex)
+                                .collect(Collectors.toSet());
+                        assertEquals(
+                                IntStream.rangeClosed(0, 21)
+                                        .filter(i -> i != 20)
+                                        .boxed()
+                                        .collect(Collectors.toSet()),
+                                statements);
+                        stats.forEach(stat -> assertTrue(stat.toString(), stat.containsKey("time")));
+                        // the statement after the schema one runs once all the previous ones are done
+                        Map<String, Object> last = stats.stream()
+                                .filter(stat -> statementIndex(stat) == 21)
+                                .findFirst()
+                                .get();
+                        assertEquals(200L, last.get("propertiesSet"));
+                    });
+            testCall(db, "MATCH (n:Parallel) RETURN count(n) AS count, count(n.done) AS done", row -> {
+                assertEquals(200L, row.get("count"));
+                assertEquals(200L, row.get("done"));
+            });
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static int statementIndex(Map<String, Object> stats) {
+        return ((Number) stats.get("statement")).intValue();
+    }
+
+    @Test
+    public void testRunFilesParallelIndependentFiles() throws IOException {
+        int numFiles = 5;
+        List<File> files = new ArrayList<>();
+        for (int fileIdx = 0; fileIdx < numFiles; fileIdx++) {
+            File file = new File(IMPORT_DIR, "independent" + fileIdx + ".cypher");
+            // the statements of a file run concurrently too, so neither one reads what the other writes
+            String content = String.format(
+                    "UNWIND range(1, 10) AS x CREATE (:Independent {file: %1$d, x: x, done: true});\n"
+                            + "UNWIND range(11, 20) AS x CREATE (:Independent {file: %1$d, x: x, done: true});\n",
+                    fileIdx);
+            FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+            files.add(file);
+        }
+        List<String> fileNames = files.stream().map(File::getName).collect(Collectors.toList());
+        try {
+            testResult(
+                    db,
+                    "CALL apoc.cypher.runFiles($files, {independentFiles: true, parallel: true, concurrency: 2})",
+                    Map.of("files", fileNames),
+                    r -> {
+                        List<Map<String, Object>> rows = Iterators.asList(r);
+                        assertEquals(numFiles * 2, rows.size());
+                        assertEquals(
+                                Set.copyOf(fileNames),
+                                rows.stream().map(row -> row.get("fileName")).collect(Collectors.toSet()));
+                    });
+            testCall(db, "MATCH (n:Independent) RETURN count(n) AS count, count(n.done) AS done", row -> {
+                assertEquals(numFiles * 20L, row.get("count"));
+                assertEquals(numFiles * 20L, row.get("done"));
+            });
+        } finally {
+            files.forEach(File::delete);
+        }
+    }
+
     @Test
     public void testIssue3751RunSchemaFiles() throws IOException {
         for (int i = 0; i < 15; i++) {
@@ -375,6 +467,27 @@ public class CypherExtendedTest {
         }
     }
 
+    @Test
+    public void testRunFileWithJsonParameters() {
+        testCallCount(db, "CALL apoc.cypher.runFile('json_params.cypher', {statistics: false})", 0);
+
+        testCall(
+                db, "MATCH (a:Person {name: 'Anne'})-[r:KNOWS]->(b:Person:Admin {name: 'Bob'}) RETURN a, r, b", row -> {
+                    Map<String, Object> anne = ((Node) row.get("a")).getAllProperties();
+                    assertEquals(LocalDate.of(1990, 2, 1), anne.get("born"));
+                    assertTrue(Double.isNaN((double) anne.get("score")));
+                    assertArrayEquals(new String[] {"a", "b"}, (String[]) anne.get("tags"));
+                    assertEquals(Values.pointValue(CoordinateReferenceSystem.WGS84, -0.1, 51.5), anne.get("home"));
+                    assertFalse(anne.containsKey("UNIQUE IMPORT ID"));
+
+                    Map<String, Object> bob = ((Node) row.get("b")).getAllProperties();
+                    assertEquals(ZonedDateTime.parse("2020-01-01T10:00Z"), bob.get("since"));
+                    assertEquals(DurationValue.parse("PT8H"), bob.get("shift"));
+
+                    assertEquals(LocalDate.of(2010, 5, 6), ((Relationship) row.get("r")).getProperty("since"));
+                });
+    }
+
     @Test
     public void testRunFileWithParameters() throws Exception {
         testResult(
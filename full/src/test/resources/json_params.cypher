@@ -0,0 +1,25 @@
+:begin
+CREATE CONSTRAINT ON (node:`UNIQUE IMPORT LABEL`) ASSERT (node.`UNIQUE IMPORT ID`) IS UNIQUE;
+:commit
+CALL db.awaitIndexes(300);
+:begin
+:json rows => [{"_id":1,"properties":{"shift":{"$type":"duration","value":"PT8H"},"name":"Bob","since":{"$type":"datetime","value":"2020-01-01T10:00Z"}}}]
+UNWIND $rows AS row
+CREATE (n:`UNIQUE IMPORT LABEL`{`UNIQUE IMPORT ID`: row._id}) SET n += row.properties SET n:Admin:Person;
+:json rows => [{"_id":0,"properties":{"score":{"$type":"float","value":"NaN"},"born":{"$type":"date","value":"1990-02-01"},"name":"Anne","tags":["a","b"],"home":{"$type":"point","value":{"coordinates":[-0.1,51.5],"srid":4326}}}}]
+UNWIND $rows AS row
+CREATE (n:`UNIQUE IMPORT LABEL`{`UNIQUE IMPORT ID`: row._id}) SET n += row.properties SET n:Person;
+:commit
+:begin
+:json rows => [{"start":{"_id":0},"end":{"_id":1},"properties":{"since":{"$type":"date","value":"2010-05-06"}}}]
+UNWIND $rows AS row
+MATCH (start:`UNIQUE IMPORT LABEL`{`UNIQUE IMPORT ID`: row.start._id})
+MATCH (end:`UNIQUE IMPORT LABEL`{`UNIQUE IMPORT ID`: row.end._id})
+CREATE (start)-[r:KNOWS]->(end) SET r += row.properties;
+:commit
+:begin
+MATCH (n:`UNIQUE IMPORT LABEL`)  WITH n LIMIT 20000 REMOVE n:`UNIQUE IMPORT LABEL` REMOVE n.`UNIQUE IMPORT ID`;
+:commit
+:begin
+DROP CONSTRAINT ON (node:`UNIQUE IMPORT LABEL`) ASSERT (node.`UNIQUE IMPORT ID`) IS UNIQUE;
+:commit